@@ -129,24 +129,33 @@ export default function ImportTransactionsModal({ isOpen, onClose, onSuccess })
   const handleConfirm = async (transactions) => {
     setLoading(true);
     try {
-      const response = await api.post('/transactions/import/confirm', {
+      const started = await api.post('/transactions/import/confirm', {
         transactions: transactions,
       });
 
-      if (response.success) {
+      // A gravação roda em segundo plano no servidor; acompanha até terminar
+      let job = started;
+      while (job && !job.done) {
+        await new Promise((resolve) => setTimeout(resolve, 1000));
+        job = await api.get(`/transactions/import/jobs/${started.jobId}`);
+      }
+
+      if (job.status === 'CONCLUIDO' || job.status === 'CONCLUIDO_COM_ERROS') {
         toast.success(
-          response.message || 
-          t('import.success', { count: response.successCount || transactions.length }) ||
-          `Importação concluída: ${response.successCount || transactions.length} transação(ões) importada(s)`
+          t('import.success', { count: job.imported }) ||
+          `Importação concluída: ${job.imported} transação(ões) importada(s)`
         );
+        if (job.errorCount > 0) {
+          toast.error(`${job.errorCount} erro(s): ${job.errors.slice(0, 5).join(', ')}`);
+        }
         if (onSuccess) {
           onSuccess();
         }
         handleClose();
       } else {
-        toast.error(response.message || t('import.confirmError') || 'Erro ao confirmar importação');
-        if (response.errors && response.errors.length > 0) {
-          toast.error(response.errors.join(', '));
+        toast.error(t('import.confirmError') || 'Erro ao confirmar importação');
+        if (job.errors && job.errors.length > 0) {
+          toast.error(job.errors.slice(0, 5).join(', '));
         }
       }
     } catch (error) {
@@ -27,7 +27,7 @@ export default function Transactions() {
   const [showPayInstallmentModal, setShowPayInstallmentModal] = useState(false);
   const [selectedInstallment, setSelectedInstallment] = useState(null);
   const [hasMore, setHasMore] = useState(false);
-  const [offset, setOffset] = useState(0);
+  const [cursor, setCursor] = useState(null);
   const [loadingMore, setLoadingMore] = useState(false);
   const [showImportModal, setShowImportModal] = useState(false);
   const [expandedGroups, setExpandedGroups] = useState(new Set());
@@ -59,24 +59,26 @@ export default function Transactions() {
     const abortController = new AbortController();
     abortControllerRef.current = abortController;
 
-    let currentOffset = 0;
+    let currentCursor = null;
     if (resetOffset) {
       setLoading(true);
-      setOffset(0);
-      currentOffset = 0;
+      setCursor(null);
     } else {
       setLoadingMore(true);
-      // Usa o offset atual do estado através de uma função
-      setOffset(prevOffset => {
-        currentOffset = prevOffset;
-        return prevOffset;
+      // Usa o cursor atual do estado através de uma função
+      setCursor(prevCursor => {
+        currentCursor = prevCursor;
+        return prevCursor;
       });
     }
     
     try {
       
-      // Constrói URL com parâmetros de filtro
-      let transactionsUrl = `/transactions?userId=${user.id}&limit=12&offset=${currentOffset}`;
+      // Constrói URL com parâmetros de filtro (o cursor vem do nextCursor da página anterior)
+      let transactionsUrl = `/transactions?userId=${user.id}&limit=12`;
+      if (currentCursor) {
+        transactionsUrl += `&cursor=${encodeURIComponent(currentCursor)}`;
+      }
       if (filters.category) {
         transactionsUrl += `&categoryId=${filters.category}`;
       }
@@ -145,11 +147,7 @@ export default function Transactions() {
           setTransactions(prev => [...prev, ...filtered]);
         }
         setHasMore(transRes.hasMore || false);
-        if (resetOffset) {
-          setOffset(12);
-        } else {
-          setOffset(prev => prev + 12);
-        }
+        setCursor(transRes.nextCursor || null);
       }
       setCategories(catData || []);
       setAccounts(accData || []);
@@ -188,8 +186,10 @@ export default function Transactions() {
     
     setLoadingMore(true);
     try {
-      const currentOffset = offset;
-      let transactionsUrl = `/transactions?userId=${user.id}&limit=12&offset=${currentOffset}`;
+      let transactionsUrl = `/transactions?userId=${user.id}&limit=12`;
+      if (cursor) {
+        transactionsUrl += `&cursor=${encodeURIComponent(cursor)}`;
+      }
       if (filters.category) {
         transactionsUrl += `&categoryId=${filters.category}`;
       }
@@ -226,19 +226,19 @@ export default function Transactions() {
         }
         setTransactions(prev => [...prev, ...filtered]);
         setHasMore(transRes.hasMore || false);
-        setOffset(prev => prev + 12);
+        setCursor(transRes.nextCursor || null);
       }
     } catch (error) {
       toast.error(t('transactions.errorLoadingMore'));
     } finally {
       setLoadingMore(false);
     }
-  }, [user, filters, offset, loadingMore]);
+  }, [user, filters, cursor, loadingMore]);
 
   useEffect(() => {
     if (user) {
-      // Reseta offset quando os filtros mudarem
-      setOffset(0);
+      // Reseta o cursor quando os filtros mudarem
+      setCursor(null);
       setHasMore(false);
       loadData(true);
     }
@@ -396,7 +396,7 @@ export default function Transactions() {
       console.error('Erro ao buscar parcelas do grupo:', error);
       // Fallback: tenta buscar através da API de transações
       try {
-        const response = await api.get(`/transactions?userId=${user.id}&type=parceladas&limit=1000&offset=0`);
+        const response = await api.get(`/transactions?userId=${user.id}&type=parceladas&limit=1000`);
         if (response.success) {
           const groupInstallments = (response.data || []).filter(t => 
             t.idGrupoParcela === groupId && 
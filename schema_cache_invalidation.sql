@@ -0,0 +1,19 @@
+-- Script para adicionar a invalidação de caches entre instâncias (LISTEN/NOTIFY)
+-- Execute este script no seu banco de dados PostgreSQL, depois de schema_data_versions.sql
+-- Cada incremento em versoes_dados publica '<id_usuario>:<entidade>' no canal invalidacao_cache.
+-- O NOTIFY só é entregue no commit da escrita e payloads repetidos na mesma transação são
+-- enviados uma única vez. Cada instância escuta o canal e invalida seus caches locais.
+-- Sem este script as instâncias publicam a notificação após o commit (uma consulta a mais por escrita).
+-- O script pode ser executado novamente.
+
+CREATE OR REPLACE FUNCTION notificar_versao_dados()
+RETURNS TRIGGER AS $$
+BEGIN
+    PERFORM pg_notify('invalidacao_cache', NEW.id_usuario || ':' || NEW.entidade);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS notificar_versao_dados ON versoes_dados;
+CREATE TRIGGER notificar_versao_dados AFTER INSERT OR UPDATE ON versoes_dados
+    FOR EACH ROW EXECUTE FUNCTION notificar_versao_dados();
@@ -0,0 +1,103 @@
+-- Script para adicionar as versões de dados por usuário (ETag das rotas de leitura)
+-- Execute este script no seu banco de dados PostgreSQL
+
+-- =====================================================
+-- TABELA: versoes_dados
+-- Versão de cada entidade por usuário, incrementada por triggers na mesma
+-- transação da escrita. Compartilhada por todas as instâncias do servidor.
+-- =====================================================
+
+CREATE TABLE IF NOT EXISTS versoes_dados (
+    id_usuario INTEGER NOT NULL,
+    entidade VARCHAR(20) NOT NULL,
+    versao BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (id_usuario, entidade)
+);
+-- Sem FK para usuarios: a exclusão em cascata de um usuário dispara os triggers das
+-- tabelas filhas, que não podem falhar ao registrar a versão de um usuário já removido
+
+COMMENT ON TABLE versoes_dados IS 'Versões dos dados de cada usuário por entidade (ETag/304)';
+
+-- =====================================================
+-- FUNÇÃO: incrementar_versao_dados
+-- Trigger por comando (FOR EACH STATEMENT) com tabelas de transição: cada versão
+-- é incrementada uma vez por comando, não uma vez por linha. Assim um INSERT ... SELECT
+-- ou COPY de milhares de linhas não disputa a mesma linha de versoes_dados a cada linha.
+-- Argumentos do trigger: nomes das entidades afetadas (DataVersion.Entity)
+-- Tabelas de transição: novas (INSERT, UPDATE) e antigas (UPDATE, DELETE)
+-- O dono da linha vem de id_usuario; tabelas de associação sem essa coluna
+-- resolvem o dono pela tag (id_tag) ou pelo gasto (id_gasto)
+-- =====================================================
+
+CREATE OR REPLACE FUNCTION incrementar_versao_dados()
+RETURNS TRIGGER AS $$
+DECLARE
+    linhas JSONB[] := '{}';
+BEGIN
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        linhas := linhas || ARRAY(SELECT to_jsonb(n) FROM novas n);
+    END IF;
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        linhas := linhas || ARRAY(SELECT to_jsonb(a) FROM antigas a);
+    END IF;
+
+    -- Em ordem de usuário e entidade, para comandos concorrentes travarem as versões na mesma ordem
+    INSERT INTO versoes_dados (id_usuario, entidade, versao)
+    SELECT u.id_usuario, e.entidade, 1
+    FROM (
+        SELECT DISTINCT COALESCE((l->>'id_usuario')::INTEGER, t.id_usuario, g.id_usuario) AS id_usuario
+        FROM unnest(linhas) AS x(l)
+        LEFT JOIN tags t ON t.id_tag = (l->>'id_tag')::INTEGER
+        LEFT JOIN gastos g ON g.id_gasto = (l->>'id_gasto')::INTEGER
+    ) u, unnest(TG_ARGV) AS e(entidade)
+    WHERE u.id_usuario IS NOT NULL
+    ORDER BY u.id_usuario, e.entidade
+    ON CONFLICT (id_usuario, entidade) DO UPDATE SET versao = versoes_dados.versao + 1;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- =====================================================
+-- TRIGGERS
+-- Um trigger por operação (tabelas de transição exigem um único evento por trigger).
+-- Tags alteram as transações exibidas; gastos e receitas alteram saldos e faturas
+-- exibidos nas contas.
+-- =====================================================
+
+DO $$
+DECLARE
+    t RECORD;
+BEGIN
+    FOR t IN SELECT * FROM (VALUES
+        ('contas', '''ACCOUNTS'''),
+        ('categorias', '''CATEGORIES'''),
+        ('tags', '''TAGS'', ''TRANSACTIONS'''),
+        ('gastos', '''TRANSACTIONS'', ''ACCOUNTS'''),
+        ('receitas', '''TRANSACTIONS'', ''ACCOUNTS'''),
+        ('categoria_gasto', '''TRANSACTIONS'''),
+        ('transacao_tag', '''TRANSACTIONS'''),
+        ('gasto_observacoes', '''TRANSACTIONS'''),
+        ('orcamentos', '''BUDGETS'''),
+        ('investimentos', '''INVESTMENTS'''),
+        ('installment_groups', '''TRANSACTIONS''')
+    ) AS v(tabela, entidades) LOOP
+        -- Trigger por linha de versões anteriores deste script
+        EXECUTE format('DROP TRIGGER IF EXISTS versao_%1$s ON %1$s', t.tabela);
+
+        EXECUTE format('DROP TRIGGER IF EXISTS versao_%1$s_ins ON %1$s', t.tabela);
+        EXECUTE format('CREATE TRIGGER versao_%1$s_ins AFTER INSERT ON %1$s '
+            'REFERENCING NEW TABLE AS novas '
+            'FOR EACH STATEMENT EXECUTE FUNCTION incrementar_versao_dados(%2$s)', t.tabela, t.entidades);
+
+        EXECUTE format('DROP TRIGGER IF EXISTS versao_%1$s_upd ON %1$s', t.tabela);
+        EXECUTE format('CREATE TRIGGER versao_%1$s_upd AFTER UPDATE ON %1$s '
+            'REFERENCING OLD TABLE AS antigas NEW TABLE AS novas '
+            'FOR EACH STATEMENT EXECUTE FUNCTION incrementar_versao_dados(%2$s)', t.tabela, t.entidades);
+
+        EXECUTE format('DROP TRIGGER IF EXISTS versao_%1$s_del ON %1$s', t.tabela);
+        EXECUTE format('CREATE TRIGGER versao_%1$s_del AFTER DELETE ON %1$s '
+            'REFERENCING OLD TABLE AS antigas '
+            'FOR EACH STATEMENT EXECUTE FUNCTION incrementar_versao_dados(%2$s)', t.tabela, t.entidades);
+    END LOOP;
+END;
+$$;
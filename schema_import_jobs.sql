@@ -0,0 +1,39 @@
+-- Script para adicionar as importações de transações em segundo plano
+-- Execute este script no seu banco de dados PostgreSQL
+-- Cada importação guarda o arquivo recebido (em disco, no servidor), o ponto de retomada
+-- (última linha gravada) e os contadores, atualizados no mesmo commit de cada lote.
+-- Importações interrompidas por um reinício continuam a partir do ponto de retomada.
+-- Cada importação pertence à instância que a executa (dono), que renova atualizado_em
+-- periodicamente; outra instância só assume a importação depois que a renovação para.
+-- O script pode ser executado novamente.
+
+CREATE TABLE IF NOT EXISTS importacoes (
+    id_importacao SERIAL PRIMARY KEY,
+    id_usuario INTEGER NOT NULL,
+    origem VARCHAR(20) NOT NULL CHECK (origem IN ('CSV', 'CONFIRMACAO')),
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDENTE'
+        CHECK (status IN ('PENDENTE', 'EM_ANDAMENTO', 'CONCLUIDO', 'CONCLUIDO_COM_ERROS', 'FALHOU')),
+    arquivo TEXT,
+    dono VARCHAR(100),
+    ultima_linha INTEGER NOT NULL DEFAULT 0,
+    linhas_lidas INTEGER NOT NULL DEFAULT 0,
+    importadas INTEGER NOT NULL DEFAULT 0,
+    erros INTEGER NOT NULL DEFAULT 0,
+    mensagens TEXT[] NOT NULL DEFAULT '{}',
+    criado_em TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    atualizado_em TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    concluido_em TIMESTAMP,
+    FOREIGN KEY (id_usuario) REFERENCES usuarios(id_usuario) ON DELETE CASCADE
+);
+
+-- Tabelas criadas por uma versão anterior deste script
+ALTER TABLE importacoes ADD COLUMN IF NOT EXISTS dono VARCHAR(100);
+
+-- Acompanhamento: importações mais recentes do usuário
+CREATE INDEX IF NOT EXISTS idx_importacoes_usuario_criado ON importacoes(id_usuario, criado_em DESC);
+-- Retomada das importações paradas: apenas as não concluídas
+CREATE INDEX IF NOT EXISTS idx_importacoes_ativas ON importacoes(status) WHERE status IN ('PENDENTE', 'EM_ANDAMENTO');
+-- No máximo uma importação não concluída por usuário, em todas as instâncias
+CREATE UNIQUE INDEX IF NOT EXISTS uq_importacoes_usuario_ativa ON importacoes(id_usuario) WHERE status IN ('PENDENTE', 'EM_ANDAMENTO');
+
+COMMENT ON TABLE importacoes IS 'Importações de transações em segundo plano, com ponto de retomada por lote';
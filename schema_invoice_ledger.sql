@@ -0,0 +1,276 @@
+-- Script para adicionar o livro de faturas de cartão de crédito (uma linha por cartão × fatura)
+-- Execute este script no seu banco de dados PostgreSQL
+-- Requer schema_installments.sql. O script pode ser executado novamente: ele recria as
+-- funções e os triggers e reconstrói as faturas a partir de gastos e receitas.
+
+-- =====================================================
+-- FUNÇÕES DE DATA DA FATURA
+-- Mesmas regras de CreditCardUtil: a fatura é identificada pela data de pagamento
+-- (vencimento); dias inexistentes no mês (ex: 31 em fevereiro) viram o último dia.
+-- =====================================================
+
+CREATE OR REPLACE FUNCTION dia_do_mes(p_mes DATE, p_dia INTEGER)
+RETURNS DATE AS $$
+    SELECT date_trunc('month', p_mes)::DATE
+           + LEAST(p_dia, EXTRACT(DAY FROM date_trunc('month', p_mes) + INTERVAL '1 month - 1 day')::INTEGER) - 1;
+$$ LANGUAGE sql IMMUTABLE;
+
+-- Vencimento da fatura em que entra um lançamento feito na data (primeiro pagamento na data ou depois)
+CREATE OR REPLACE FUNCTION fatura_vencimento(p_data DATE, p_dia_pagamento INTEGER)
+RETURNS DATE AS $$
+    SELECT CASE WHEN p_data <= dia_do_mes(p_data, p_dia_pagamento)
+                THEN dia_do_mes(p_data, p_dia_pagamento)
+                ELSE dia_do_mes((p_data + INTERVAL '1 month')::DATE, p_dia_pagamento)
+           END;
+$$ LANGUAGE sql IMMUTABLE;
+
+-- Fechamento da fatura com o vencimento informado (último fechamento até o vencimento)
+CREATE OR REPLACE FUNCTION fatura_fechamento(p_vencimento DATE, p_dia_fechamento INTEGER)
+RETURNS DATE AS $$
+    SELECT CASE WHEN dia_do_mes(p_vencimento, p_dia_fechamento) <= p_vencimento
+                THEN dia_do_mes(p_vencimento, p_dia_fechamento)
+                ELSE dia_do_mes((p_vencimento - INTERVAL '1 month')::DATE, p_dia_fechamento)
+           END;
+$$ LANGUAGE sql IMMUTABLE;
+
+-- =====================================================
+-- TABELA: faturas_cartao
+-- Valores de cada fatura de cada cartão, mantidos por triggers na mesma transação de
+-- cada escrita em gastos, receitas e contas. As telas de cartão e fatura leem uma linha
+-- pela chave primária em vez de somar gastos e pagamentos por período.
+--
+-- valor_lancado: gastos do cartão cuja data de entrada na fatura (data_entrada_fatura
+--                para compras retidas, senão a data do gasto/parcela) cai nesta fatura;
+--                inclui parcelas já pagas antecipadamente
+-- valor_pago:    pagamentos (receitas no cartão) feitos até o vencimento desta fatura,
+--                mais as parcelas desta fatura pagas antecipadamente
+-- quantidade:    lançamentos que compõem a linha (a linha some quando chega a zero)
+-- =====================================================
+
+CREATE TABLE IF NOT EXISTS faturas_cartao (
+    id_conta INTEGER NOT NULL,
+    vencimento DATE NOT NULL,
+    id_usuario INTEGER NOT NULL,
+    valor_lancado DECIMAL(15,2) NOT NULL DEFAULT 0,
+    valor_pago DECIMAL(15,2) NOT NULL DEFAULT 0,
+    quantidade INTEGER NOT NULL DEFAULT 0,
+    PRIMARY KEY (id_conta, vencimento)
+);
+-- Sem FKs: a exclusão em cascata de contas e gastos dispara os triggers abaixo
+
+CREATE INDEX IF NOT EXISTS idx_faturas_cartao_usuario ON faturas_cartao(id_usuario, vencimento);
+
+COMMENT ON TABLE faturas_cartao IS 'Valores lançados, pagos e pendentes de cada fatura de cartão de crédito';
+
+-- =====================================================
+-- FUNÇÃO: ajustar_fatura
+-- Soma (ou subtrai) um lançamento na fatura
+-- =====================================================
+
+CREATE OR REPLACE FUNCTION ajustar_fatura(
+    p_conta INTEGER, p_usuario INTEGER, p_vencimento DATE,
+    p_lancado DECIMAL, p_pago DECIMAL, p_quantidade INTEGER)
+RETURNS VOID AS $$
+BEGIN
+    INSERT INTO faturas_cartao (id_conta, vencimento, id_usuario, valor_lancado, valor_pago, quantidade)
+    VALUES (p_conta, p_vencimento, p_usuario, p_lancado, p_pago, p_quantidade)
+    ON CONFLICT (id_conta, vencimento) DO UPDATE
+        SET valor_lancado = faturas_cartao.valor_lancado + EXCLUDED.valor_lancado,
+            valor_pago = faturas_cartao.valor_pago + EXCLUDED.valor_pago,
+            quantidade = faturas_cartao.quantidade + EXCLUDED.quantidade;
+
+    IF p_quantidade < 0 THEN
+        DELETE FROM faturas_cartao
+        WHERE id_conta = p_conta AND vencimento = p_vencimento AND quantidade <= 0;
+    END IF;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Dia de pagamento do cartão, ou NULL se a conta não for cartão de crédito com dias de fatura
+-- Trava a linha do cartão (FOR NO KEY UPDATE) até o fim da transação: escritas no cartão
+-- esperam a reconstrução das faturas do cartão (mudança de tipo ou dias) e vice-versa, sem
+-- afetar os demais cartões. É o mesmo lock que a atualização do saldo da conta já toma na
+-- transação, então não cria nova ordem de espera; FKs (FOR KEY SHARE) não são bloqueadas.
+CREATE OR REPLACE FUNCTION fatura_dia_pagamento(p_conta INTEGER)
+RETURNS INTEGER AS $$
+    SELECT dia_pagamento FROM contas
+    WHERE id_conta = p_conta AND UPPER(COALESCE(tipo, '')) LIKE '%CARTAO%'
+      AND dia_fechamento IS NOT NULL AND dia_pagamento IS NOT NULL
+    FOR NO KEY UPDATE;
+$$ LANGUAGE sql VOLATILE;
+
+-- =====================================================
+-- TRIGGER de gastos
+-- Gastos inativos só entram quando são parcelas (pagas antecipadamente): lançadas e
+-- pagas na própria fatura
+-- =====================================================
+
+CREATE OR REPLACE FUNCTION fatura_gasto(g gastos, p_sinal INTEGER)
+RETURNS VOID AS $$
+DECLARE
+    v_dia_pagamento INTEGER;
+BEGIN
+    IF NOT (g.ativo OR g.id_grupo_parcela IS NOT NULL) THEN
+        RETURN;
+    END IF;
+    v_dia_pagamento := fatura_dia_pagamento(g.id_conta);
+    IF v_dia_pagamento IS NULL THEN
+        RETURN;
+    END IF;
+    PERFORM ajustar_fatura(g.id_conta, g.id_usuario,
+                           fatura_vencimento(COALESCE(g.data_entrada_fatura, g.data), v_dia_pagamento),
+                           p_sinal * g.valor,
+                           CASE WHEN g.ativo THEN 0 ELSE p_sinal * g.valor END,
+                           p_sinal);
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION faturas_cartao_gastos()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'UPDATE'
+       AND OLD.valor IS NOT DISTINCT FROM NEW.valor
+       AND OLD.data IS NOT DISTINCT FROM NEW.data
+       AND OLD.data_entrada_fatura IS NOT DISTINCT FROM NEW.data_entrada_fatura
+       AND OLD.id_conta = NEW.id_conta
+       AND OLD.id_usuario = NEW.id_usuario
+       AND OLD.ativo IS NOT DISTINCT FROM NEW.ativo
+       AND OLD.id_grupo_parcela IS NOT DISTINCT FROM NEW.id_grupo_parcela THEN
+        RETURN NULL;
+    END IF;
+
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        PERFORM fatura_gasto(OLD, -1);
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        PERFORM fatura_gasto(NEW, 1);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS faturas_cartao_gastos ON gastos;
+CREATE TRIGGER faturas_cartao_gastos AFTER INSERT OR UPDATE OR DELETE ON gastos
+    FOR EACH ROW EXECUTE FUNCTION faturas_cartao_gastos();
+
+-- =====================================================
+-- TRIGGER de receitas (pagamentos de fatura)
+-- =====================================================
+
+CREATE OR REPLACE FUNCTION faturas_cartao_receitas()
+RETURNS TRIGGER AS $$
+DECLARE
+    v_dia_pagamento INTEGER;
+BEGIN
+    IF TG_OP = 'UPDATE'
+       AND OLD.valor IS NOT DISTINCT FROM NEW.valor
+       AND OLD.data IS NOT DISTINCT FROM NEW.data
+       AND OLD.id_conta = NEW.id_conta
+       AND OLD.ativo IS NOT DISTINCT FROM NEW.ativo THEN
+        RETURN NULL;
+    END IF;
+
+    IF TG_OP IN ('UPDATE', 'DELETE') AND OLD.ativo THEN
+        v_dia_pagamento := fatura_dia_pagamento(OLD.id_conta);
+        IF v_dia_pagamento IS NOT NULL THEN
+            PERFORM ajustar_fatura(OLD.id_conta, OLD.id_usuario, fatura_vencimento(OLD.data, v_dia_pagamento),
+                                   0, -OLD.valor, -1);
+        END IF;
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') AND NEW.ativo THEN
+        v_dia_pagamento := fatura_dia_pagamento(NEW.id_conta);
+        IF v_dia_pagamento IS NOT NULL THEN
+            PERFORM ajustar_fatura(NEW.id_conta, NEW.id_usuario, fatura_vencimento(NEW.data, v_dia_pagamento),
+                                   0, NEW.valor, 1);
+        END IF;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS faturas_cartao_receitas ON receitas;
+CREATE TRIGGER faturas_cartao_receitas AFTER INSERT OR UPDATE OR DELETE ON receitas
+    FOR EACH ROW EXECUTE FUNCTION faturas_cartao_receitas();
+
+-- =====================================================
+-- FUNÇÃO: reconstruir_faturas
+-- Recalcula as faturas a partir de gastos e receitas (de um usuário, de um cartão ou de todos)
+-- Uso: SELECT reconstruir_faturas();          -- todos os usuários
+--      SELECT reconstruir_faturas(42);        -- apenas o usuário 42
+--      SELECT reconstruir_faturas(NULL, 7);   -- apenas o cartão 7
+-- As linhas dos cartões reconstruídos ficam travadas (em ordem de id_conta) até o fim da
+-- transação: escritas concorrentes nesses cartões esperam e são aplicadas em seguida sobre
+-- as faturas já reconstruídas; os demais cartões seguem livres.
+-- =====================================================
+
+CREATE OR REPLACE FUNCTION reconstruir_faturas(p_usuario INTEGER DEFAULT NULL, p_conta INTEGER DEFAULT NULL)
+RETURNS INTEGER AS $$
+DECLARE
+    v_linhas INTEGER;
+BEGIN
+    PERFORM 1 FROM contas
+    WHERE (p_usuario IS NULL OR id_usuario = p_usuario) AND (p_conta IS NULL OR id_conta = p_conta)
+    ORDER BY id_conta
+    FOR NO KEY UPDATE;
+
+    DELETE FROM faturas_cartao
+    WHERE (p_usuario IS NULL OR id_usuario = p_usuario) AND (p_conta IS NULL OR id_conta = p_conta);
+
+    INSERT INTO faturas_cartao (id_conta, vencimento, id_usuario, valor_lancado, valor_pago, quantidade)
+    SELECT m.id_conta, m.vencimento, m.id_usuario, SUM(m.lancado), SUM(m.pago), COUNT(*)
+    FROM (
+        SELECT g.id_conta, g.id_usuario,
+               fatura_vencimento(COALESCE(g.data_entrada_fatura, g.data), c.dia_pagamento) AS vencimento,
+               g.valor AS lancado,
+               CASE WHEN g.ativo THEN 0 ELSE g.valor END AS pago
+        FROM gastos g
+        INNER JOIN contas c ON c.id_conta = g.id_conta
+        WHERE (p_usuario IS NULL OR g.id_usuario = p_usuario) AND (p_conta IS NULL OR g.id_conta = p_conta)
+          AND (g.ativo = TRUE OR g.id_grupo_parcela IS NOT NULL)
+          AND UPPER(COALESCE(c.tipo, '')) LIKE '%CARTAO%'
+          AND c.dia_fechamento IS NOT NULL AND c.dia_pagamento IS NOT NULL
+        UNION ALL
+        SELECT r.id_conta, r.id_usuario,
+               fatura_vencimento(r.data, c.dia_pagamento),
+               0,
+               r.valor
+        FROM receitas r
+        INNER JOIN contas c ON c.id_conta = r.id_conta
+        WHERE (p_usuario IS NULL OR r.id_usuario = p_usuario) AND (p_conta IS NULL OR r.id_conta = p_conta)
+          AND r.ativo = TRUE
+          AND UPPER(COALESCE(c.tipo, '')) LIKE '%CARTAO%'
+          AND c.dia_fechamento IS NOT NULL AND c.dia_pagamento IS NOT NULL
+    ) m
+    GROUP BY m.id_conta, m.vencimento, m.id_usuario;
+
+    SELECT COUNT(*) INTO v_linhas FROM faturas_cartao
+    WHERE (p_usuario IS NULL OR id_usuario = p_usuario) AND (p_conta IS NULL OR id_conta = p_conta);
+    RETURN v_linhas;
+END;
+$$ LANGUAGE plpgsql;
+
+-- =====================================================
+-- TRIGGER de contas
+-- Mudar o tipo ou o dia de pagamento muda a fatura de todos os lançamentos do cartão
+-- =====================================================
+
+CREATE OR REPLACE FUNCTION faturas_cartao_contas()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        DELETE FROM faturas_cartao WHERE id_conta = OLD.id_conta;
+    ELSIF OLD.tipo IS DISTINCT FROM NEW.tipo
+          OR OLD.dia_fechamento IS DISTINCT FROM NEW.dia_fechamento
+          OR OLD.dia_pagamento IS DISTINCT FROM NEW.dia_pagamento THEN
+        PERFORM reconstruir_faturas(NULL, NEW.id_conta);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS faturas_cartao_contas ON contas;
+CREATE TRIGGER faturas_cartao_contas AFTER UPDATE OR DELETE ON contas
+    FOR EACH ROW EXECUTE FUNCTION faturas_cartao_contas();
+
+-- Carga inicial
+SELECT reconstruir_faturas();
@@ -0,0 +1,22 @@
+-- Script para adicionar o histórico de execução das tarefas agendadas
+-- Execute este script no seu banco de dados PostgreSQL
+-- Cada execução de uma tarefa agendada (recorrências, etc.) registra o nó que a executou,
+-- início, duração e resultado. Com várias instâncias atrás do balanceador, só uma executa cada
+-- tarefa por vez (pg_try_advisory_lock); o histórico também evita repetir uma tarefa que
+-- outra instância acabou de concluir.
+-- O script pode ser executado novamente.
+
+CREATE TABLE IF NOT EXISTS execucoes_jobs (
+    id_execucao BIGSERIAL PRIMARY KEY,
+    job VARCHAR(100) NOT NULL,
+    no VARCHAR(200) NOT NULL,
+    iniciado_em TIMESTAMP NOT NULL,
+    duracao_ms BIGINT NOT NULL,
+    status VARCHAR(10) NOT NULL CHECK (status IN ('OK', 'ERRO')),
+    mensagem TEXT
+);
+
+-- Última execução bem-sucedida de cada tarefa e histórico recente
+CREATE INDEX IF NOT EXISTS idx_execucoes_jobs_job_inicio ON execucoes_jobs(job, iniciado_em DESC);
+
+COMMENT ON TABLE execucoes_jobs IS 'Histórico de execução das tarefas agendadas (uma linha por execução)';
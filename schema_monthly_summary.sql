@@ -0,0 +1,241 @@
+-- Script para adicionar o resumo mensal (totais por usuário × mês × categoria × conta)
+-- Execute este script no seu banco de dados PostgreSQL
+-- Requer schema_installments.sql. O script pode ser executado novamente: ele recria as
+-- funções e os triggers e reconstrói o resumo a partir de gastos e receitas.
+
+-- =====================================================
+-- TABELA: resumo_mensal
+-- Totais já somados de gastos e receitas, mantidos por triggers na mesma transação
+-- de cada escrita. Relatórios, orçamentos e o dashboard leem daqui em vez de somar
+-- todo o histórico de gastos/receitas do usuário.
+--
+-- tipo:
+--   'G' = gastos por conta (id_categoria = 0)
+--   'C' = gastos por categoria e conta (um gasto com várias categorias conta em cada uma)
+--   'R' = receitas por conta (id_categoria = 0; sem receitas [SISTEMA])
+-- parcelado: a linha de origem pertence a um grupo de parcelas
+-- ativo: gastos inativos só entram quando são parcelas (pagas), como em
+--        calcularTotalGastosUsuario; receitas inativas nunca entram
+-- =====================================================
+
+CREATE TABLE IF NOT EXISTS resumo_mensal (
+    id_usuario INTEGER NOT NULL,
+    mes DATE NOT NULL,
+    tipo CHAR(1) NOT NULL CHECK (tipo IN ('G', 'C', 'R')),
+    id_categoria INTEGER NOT NULL DEFAULT 0,
+    id_conta INTEGER NOT NULL,
+    parcelado BOOLEAN NOT NULL,
+    ativo BOOLEAN NOT NULL,
+    total DECIMAL(15,2) NOT NULL DEFAULT 0,
+    quantidade INTEGER NOT NULL DEFAULT 0,
+    PRIMARY KEY (id_usuario, tipo, mes, id_categoria, id_conta, parcelado, ativo)
+);
+-- Sem FKs: a exclusão em cascata de usuários e gastos dispara os triggers abaixo
+
+COMMENT ON TABLE resumo_mensal IS 'Totais mensais de gastos e receitas por usuário, categoria e conta';
+
+-- =====================================================
+-- FUNÇÃO: ajustar_resumo_mensal
+-- Soma (ou subtrai) um lançamento no resumo do mês
+-- =====================================================
+
+CREATE OR REPLACE FUNCTION ajustar_resumo_mensal(
+    p_usuario INTEGER, p_data DATE, p_tipo CHAR(1), p_categoria INTEGER, p_conta INTEGER,
+    p_parcelado BOOLEAN, p_ativo BOOLEAN, p_valor DECIMAL, p_quantidade INTEGER)
+RETURNS VOID AS $$
+DECLARE
+    v_mes DATE := date_trunc('month', p_data)::DATE;
+BEGIN
+    INSERT INTO resumo_mensal (id_usuario, mes, tipo, id_categoria, id_conta, parcelado, ativo, total, quantidade)
+    VALUES (p_usuario, v_mes, p_tipo, p_categoria, p_conta, p_parcelado, p_ativo, p_valor, p_quantidade)
+    ON CONFLICT (id_usuario, tipo, mes, id_categoria, id_conta, parcelado, ativo) DO UPDATE
+        SET total = resumo_mensal.total + EXCLUDED.total,
+            quantidade = resumo_mensal.quantidade + EXCLUDED.quantidade;
+
+    IF p_quantidade < 0 THEN
+        DELETE FROM resumo_mensal
+        WHERE id_usuario = p_usuario AND tipo = p_tipo AND mes = v_mes AND id_categoria = p_categoria
+          AND id_conta = p_conta AND parcelado = p_parcelado AND ativo = p_ativo AND quantidade <= 0;
+    END IF;
+END;
+$$ LANGUAGE plpgsql;
+
+-- =====================================================
+-- FUNÇÃO: resumo_mensal_gasto
+-- Aplica a contribuição de um gasto (total por conta e por cada categoria ativa)
+-- =====================================================
+
+CREATE OR REPLACE FUNCTION resumo_mensal_gasto(g gastos, p_sinal INTEGER)
+RETURNS VOID AS $$
+DECLARE
+    v_parcelado BOOLEAN := (to_jsonb(g)->>'id_grupo_parcela') IS NOT NULL;
+    v_categoria INTEGER;
+BEGIN
+    IF NOT (g.ativo OR v_parcelado) THEN
+        RETURN;
+    END IF;
+    PERFORM ajustar_resumo_mensal(g.id_usuario, g.data, 'G', 0, g.id_conta, v_parcelado, g.ativo,
+                                  p_sinal * g.valor, p_sinal);
+    FOR v_categoria IN
+        SELECT id_categoria FROM categoria_gasto WHERE id_gasto = g.id_gasto AND ativo = TRUE
+    LOOP
+        PERFORM ajustar_resumo_mensal(g.id_usuario, g.data, 'C', v_categoria, g.id_conta, v_parcelado, g.ativo,
+                                      p_sinal * g.valor, p_sinal);
+    END LOOP;
+END;
+$$ LANGUAGE plpgsql;
+
+-- =====================================================
+-- TRIGGERS de gastos
+-- A exclusão usa BEFORE DELETE: as categorias do gasto ainda existem (o ON DELETE
+-- CASCADE de categoria_gasto roda depois) e sua contribuição pode ser subtraída
+-- =====================================================
+
+CREATE OR REPLACE FUNCTION resumo_mensal_gastos()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'UPDATE'
+       AND OLD.valor IS NOT DISTINCT FROM NEW.valor
+       AND date_trunc('month', OLD.data) = date_trunc('month', NEW.data)
+       AND OLD.id_conta = NEW.id_conta
+       AND OLD.id_usuario = NEW.id_usuario
+       AND OLD.ativo IS NOT DISTINCT FROM NEW.ativo
+       AND (to_jsonb(OLD)->>'id_grupo_parcela') IS NOT DISTINCT FROM (to_jsonb(NEW)->>'id_grupo_parcela') THEN
+        RETURN NULL; -- nada que altere o resumo (ex: próxima recorrência, data de fatura)
+    END IF;
+
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        PERFORM resumo_mensal_gasto(OLD, -1);
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        PERFORM resumo_mensal_gasto(NEW, 1);
+    END IF;
+
+    IF TG_OP = 'DELETE' THEN
+        RETURN OLD;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS resumo_mensal_gastos_escrita ON gastos;
+CREATE TRIGGER resumo_mensal_gastos_escrita AFTER INSERT OR UPDATE ON gastos
+    FOR EACH ROW EXECUTE FUNCTION resumo_mensal_gastos();
+
+DROP TRIGGER IF EXISTS resumo_mensal_gastos_exclusao ON gastos;
+CREATE TRIGGER resumo_mensal_gastos_exclusao BEFORE DELETE ON gastos
+    FOR EACH ROW EXECUTE FUNCTION resumo_mensal_gastos();
+
+-- =====================================================
+-- TRIGGER de categoria_gasto
+-- Vínculos criados/removidos depois do gasto movem o total entre categorias. Se o
+-- gasto não existe mais (exclusão em cascata), o trigger de gastos já tratou.
+-- =====================================================
+
+CREATE OR REPLACE FUNCTION resumo_mensal_categoria_gasto()
+RETURNS TRIGGER AS $$
+DECLARE
+    g gastos;
+    v_parcelado BOOLEAN;
+BEGIN
+    IF TG_OP IN ('UPDATE', 'DELETE') AND OLD.ativo THEN
+        SELECT * INTO g FROM gastos WHERE id_gasto = OLD.id_gasto;
+        IF FOUND THEN
+            v_parcelado := (to_jsonb(g)->>'id_grupo_parcela') IS NOT NULL;
+            IF g.ativo OR v_parcelado THEN
+                PERFORM ajustar_resumo_mensal(g.id_usuario, g.data, 'C', OLD.id_categoria, g.id_conta,
+                                              v_parcelado, g.ativo, -g.valor, -1);
+            END IF;
+        END IF;
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') AND NEW.ativo THEN
+        SELECT * INTO g FROM gastos WHERE id_gasto = NEW.id_gasto;
+        IF FOUND THEN
+            v_parcelado := (to_jsonb(g)->>'id_grupo_parcela') IS NOT NULL;
+            IF g.ativo OR v_parcelado THEN
+                PERFORM ajustar_resumo_mensal(g.id_usuario, g.data, 'C', NEW.id_categoria, g.id_conta,
+                                              v_parcelado, g.ativo, g.valor, 1);
+            END IF;
+        END IF;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS resumo_mensal_categoria_gasto ON categoria_gasto;
+CREATE TRIGGER resumo_mensal_categoria_gasto AFTER INSERT OR UPDATE OR DELETE ON categoria_gasto
+    FOR EACH ROW EXECUTE FUNCTION resumo_mensal_categoria_gasto();
+
+-- =====================================================
+-- TRIGGER de receitas
+-- =====================================================
+
+CREATE OR REPLACE FUNCTION resumo_mensal_receitas()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP IN ('UPDATE', 'DELETE') AND OLD.ativo AND OLD.descricao NOT LIKE '[SISTEMA]%' THEN
+        PERFORM ajustar_resumo_mensal(OLD.id_usuario, OLD.data, 'R', 0, OLD.id_conta,
+                                      (to_jsonb(OLD)->>'id_grupo_parcela') IS NOT NULL, TRUE, -OLD.valor, -1);
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') AND NEW.ativo AND NEW.descricao NOT LIKE '[SISTEMA]%' THEN
+        PERFORM ajustar_resumo_mensal(NEW.id_usuario, NEW.data, 'R', 0, NEW.id_conta,
+                                      (to_jsonb(NEW)->>'id_grupo_parcela') IS NOT NULL, TRUE, NEW.valor, 1);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS resumo_mensal_receitas ON receitas;
+CREATE TRIGGER resumo_mensal_receitas AFTER INSERT OR UPDATE OR DELETE ON receitas
+    FOR EACH ROW EXECUTE FUNCTION resumo_mensal_receitas();
+
+-- =====================================================
+-- FUNÇÃO: reconstruir_resumo_mensal
+-- Recalcula o resumo a partir de gastos e receitas (de um usuário ou de todos)
+-- Uso: SELECT reconstruir_resumo_mensal();      -- todos os usuários
+--      SELECT reconstruir_resumo_mensal(42);    -- apenas o usuário 42
+-- O lock bloqueia os triggers de escritas concorrentes até o fim da reconstrução;
+-- elas são aplicadas em seguida sobre o resumo já reconstruído.
+-- =====================================================
+
+CREATE OR REPLACE FUNCTION reconstruir_resumo_mensal(p_usuario INTEGER DEFAULT NULL)
+RETURNS INTEGER AS $$
+DECLARE
+    v_linhas INTEGER;
+BEGIN
+    LOCK TABLE resumo_mensal IN SHARE ROW EXCLUSIVE MODE;
+
+    DELETE FROM resumo_mensal WHERE p_usuario IS NULL OR id_usuario = p_usuario;
+
+    INSERT INTO resumo_mensal (id_usuario, mes, tipo, id_categoria, id_conta, parcelado, ativo, total, quantidade)
+    SELECT g.id_usuario, date_trunc('month', g.data)::DATE, 'G', 0, g.id_conta,
+           g.id_grupo_parcela IS NOT NULL, g.ativo, SUM(g.valor), COUNT(*)
+    FROM gastos g
+    WHERE (p_usuario IS NULL OR g.id_usuario = p_usuario)
+      AND (g.ativo = TRUE OR g.id_grupo_parcela IS NOT NULL)
+    GROUP BY 1, 2, 5, 6, 7;
+
+    INSERT INTO resumo_mensal (id_usuario, mes, tipo, id_categoria, id_conta, parcelado, ativo, total, quantidade)
+    SELECT g.id_usuario, date_trunc('month', g.data)::DATE, 'C', cg.id_categoria, g.id_conta,
+           g.id_grupo_parcela IS NOT NULL, g.ativo, SUM(g.valor), COUNT(*)
+    FROM gastos g
+    INNER JOIN categoria_gasto cg ON cg.id_gasto = g.id_gasto AND cg.ativo = TRUE
+    WHERE (p_usuario IS NULL OR g.id_usuario = p_usuario)
+      AND (g.ativo = TRUE OR g.id_grupo_parcela IS NOT NULL)
+    GROUP BY 1, 2, 4, 5, 6, 7;
+
+    INSERT INTO resumo_mensal (id_usuario, mes, tipo, id_categoria, id_conta, parcelado, ativo, total, quantidade)
+    SELECT r.id_usuario, date_trunc('month', r.data)::DATE, 'R', 0, r.id_conta,
+           r.id_grupo_parcela IS NOT NULL, TRUE, SUM(r.valor), COUNT(*)
+    FROM receitas r
+    WHERE (p_usuario IS NULL OR r.id_usuario = p_usuario)
+      AND r.ativo = TRUE AND r.descricao NOT LIKE '[SISTEMA]%'
+    GROUP BY 1, 2, 5, 6;
+
+    SELECT COUNT(*) INTO v_linhas FROM resumo_mensal WHERE p_usuario IS NULL OR id_usuario = p_usuario;
+    RETURN v_linhas;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Carga inicial
+SELECT reconstruir_resumo_mensal();
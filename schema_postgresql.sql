@@ -87,6 +87,8 @@ CREATE INDEX IF NOT EXISTS idx_gastos_recorrencia ON gastos(proxima_recorrencia)
 CREATE INDEX IF NOT EXISTS idx_gastos_usuario_ativo ON gastos(id_usuario, ativo) WHERE ativo = TRUE;
 -- Índice composto para queries de gastos por usuário, ativo e data (ORDER BY data DESC)
 CREATE INDEX IF NOT EXISTS idx_gastos_usuario_ativo_data ON gastos(id_usuario, ativo, data DESC) WHERE ativo = TRUE;
+-- Índice para a paginação por cursor de /api/transactions (data, id decrescentes; inclui parcelas pagas)
+CREATE INDEX IF NOT EXISTS idx_gastos_usuario_data_id ON gastos(id_usuario, data DESC, id_gasto DESC);
 -- Índice para queries de gastos por data específica
 CREATE INDEX IF NOT EXISTS idx_gastos_data_ativo ON gastos(data, ativo) WHERE ativo = TRUE;
 -- Índice para queries de recorrência de gastos
@@ -119,6 +121,8 @@ CREATE INDEX IF NOT EXISTS idx_receitas_recorrencia ON receitas(proxima_recorren
 CREATE INDEX IF NOT EXISTS idx_receitas_usuario_ativo ON receitas(id_usuario, ativo) WHERE ativo = TRUE;
 -- Índice composto para queries de receitas por usuário, ativo e data (ORDER BY data DESC)
 CREATE INDEX IF NOT EXISTS idx_receitas_usuario_ativo_data ON receitas(id_usuario, ativo, data DESC) WHERE ativo = TRUE;
+-- Índice para a paginação por cursor de /api/transactions (data, id decrescentes)
+CREATE INDEX IF NOT EXISTS idx_receitas_usuario_data_id ON receitas(id_usuario, data DESC, id_receita DESC) WHERE ativo = TRUE;
 -- Índice para queries de receitas por data específica
 CREATE INDEX IF NOT EXISTS idx_receitas_data_ativo ON receitas(data, ativo) WHERE ativo = TRUE;
 -- Índice para queries de recorrência de receitas
@@ -0,0 +1,27 @@
+-- Script para adicionar o armazenamento local de cotações históricas
+-- Execute este script no seu banco de dados PostgreSQL
+-- Guarda o fechamento diário de cada ativo buscado nas APIs de cotação. Preços passados não
+-- mudam: os gráficos de evolução passam a ler daqui e só buscam na API os dias que faltam.
+-- Dias sem negociação (fins de semana, feriados) guardam o último fechamento anterior.
+-- cotacoes_historicas_cobertura guarda o período já consultado na API por ativo: dias do período
+-- sem fechamento (antes do início da negociação, suspensões longas) não são buscados de novo.
+-- O script pode ser executado novamente.
+
+CREATE TABLE IF NOT EXISTS cotacoes_historicas (
+    simbolo VARCHAR(50) NOT NULL,
+    categoria VARCHAR(20) NOT NULL,
+    data DATE NOT NULL,
+    preco DOUBLE PRECISION NOT NULL CHECK (preco > 0),
+    PRIMARY KEY (simbolo, categoria, data)
+);
+
+CREATE TABLE IF NOT EXISTS cotacoes_historicas_cobertura (
+    simbolo VARCHAR(50) NOT NULL,
+    categoria VARCHAR(20) NOT NULL,
+    inicio DATE NOT NULL,
+    fim DATE NOT NULL CHECK (fim >= inicio),
+    PRIMARY KEY (simbolo, categoria)
+);
+
+COMMENT ON TABLE cotacoes_historicas IS 'Fechamento diário dos ativos, na moeda da cotação (B3 em BRL, stocks e criptomoedas em USD)';
+COMMENT ON TABLE cotacoes_historicas_cobertura IS 'Período contínuo já consultado na API por ativo; dias dele sem fechamento não existem no provedor';
@@ -23,13 +23,17 @@ import server.model.*;
 import server.repository.*;
 import server.handlers.*;
 import server.database.DatabaseConnection;
-import server.services.QuoteService;
+import server.database.SchemaCapabilities;
+import server.services.ImportJobService;
+import server.services.SchedulerService;
 import server.utils.AuthUtil;
 import server.utils.ResponseUtil;
 import server.utils.RequestUtil;
 import server.utils.JsonUtil;
 import server.utils.NumberUtil;
 import server.utils.CreditCardUtil;
+import server.utils.InvalidationBus;
+import server.utils.RequestExecutor;
 import static server.utils.AuthUtil.UnauthorizedException;
 
 /**
@@ -44,6 +48,8 @@ public class ControleSeServer {
     private static CaptchaValidator captchaValidator;
     private static CircuitBreaker authCircuitBreaker;
     private static CircuitBreaker apiCircuitBreaker;
+    private static RequestExecutor requestExecutor;
+    private static SchedulerService schedulerService;
     
     // Lê a porta da variável de ambiente PORT (usada pelo Render) ou usa 8080 como padrão
     private static int getPort() {
@@ -108,6 +114,14 @@ public class ControleSeServer {
     }
     
     public static void main(String[] args) {
+        if (args.length > 0 && "--rebuild-monthly-summary".equals(args[0])) {
+            rebuildMonthlySummary(args);
+            return;
+        }
+        if (args.length > 0 && "--rebuild-invoices".equals(args[0])) {
+            rebuildInvoices(args);
+            return;
+        }
         try {
             // Inicializa componentes de segurança
             initializeSecurityComponents();
@@ -115,6 +129,15 @@ public class ControleSeServer {
             // Inicializa o pool de conexões do banco de dados
             DatabaseConnection.getInstance();
             
+            // Detecta uma única vez os recursos opcionais do schema
+            SchemaCapabilities.detect();
+            
+            // Retoma importações interrompidas pelo último reinício
+            ImportJobService.retomarPendentes();
+            
+            // Escuta invalidações de cache publicadas pelas outras instâncias
+            InvalidationBus.start();
+            
             // Cria o servidor HTTP
             server = createServer();
             
@@ -124,10 +147,9 @@ public class ControleSeServer {
             // Inicia o servidor
             server.start();
             
-            // Inicia os schedulers
-            server.services.SchedulerService schedulerService = new server.services.SchedulerService();
-            schedulerService.iniciarSchedulerRecorrencias();
-            schedulerService.iniciarSchedulerCotacoes();
+            // Inicia os schedulers (a recuperação de recorrências roda em segundo plano)
+            schedulerService = SchedulerService.criarPadrao();
+            schedulerService.iniciar();
             
             // Exibe informações do servidor
             exibirInformacoesServidor();
@@ -138,12 +160,19 @@ public class ControleSeServer {
                 if (server != null) {
                     server.stop(5); // Para o servidor com delay de 5 segundos
                 }
+                if (schedulerService != null) {
+                    schedulerService.parar();
+                }
+                InvalidationBus.stop();
                 if (rateLimiter != null) {
                     rateLimiter.shutdown();
                 }
                 if (loginAttemptTracker != null) {
                     loginAttemptTracker.shutdown();
                 }
+                if (requestExecutor != null) {
+                    requestExecutor.shutdown();
+                }
                 DatabaseConnection.shutdown();
                 LOGGER.info("Servidor encerrado.");
             }, "ShutdownHook"));
@@ -153,6 +182,40 @@ public class ControleSeServer {
         }
     }
     
+    /**
+     * Comando de manutenção: reconstrói o resumo mensal (schema_monthly_summary.sql) e encerra
+     * Uso: java ControleSeServer --rebuild-monthly-summary [idUsuario]
+     */
+    private static void rebuildMonthlySummary(String[] args) {
+        Integer idUsuario = args.length > 1 ? Integer.valueOf(args[1]) : null;
+        try {
+            int linhas = new server.repository.MonthlySummaryRepository().reconstruir(idUsuario);
+            LOGGER.info("Resumo mensal reconstruído" + (idUsuario != null ? " para o usuário " + idUsuario : "") + ": " + linhas + " linhas");
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Erro ao reconstruir resumo mensal", e);
+            System.exit(1);
+        } finally {
+            DatabaseConnection.shutdown();
+        }
+    }
+    
+    /**
+     * Comando de manutenção: reconstrói o livro de faturas (schema_invoice_ledger.sql) e encerra
+     * Uso: java ControleSeServer --rebuild-invoices [idUsuario]
+     */
+    private static void rebuildInvoices(String[] args) {
+        Integer idUsuario = args.length > 1 ? Integer.valueOf(args[1]) : null;
+        try {
+            int linhas = new server.repository.InvoiceRepository().reconstruir(idUsuario);
+            LOGGER.info("Faturas reconstruídas" + (idUsuario != null ? " para o usuário " + idUsuario : "") + ": " + linhas + " faturas");
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Erro ao reconstruir faturas", e);
+            System.exit(1);
+        } finally {
+            DatabaseConnection.shutdown();
+        }
+    }
+    
     private static HttpServer createServer() throws IOException {
         String keystorePath = System.getenv("TLS_KEYSTORE_PATH");
         String keystorePassword = System.getenv("TLS_KEYSTORE_PASSWORD");
@@ -236,89 +299,6 @@ public class ControleSeServer {
         LOGGER.info("Pressione Ctrl+C para parar o servidor");
     }
     
-    /**
-     * Inicia o scheduler que processa recorrências automáticas
-     * Executa diariamente às 00:05 da manhã
-     */
-    private static void iniciarSchedulerRecorrencias() {
-        Timer timer = new Timer("RecorrenciasScheduler", true); // daemon=true para não bloquear shutdown
-        
-        // Calcula o delay até a próxima execução (hoje às 00:05 ou amanhã às 00:05)
-        Calendar proximaExecucao = Calendar.getInstance();
-        proximaExecucao.set(Calendar.HOUR_OF_DAY, 0);
-        proximaExecucao.set(Calendar.MINUTE, 5);
-        proximaExecucao.set(Calendar.SECOND, 0);
-        proximaExecucao.set(Calendar.MILLISECOND, 0);
-        
-        // Se já passou da hora hoje, agenda para amanhã
-        if (proximaExecucao.getTimeInMillis() < System.currentTimeMillis()) {
-            proximaExecucao.add(Calendar.DAY_OF_MONTH, 1);
-        }
-        
-        long delay = proximaExecucao.getTimeInMillis() - System.currentTimeMillis();
-        long periodo = 24 * 60 * 60 * 1000; // 24 horas em milissegundos
-        
-        // Agenda a tarefa para executar diariamente
-        timer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                try {
-                    LOGGER.info("=== SCHEDULER DE RECORRÊNCIAS === Executando processamento automático...");
-                    server.services.RecurrenceService recurrenceService = new server.services.RecurrenceService();
-                    int criados = recurrenceService.processarRecorrencias();
-                    LOGGER.info("Total de transações recorrentes criadas: " + criados);
-                } catch (Exception e) {
-                    System.err.println("Erro ao processar recorrências: " + e.getMessage());
-                    e.printStackTrace();
-                } finally {
-                }
-            }
-        }, delay, periodo);
-        
-        // Para fins de DEBUG/TESTE: executa imediatamente na inicialização também
-        LOGGER.info("[INICIALIZAÇÃO] Processando recorrências pendentes...");
-        try {
-            server.services.RecurrenceService recurrenceService = new server.services.RecurrenceService();
-            int criados = recurrenceService.processarRecorrencias();
-            if (criados > 0) {
-                LOGGER.info("[INICIALIZAÇÃO] " + criados + " transações recorrentes criadas");
-            } else {
-                LOGGER.info("[INICIALIZAÇÃO] Nenhuma recorrência pendente");
-            }
-        } catch (Exception e) {
-            System.err.println("[INICIALIZAÇÃO] Erro ao processar recorrências: " + e.getMessage());
-        }
-        LOGGER.fine("Scheduler de recorrências inicializado");
-    }
-    
-    /**
-     * Inicia o scheduler que atualiza cotações de investimentos
-     * Executa a cada 30 minutos
-     */
-    private static void iniciarSchedulerCotacoes() {
-        Timer timer = new Timer("CotacoesScheduler", true); // daemon=true para não bloquear shutdown
-        
-        // Executa imediatamente e depois a cada 30 minutos
-        long periodo = 30 * 60 * 1000; // 30 minutos em milissegundos
-        
-        timer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                try {
-                    // LOGGER.info("=== ATUALIZAÇÃO DE COTAÇÕES ===");
-                    QuoteService quoteService = QuoteService.getInstance();
-                    quoteService.cleanExpiredCache();
-                    // LOGGER.info("Cache de cotações limpo e atualizado");
-                } catch (Exception e) {
-                    System.err.println("Erro ao atualizar cotações: " + e.getMessage());
-                    e.printStackTrace();
-                }
-            }
-        }, 0, periodo);
-        
-        // LOGGER.info("[INICIALIZAÇÃO] Scheduler de cotações iniciado (atualiza a cada 30 minutos)");
-    }
-    
     /**
      * Extrai o IP do cliente da requisição
      */
@@ -350,12 +330,17 @@ public class ControleSeServer {
     
     /**
      * Cria um handler protegido com rate limiting e circuit breaker
+     * O handler só executa após obter um permit de banco do executor
      */
     private static HttpHandler withRateLimit(HttpHandler handler, String endpoint, CircuitBreaker circuitBreaker) {
-        return new RateLimitHandler(handler, rateLimiter, circuitBreaker, endpoint);
+        return new RateLimitHandler(requestExecutor.withDbPermit(handler), rateLimiter, circuitBreaker, endpoint);
     }
     
     private static void setupRoutes() {
+        // Executor das requisições (EXECUTOR_MODE=pool|virtual)
+        // A concorrência de acesso ao banco é limitada ao tamanho do pool do HikariCP
+        requestExecutor = RequestExecutor.fromEnvironment(DatabaseConnection.getInstance().getMaximumPoolSize());
+        
         // Initialize repositories
         server.repository.UserRepository userRepository = new server.repository.UserRepository();
         server.repository.RefreshTokenRepository refreshTokenRepository = new server.repository.RefreshTokenRepository();
@@ -366,6 +351,7 @@ public class ControleSeServer {
         server.repository.BudgetRepository budgetRepository = new server.repository.BudgetRepository();
         server.repository.TagRepository tagRepository = new server.repository.TagRepository();
         server.repository.InvestmentRepository investmentRepository = new server.repository.InvestmentRepository();
+        server.repository.ReportRepository reportRepository = new server.repository.ReportRepository();
 
         // API Routes básicas (devem vir antes do StaticFileHandler)
         // Endpoints de autenticação com proteção especial
@@ -400,7 +386,7 @@ public class ControleSeServer {
         server.createContext("/api/tags", 
             withRateLimit(secure(new server.handlers.TagsHandler()), "/api/tags", apiCircuitBreaker));
         server.createContext("/api/reports", 
-            withRateLimit(secure(new server.handlers.ReportsHandler(expenseRepository, incomeRepository, categoryRepository, accountRepository)), "/api/reports", apiCircuitBreaker));
+            withRateLimit(secure(new server.handlers.ReportsHandler(reportRepository)), "/api/reports", apiCircuitBreaker));
         server.createContext("/api/investments", 
             withRateLimit(secure(new server.handlers.InvestmentsHandler()), "/api/investments", apiCircuitBreaker));
         server.createContext("/api/investments/evolution", 
@@ -412,34 +398,15 @@ public class ControleSeServer {
         // Import transactions - template é público, mas import e confirm precisam de autenticação
         // O handler verifica autenticação internamente para import e confirm
         server.createContext("/api/transactions/import", 
-            new server.handlers.ImportTransactionsHandler());
+            requestExecutor.withDbPermit(new server.handlers.ImportTransactionsHandler()));
         
-        // Health check
-        server.createContext("/health", new server.handlers.HealthHandler());
+        // Health check (não consome permit de banco)
+        server.createContext("/health", new server.handlers.HealthHandler(requestExecutor));
         
         // Servir arquivos estáticos (HTML, CSS, JS) - deve vir por último
         server.createContext("/", new server.handlers.StaticFileHandler());
         
-        // Configura executor com pool de threads para múltiplos usuários simultâneos
-        // Thread pool reduzido para evitar estourar limite de conexões do banco gratuito
-        ExecutorService executor = new ThreadPoolExecutor(
-            2,                       // corePoolSize: mínimo de threads
-            5,                       // maximumPoolSize: máximo de threads (limitado pelo banco)
-            60L,                     // keepAliveTime: 60 segundos
-            TimeUnit.SECONDS,        // unidade de tempo
-            new LinkedBlockingQueue<>(500), // fila de requisições (limite de 500)
-            new ThreadFactory() {
-                private int threadNumber = 1;
-                @Override
-                public Thread newThread(Runnable r) {
-                    Thread t = new Thread(r, "ControleSe-Handler-" + threadNumber++);
-                    t.setDaemon(false);
-                    return t;
-                }
-            },
-            new ThreadPoolExecutor.CallerRunsPolicy() // se fila cheia, executa na thread chamadora
-        );
-        server.setExecutor(executor);
+        server.setExecutor(requestExecutor);
     }
     
     // ===== UTILITY METHODS =====
@@ -464,11 +431,16 @@ public class ControleSeServer {
     private static HttpHandler secure(HttpHandler delegate) {
         return exchange -> {
             try {
-                int userId = AuthUtil.requireUserId(exchange);
-                exchange.setAttribute("userId", userId);
-                delegate.handle(exchange);
+                // Valida o token uma vez; os handlers leem o principal da requisição
+                AuthUtil.authenticate(exchange);
             } catch (AuthUtil.UnauthorizedException e) {
                 handleUnauthorized(exchange, e);
+                return;
+            }
+            try {
+                delegate.handle(exchange);
+            } finally {
+                AuthUtil.release(exchange);
             }
         };
     }
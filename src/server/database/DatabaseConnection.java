@@ -1,6 +1,7 @@
 package server.database;
 
 import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.SQLException;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
@@ -9,6 +10,9 @@ import java.io.FileInputStream;
 import java.io.IOException;
 
 public class DatabaseConnection {
+    // Tamanho máximo do pool (também usado para dimensionar a admissão de requisições)
+    private static final int MAXIMUM_POOL_SIZE = 12;
+
     private static HikariDataSource dataSource;
     private static DatabaseConnection instance;
 
@@ -74,7 +78,7 @@ public class DatabaseConnection {
         
         // Optimizations for better performance
         // Aumentado de 5 para 12 para melhor throughput sob carga
-        config.setMaximumPoolSize(12);
+        config.setMaximumPoolSize(MAXIMUM_POOL_SIZE);
         config.setMinimumIdle(4);
         
         // Timeouts ajustados para evitar conexões quebradas
@@ -85,8 +89,8 @@ public class DatabaseConnection {
         config.setIdleTimeout(600000); // 10 minutes
         config.setMaxLifetime(1500000); // 25 minutes (reduzido de 45min para evitar timeouts do servidor)
         
-        // Validação de conexão antes de usar
-        config.setConnectionTestQuery("SELECT 1");
+        // Sem connectionTestQuery: o Hikari valida com Connection.isValid() apenas conexões
+        // ociosas há mais de 500ms, em vez de um round trip extra a cada empréstimo
         
         // Detecção de vazamento de conexões (útil para debug)
         config.setLeakDetectionThreshold(60000); // 60 segundos
@@ -98,18 +102,26 @@ public class DatabaseConnection {
         dataSource = new HikariDataSource(config);
     }
 
+    /**
+     * Retorna uma conexão para o repositório
+     * Se houver uma {@link UnitOfWork} aberta na thread, devolve a conexão compartilhada dela
+     */
     public Connection getConnection() throws SQLException {
+        Connection shared = UnitOfWork.currentConnection();
+        if (shared != null) {
+            return shared;
+        }
+        return acquireConnection();
+    }
+
+    /**
+     * Empresta uma conexão do pool (a validação fica a cargo do Hikari)
+     */
+    Connection acquireConnection() throws SQLException {
         int maxRetries = 2;
         for (int attempt = 0; attempt < maxRetries; attempt++) {
             try {
-                Connection conn = dataSource.getConnection();
-                // Valida a conexão antes de retornar
-                if (conn.isValid(2)) {
-                    return conn;
-                } else {
-                    // Conexão inválida, tenta fechar e pegar outra
-                    try { conn.close(); } catch (SQLException ignored) {}
-                }
+                return dataSource.getConnection();
             } catch (SQLException e) {
                 // Se o pool estiver fechado ou houver erro crítico, tenta reinicializar
                 if (dataSource == null || dataSource.isClosed()) {
@@ -139,6 +151,21 @@ public class DatabaseConnection {
         throw new SQLException("Não foi possível obter uma conexão válida após " + maxRetries + " tentativas");
     }
     
+    /**
+     * Abre uma conexão fora do pool, com a mesma configuração, para uso prolongado
+     * (ex: LISTEN), sem ocupar uma das conexões das requisições
+     */
+    public Connection openDedicatedConnection() throws SQLException {
+        return DriverManager.getConnection(dataSource.getJdbcUrl(), dataSource.getUsername(), dataSource.getPassword());
+    }
+    
+    /**
+     * Retorna o número máximo de conexões do pool
+     */
+    public int getMaximumPoolSize() {
+        return dataSource != null ? dataSource.getMaximumPoolSize() : MAXIMUM_POOL_SIZE;
+    }
+    
     /**
      * Reinicializa o pool de conexões (útil quando há problemas de conexão)
      */
@@ -0,0 +1,111 @@
+package server.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Recursos opcionais do schema, detectados uma única vez na inicialização
+ * Instalações antigas podem não ter aplicado todos os scripts (schema_installments.sql,
+ * schema_data_versions.sql, schema_monthly_summary.sql, schema_invoice_ledger.sql,
+ * schema_import_jobs.sql, schema_job_runs.sql, colunas de cartão de crédito).
+ * Em vez de testar o schema a cada consulta, os repositórios consultam este registro,
+ * que lê o information_schema em uma única consulta.
+ */
+public final class SchemaCapabilities {
+    private static final Logger LOGGER = Logger.getLogger(SchemaCapabilities.class.getName());
+
+    public enum Capability {
+        /** contas.dia_fechamento e contas.dia_pagamento */
+        CARD_BILLING_DAYS,
+        /** tabela installment_groups */
+        INSTALLMENT_GROUPS,
+        /** tabela versoes_dados */
+        DATA_VERSIONS,
+        /** tabela resumo_mensal (schema_monthly_summary.sql) */
+        MONTHLY_SUMMARY,
+        /** tabela faturas_cartao (schema_invoice_ledger.sql) */
+        INVOICE_LEDGER,
+        /** tabela importacoes (schema_import_jobs.sql) */
+        IMPORT_JOBS,
+        /** tabela execucoes_jobs (schema_job_runs.sql) */
+        JOB_RUNS,
+        /** tabelas cotacoes_historicas e cotacoes_historicas_cobertura (schema_quote_history.sql) */
+        QUOTE_HISTORY
+    }
+
+    private static final String SQL =
+        "SELECT table_name, column_name FROM information_schema.columns " +
+        "WHERE table_schema = current_schema() " +
+        "AND table_name IN ('contas', 'installment_groups', 'versoes_dados', 'resumo_mensal', 'faturas_cartao', 'importacoes', 'execucoes_jobs', 'cotacoes_historicas', 'cotacoes_historicas_cobertura')";
+
+    private static volatile Set<Capability> available;
+
+    private SchemaCapabilities() {}
+
+    /**
+     * Detecta os recursos do schema (chamado na inicialização do servidor)
+     * Em caso de falha a detecção é repetida no próximo uso.
+     */
+    public static synchronized void detect() {
+        Set<String> columns = new HashSet<>();
+        try (Connection conn = DatabaseConnection.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(SQL);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                columns.add(rs.getString("table_name") + "." + rs.getString("column_name"));
+            }
+        } catch (SQLException e) {
+            LOGGER.warning("Não foi possível detectar os recursos do schema: " + e.getMessage());
+            return;
+        }
+
+        Set<Capability> detected = EnumSet.noneOf(Capability.class);
+        if (columns.contains("contas.dia_fechamento") && columns.contains("contas.dia_pagamento")) {
+            detected.add(Capability.CARD_BILLING_DAYS);
+        }
+        if (columns.contains("installment_groups.id_grupo")) {
+            detected.add(Capability.INSTALLMENT_GROUPS);
+        }
+        if (columns.contains("versoes_dados.versao")) {
+            detected.add(Capability.DATA_VERSIONS);
+        }
+        if (columns.contains("resumo_mensal.quantidade")) {
+            detected.add(Capability.MONTHLY_SUMMARY);
+        }
+        if (columns.contains("faturas_cartao.valor_pago")) {
+            detected.add(Capability.INVOICE_LEDGER);
+        }
+        if (columns.contains("importacoes.dono")) {
+            detected.add(Capability.IMPORT_JOBS);
+        }
+        if (columns.contains("execucoes_jobs.duracao_ms")) {
+            detected.add(Capability.JOB_RUNS);
+        }
+        if (columns.contains("cotacoes_historicas.preco") && columns.contains("cotacoes_historicas_cobertura.fim")) {
+            detected.add(Capability.QUOTE_HISTORY);
+        }
+        available = detected;
+
+        Set<Capability> missing = EnumSet.allOf(Capability.class);
+        missing.removeAll(detected);
+        LOGGER.info("Recursos do schema: " + detected + (missing.isEmpty() ? "" : " (ausentes: " + missing + ")"));
+    }
+
+    /**
+     * Indica se o recurso está disponível no schema
+     */
+    public static boolean has(Capability capability) {
+        Set<Capability> current = available;
+        if (current == null) {
+            detect();
+            current = available;
+        }
+        return current != null && current.contains(capability);
+    }
+}
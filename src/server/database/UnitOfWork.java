@@ -0,0 +1,330 @@
+package server.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Unidade de trabalho: uma única conexão do pool compartilhada por todos os repositórios
+ * durante uma operação (normalmente uma requisição HTTP), com transação opcional.
+ *
+ * Enquanto uma unidade estiver aberta na thread, {@link DatabaseConnection#getConnection()}
+ * devolve handles para a mesma conexão física, emprestada do pool no primeiro uso e
+ * devolvida só quando a unidade mais externa é fechada.
+ * Os repositórios continuam usando setAutoCommit/commit/rollback/close normalmente:
+ * - close() no handle não devolve a conexão ao pool (isso acontece ao fechar a unidade)
+ * - o primeiro setAutoCommit(false) inicia a transação; chamadas aninhadas (de outro
+ *   repositório, dentro da mesma transação) apenas participam dela e seus commits são
+ *   adiados para quem iniciou a transação
+ * - rollback() aninhado marca a transação para rollback
+ *
+ * Uso:
+ *   try (UnitOfWork unit = UnitOfWork.open()) { ... }      // conexão compartilhada
+ *   UnitOfWork.transaction(() -> { ...; return x; });      // conexão compartilhada + transação
+ *   UnitOfWork.savepoint(() -> { ...; return x; });        // parte da transação que pode falhar sozinha
+ */
+public final class UnitOfWork implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(UnitOfWork.class.getName());
+    private static final ThreadLocal<UnitOfWork> CURRENT = new ThreadLocal<>();
+
+    @FunctionalInterface
+    public interface Work<T> {
+        T execute() throws SQLException;
+    }
+
+    private Connection physical;
+    private int depth = 1;
+    private boolean inTransaction;
+    private boolean rollbackOnly;
+    private final List<Runnable> afterCommit = new ArrayList<>();
+
+    private UnitOfWork() {}
+
+    /**
+     * Abre uma unidade de trabalho na thread atual, ou participa da unidade já aberta
+     */
+    public static UnitOfWork open() {
+        UnitOfWork current = CURRENT.get();
+        if (current != null) {
+            current.depth++;
+            return current;
+        }
+        UnitOfWork unit = new UnitOfWork();
+        CURRENT.set(unit);
+        return unit;
+    }
+
+    /**
+     * Executa o trabalho em uma transação sobre a conexão da unidade atual (ou de uma nova)
+     * Commit ao final; rollback se o trabalho lançar exceção. Se já houver uma transação
+     * em andamento, o trabalho apenas participa dela.
+     */
+    public static <T> T transaction(Work<T> work) {
+        try (UnitOfWork unit = open()) {
+            if (unit.inTransaction) {
+                return work.execute();
+            }
+            unit.begin();
+            boolean committed = false;
+            try {
+                T result = work.execute();
+                unit.commitPhysical();
+                committed = true;
+                return result;
+            } finally {
+                if (!committed && unit.inTransaction) {
+                    unit.rollbackPhysical();
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro na transação: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Executa o trabalho em um savepoint da transação em andamento: se ele falhar, só o que
+     * ele fez é desfeito (inclusive o rollback pedido por repositórios aninhados e as ações
+     * pós-commit registradas) e a transação continua utilizável; a exceção é repassada.
+     * Sem transação em andamento, equivale a {@link #transaction}.
+     */
+    public static <T> T savepoint(Work<T> work) {
+        UnitOfWork unit = CURRENT.get();
+        if (unit == null || !unit.inTransaction) {
+            return transaction(work);
+        }
+        boolean rollbackOnly = unit.rollbackOnly;
+        int pendingActions = unit.afterCommit.size();
+        Savepoint savepoint;
+        try {
+            savepoint = unit.physical.setSavepoint();
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro na transação: " + e.getMessage(), e);
+        }
+        try {
+            T result = work.execute();
+            unit.physical.releaseSavepoint(savepoint);
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            try {
+                unit.physical.rollback(savepoint);
+                unit.rollbackOnly = rollbackOnly;
+                if (unit.afterCommit.size() > pendingActions) {
+                    unit.afterCommit.subList(pendingActions, unit.afterCommit.size()).clear();
+                }
+            } catch (SQLException ex) {
+                // Sem o savepoint a transação inteira fica perdida
+                unit.rollbackOnly = true;
+                e.addSuppressed(ex);
+            }
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Executa a ação após o commit da transação em andamento na thread
+     * (imediatamente se não houver transação; descartada em caso de rollback)
+     */
+    public static void afterCommit(Runnable action) {
+        UnitOfWork unit = CURRENT.get();
+        if (unit == null || !unit.inTransaction) {
+            action.run();
+        } else {
+            unit.afterCommit.add(action);
+        }
+    }
+
+    /**
+     * Handle para a conexão da unidade aberta na thread, ou null se não houver unidade
+     */
+    static Connection currentConnection() throws SQLException {
+        UnitOfWork unit = CURRENT.get();
+        return unit != null ? unit.newHandle() : null;
+    }
+
+    private Connection physical() throws SQLException {
+        if (physical == null) {
+            physical = DatabaseConnection.getInstance().acquireConnection();
+        }
+        return physical;
+    }
+
+    private Connection newHandle() throws SQLException {
+        Connection target = physical();
+        return (Connection) Proxy.newProxyInstance(
+            Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, new Handle(target));
+    }
+
+    private void begin() throws SQLException {
+        physical().setAutoCommit(false);
+        inTransaction = true;
+        rollbackOnly = false;
+    }
+
+    private void commitPhysical() throws SQLException {
+        if (rollbackOnly) {
+            rollbackPhysical();
+            throw new SQLException("Transação desfeita: uma operação aninhada solicitou rollback");
+        }
+        physical.commit();
+        physical.setAutoCommit(true);
+        inTransaction = false;
+        runAfterCommit();
+    }
+
+    private void rollbackPhysical() throws SQLException {
+        afterCommit.clear();
+        inTransaction = false;
+        rollbackOnly = false;
+        try {
+            physical.rollback();
+        } finally {
+            physical.setAutoCommit(true);
+        }
+    }
+
+    private void runAfterCommit() {
+        if (afterCommit.isEmpty()) {
+            return;
+        }
+        List<Runnable> actions = new ArrayList<>(afterCommit);
+        afterCommit.clear();
+        for (Runnable action : actions) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Erro em ação pós-commit", e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (--depth > 0) {
+            return;
+        }
+        CURRENT.remove();
+        if (physical == null) {
+            return;
+        }
+        try {
+            if (inTransaction) {
+                rollbackPhysical();
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Erro ao desfazer transação pendente da unidade de trabalho", e);
+        } finally {
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "Erro ao devolver conexão ao pool", e);
+            }
+            physical = null;
+        }
+    }
+
+    /**
+     * Handle entregue aos repositórios: intercepta o ciclo de vida da conexão e
+     * delega todo o resto para a conexão física
+     */
+    private final class Handle implements InvocationHandler {
+        private final Connection target;
+        private boolean owner; // true se este handle iniciou a transação em andamento
+        private boolean closed;
+
+        Handle(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            int argCount = args != null ? args.length : 0;
+            switch (name) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        if (owner) {
+                            // Mesmo comportamento do pool: trabalho não confirmado é desfeito
+                            owner = false;
+                            rollbackPhysical();
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || target.isClosed();
+                case "setAutoCommit":
+                    setAutoCommit((Boolean) args[0]);
+                    return null;
+                case "commit":
+                    commit();
+                    return null;
+                case "rollback":
+                    if (argCount == 0) {
+                        rollback();
+                        return null;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "UnitOfWork handle [" + target + "]";
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Conexão já fechada");
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private void setAutoCommit(boolean autoCommit) throws SQLException {
+            if (!autoCommit) {
+                if (!inTransaction) {
+                    begin();
+                    owner = true;
+                }
+                return;
+            }
+            if (owner) {
+                // setAutoCommit(true) confirma a transação, como no JDBC
+                owner = false;
+                commitPhysical();
+            }
+        }
+
+        private void commit() throws SQLException {
+            if (owner) {
+                owner = false;
+                commitPhysical();
+            }
+            // Participante de transação alheia: o commit fica para quem a iniciou.
+            // Sem transação (autocommit) não há o que confirmar.
+        }
+
+        private void rollback() throws SQLException {
+            if (owner) {
+                owner = false;
+                rollbackPhysical();
+            } else if (inTransaction) {
+                rollbackOnly = true;
+            }
+        }
+    }
+}
@@ -4,7 +4,9 @@ import com.sun.net.httpserver.*;
 import java.io.*;
 import java.util.*;
 import server.model.Conta;
+import server.model.FaturaCartao;
 import server.repository.*;
+import server.services.InvoiceService;
 import server.utils.*;
 import server.utils.DtoUtil;
 import server.dto.AccountRequest;
@@ -16,13 +18,11 @@ import server.validation.BeanValidationUtil;
  */
 public class AccountsHandler implements HttpHandler {
     private final AccountRepository accountRepository;
-    private final ExpenseRepository expenseRepository;
-    private final IncomeRepository incomeRepository;
+    private final InvoiceService invoiceService;
     
     public AccountsHandler() {
         this.accountRepository = new AccountRepository();
-        this.expenseRepository = new ExpenseRepository();
-        this.incomeRepository = new IncomeRepository();
+        this.invoiceService = new InvoiceService();
     }
     
     @Override
@@ -51,9 +51,25 @@ public class AccountsHandler implements HttpHandler {
             // Isso previne que usuários vejam contas de outros usuários
             int userId = AuthUtil.requireUserId(exchange);
             
+            // Saldo de contas de investimento e faturas dependem das cotações e da data
+            String etag = DataVersion.etag(userId, DataVersion.quoteWindow(),
+                DataVersion.Entity.ACCOUNTS, DataVersion.Entity.TRANSACTIONS, DataVersion.Entity.INVESTMENTS);
+            if (DataVersion.checkNotModified(exchange, etag)) {
+                return;
+            }
+            
             List<Conta> accounts = accountRepository.buscarContasPorUsuario(userId);
             List<Map<String, Object>> accountList = new ArrayList<>();
             
+            // Faturas atuais de todos os cartões em uma consulta
+            Map<Integer, FaturaCartao> faturas;
+            try {
+                faturas = invoiceService.buscarFaturasAtuais(userId, accounts);
+            } catch (Exception e) {
+                // Se houver erro ao calcular, as contas são listadas sem as informações de fatura
+                faturas = Collections.emptyMap();
+            }
+            
             for (Conta conta : accounts) {
                 Map<String, Object> accountData = new HashMap<>();
                 accountData.put("idConta", conta.getIdConta());
@@ -77,47 +93,17 @@ public class AccountsHandler implements HttpHandler {
                     accountData.put("diaPagamento", conta.getDiaPagamento());
                 }
                 
-                // Se for cartão de crédito, calcula informações da fatura
-                if (conta.isCartaoCredito() && conta.getDiaFechamento() != null && conta.getDiaPagamento() != null) {
-                    try {
-                        Map<String, Object> faturaInfo = CreditCardUtil.calcularInfoFatura(
-                            conta.getDiaFechamento(), 
-                            conta.getDiaPagamento()
-                        );
-                        
-                        java.time.LocalDate ultimoFechamento = java.time.LocalDate.parse((String) faturaInfo.get("ultimoFechamento"));
-                        java.time.LocalDate proximoFechamento = java.time.LocalDate.parse((String) faturaInfo.get("proximoFechamento"));
-                        java.time.LocalDate proximoPagamento = java.time.LocalDate.parse((String) faturaInfo.get("proximoPagamento"));
-                        
-                        double valorFaturaAtual = expenseRepository.calcularValorFaturaAtual(
-                            conta.getIdConta(), 
-                            userId,
-                            ultimoFechamento, 
-                            proximoFechamento
-                        );
-                        
-                        // Pagamentos são contados até a data de pagamento, não até o fechamento
-                        double totalJaPago = incomeRepository.calcularTotalPagoFatura(
-                            userId, 
-                            conta.getIdConta(), 
-                            ultimoFechamento, 
-                            proximoPagamento,
-                            expenseRepository
-                        );
-                        
-                        double valorDisponivelParaPagamento = valorFaturaAtual - totalJaPago;
-                        // Garante que o valor disponível nunca seja negativo
-                        if (valorDisponivelParaPagamento < 0) {
-                            valorDisponivelParaPagamento = 0;
-                        }
-                        
-                        accountData.put("valorFatura", valorFaturaAtual);
-                        accountData.put("valorJaPago", totalJaPago);
-                        accountData.put("valorDisponivelPagamento", valorDisponivelParaPagamento);
-                        accountData.put("faturaInfo", faturaInfo);
-                    } catch (Exception e) {
-                        // Se houver erro ao calcular, não adiciona as informações
-                    }
+                // Se for cartão de crédito, adiciona informações da fatura
+                FaturaCartao fatura = faturas.get(conta.getIdConta());
+                if (fatura != null) {
+                    Map<String, Object> faturaInfo = CreditCardUtil.calcularInfoFatura(
+                        conta.getDiaFechamento(), 
+                        conta.getDiaPagamento()
+                    );
+                    accountData.put("valorFatura", fatura.getValorLancado());
+                    accountData.put("valorJaPago", fatura.getValorPago());
+                    accountData.put("valorDisponivelPagamento", fatura.getValorPendente());
+                    accountData.put("faturaInfo", faturaInfo);
                 }
                 
                 accountList.add(accountData);
@@ -171,48 +157,19 @@ public class AccountsHandler implements HttpHandler {
                 return;
             }
             
-            if (!conta.isCartaoCredito() || conta.getDiaFechamento() == null || conta.getDiaPagamento() == null) {
+            if (!InvoiceService.temFatura(conta)) {
                 ResponseUtil.sendErrorResponse(exchange, 400, "Esta conta não é um cartão de crédito ou não possui informações de fatura");
                 return;
             }
             
-            Map<String, Object> faturaInfo = CreditCardUtil.calcularInfoFatura(
-                conta.getDiaFechamento(), 
-                conta.getDiaPagamento()
-            );
-            
-            java.time.LocalDate ultimoFechamento = java.time.LocalDate.parse((String) faturaInfo.get("ultimoFechamento"));
-            java.time.LocalDate proximoFechamento = java.time.LocalDate.parse((String) faturaInfo.get("proximoFechamento"));
-            java.time.LocalDate proximoPagamento = java.time.LocalDate.parse((String) faturaInfo.get("proximoPagamento"));
-            
-            double valorFaturaAtual = expenseRepository.calcularValorFaturaAtual(
-                conta.getIdConta(), 
-                userId,
-                ultimoFechamento, 
-                proximoFechamento
-            );
-            
-            // Pagamentos são contados até a data de pagamento, não até o fechamento
-            double totalJaPago = incomeRepository.calcularTotalPagoFatura(
-                userId, 
-                conta.getIdConta(), 
-                ultimoFechamento, 
-                proximoPagamento,
-                expenseRepository
-            );
-            
-            double valorDisponivelParaPagamento = valorFaturaAtual - totalJaPago;
-            // Garante que o valor disponível nunca seja negativo
-            if (valorDisponivelParaPagamento < 0) {
-                valorDisponivelParaPagamento = 0;
-            }
+            FaturaCartao fatura = invoiceService.buscarFaturaAtual(conta);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("data", Map.of(
-                "valorFatura", valorFaturaAtual,
-                "valorJaPago", totalJaPago,
-                "valorDisponivelPagamento", valorDisponivelParaPagamento
+                "valorFatura", fatura.getValorLancado(),
+                "valorJaPago", fatura.getValorPago(),
+                "valorDisponivelPagamento", fatura.getValorPendente()
             ));
             
             ResponseUtil.sendJsonResponse(exchange, 200, response);
@@ -227,10 +184,8 @@ public class AccountsHandler implements HttpHandler {
     private void handlePost(HttpExchange exchange) throws IOException {
         try {
             String requestBody = RequestUtil.readRequestBody(exchange);
-            Map<String, Object> data = JsonUtil.parseJsonWithNested(requestBody);
-            
             // Converte para DTO e valida com Bean Validation
-            AccountRequest request = DtoUtil.toAccountRequest(data);
+            AccountRequest request = DtoUtil.parseAccountRequest(requestBody);
             ValidationResult beanValidation = BeanValidationUtil.validate(request);
             
             // Validações manuais adicionais (complementam Bean Validation)
@@ -4,6 +4,7 @@ import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import server.model.*;
 import server.repository.*;
+import server.services.BudgetService;
 import server.utils.*;
 import java.io.IOException;
 import java.util.*;
@@ -11,10 +12,12 @@ import java.util.*;
 public class BudgetsHandler implements HttpHandler {
     private final BudgetRepository budgetRepository;
     private final CategoryRepository categoryRepository;
+    private final BudgetService budgetService;
 
     public BudgetsHandler() {
         this.budgetRepository = new BudgetRepository();
         this.categoryRepository = new CategoryRepository();
+        this.budgetService = new BudgetService();
     }
 
     @Override
@@ -40,32 +43,38 @@ public class BudgetsHandler implements HttpHandler {
             // Isso previne que usuários vejam orçamentos de outros usuários
             int userId = AuthUtil.requireUserId(exchange);
             
-            List<Orcamento> budgets = budgetRepository.buscarOrcamentosPorUsuario(userId);
+            // Gasto de cada orçamento na janela do seu período, em uma única consulta
+            List<AvaliacaoOrcamento> avaliacoes = budgetService.avaliarOrcamentos(userId);
             List<Map<String, Object>> budgetList = new ArrayList<>();
             
-            List<Categoria> allCategories = categoryRepository.buscarCategoriasPorUsuario(userId);
-            Map<Integer, Categoria> categoryMap = new HashMap<>();
-            for (Categoria cat : allCategories) {
-                categoryMap.put(cat.getIdCategoria(), cat);
-            }
-            
-            for (Orcamento orcamento : budgets) {
-                Categoria categoria = categoryMap.get(orcamento.getIdCategoria());
-                double spent = categoryRepository.calcularTotalGastosPorCategoriaEUsuario(orcamento.getIdCategoria(), userId);
-                double percentageUsed = orcamento.getValorPlanejado() > 0 ? 
-                    (spent / orcamento.getValorPlanejado()) * 100 : 0;
+            for (AvaliacaoOrcamento avaliacao : avaliacoes) {
+                Orcamento orcamento = avaliacao.getOrcamento();
+                double spent = avaliacao.getValorGasto();
+                double planned = orcamento.getValorPlanejado();
+                double percentageUsed = planned > 0 ? (spent / planned) * 100 : 0;
                 
                 percentageUsed = Math.min(percentageUsed, 100);
                 percentageUsed = Math.round(percentageUsed * 100.0) / 100.0;
+                double projectedPercentage = planned > 0 ?
+                    Math.round(avaliacao.getGastoProjetado() / planned * 10000.0) / 100.0 : 0;
                 
                 Map<String, Object> budgetData = new HashMap<>();
                 budgetData.put("idOrcamento", orcamento.getIdOrcamento());
                 budgetData.put("idCategoria", orcamento.getIdCategoria());
-                budgetData.put("valorPlanejado", orcamento.getValorPlanejado());
+                budgetData.put("valorPlanejado", planned);
                 budgetData.put("valorUsado", spent);
                 budgetData.put("periodo", orcamento.getPeriodo());
-                budgetData.put("categoryName", categoria != null ? categoria.getNome() : "Sem categoria");
+                budgetData.put("categoryName", avaliacao.getNomeCategoria() != null ? avaliacao.getNomeCategoria() : "Sem categoria");
                 budgetData.put("percentageUsed", percentageUsed);
+                budgetData.put("periodStart", avaliacao.getInicioPeriodo().toString());
+                budgetData.put("periodEnd", avaliacao.getFimPeriodo().toString());
+                budgetData.put("daysElapsed", avaliacao.getDiasDecorridos());
+                budgetData.put("daysTotal", avaliacao.getDiasTotais());
+                budgetData.put("remaining", avaliacao.getSaldoRestante());
+                budgetData.put("expectedSpend", Math.round(avaliacao.getGastoEsperado() * 100.0) / 100.0);
+                budgetData.put("projectedSpend", Math.round(avaliacao.getGastoProjetado() * 100.0) / 100.0);
+                budgetData.put("projectedPercentage", projectedPercentage);
+                budgetData.put("onTrack", avaliacao.isDentroDoRitmo());
                 budgetList.add(budgetData);
             }
             
@@ -50,6 +50,10 @@ public class CategoriesHandler implements HttpHandler {
             // Isso previne que usuários vejam categorias de outros usuários
             int userId = AuthUtil.requireUserId(exchange);
             
+            if (DataVersion.checkNotModified(exchange, DataVersion.etag(userId, DataVersion.Entity.CATEGORIES))) {
+                return;
+            }
+            
             List<Categoria> categories = categoryRepository.buscarCategoriasPorUsuario(userId);
             List<Map<String, Object>> categoryList = new ArrayList<>();
             
@@ -74,10 +78,8 @@ public class CategoriesHandler implements HttpHandler {
     private void handlePost(HttpExchange exchange) throws IOException {
         try {
             String requestBody = RequestUtil.readRequestBody(exchange);
-            Map<String, Object> data = JsonUtil.parseJsonWithNested(requestBody);
-            
             // Converte para DTO e valida com Bean Validation
-            CategoryRequest request = DtoUtil.toCategoryRequest(data);
+            CategoryRequest request = DtoUtil.parseCategoryRequest(requestBody);
             ValidationResult beanValidation = BeanValidationUtil.validate(request);
             
             // Validações manuais adicionais
@@ -2,6 +2,7 @@ package server.handlers;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
+import server.database.UnitOfWork;
 import server.model.*;
 import server.repository.*;
 import server.services.InstallmentService;
@@ -139,8 +140,7 @@ public class ExpensesHandler implements HttpHandler {
                         dataEntradaFatura
                     );
                     
-                    CacheUtil.invalidateCache("overview_" + userId);
-                    CacheUtil.invalidateCache("categories_" + userId);
+                    CacheUtil.invalidate(userId, CacheUtil.Kind.OVERVIEW, CacheUtil.Kind.CATEGORIES);
                     
                     Map<String, Object> response = new HashMap<>();
                     response.put("success", true);
@@ -153,14 +153,16 @@ public class ExpensesHandler implements HttpHandler {
             }
             
             // Gasto único ou recorrência periódica
-            int expenseId = expenseRepository.cadastrarGasto(description, value, date, frequency, userId, categoryIds, accountId, observacoes, dataEntradaFatura);
-            
-            for (int tagId : tagIds) {
-                tagRepository.associarTagTransacao(expenseId, "GASTO", tagId);
-            }
+            LocalDate entradaFatura = dataEntradaFatura;
+            int expenseId = UnitOfWork.transaction(() -> {
+                int id = expenseRepository.cadastrarGasto(description, value, date, frequency, userId, categoryIds, accountId, observacoes, entradaFatura);
+                for (int tagId : tagIds) {
+                    tagRepository.associarTagTransacao(id, "GASTO", tagId);
+                }
+                return id;
+            });
             
-            CacheUtil.invalidateCache("overview_" + userId);
-            CacheUtil.invalidateCache("categories_" + userId);
+            CacheUtil.invalidate(userId, CacheUtil.Kind.OVERVIEW, CacheUtil.Kind.CATEGORIES);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -224,16 +226,17 @@ public class ExpensesHandler implements HttpHandler {
                 return;
             }
             
-            expenseRepository.atualizarGasto(expenseId, userId, description, value, date, accountId, categoryIds, observacoes, dataEntradaFatura);
-            tagRepository.removerTodasTagsTransacao(expenseId, "GASTO");
-            for (int tagId : tagIds) {
-                tagRepository.associarTagTransacao(expenseId, "GASTO", tagId);
-            }
+            LocalDate entradaFatura = dataEntradaFatura;
+            UnitOfWork.transaction(() -> {
+                expenseRepository.atualizarGasto(expenseId, userId, description, value, date, accountId, categoryIds, observacoes, entradaFatura);
+                tagRepository.removerTodasTagsTransacao(expenseId, "GASTO");
+                for (int tagId : tagIds) {
+                    tagRepository.associarTagTransacao(expenseId, "GASTO", tagId);
+                }
+                return null;
+            });
             
-            CacheUtil.invalidateCache("overview_" + userId);
-            CacheUtil.invalidateCache("categories_" + userId);
-            CacheUtil.invalidateCache("totalExpense_" + userId);
-            CacheUtil.invalidateCache("balance_" + userId);
+            CacheUtil.invalidate(userId, CacheUtil.Kind.OVERVIEW, CacheUtil.Kind.CATEGORIES, CacheUtil.Kind.TOTAL_EXPENSE, CacheUtil.Kind.BALANCE);
             
             ResponseUtil.sendJsonResponse(exchange, 200, Map.of("success", true, "message", "Gasto atualizado com sucesso"));
         } catch (AuthUtil.UnauthorizedException e) {
@@ -265,10 +268,7 @@ public class ExpensesHandler implements HttpHandler {
             InstallmentService installmentService = new InstallmentService();
             installmentService.atualizarGrupoGasto(groupId, userId, description, accountId, categoryIds, tagIds, observacoes, dataEntradaFatura);
             
-            CacheUtil.invalidateCache("overview_" + userId);
-            CacheUtil.invalidateCache("categories_" + userId);
-            CacheUtil.invalidateCache("totalExpense_" + userId);
-            CacheUtil.invalidateCache("balance_" + userId);
+            CacheUtil.invalidate(userId, CacheUtil.Kind.OVERVIEW, CacheUtil.Kind.CATEGORIES, CacheUtil.Kind.TOTAL_EXPENSE, CacheUtil.Kind.BALANCE);
             
             ResponseUtil.sendJsonResponse(exchange, 200, Map.of("success", true, "message", "Compra parcelada atualizada com sucesso"));
         } catch (Exception e) {
@@ -519,19 +519,24 @@ public class ExpensesHandler implements HttpHandler {
                     return;
                 }
                 
-                // Decrementa o saldo da conta origem (dinheiro sai da conta origem)
-                accountRepository.decrementarSaldo(contaOrigemId, gasto.getValor());
             }
-            // Se não houver conta de origem, apenas marca como paga sem decrementar saldo
             
-            // 2. Marca a parcela como paga e estorna o saldo ao cartão (aumenta limite disponível)
-            expenseRepository.marcarParcelaComoPaga(expenseId);
+            // Débito na conta origem e baixa da parcela são confirmados juntos
+            Integer origemId = contaOrigemId;
+            UnitOfWork.transaction(() -> {
+                // Decrementa o saldo da conta origem (dinheiro sai da conta origem)
+                // Se não houver conta de origem, apenas marca como paga sem decrementar saldo
+                if (origemId != null) {
+                    accountRepository.decrementarSaldo(origemId, gasto.getValor());
+                }
+                
+                // 2. Marca a parcela como paga e estorna o saldo ao cartão (aumenta limite disponível)
+                expenseRepository.marcarParcelaComoPaga(expenseId);
+                return null;
+            });
             
             // Invalida cache
-            CacheUtil.invalidateCache("overview_" + userId);
-            CacheUtil.invalidateCache("categories_" + userId);
-            CacheUtil.invalidateCache("totalExpense_" + userId);
-            CacheUtil.invalidateCache("balance_" + userId);
+            CacheUtil.invalidate(userId, CacheUtil.Kind.OVERVIEW, CacheUtil.Kind.CATEGORIES, CacheUtil.Kind.TOTAL_EXPENSE, CacheUtil.Kind.BALANCE);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -618,11 +623,7 @@ public class ExpensesHandler implements HttpHandler {
             
             expenseRepository.excluirGasto(expenseId, userId);
             
-            CacheUtil.invalidateCache("overview_" + userId);
-            CacheUtil.invalidateCache("categories_" + userId);
-            CacheUtil.invalidateCache("totalExpense_" + userId);
-            CacheUtil.invalidateCache("totalIncome_" + userId);
-            CacheUtil.invalidateCache("balance_" + userId);
+            CacheUtil.invalidate(userId, CacheUtil.Kind.OVERVIEW, CacheUtil.Kind.CATEGORIES, CacheUtil.Kind.TOTAL_EXPENSE, CacheUtil.Kind.TOTAL_INCOME, CacheUtil.Kind.BALANCE);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
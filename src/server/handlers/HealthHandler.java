@@ -2,6 +2,12 @@ package server.handlers;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
+import server.services.QuoteService;
+import server.services.RecurrenceService;
+import server.services.SchedulerService;
+import server.utils.CacheUtil;
+import server.utils.InvalidationBus;
+import server.utils.RequestExecutor;
 import server.utils.ResponseUtil;
 
 import java.io.IOException;
@@ -9,6 +15,12 @@ import java.util.HashMap;
 import java.util.Map;
 
 public class HealthHandler implements HttpHandler {
+    private final RequestExecutor requestExecutor;
+    
+    public HealthHandler(RequestExecutor requestExecutor) {
+        this.requestExecutor = requestExecutor;
+    }
+    
     @Override
     public void handle(HttpExchange exchange) throws IOException {
         if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
@@ -19,6 +31,20 @@ public class HealthHandler implements HttpHandler {
         Map<String, Object> response = new HashMap<>();
         response.put("status", "ok");
         response.put("timestamp", System.currentTimeMillis());
+        if (requestExecutor != null) {
+            response.put("executor", requestExecutor.getMetrics());
+        }
+        response.put("cache", CacheUtil.stats());
+        response.put("cacheInvalidation", InvalidationBus.stats());
+        response.put("quotes", QuoteService.getInstance().getHttpStats());
+        Map<String, Object> recurrences = RecurrenceService.getUltimaExecucao();
+        if (recurrences != null) {
+            response.put("recurrences", recurrences);
+        }
+        Map<String, Object> scheduler = SchedulerService.metricasAtuais();
+        if (scheduler != null) {
+            response.put("scheduler", scheduler);
+        }
         ResponseUtil.sendJsonResponse(exchange, 200, response);
     }
 }
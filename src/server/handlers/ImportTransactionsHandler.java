@@ -3,31 +3,23 @@ package server.handlers;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import server.model.*;
-import server.repository.*;
+import server.services.ImportJobService;
 import server.services.ImportTransactionsService;
-import server.services.InstallmentService;
 import server.utils.*;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
-import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 
 public class ImportTransactionsHandler implements HttpHandler {
     private final ImportTransactionsService importService;
-    private final ExpenseRepository expenseRepository;
-    private final IncomeRepository incomeRepository;
-    private final TagRepository tagRepository;
-    private final AccountRepository accountRepository;
-    private final InstallmentService installmentService;
+    private final ImportJobService importJobService;
     
     public ImportTransactionsHandler() {
         this.importService = new ImportTransactionsService();
-        this.expenseRepository = new ExpenseRepository();
-        this.incomeRepository = new IncomeRepository();
-        this.tagRepository = new TagRepository();
-        this.accountRepository = new AccountRepository();
-        this.installmentService = new InstallmentService();
+        this.importJobService = new ImportJobService();
     }
     
     @Override
@@ -46,12 +38,16 @@ public class ImportTransactionsHandler implements HttpHandler {
                     // Template não precisa de autenticação
                     handleGetTemplate(exchange);
                     return;
+                } else if (path != null && (path.contains("/jobs") || path.contains("/progress"))) {
+                    handleJobs(exchange, path);
                 } else {
                     ResponseUtil.sendErrorResponse(exchange, 404, "Endpoint não encontrado");
                 }
             } else if ("POST".equals(method)) {
                 if (path != null && path.contains("/confirm")) {
                     handleConfirm(exchange);
+                } else if (path != null && path.contains("/stream")) {
+                    handleStreamImport(exchange);
                 } else {
                     handleImport(exchange);
                 }
@@ -129,204 +125,100 @@ public class ImportTransactionsHandler implements HttpHandler {
     
     /**
      * Endpoint para confirmar e salvar transações
+     * A gravação roda em segundo plano; a resposta traz o id da importação para acompanhamento
      * Requer autenticação
      */
     private void handleConfirm(HttpExchange exchange) throws IOException {
-        try {
-            int userId = AuthUtil.requireUserId(exchange);
-            String requestBody = RequestUtil.readRequestBody(exchange);
-            Map<String, Object> data = JsonUtil.parseJsonWithNested(requestBody);
-            
-            @SuppressWarnings("unchecked")
-            List<Map<String, Object>> transactions = (List<Map<String, Object>>) data.get("transactions");
-            
-            if (transactions == null || transactions.isEmpty()) {
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", false);
-                response.put("message", "Nenhuma transação fornecida");
-                ResponseUtil.sendJsonResponse(exchange, 400, response);
-                return;
-            }
-            
-            int successCount = 0;
-            int errorCount = 0;
-            List<String> errors = new ArrayList<>();
-            
-            for (Map<String, Object> transaction : transactions) {
-                try {
-                    String type = (String) transaction.get("type");
-                    if ("gasto".equals(type)) {
-                        createExpense(transaction, userId);
-                    } else if ("receita".equals(type)) {
-                        createIncome(transaction, userId);
-                    }
-                    successCount++;
-                } catch (Exception e) {
-                    errorCount++;
-                    String descricao = (String) transaction.getOrDefault("description", "Desconhecido");
-                    errors.add(String.format("Erro ao criar transação '%s': %s", descricao, e.getMessage()));
-                }
-            }
-            
-            // Invalida cache - invalida todos os caches relacionados ao usuário
-            CacheUtil.invalidateCache("overview_" + userId);
-            CacheUtil.invalidateCache("categories_" + userId);
-            CacheUtil.invalidateCache("totalExpense_" + userId);
-            CacheUtil.invalidateCache("totalIncome_" + userId);
-            CacheUtil.invalidateCache("balance_" + userId);
-            CacheUtil.invalidateCache("recent-transactions-" + userId);
-            CacheUtil.invalidateCache("totalCredito_" + userId);
-            CacheUtil.invalidateCache("totalAccounts_" + userId);
-            CacheUtil.invalidateCache("investmentAccounts_" + userId);
-            CacheUtil.invalidateCache("accounts_" + userId);
-            // Invalida cache de contas para forçar recálculo das informações da fatura
-            
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", errorCount == 0);
-            response.put("successCount", successCount);
-            response.put("errorCount", errorCount);
-            response.put("errors", errors);
-            response.put("message", String.format("Importação concluída: %d sucesso(s), %d erro(s)", successCount, errorCount));
-            
-            ResponseUtil.sendJsonResponse(exchange, 200, response);
-        } catch (Exception e) {
-            e.printStackTrace();
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", false);
-            response.put("message", "Erro ao confirmar importação: " + e.getMessage());
-            ResponseUtil.sendJsonResponse(exchange, 500, response);
+        int userId = AuthUtil.requireUserId(exchange);
+        try (InputStream body = exchange.getRequestBody()) {
+            submitJob(exchange, userId, ImportJob.Origem.CONFIRMACAO, body);
         }
     }
     
     /**
-     * Cria um gasto a partir dos dados da transação
+     * Endpoint de importação em fluxo: recebe o CSV bruto (text/csv) ou em multipart/form-data
+     * e grava as transações em lotes, em segundo plano e sem preview
+     * Requer autenticação
      */
-    private void createExpense(Map<String, Object> transaction, int userId) {
-        String description = (String) transaction.get("description");
-        double value = ((Number) transaction.get("value")).doubleValue();
-        LocalDate date = LocalDate.parse((String) transaction.get("date"));
-        int accountId = ((Number) transaction.get("accountId")).intValue();
-        
-        @SuppressWarnings("unchecked")
-        List<Integer> categoryIds = (List<Integer>) transaction.getOrDefault("categoryIds", new ArrayList<>());
-        @SuppressWarnings("unchecked")
-        List<Integer> tagIds = (List<Integer>) transaction.getOrDefault("tagIds", new ArrayList<>());
-        
-        String[] observacoes = null;
-        Object obsObj = transaction.get("observacoes");
-        if (obsObj instanceof List) {
-            @SuppressWarnings("unchecked")
-            List<Object> obsList = (List<Object>) obsObj;
-            observacoes = obsList.stream()
-                .map(Object::toString)
-                .toArray(String[]::new);
-        } else if (obsObj instanceof String[]) {
-            observacoes = (String[]) obsObj;
-        }
-        
-        LocalDate dataEntradaFatura = null;
-        Object dataEntradaFaturaObj = transaction.get("dataEntradaFatura");
-        if (dataEntradaFaturaObj != null && !dataEntradaFaturaObj.toString().trim().isEmpty()) {
-            dataEntradaFatura = LocalDate.parse((String) dataEntradaFaturaObj);
-        }
-        
-        String frequency = (String) transaction.getOrDefault("frequency", "UNICA");
-        
-        // Verifica se é compra parcelada
-        Boolean isParcelado = null;
-        Object isParceladoObj = transaction.get("isParcelado");
-        if (isParceladoObj != null) {
-            if (isParceladoObj instanceof Boolean) {
-                isParcelado = (Boolean) isParceladoObj;
-            } else if (isParceladoObj instanceof String) {
-                String str = ((String) isParceladoObj).toLowerCase().trim();
-                isParcelado = str.equals("true") || str.equals("1") || str.equals("sim") || str.equals("verdadeiro");
-            } else if (isParceladoObj instanceof Number) {
-                isParcelado = ((Number) isParceladoObj).intValue() != 0;
-            }
-        }
-        if (isParcelado != null && isParcelado) {
-            Integer numeroParcelas = ((Number) transaction.get("numeroParcelas")).intValue();
-            Integer intervaloDias = ((Number) transaction.getOrDefault("intervaloDias", 30)).intValue();
-            
-            // Usa a data da compra original como primeira parcela
-            // As parcelas serão criadas mantendo o dia da compra (ex: compra em 05/10, parcelas em 05/10, 05/11, 05/12, etc.)
-            // O cálculo de qual fatura cada parcela pertence será feito baseado na data da parcela
-            LocalDate dataPrimeiraParcela = date;
-            
-            try {
-                installmentService.criarCompraParcelada(
-                    description, value, numeroParcelas, dataPrimeiraParcela, intervaloDias,
-                    userId, accountId, categoryIds, tagIds, observacoes,
-                    dataEntradaFatura
-                );
-            } catch (Exception e) {
-                throw new RuntimeException("Erro ao criar compra parcelada: " + e.getMessage(), e);
-            }
-        } else {
-            // Gasto único ou recorrência
-            int expenseId = expenseRepository.cadastrarGasto(
-                description, value, date, frequency, userId, categoryIds, accountId, observacoes, dataEntradaFatura
-            );
-            
-            // Associa tags
-            for (int tagId : tagIds) {
-                tagRepository.associarTagTransacao(expenseId, "GASTO", tagId);
-            }
+    private void handleStreamImport(HttpExchange exchange) throws IOException {
+        int userId = AuthUtil.requireUserId(exchange);
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        try (InputStream body = exchange.getRequestBody()) {
+            InputStream csv = MultipartUtil.isMultipart(contentType)
+                ? MultipartUtil.primeiraParte(body, contentType)
+                : body;
+            submitJob(exchange, userId, ImportJob.Origem.CSV, csv);
         }
     }
     
     /**
-     * Cria uma receita a partir dos dados da transação
+     * Grava o conteúdo em spool, agenda a importação e responde 202 com o id para acompanhamento
      */
-    private void createIncome(Map<String, Object> transaction, int userId) {
-        String description = (String) transaction.get("description");
-        double value = ((Number) transaction.get("value")).doubleValue();
-        LocalDate date = LocalDate.parse((String) transaction.get("date"));
-        int accountId = ((Number) transaction.get("accountId")).intValue();
-        
-        @SuppressWarnings("unchecked")
-        List<Integer> tagIds = (List<Integer>) transaction.getOrDefault("tagIds", new ArrayList<>());
-        
-        String[] observacoes = null;
-        Object obsObj = transaction.get("observacoes");
-        if (obsObj instanceof List) {
-            @SuppressWarnings("unchecked")
-            List<Object> obsList = (List<Object>) obsObj;
-            observacoes = obsList.stream()
-                .map(Object::toString)
-                .toArray(String[]::new);
-        } else if (obsObj instanceof String[]) {
-            observacoes = (String[]) obsObj;
+    private void submitJob(HttpExchange exchange, int userId, ImportJob.Origem origem, InputStream content) throws IOException {
+        ImportJob job;
+        try {
+            job = importJobService.submeter(userId, origem, content);
+        } catch (IllegalStateException e) {
+            ResponseUtil.sendErrorResponse(exchange, 409, e.getMessage());
+            return;
+        } catch (ImportJobService.ArquivoGrandeException e) {
+            ResponseUtil.sendErrorResponse(exchange, 413, e.getMessage());
+            return;
+        } catch (RejectedExecutionException e) {
+            ResponseUtil.sendErrorResponse(exchange, 503, "Muitas importações em andamento. Tente novamente em instantes.");
+            return;
         }
         
-        int incomeId = incomeRepository.cadastrarReceita(description, value, date, userId, accountId, observacoes);
+        Map<String, Object> response = job.toMap();
+        response.put("success", true);
+        response.put("message", "Importação iniciada");
+        ResponseUtil.sendJsonResponse(exchange, 202, response);
+    }
+    
+    /**
+     * Situação de uma importação (/jobs/{id}), lista das recentes (/jobs)
+     * ou a mais recente do usuário (/progress)
+     * Requer autenticação
+     */
+    private void handleJobs(HttpExchange exchange, String path) throws IOException {
+        int userId = AuthUtil.requireUserId(exchange);
+        String[] parts = path.split("/");
+        String last = parts[parts.length - 1];
         
-        // Associa tags
-        for (int tagId : tagIds) {
-            tagRepository.associarTagTransacao(incomeId, "RECEITA", tagId);
+        if ("jobs".equals(last) || "progress".equals(last)) {
+            List<ImportJob> jobs = importJobService.listar(userId);
+            if ("progress".equals(last)) {
+                if (jobs.isEmpty()) {
+                    ResponseUtil.sendErrorResponse(exchange, 404, "Nenhuma importação encontrada");
+                } else {
+                    ResponseUtil.sendJsonResponse(exchange, 200, jobs.get(0).toMap());
+                }
+                return;
+            }
+            List<Map<String, Object>> list = new ArrayList<>();
+            for (ImportJob job : jobs) {
+                list.add(job.toMap());
+            }
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", list);
+            ResponseUtil.sendJsonResponse(exchange, 200, response);
+            return;
         }
         
-        // Se for pagamento de fatura, processa transferência
-        Boolean pagamentoFatura = null;
-        Object pagamentoFaturaObj = transaction.get("pagamentoFatura");
-        if (pagamentoFaturaObj != null) {
-            if (pagamentoFaturaObj instanceof Boolean) {
-                pagamentoFatura = (Boolean) pagamentoFaturaObj;
-            } else if (pagamentoFaturaObj instanceof String) {
-                String str = ((String) pagamentoFaturaObj).toLowerCase().trim();
-                pagamentoFatura = str.equals("true") || str.equals("1") || str.equals("sim") || str.equals("verdadeiro");
-            } else if (pagamentoFaturaObj instanceof Number) {
-                pagamentoFatura = ((Number) pagamentoFaturaObj).intValue() != 0;
-            }
+        int jobId;
+        try {
+            jobId = Integer.parseInt(last);
+        } catch (NumberFormatException e) {
+            ResponseUtil.sendErrorResponse(exchange, 400, "ID de importação inválido");
+            return;
         }
-        if (pagamentoFatura != null && pagamentoFatura) {
-            Object contaOrigemIdObj = transaction.get("contaOrigemId");
-            if (contaOrigemIdObj != null) {
-                int contaOrigemId = ((Number) contaOrigemIdObj).intValue();
-                accountRepository.decrementarSaldo(contaOrigemId, value);
-            }
+        ImportJob job = importJobService.buscar(jobId, userId);
+        if (job == null) {
+            ResponseUtil.sendErrorResponse(exchange, 404, "Importação não encontrada");
+            return;
         }
+        ResponseUtil.sendJsonResponse(exchange, 200, job.toMap());
     }
     
     /**
@@ -2,10 +2,11 @@ package server.handlers;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
+import server.database.UnitOfWork;
 import server.model.*;
 import server.repository.*;
 import server.utils.*;
-import server.utils.CreditCardUtil;
+import server.services.InvoiceService;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.util.*;
@@ -13,13 +14,13 @@ import java.util.*;
 public class IncomesHandler implements HttpHandler {
     private final IncomeRepository incomeRepository;
     private final AccountRepository accountRepository;
-    private final ExpenseRepository expenseRepository;
+    private final InvoiceService invoiceService;
     private final TagRepository tagRepository;
 
     public IncomesHandler() {
         this.incomeRepository = new IncomeRepository();
         this.accountRepository = new AccountRepository();
-        this.expenseRepository = new ExpenseRepository();
+        this.invoiceService = new InvoiceService();
         this.tagRepository = new TagRepository();
     }
 
@@ -122,38 +123,12 @@ public class IncomesHandler implements HttpHandler {
                 }
                 
                 // Validação: verifica se o valor da receita não excede o valor da fatura atual
-                if (conta.getDiaFechamento() != null && conta.getDiaPagamento() != null) {
-                    Map<String, Object> faturaInfo = CreditCardUtil.calcularInfoFatura(
-                        conta.getDiaFechamento(), 
-                        conta.getDiaPagamento()
-                    );
-                    
-                    LocalDate ultimoFechamento = LocalDate.parse((String) faturaInfo.get("ultimoFechamento"));
-                    LocalDate proximoFechamento = LocalDate.parse((String) faturaInfo.get("proximoFechamento"));
-                    LocalDate proximoPagamento = LocalDate.parse((String) faturaInfo.get("proximoPagamento"));
-                    
-                    double valorFaturaAtual = expenseRepository.calcularValorFaturaAtual(
-                        accountId, 
-                        userId,
-                        ultimoFechamento, 
-                        proximoFechamento
-                    );
-                    
-                    // Calcula o total já pago nesta fatura (soma das receitas e parcelas pagas no período)
-                    // Pagamentos são contados até a data de pagamento, não até o fechamento
-                    double totalJaPago = incomeRepository.calcularTotalPagoFatura(
-                        userId, 
-                        accountId, 
-                        ultimoFechamento, 
-                        proximoPagamento,
-                        expenseRepository
-                    );
-                    
-                    double valorDisponivelParaPagamento = valorFaturaAtual - totalJaPago;
-                    // Garante que o valor disponível nunca seja negativo
-                    if (valorDisponivelParaPagamento < 0) {
-                        valorDisponivelParaPagamento = 0;
-                    }
+                if (InvoiceService.temFatura(conta)) {
+                    // Valores da fatura atual: lançado e já pago (receitas e parcelas pagas)
+                    FaturaCartao fatura = invoiceService.buscarFaturaAtual(conta);
+                    double valorFaturaAtual = fatura.getValorLancado();
+                    double totalJaPago = fatura.getValorPago();
+                    double valorDisponivelParaPagamento = fatura.getValorPendente();
                     
                     if (value > valorDisponivelParaPagamento + 0.001) { // Adiciona margem de erro para floats
                         Map<String, Object> response = new HashMap<>();
@@ -234,20 +209,23 @@ public class IncomesHandler implements HttpHandler {
                 }
             }
             
-            int incomeId = incomeRepository.cadastrarReceita(description, value, date, userId, accountId, observacoes);
-            
-            // Se houver conta origem, faz a transferência (decrementa da conta origem)
-            if (contaOrigemId != null && contaOrigemId > 0) {
-                accountRepository.decrementarSaldo(contaOrigemId, value);
-            }
-            
-            CacheUtil.invalidateCache("overview_" + userId);
-            CacheUtil.invalidateCache("totalIncome_" + userId);
-            CacheUtil.invalidateCache("balance_" + userId);
+            // Receita, transferência da conta origem e tags são gravadas atomicamente
+            Integer origemId = contaOrigemId;
+            int incomeId = UnitOfWork.transaction(() -> {
+                int id = incomeRepository.cadastrarReceita(description, value, date, userId, accountId, observacoes);
+                
+                // Se houver conta origem, faz a transferência (decrementa da conta origem)
+                if (origemId != null && origemId > 0) {
+                    accountRepository.decrementarSaldo(origemId, value);
+                }
+                
+                for (int tagId : tagIds) {
+                    tagRepository.associarTagTransacao(id, "RECEITA", tagId);
+                }
+                return id;
+            });
             
-            for (int tagId : tagIds) {
-                tagRepository.associarTagTransacao(incomeId, "RECEITA", tagId);
-            }
+            CacheUtil.invalidate(userId, CacheUtil.Kind.OVERVIEW, CacheUtil.Kind.TOTAL_INCOME, CacheUtil.Kind.BALANCE);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -404,15 +382,16 @@ public class IncomesHandler implements HttpHandler {
                 return;
             }
             
-            incomeRepository.atualizarReceita(incomeId, userId, description, value, date, accountId, observacoes);
-            tagRepository.removerTodasTagsTransacao(incomeId, "RECEITA");
-            for (int tagId : tagIds) {
-                tagRepository.associarTagTransacao(incomeId, "RECEITA", tagId);
-            }
+            UnitOfWork.transaction(() -> {
+                incomeRepository.atualizarReceita(incomeId, userId, description, value, date, accountId, observacoes);
+                tagRepository.removerTodasTagsTransacao(incomeId, "RECEITA");
+                for (int tagId : tagIds) {
+                    tagRepository.associarTagTransacao(incomeId, "RECEITA", tagId);
+                }
+                return null;
+            });
             
-            CacheUtil.invalidateCache("overview_" + userId);
-            CacheUtil.invalidateCache("totalIncome_" + userId);
-            CacheUtil.invalidateCache("balance_" + userId);
+            CacheUtil.invalidate(userId, CacheUtil.Kind.OVERVIEW, CacheUtil.Kind.TOTAL_INCOME, CacheUtil.Kind.BALANCE);
             
             ResponseUtil.sendJsonResponse(exchange, 200, Map.of("success", true, "message", "Receita atualizada com sucesso"));
         } catch (AuthUtil.UnauthorizedException e) {
@@ -454,9 +433,7 @@ public class IncomesHandler implements HttpHandler {
             
             incomeRepository.excluirReceita(incomeId, userId);
             
-            CacheUtil.invalidateCache("overview_" + userId);
-            CacheUtil.invalidateCache("totalIncome_" + userId);
-            CacheUtil.invalidateCache("balance_" + userId);
+            CacheUtil.invalidate(userId, CacheUtil.Kind.OVERVIEW, CacheUtil.Kind.TOTAL_INCOME, CacheUtil.Kind.BALANCE);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -683,6 +683,15 @@ public class InvestmentEvolutionHandler implements HttpHandler {
         QuoteService quoteService,
         Map<String, Double> priceCache
     ) {
+        // Cotações atuais de todos os ativos em lote (usadas para hoje e datas futuras)
+        List<QuoteService.AssetRef> ativos = new ArrayList<>();
+        for (AssetState state : assetState.values()) {
+            if (!state.isEmpty() && state.symbol != null) {
+                ativos.add(new QuoteService.AssetRef(state.symbol, state.category));
+            }
+        }
+        quoteService.getCurrentQuotes(ativos);
+        
         // Para cada ativo único, busca cotações apenas nos intervalos necessários
         Set<String> processedAssets = new HashSet<>();
         for (AssetState state : assetState.values()) {
@@ -700,14 +709,21 @@ public class InvestmentEvolutionHandler implements HttpHandler {
             }
             processedAssets.add(assetKey);
             
+            // Fechamentos diários do período: armazenamento local e uma chamada à API para os dias que faltam
+            Map<LocalDate, QuoteService.QuoteResult> historico = quoteService.getHistoricalQuotes(symbol, category, startDate, endDate);
+            
             // Busca cotações apenas nos pontos de intervalo
             int fetched = 0;
             int maxFetches = 100; // Limita requisições por ativo
             for (LocalDate date = startDate; !date.isAfter(endDate) && fetched < maxFetches; date = date.plusDays(priceLookupInterval)) {
                 String cacheKey = symbol + "|" + category + "|" + date.toString();
                 if (!priceCache.containsKey(cacheKey)) {
-                    // Busca a cotação e armazena no cache
-                    QuoteService.QuoteResult quote = quoteService.getQuote(symbol, category, date, null);
+                    // Busca a cotação (se não veio no histórico) e armazena no cache
+                    QuoteService.QuoteResult quote = historico.get(date);
+                    boolean fromHistory = quote != null;
+                    if (!fromHistory) {
+                        quote = quoteService.getQuote(symbol, category, date, null);
+                    }
                     if (quote != null && quote.success && quote.price > 0) {
                         double price = quote.price;
                         // Para criptomoedas, assume USD se currency não estiver definida
@@ -718,10 +734,10 @@ public class InvestmentEvolutionHandler implements HttpHandler {
                             price *= exchangeRate;
                         }
                         priceCache.put(cacheKey, price);
-                        fetched++;
+                        if (!fromHistory) fetched++;
                     }
                     // Pequena pausa para não sobrecarregar a API
-                    if (fetched % 10 == 0 && fetched > 0) {
+                    if (!fromHistory && fetched % 10 == 0 && fetched > 0) {
                         try {
                             Thread.sleep(50); // 50ms de pausa a cada 10 requisições
                         } catch (InterruptedException e) {
@@ -74,6 +74,13 @@ public class InvestmentsHandler implements HttpHandler {
             
             QuoteService quoteService = QuoteService.getInstance();
             
+            // Cotações atuais da carteira em lote; as buscas por investimento abaixo usam o cache
+            List<QuoteService.AssetRef> ativos = new ArrayList<>();
+            for (Investimento inv : allInvestments) {
+                ativos.add(new QuoteService.AssetRef(inv.getNome(), inv.getCategoria()));
+            }
+            quoteService.getCurrentQuotes(ativos);
+            
             // Calcula summary com TODOS os investimentos
             double totalInvested = 0;
             double totalCurrent = 0;
@@ -9,7 +9,6 @@ import server.security.CaptchaValidator;
 import server.security.JwtUtil;
 import server.security.LoginAttemptTracker;
 import java.time.Instant;
-import server.utils.JsonUtil;
 import server.utils.RequestUtil;
 import server.utils.ResponseUtil;
 import server.utils.DtoUtil;
@@ -53,10 +52,8 @@ public class LoginHandler implements HttpHandler {
             String requestBody = RequestUtil.readRequestBody(exchange);
             LOGGER.info("Request body recebido: " + requestBody.substring(0, Math.min(200, requestBody.length())) + (requestBody.length() > 200 ? "..." : ""));
             
-            Map<String, String> data = JsonUtil.parseJson(requestBody);
-            
             // Converte para DTO e valida com Bean Validation
-            LoginRequest request = DtoUtil.toLoginRequest(data);
+            LoginRequest request = DtoUtil.parseLoginRequest(requestBody);
             ValidationResult beanValidation = BeanValidationUtil.validate(request);
             
             // Validações manuais adicionais
@@ -83,7 +80,7 @@ public class LoginHandler implements HttpHandler {
             if (captchaToken != null) {
                 LOGGER.info(String.format("CAPTCHA token recebido (tamanho: %d caracteres)", captchaToken.length()));
             } else {
-                LOGGER.warning("CAPTCHA token não recebido no request. Chaves disponíveis: " + data.keySet());
+                LOGGER.warning("CAPTCHA token não recebido no request");
             }
             
             boolean requiresCaptcha = loginAttemptTracker.shouldRequireCaptcha(clientIp, email);
@@ -2,31 +2,22 @@ package server.handlers;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
-import server.model.*;
-import server.repository.*;
+import server.model.VisaoGeral;
 import server.utils.*;
-import server.services.QuoteService;
+import server.services.OverviewService;
 
 import java.io.IOException;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
-import java.util.stream.Collectors;
 
 public class OverviewHandler implements HttpHandler {
-    private final ExpenseRepository expenseRepository;
-    private final IncomeRepository incomeRepository;
-    private final AccountRepository accountRepository;
-    private final CategoryRepository categoryRepository;
-    private final InvestmentRepository investmentRepository;
+    private static final long INVESTMENT_STALE_MS = 5 * 60 * 1000;
+
+    private final OverviewService overviewService;
 
     public OverviewHandler() {
-        this.expenseRepository = new ExpenseRepository();
-        this.incomeRepository = new IncomeRepository();
-        this.accountRepository = new AccountRepository();
-        this.categoryRepository = new CategoryRepository();
-        this.investmentRepository = new InvestmentRepository();
+        this.overviewService = new OverviewService();
     }
 
     @Override
@@ -39,250 +30,61 @@ public class OverviewHandler implements HttpHandler {
         try {
             int userId = AuthUtil.requireUserId(exchange);
             
-            // Cache de valores totais (TTL curto pois podem mudar com frequência)
-            String cacheKeyIncome = "totalIncome_" + userId;
-            String cacheKeyExpense = "totalExpense_" + userId;
-            String cacheKeyBalance = "balance_" + userId;
-            String cacheKeyCredito = "totalCredito_" + userId;
-            
-            Double totalIncome = CacheUtil.getCached(cacheKeyIncome);
-            Double totalExpense = CacheUtil.getCached(cacheKeyExpense);
-            Double balance = CacheUtil.getCached(cacheKeyBalance);
-            Double totalCreditoDisponivel = CacheUtil.getCached(cacheKeyCredito);
-            
-            if (totalIncome == null) {
-                totalIncome = incomeRepository.calcularTotalReceitasUsuario(userId);
-                CacheUtil.setCached(cacheKeyIncome, totalIncome);
-            }
-            if (totalExpense == null) {
-                totalExpense = expenseRepository.calcularTotalGastosUsuario(userId);
-                CacheUtil.setCached(cacheKeyExpense, totalExpense);
-            }
-            if (balance == null) {
-                // Saldo = (Conta Corrente + Dinheiro + Poupança) - Gastos
-                // Garante que totalExpense não seja null
-                double gastos = totalExpense != null ? totalExpense : expenseRepository.calcularTotalGastosUsuario(userId);
-                balance = accountRepository.calcularSaldoDisponivel(userId, gastos);
-                CacheUtil.setCached(cacheKeyBalance, balance);
-            }
-            if (totalCreditoDisponivel == null) {
-                totalCreditoDisponivel = accountRepository.calcularTotalCreditoDisponivelCartoes(userId);
-                CacheUtil.setCached(cacheKeyCredito, totalCreditoDisponivel);
-            }
-            
-            // Calcula informações agregadas de faturas de cartões de crédito
-            String cacheKeyAccounts = "accounts_" + userId;
-            List<Conta> allAccounts = CacheUtil.getCached(cacheKeyAccounts);
-            if (allAccounts == null) {
-                allAccounts = accountRepository.buscarContasPorUsuario(userId);
-                CacheUtil.setCached(cacheKeyAccounts, allAccounts);
-            }
-            
-            List<Conta> contasCartao = new ArrayList<>(allAccounts);
-            contasCartao.removeIf(c -> !c.isCartaoCredito() || c.getDiaFechamento() == null || c.getDiaPagamento() == null);
-            
-            Map<String, Object> cartoesInfo = null;
-            Double valorFaturaAPagar = null;
-            if (!contasCartao.isEmpty()) {
-                // Paraleliza cálculos de faturas para melhor performance
-                List<CompletableFuture<Map<String, Object>>> faturaFutures = contasCartao.stream()
-                    .map(cartao -> CompletableFuture.supplyAsync(() -> {
-                        try {
-                            Map<String, Object> faturaInfo = CreditCardUtil.calcularInfoFatura(cartao.getDiaFechamento(), cartao.getDiaPagamento());
-                            long diasAtePagamento = (Long) faturaInfo.get("diasAtePagamento");
-                            long diasAteFechamento = (Long) faturaInfo.get("diasAteFechamento");
-                            
-                            // Calcula o valor da fatura a pagar para este cartão
-                            LocalDate ultimoFechamento = LocalDate.parse((String) faturaInfo.get("ultimoFechamento"));
-                            LocalDate proximoFechamento = LocalDate.parse((String) faturaInfo.get("proximoFechamento"));
-                            LocalDate proximoPagamento = LocalDate.parse((String) faturaInfo.get("proximoPagamento"));
-                            
-                            double valorFaturaAtual = expenseRepository.calcularValorFaturaAtual(
-                                cartao.getIdConta(), 
-                                userId,
-                                ultimoFechamento, 
-                                proximoFechamento
-                            );
-                            
-                            // Pagamentos são contados até a data de pagamento, não até o fechamento
-                            double totalJaPago = incomeRepository.calcularTotalPagoFatura(
-                                userId, 
-                                cartao.getIdConta(), 
-                                ultimoFechamento, 
-                                proximoPagamento,
-                                expenseRepository
-                            );
-                            
-                            double valorAPagar = valorFaturaAtual - totalJaPago;
-                            if (valorAPagar < 0) {
-                                valorAPagar = 0;
-                            }
-                            
-                            Map<String, Object> result = new HashMap<>();
-                            result.put("diasAteFechamento", diasAteFechamento);
-                            result.put("diasAtePagamento", diasAtePagamento);
-                            result.put("proximoPagamento", proximoPagamento);
-                            result.put("proximoFechamento", proximoFechamento);
-                            result.put("valorAPagar", valorAPagar);
-                            
-                            return result;
-                        } catch (Exception e) {
-                            // Em caso de erro, retorna null para ser ignorado
-                            return null;
-                        }
-                    }))
-                    .collect(Collectors.toList());
-                
-                // Aguarda todas as futures e processa resultados
-                LocalDate proximoPagamentoMaisProximo = null;
-                LocalDate proximoFechamentoMaisProximo = null;
-                long menorDiasAtePagamento = Long.MAX_VALUE;
-                long menorDiasAteFechamento = Long.MAX_VALUE;
-                
-                for (CompletableFuture<Map<String, Object>> future : faturaFutures) {
-                    try {
-                        Map<String, Object> result = future.get();
-                        if (result != null) {
-                            long diasAteFechamento = (Long) result.get("diasAteFechamento");
-                            if (diasAteFechamento < menorDiasAteFechamento) {
-                                menorDiasAteFechamento = diasAteFechamento;
-                                menorDiasAtePagamento = (Long) result.get("diasAtePagamento");
-                                proximoPagamentoMaisProximo = (LocalDate) result.get("proximoPagamento");
-                                proximoFechamentoMaisProximo = (LocalDate) result.get("proximoFechamento");
-                                valorFaturaAPagar = (Double) result.get("valorAPagar");
-                            }
-                        }
-                    } catch (InterruptedException | ExecutionException e) {
-                        // Ignora erros e continua processando outras faturas
-                        Thread.currentThread().interrupt();
-                    }
-                }
-                
-                if (proximoPagamentoMaisProximo != null && proximoFechamentoMaisProximo != null) {
-                    cartoesInfo = new HashMap<>();
-                    cartoesInfo.put("proximoPagamento", proximoPagamentoMaisProximo.toString());
-                    cartoesInfo.put("proximoFechamento", proximoFechamentoMaisProximo.toString());
-                    cartoesInfo.put("diasAtePagamento", menorDiasAtePagamento);
-                    cartoesInfo.put("diasAteFechamento", menorDiasAteFechamento);
-                }
-            }
-            
-            // Calcula valor total dos investimentos (com cache)
-            String cacheKeyInvestments = "totalInvestments_" + userId;
-            Double totalInvestmentsValue = CacheUtil.getCached(cacheKeyInvestments);
-            
-            if (totalInvestmentsValue == null) {
-                totalInvestmentsValue = 0.0;
-                List<Investimento> investments = investmentRepository.buscarInvestimentosPorUsuario(userId);
-                
-                if (!investments.isEmpty()) {
-                    QuoteService quoteService = QuoteService.getInstance();
-                    
-                    // Paraleliza buscas de cotações para melhor performance
-                    List<CompletableFuture<Double>> quoteFutures = investments.stream()
-                        .map(inv -> CompletableFuture.supplyAsync(() -> {
-                            try {
-                                QuoteService.QuoteResult quote = quoteService.getQuote(inv.getNome(), inv.getCategoria(), null);
-                                double currentPrice = quote != null && quote.success ? quote.price : inv.getPrecoAporte();
-                                
-                                if (quote != null && quote.success && !"BRL".equals(quote.currency)) {
-                                    double exchangeRate = quoteService.getExchangeRate(quote.currency, "BRL");
-                                    currentPrice *= exchangeRate;
-                                } else if (!"BRL".equals(inv.getMoeda())) {
-                                    double exchangeRate = quoteService.getExchangeRate(inv.getMoeda(), "BRL");
-                                    currentPrice *= exchangeRate;
-                                }
-                                
-                                return inv.getQuantidade() * currentPrice;
-                            } catch (Exception e) {
-                                // Em caso de erro, usa preço de aporte como fallback
-                                return inv.getQuantidade() * inv.getPrecoAporte();
-                            }
-                        }))
-                        .collect(Collectors.toList());
-                    
-                    // Aguarda todas as futures e soma os valores
-                    for (CompletableFuture<Double> future : quoteFutures) {
-                        try {
-                            totalInvestmentsValue += future.get();
-                        } catch (InterruptedException | ExecutionException e) {
-                            // Em caso de erro, ignora este investimento
-                            Thread.currentThread().interrupt();
-                        }
-                    }
-                }
-                
-                CacheUtil.setCached(cacheKeyInvestments, totalInvestmentsValue);
+            // Investimentos e prazos das faturas dependem das cotações e da data, por isso a janela de tempo
+            String etag = DataVersion.etag(userId, DataVersion.quoteWindow(),
+                DataVersion.Entity.ACCOUNTS, DataVersion.Entity.TRANSACTIONS,
+                DataVersion.Entity.CATEGORIES, DataVersion.Entity.INVESTMENTS);
+            if (DataVersion.checkNotModified(exchange, etag)) {
+                return;
             }
             
-            String cacheKeyTotalAccounts = "totalAccounts_" + userId;
-            Double totalAccounts = CacheUtil.getCached(cacheKeyTotalAccounts);
-            if (totalAccounts == null) {
-                totalAccounts = accountRepository.calcularTotalSaldoContasUsuario(userId);
-                CacheUtil.setCached(cacheKeyTotalAccounts, totalAccounts);
-            }
+            // Todos os números do banco em uma consulta; a visão fica em cache até a próxima escrita
+            VisaoGeral visao = overviewService.buscarVisaoGeral(userId, etag);
+            LocalDate hoje = visao.getDataReferencia();
             
-            // Calcula o saldo das contas de investimento (que já inclui o valor atual dos investimentos)
-            String cacheKeyInvestmentAccounts = "investmentAccounts_" + userId;
-            Double investmentAccountsBalance = CacheUtil.getCached(cacheKeyInvestmentAccounts);
-            if (investmentAccountsBalance == null) {
-                investmentAccountsBalance = 0.0;
-                // Reutiliza a lista de contas já carregada anteriormente
-                for (Conta conta : allAccounts) {
-                    String tipoConta = conta.getTipo() != null ? conta.getTipo().toLowerCase().trim() : "";
-                    if (tipoConta.equals("investimento") || tipoConta.equals("investimento (corretora)") || tipoConta.startsWith("investimento")) {
-                        investmentAccountsBalance += accountRepository.calcularValorAtualInvestimentos(conta.getIdConta());
-                    }
+            // Fatura do cartão que fecha primeiro
+            VisaoGeral.Fatura proximaFatura = null;
+            for (VisaoGeral.Fatura fatura : visao.getFaturas()) {
+                if (proximaFatura == null || fatura.getProximoFechamento().isBefore(proximaFatura.getProximoFechamento())) {
+                    proximaFatura = fatura;
                 }
-                CacheUtil.setCached(cacheKeyInvestmentAccounts, investmentAccountsBalance);
             }
-            
-            // O netWorth agora inclui: contas normais + saldo das contas de investimento (que já inclui os investimentos)
-            // Não somamos totalInvestmentsValue novamente para evitar duplicação
-            double netWorth = totalAccounts + investmentAccountsBalance;
-            
-            // Get category breakdown
-            String cacheKey = "categories_" + userId;
-            List<Categoria> categories = CacheUtil.getCached(cacheKey);
-            if (categories == null) {
-                categories = categoryRepository.buscarCategoriasPorUsuario(userId);
-                CacheUtil.setCached(cacheKey, categories);
+            Map<String, Object> cartoesInfo = null;
+            Double valorFaturaAPagar = null;
+            if (proximaFatura != null) {
+                valorFaturaAPagar = proximaFatura.getValorAPagar();
+                cartoesInfo = new HashMap<>();
+                cartoesInfo.put("proximoPagamento", proximaFatura.getProximoPagamento().toString());
+                cartoesInfo.put("proximoFechamento", proximaFatura.getProximoFechamento().toString());
+                cartoesInfo.put("diasAtePagamento", ChronoUnit.DAYS.between(hoje, proximaFatura.getProximoPagamento()));
+                cartoesInfo.put("diasAteFechamento", ChronoUnit.DAYS.between(hoje, proximaFatura.getProximoFechamento()));
             }
             
-            Map<Integer, Double> gastosPorCategoria = categoryRepository.calcularTotalGastosPorTodasCategoriasEUsuario(userId);
+            // O saldo das contas de investimento depende das cotações (cache curto); vencido, ainda é
+            // servido por alguns minutos enquanto uma única atualização busca as cotações
+            CacheUtil.Key cacheKeyInvestmentAccounts = CacheUtil.Key.of(CacheUtil.Kind.INVESTMENT_ACCOUNTS, userId);
+            double investmentAccountsBalance = CacheUtil.getOrLoad(cacheKeyInvestmentAccounts, INVESTMENT_STALE_MS,
+                () -> overviewService.calcularValorContasInvestimento(userId, visao));
             
-            int idCategoriaSemCategoria = categoryRepository.obterOuCriarCategoriaSemCategoria(userId);
-            Categoria categoriaSemCategoria = categoryRepository.buscarCategoria(idCategoriaSemCategoria);
+            // O netWorth inclui: contas normais + saldo das contas de investimento (que já inclui os investimentos)
+            double netWorth = visao.getTotalSaldoContas() + investmentAccountsBalance;
             
             List<Map<String, Object>> categoryBreakdown = new ArrayList<>();
-            for (Categoria categoria : categories) {
-                Double categoryTotal = gastosPorCategoria.get(categoria.getIdCategoria());
-                if (categoryTotal != null && categoryTotal > 0) {
-                    Map<String, Object> categoryData = new HashMap<>();
-                    categoryData.put("name", categoria.getNome());
-                    categoryData.put("value", categoryTotal);
-                    categoryBreakdown.add(categoryData);
-                }
-            }
-            
-            if (categoriaSemCategoria != null) {
-                Double semCategoriaTotal = gastosPorCategoria.get(idCategoriaSemCategoria);
-                if (semCategoriaTotal != null && semCategoriaTotal > 0) {
-                    Map<String, Object> categoryData = new HashMap<>();
-                    categoryData.put("name", categoriaSemCategoria.getNome());
-                    categoryData.put("value", semCategoriaTotal);
-                    categoryBreakdown.add(categoryData);
-                }
+            for (VisaoGeral.TotalCategoria categoria : visao.getCategorias()) {
+                Map<String, Object> categoryData = new HashMap<>();
+                categoryData.put("name", categoria.getNome());
+                categoryData.put("value", categoria.getTotal());
+                categoryBreakdown.add(categoryData);
             }
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             Map<String, Object> dataMap = new HashMap<>();
-            dataMap.put("totalIncome", totalIncome);
-            dataMap.put("totalExpense", totalExpense);
-            dataMap.put("balance", balance);
+            dataMap.put("totalIncome", visao.getTotalReceitas());
+            dataMap.put("totalExpense", visao.getTotalGastos());
+            dataMap.put("balance", visao.getSaldoDisponivel());
             dataMap.put("netWorth", netWorth);
-            dataMap.put("totalCreditoDisponivel", totalCreditoDisponivel);
+            dataMap.put("totalCreditoDisponivel", visao.getTotalCreditoCartoes());
             if (valorFaturaAPagar != null) {
                 dataMap.put("valorFaturaAPagar", valorFaturaAPagar);
             }
@@ -7,7 +7,6 @@ import server.repository.RefreshTokenRepository;
 import server.repository.UserRepository;
 import server.security.JwtUtil;
 import java.time.Instant;
-import server.utils.JsonUtil;
 import server.utils.RequestUtil;
 import server.utils.ResponseUtil;
 import server.utils.DtoUtil;
@@ -47,10 +46,9 @@ public class RegisterHandler implements HttpHandler {
         
         try {
             String requestBody = RequestUtil.readRequestBody(exchange);
-            Map<String, String> data = JsonUtil.parseJson(requestBody);
             
             // Converte para DTO e valida com Bean Validation
-            RegisterRequest request = DtoUtil.toRegisterRequest(data);
+            RegisterRequest request = DtoUtil.parseRegisterRequest(requestBody);
             ValidationResult beanValidation = BeanValidationUtil.validate(request);
             
             // Validações manuais adicionais (complementam Bean Validation)
@@ -2,7 +2,6 @@ package server.handlers;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
-import server.model.*;
 import server.repository.*;
 import server.utils.*;
 import static server.utils.AuthUtil.UnauthorizedException;
@@ -13,17 +12,12 @@ import java.time.LocalDate;
 import java.util.*;
 
 public class ReportsHandler implements HttpHandler {
-    private final ExpenseRepository expenseRepository;
-    private final IncomeRepository incomeRepository;
-    private final CategoryRepository categoryRepository;
-    private final AccountRepository accountRepository;
+    private static final int TOP_EXPENSES = 5;
 
-    public ReportsHandler(ExpenseRepository expenseRepository, IncomeRepository incomeRepository,
-                         CategoryRepository categoryRepository, AccountRepository accountRepository) {
-        this.expenseRepository = expenseRepository;
-        this.incomeRepository = incomeRepository;
-        this.categoryRepository = categoryRepository;
-        this.accountRepository = accountRepository;
+    private final ReportRepository reportRepository;
+
+    public ReportsHandler(ReportRepository reportRepository) {
+        this.reportRepository = reportRepository;
     }
 
     @Override
@@ -65,44 +59,25 @@ public class ReportsHandler implements HttpHandler {
                 endDate = now.withDayOfMonth(now.lengthOfMonth());
             }
             
-            // Busca dados para o relatório
-            List<Gasto> expenses = expenseRepository.buscarGastosPorPeriodo(userId, startDate, endDate);
-            List<Receita> incomes = incomeRepository.buscarReceitasPorPeriodo(userId, startDate, endDate);
-            
-            // Calcula totais
-            double totalExpenses = expenses.stream().mapToDouble(Gasto::getValor).sum();
-            double totalIncomes = incomes.stream().mapToDouble(Receita::getValor).sum();
+            // Agregações calculadas no banco (uma consulta por bloco do relatório)
+            Map<String, Number> totals = reportRepository.buscarTotais(userId, startDate, endDate);
+            double totalExpenses = totals.get("totalExpenses").doubleValue();
+            double totalIncomes = totals.get("totalIncomes").doubleValue();
             double balance = totalIncomes - totalExpenses;
             
             // Análise por categoria
-            Map<String, Double> categoryAnalysis = new HashMap<>();
-            for (Gasto gasto : expenses) {
-                List<Categoria> categorias = categoryRepository.buscarCategoriasDoGasto(gasto.getIdGasto());
-                for (Categoria categoria : categorias) {
-                    categoryAnalysis.merge(categoria.getNome(), gasto.getValor(), Double::sum);
-                }
-            }
+            Map<String, Double> categoryAnalysis = reportRepository.buscarTotaisPorCategoria(userId, startDate, endDate);
             
             // Análise por conta
-            Map<String, Double> accountAnalysis = new HashMap<>();
-            for (Gasto gasto : expenses) {
-                Conta conta = accountRepository.buscarConta(gasto.getIdConta());
-                if (conta != null && conta.getIdUsuario() == userId) {
-                    accountAnalysis.merge(conta.getNome(), gasto.getValor(), Double::sum);
-                }
-            }
+            Map<String, Double> accountAnalysis = reportRepository.buscarTotaisPorConta(userId, startDate, endDate);
             
             // Análise mensal (últimos 12 meses)
             List<Map<String, Object>> monthlyAnalysis = new ArrayList<>();
-            for (int i = 11; i >= 0; i--) {
-                LocalDate monthStart = now.minusMonths(i).withDayOfMonth(1);
-                LocalDate monthEnd = monthStart.withDayOfMonth(monthStart.lengthOfMonth());
-                
-                List<Gasto> monthExpenses = expenseRepository.buscarGastosPorPeriodo(userId, monthStart, monthEnd);
-                List<Receita> monthIncomes = incomeRepository.buscarReceitasPorPeriodo(userId, monthStart, monthEnd);
-                
-                double monthExpenseTotal = monthExpenses.stream().mapToDouble(Gasto::getValor).sum();
-                double monthIncomeTotal = monthIncomes.stream().mapToDouble(Receita::getValor).sum();
+            Map<LocalDate, double[]> series = reportRepository.buscarSerieMensal(userId, now.minusMonths(11), now);
+            for (Map.Entry<LocalDate, double[]> entry : series.entrySet()) {
+                LocalDate monthStart = entry.getKey();
+                double monthExpenseTotal = entry.getValue()[0];
+                double monthIncomeTotal = entry.getValue()[1];
                 
                 Map<String, Object> monthData = new HashMap<>();
                 monthData.put("month", monthStart.getMonthValue());
@@ -115,25 +90,7 @@ public class ReportsHandler implements HttpHandler {
             }
             
             // Top 5 gastos
-            List<Map<String, Object>> topExpenses = new ArrayList<>();
-            expenses.stream()
-                .sorted((a, b) -> Double.compare(b.getValor(), a.getValor()))
-                .limit(5)
-                .forEach(gasto -> {
-                    Map<String, Object> expenseData = new HashMap<>();
-                    expenseData.put("description", gasto.getDescricao());
-                    expenseData.put("value", gasto.getValor());
-                    expenseData.put("date", gasto.getData().toString());
-                    
-                    List<Categoria> categorias = categoryRepository.buscarCategoriasDoGasto(gasto.getIdGasto());
-                    String categoryNames = categorias.stream()
-                        .map(Categoria::getNome)
-                        .reduce((a, b) -> a + ", " + b)
-                        .orElse("Sem categoria");
-                    expenseData.put("category", categoryNames);
-                    
-                    topExpenses.add(expenseData);
-                });
+            List<Map<String, Object>> topExpenses = reportRepository.buscarMaioresGastos(userId, startDate, endDate, TOP_EXPENSES);
             
             // Prepara resposta
             Map<String, Object> reportData = new HashMap<>();
@@ -147,8 +104,8 @@ public class ReportsHandler implements HttpHandler {
             reportData.put("accountAnalysis", accountAnalysis);
             reportData.put("monthlyAnalysis", monthlyAnalysis);
             reportData.put("topExpenses", topExpenses);
-            reportData.put("expenseCount", expenses.size());
-            reportData.put("incomeCount", incomes.size());
+            reportData.put("expenseCount", totals.get("expenseCount"));
+            reportData.put("incomeCount", totals.get("incomeCount"));
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -187,14 +144,10 @@ public class ReportsHandler implements HttpHandler {
                 endDate = now.withDayOfMonth(now.lengthOfMonth());
             }
             
-            // Busca dados
-            List<Gasto> expenses = expenseRepository.buscarGastosPorPeriodo(userId, startDate, endDate);
-            List<Receita> incomes = incomeRepository.buscarReceitasPorPeriodo(userId, startDate, endDate);
-            
             if ("csv".equals(format)) {
-                exportToCSV(exchange, expenses, incomes, startDate, endDate, userId);
+                exportToCSV(exchange, startDate, endDate, userId);
             } else if ("xlsx".equals(format)) {
-                exportToXLSX(exchange, expenses, incomes, startDate, endDate, userId);
+                exportToXLSX(exchange, startDate, endDate, userId);
             } else {
                 ResponseUtil.sendErrorResponse(exchange, 400, "Formato não suportado. Use 'csv' ou 'xlsx'");
             }
@@ -207,51 +160,20 @@ public class ReportsHandler implements HttpHandler {
         }
     }
     
-    private void exportToCSV(HttpExchange exchange, List<Gasto> expenses, List<Receita> incomes, 
-                            LocalDate startDate, LocalDate endDate, int userId) throws IOException {
+    private void exportToCSV(HttpExchange exchange, LocalDate startDate, LocalDate endDate, int userId) throws IOException {
         StringBuilder csv = new StringBuilder();
         
         // Header
         csv.append("Tipo,Descrição,Valor,Data,Categoria,Conta,Observações\n");
         
-        // Expenses
-        for (Gasto gasto : expenses) {
-            List<Categoria> categorias = categoryRepository.buscarCategoriasDoGasto(gasto.getIdGasto());
-            String categoryNames = categorias.stream()
-                .map(Categoria::getNome)
-                .reduce((a, b) -> a + ", " + b)
-                .orElse("Sem categoria");
-            
-            Conta conta = accountRepository.buscarConta(gasto.getIdConta());
-            String accountName = (conta != null && conta.getIdUsuario() == userId) ? conta.getNome() : "Conta não encontrada";
-            
-            String observacoes = "";
-            if (gasto.getObservacoes() != null && gasto.getObservacoes().length > 0) {
-                observacoes = String.join("; ", gasto.getObservacoes());
-            }
-            
-            csv.append("Gasto,")
-               .append(escapeCsv(gasto.getDescricao())).append(",")
-               .append(gasto.getValor()).append(",")
-               .append(gasto.getData()).append(",")
-               .append(escapeCsv(categoryNames)).append(",")
-               .append(escapeCsv(accountName)).append(",")
-               .append(escapeCsv(observacoes)).append("\n");
-        }
-        
-        // Incomes
-        for (Receita receita : incomes) {
-            Conta conta = accountRepository.buscarConta(receita.getIdConta());
-            String accountName = (conta != null && conta.getIdUsuario() == userId) ? conta.getNome() : "Conta não encontrada";
-            
-            csv.append("Receita,")
-               .append(escapeCsv(receita.getDescricao())).append(",")
-               .append(receita.getValor()).append(",")
-               .append(receita.getData()).append(",")
-               .append("Receita,")
-               .append(escapeCsv(accountName)).append(",")
-               .append("").append("\n");
-        }
+        reportRepository.exportarLinhas(userId, startDate, endDate, (tipo, descricao, valor, data, categorias, conta, observacoes) ->
+            csv.append(tipo).append(",")
+               .append(escapeCsv(descricao)).append(",")
+               .append(valor).append(",")
+               .append(data).append(",")
+               .append(escapeCsv(categorias)).append(",")
+               .append(escapeCsv(conta)).append(",")
+               .append(escapeCsv(observacoes)).append("\n"));
         
         String filename = "relatorio_" + startDate + "_" + endDate + ".csv";
         
@@ -267,8 +189,7 @@ public class ReportsHandler implements HttpHandler {
         }
     }
     
-    private void exportToXLSX(HttpExchange exchange, List<Gasto> expenses, List<Receita> incomes, 
-                             LocalDate startDate, LocalDate endDate, int userId) throws IOException {
+    private void exportToXLSX(HttpExchange exchange, LocalDate startDate, LocalDate endDate, int userId) throws IOException {
         // Para XLSX, vamos retornar um CSV com extensão .xlsx por simplicidade
         // Em uma implementação real, usaria Apache POI
         StringBuilder xlsx = new StringBuilder();
@@ -276,44 +197,14 @@ public class ReportsHandler implements HttpHandler {
         // Header
         xlsx.append("Tipo\tDescrição\tValor\tData\tCategoria\tConta\tObservações\n");
         
-        // Expenses
-        for (Gasto gasto : expenses) {
-            List<Categoria> categorias = categoryRepository.buscarCategoriasDoGasto(gasto.getIdGasto());
-            String categoryNames = categorias.stream()
-                .map(Categoria::getNome)
-                .reduce((a, b) -> a + ", " + b)
-                .orElse("Sem categoria");
-            
-            Conta conta = accountRepository.buscarConta(gasto.getIdConta());
-            String accountName = (conta != null && conta.getIdUsuario() == userId) ? conta.getNome() : "Conta não encontrada";
-            
-            String observacoes = "";
-            if (gasto.getObservacoes() != null && gasto.getObservacoes().length > 0) {
-                observacoes = String.join("; ", gasto.getObservacoes());
-            }
-            
-            xlsx.append("Gasto\t")
-               .append(gasto.getDescricao()).append("\t")
-               .append(gasto.getValor()).append("\t")
-               .append(gasto.getData()).append("\t")
-               .append(categoryNames).append("\t")
-               .append(accountName).append("\t")
-               .append(observacoes).append("\n");
-        }
-        
-        // Incomes
-        for (Receita receita : incomes) {
-            Conta conta = accountRepository.buscarConta(receita.getIdConta());
-            String accountName = (conta != null && conta.getIdUsuario() == userId) ? conta.getNome() : "Conta não encontrada";
-            
-            xlsx.append("Receita\t")
-               .append(receita.getDescricao()).append("\t")
-               .append(receita.getValor()).append("\t")
-               .append(receita.getData()).append("\t")
-               .append("Receita\t")
-               .append(accountName).append("\t")
-               .append("").append("\n");
-        }
+        reportRepository.exportarLinhas(userId, startDate, endDate, (tipo, descricao, valor, data, categorias, conta, observacoes) ->
+            xlsx.append(tipo).append("\t")
+               .append(descricao).append("\t")
+               .append(valor).append("\t")
+               .append(data).append("\t")
+               .append(categorias).append("\t")
+               .append(conta).append("\t")
+               .append(observacoes).append("\n"));
         
         String filename = "relatorio_" + startDate + "_" + endDate + ".xlsx";
         
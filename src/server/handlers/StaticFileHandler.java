@@ -2,12 +2,26 @@ package server.handlers;
 
 import com.sun.net.httpserver.*;
 import java.io.*;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import server.services.StaticAssetStore;
 import server.utils.ResponseUtil;
 
 /**
  * Handler para servir arquivos estáticos (HTML, CSS, JS)
+ * Os arquivos ficam em memória (StaticAssetStore) com GZIP pré-calculado,
+ * ETag forte, Last-Modified e Cache-Control; requisições condicionais recebem 304.
  */
 public class StaticFileHandler implements HttpHandler {
+    private final StaticAssetStore store;
+    
+    public StaticFileHandler() {
+        this(new StaticAssetStore("dist", "."));
+    }
+    
+    public StaticFileHandler(StaticAssetStore store) {
+        this.store = store;
+    }
     
     @Override
     public void handle(HttpExchange exchange) throws IOException {
@@ -19,10 +33,6 @@ public class StaticFileHandler implements HttpHandler {
             return;
         }
         
-        // Check if dist directory exists (React build)
-        File distDir = new File("dist");
-        boolean distExists = distDir.exists() && distDir.isDirectory();
-        
         // Check if path is a static file (has file extension)
         boolean isStaticFile = path.contains(".") && 
             (path.endsWith(".html") || path.endsWith(".js") || path.endsWith(".css") || 
@@ -32,60 +42,26 @@ public class StaticFileHandler implements HttpHandler {
              path.endsWith(".map") || path.endsWith(".ico") || path.startsWith("/assets/"));
         
         try {
-            File file = null;
+            StaticAssetStore.Asset asset = null;
             
-            // If it's a static file, try to serve it
-            if (isStaticFile) {
-                // Try React build directory first if it exists
-                if (distExists) {
-                    File distFile = new File("dist" + path);
-                    if (distFile.exists() && distFile.isFile()) {
-                        file = distFile;
-                    }
-                }
-                
-                // If not found in dist, try root directory
-                if (file == null) {
-                    File rootFile = new File("." + path);
-                    if (rootFile.exists() && rootFile.isFile()) {
-                        file = rootFile;
-                    }
-                }
+            // Com dist/ qualquer arquivo do build pode ser servido; na raiz apenas extensões conhecidas
+            if (store.isPreloaded() || isStaticFile) {
+                asset = store.get(path);
+            }
+            
+            // Arquivos com hash do Vite que não existem mais (deploy novo) não devem virar index.html
+            if (asset == null && path.startsWith("/assets/")) {
+                ResponseUtil.sendErrorResponse(exchange, 404, "Arquivo não encontrado");
+                return;
             }
             
             // If not a static file or file not found, serve index.html for SPA routing
-            if (file == null) {
-                if (distExists) {
-                    File distIndex = new File("dist/index.html");
-                    if (distIndex.exists()) {
-                        file = distIndex;
-                    }
-                }
-                if (file == null) {
-                    File rootIndex = new File("./index.html");
-                    if (rootIndex.exists()) {
-                        file = rootIndex;
-                    }
-                }
+            if (asset == null) {
+                asset = store.get("/index.html");
             }
             
-            if (file != null && file.exists() && file.isFile()) {
-                // Always serve index.html as HTML, even if path doesn't end with .html
-                String contentType = file.getName().equals("index.html") 
-                    ? "text/html; charset=utf-8" 
-                    : getContentType(path);
-                exchange.getResponseHeaders().set("Content-Type", contentType);
-                exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
-                exchange.sendResponseHeaders(200, file.length());
-                
-                try (FileInputStream fis = new FileInputStream(file);
-                     OutputStream os = exchange.getResponseBody()) {
-                    byte[] buffer = new byte[1024];
-                    int bytesRead;
-                    while ((bytesRead = fis.read(buffer)) != -1) {
-                        os.write(buffer, 0, bytesRead);
-                    }
-                }
+            if (asset != null) {
+                sendAsset(exchange, asset);
             } else {
                 // File not found
                 ResponseUtil.sendErrorResponse(exchange, 404, "Arquivo não encontrado");
@@ -96,20 +72,74 @@ public class StaticFileHandler implements HttpHandler {
         }
     }
     
-    private String getContentType(String path) {
-        if (path.endsWith(".html")) return "text/html; charset=utf-8";
-        if (path.endsWith(".css")) return "text/css; charset=utf-8";
-        if (path.endsWith(".js")) return "application/javascript; charset=utf-8";
-        if (path.endsWith(".json")) return "application/json; charset=utf-8";
-        if (path.endsWith(".webmanifest")) return "application/manifest+json; charset=utf-8";
-        if (path.endsWith(".png")) return "image/png";
-        if (path.endsWith(".jpg") || path.endsWith(".jpeg")) return "image/jpeg";
-        if (path.endsWith(".svg")) return "image/svg+xml";
-        if (path.endsWith(".woff")) return "font/woff";
-        if (path.endsWith(".woff2")) return "font/woff2";
-        if (path.endsWith(".ttf")) return "font/ttf";
-        if (path.endsWith(".map")) return "application/json";
-        return "text/plain; charset=utf-8";
+    private void sendAsset(HttpExchange exchange, StaticAssetStore.Asset asset) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", asset.contentType);
+        headers.set("Access-Control-Allow-Origin", "*");
+        headers.set("ETag", asset.etag);
+        headers.set("Last-Modified", asset.lastModified);
+        headers.set("Cache-Control", asset.cacheControl);
+        if (asset.gzipContent != null) {
+            headers.set("Vary", "Accept-Encoding");
+        }
+        
+        if (isNotModified(exchange, asset)) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        
+        byte[] body = asset.content;
+        if (asset.gzipContent != null && acceptsGzip(exchange)) {
+            body = asset.gzipContent;
+            headers.set("Content-Encoding", "gzip");
+        }
+        
+        if ("HEAD".equalsIgnoreCase(exchange.getRequestMethod())) {
+            headers.set("Content-Length", String.valueOf(body.length));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+    
+    /**
+     * Verifica If-None-Match (prioritário) e If-Modified-Since
+     */
+    private boolean isNotModified(HttpExchange exchange, StaticAssetStore.Asset asset) {
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                String candidate = tag.trim();
+                if (candidate.startsWith("W/")) {
+                    candidate = candidate.substring(2);
+                }
+                if (candidate.equals("*") || candidate.equals(asset.etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+        if (ifModifiedSince != null) {
+            try {
+                long since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+                return asset.lastModifiedEpochSecond <= since;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+        return false;
+    }
+    
+    private boolean acceptsGzip(HttpExchange exchange) {
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        return acceptEncoding != null && acceptEncoding.contains("gzip");
     }
 }
-
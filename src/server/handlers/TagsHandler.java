@@ -38,6 +38,10 @@ public class TagsHandler implements HttpHandler {
             // Isso previne que usuários vejam tags de outros usuários
             int userId = AuthUtil.requireUserId(exchange);
             
+            if (DataVersion.checkNotModified(exchange, DataVersion.etag(userId, DataVersion.Entity.TAGS))) {
+                return;
+            }
+            
             List<Tag> tags = tagRepository.buscarTagsPorUsuario(userId);
             List<Map<String, Object>> tagList = new ArrayList<>();
             
@@ -14,11 +14,16 @@ public class TransactionsHandler implements HttpHandler {
     private final ExpenseRepository expenseRepository;
     private final IncomeRepository incomeRepository;
     private final TagRepository tagRepository;
+    private final TransactionRepository transactionRepository;
+
+    private static final int DEFAULT_LIMIT = 12;
+    private static final int MAX_LIMIT = 1000;
 
     public TransactionsHandler() {
         this.expenseRepository = new ExpenseRepository();
         this.incomeRepository = new IncomeRepository();
         this.tagRepository = new TagRepository();
+        this.transactionRepository = new TransactionRepository();
     }
 
     @Override
@@ -33,12 +38,19 @@ public class TransactionsHandler implements HttpHandler {
             // Isso previne que usuários vejam transações de outros usuários
             int userId = AuthUtil.requireUserId(exchange);
             
+            // A listagem inclui nomes de categorias e tags e os dias de fechamento/pagamento das contas
+            String etag = DataVersion.etag(userId, DataVersion.Entity.TRANSACTIONS,
+                DataVersion.Entity.CATEGORIES, DataVersion.Entity.TAGS, DataVersion.Entity.ACCOUNTS);
+            if (DataVersion.checkNotModified(exchange, etag)) {
+                return;
+            }
+            
             String categoryIdParam = RequestUtil.getQueryParam(exchange, "categoryId");
             String dateStartParam = RequestUtil.getQueryParam(exchange, "dateStart");
             String dateEndParam = RequestUtil.getQueryParam(exchange, "dateEnd");
             String typeParam = RequestUtil.getQueryParam(exchange, "type");
             String limitParam = RequestUtil.getQueryParam(exchange, "limit");
-            String offsetParam = RequestUtil.getQueryParam(exchange, "offset");
+            String cursorParam = RequestUtil.getQueryParam(exchange, "cursor");
             Integer categoryId = (categoryIdParam != null && !categoryIdParam.isEmpty()) 
                 ? Integer.parseInt(categoryIdParam) : null;
             LocalDate dateStart = (dateStartParam != null && !dateStartParam.isEmpty()) 
@@ -47,19 +59,35 @@ public class TransactionsHandler implements HttpHandler {
                 ? LocalDate.parse(dateEndParam) : null;
             String type = (typeParam != null && !typeParam.isEmpty()) ? typeParam : null;
             
-            // Paginação: padrão 12 itens, offset 0
-            int limit = (limitParam != null && !limitParam.isEmpty()) ? Integer.parseInt(limitParam) : 12;
-            int offset = (offsetParam != null && !offsetParam.isEmpty()) ? Integer.parseInt(offsetParam) : 0;
+            // Paginação por cursor: padrão 12 itens; o cursor é o nextCursor da página anterior
+            int limit = (limitParam != null && !limitParam.isEmpty()) ? Integer.parseInt(limitParam) : DEFAULT_LIMIT;
+            limit = Math.max(1, Math.min(limit, MAX_LIMIT));
+            TransactionRepository.Chave cursor;
+            try {
+                cursor = (cursorParam != null && !cursorParam.isEmpty())
+                    ? TransactionRepository.Chave.fromCursor(cursorParam) : null;
+            } catch (IllegalArgumentException e) {
+                ResponseUtil.sendErrorResponse(exchange, 400, e.getMessage());
+                return;
+            }
             
-            // Busca um lote maior para mesclar gastos e receitas por data; assim a primeira página
-            // inclui tanto parcelas quanto compras únicas (que antes podiam ficar só no "carregar mais").
-            int fetchSize = Math.max(limit * 4, offset + limit);
-            fetchSize = Math.min(fetchSize, 200); // cap para não sobrecarregar
+            // Chaves da página já mescladas e ordenadas no banco; uma a mais indica se há próxima página
+            List<TransactionRepository.Chave> chaves = transactionRepository.buscarPagina(
+                userId, categoryId, dateStart, dateEnd, type, cursor, limit + 1);
+            boolean hasMore = chaves.size() > limit;
+            if (hasMore) {
+                chaves = chaves.subList(0, limit);
+            }
             
-            List<Gasto> expenses = expenseRepository.buscarGastosComFiltros(userId, categoryId, dateStart, dateEnd, type, fetchSize, 0);
-            List<Receita> incomes = (categoryId == null) 
-                ? incomeRepository.buscarReceitasComFiltros(userId, dateStart, dateEnd, type, fetchSize, 0) 
-                : new ArrayList<>();
+            List<Integer> idsPaginaGastos = new ArrayList<>();
+            List<Integer> idsPaginaReceitas = new ArrayList<>();
+            for (TransactionRepository.Chave chave : chaves) {
+                (chave.isReceita() ? idsPaginaReceitas : idsPaginaGastos).add(chave.getId());
+            }
+            Map<Integer, Gasto> gastosPagina = expenseRepository.buscarGastosPorIds(userId, idsPaginaGastos);
+            Map<Integer, Receita> receitasPagina = incomeRepository.buscarReceitasPorIds(userId, idsPaginaReceitas);
+            List<Gasto> expenses = new ArrayList<>(gastosPagina.values());
+            List<Receita> incomes = new ArrayList<>(receitasPagina.values());
             
             List<Integer> idsGastos = new ArrayList<>();
             for (Gasto gasto : expenses) {
@@ -107,7 +135,8 @@ public class TransactionsHandler implements HttpHandler {
                 }
             }
             
-            List<Map<String, Object>> transactions = new ArrayList<>();
+            Map<Integer, Map<String, Object>> transacoesGastos = new HashMap<>();
+            Map<Integer, Map<String, Object>> transacoesReceitas = new HashMap<>();
             
             for (Gasto gasto : expenses) {
                 List<Categoria> categorias = categoriasPorGasto.getOrDefault(gasto.getIdGasto(), new ArrayList<>());
@@ -181,7 +210,7 @@ public class TransactionsHandler implements HttpHandler {
                     boolean foiPaga = !gasto.isAtivo();
                     transaction.put("parcelaPaga", foiPaga);
                 }
-                transactions.add(transaction);
+                transacoesGastos.put(gasto.getIdGasto(), transaction);
             }
             
             for (Receita receita : incomes) {
@@ -222,25 +251,27 @@ public class TransactionsHandler implements HttpHandler {
                         transaction.put("valorTotalGrupo", totalGrupo);
                     }
                 }
-                transactions.add(transaction);
+                transacoesReceitas.put(receita.getIdReceita(), transaction);
             }
             
-            transactions.sort((a, b) -> ((String) b.get("date")).compareTo((String) a.get("date")));
-            
-            // Aplica offset/limit na lista mesclada para retornar só a página pedida
-            int fromIndex = Math.min(offset, transactions.size());
-            int toIndex = Math.min(offset + limit, transactions.size());
-            List<Map<String, Object>> pagedData = (fromIndex < toIndex)
-                ? new ArrayList<>(transactions.subList(fromIndex, toIndex))
-                : new ArrayList<>();
-            boolean hasMore = transactions.size() > offset + limit;
+            // Mantém a ordem das chaves (data, tipo, id decrescentes)
+            List<Map<String, Object>> pagedData = new ArrayList<>();
+            for (TransactionRepository.Chave chave : chaves) {
+                Map<String, Object> transaction = chave.isReceita()
+                    ? transacoesReceitas.get(chave.getId())
+                    : transacoesGastos.get(chave.getId());
+                if (transaction != null) {
+                    pagedData.add(transaction);
+                }
+            }
+            String nextCursor = hasMore ? chaves.get(chaves.size() - 1).toCursor() : null;
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("data", pagedData);
             response.put("hasMore", hasMore);
+            response.put("nextCursor", nextCursor);
             response.put("limit", limit);
-            response.put("offset", offset);
             
             ResponseUtil.sendJsonResponse(exchange, 200, response);
         } catch (Exception e) {
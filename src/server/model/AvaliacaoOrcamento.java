@@ -0,0 +1,57 @@
+package server.model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Situação de um orçamento na janela do seu período (mês ou ano corrente)
+ */
+public class AvaliacaoOrcamento implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final Orcamento orcamento;
+    private final String nomeCategoria;
+    private final LocalDate inicioPeriodo;
+    private final LocalDate fimPeriodo;
+    private final double valorGasto;
+    private int diasDecorridos;
+    private int diasTotais;
+    private double gastoEsperado;
+    private double gastoProjetado;
+
+    public AvaliacaoOrcamento(Orcamento orcamento, String nomeCategoria, LocalDate inicioPeriodo,
+                              LocalDate fimPeriodo, double valorGasto) {
+        this.orcamento = orcamento;
+        this.nomeCategoria = nomeCategoria;
+        this.inicioPeriodo = inicioPeriodo;
+        this.fimPeriodo = fimPeriodo;
+        this.valorGasto = valorGasto;
+    }
+
+    public Orcamento getOrcamento() { return orcamento; }
+    public String getNomeCategoria() { return nomeCategoria; }
+    public LocalDate getInicioPeriodo() { return inicioPeriodo; }
+    public LocalDate getFimPeriodo() { return fimPeriodo; }
+    public double getValorGasto() { return valorGasto; }
+
+    public int getDiasDecorridos() { return diasDecorridos; }
+    public void setDiasDecorridos(int diasDecorridos) { this.diasDecorridos = diasDecorridos; }
+
+    public int getDiasTotais() { return diasTotais; }
+    public void setDiasTotais(int diasTotais) { this.diasTotais = diasTotais; }
+
+    /** Quanto já deveria ter sido gasto até hoje em ritmo uniforme */
+    public double getGastoEsperado() { return gastoEsperado; }
+    public void setGastoEsperado(double gastoEsperado) { this.gastoEsperado = gastoEsperado; }
+
+    /** Gasto ao fim do período mantendo o ritmo atual */
+    public double getGastoProjetado() { return gastoProjetado; }
+    public void setGastoProjetado(double gastoProjetado) { this.gastoProjetado = gastoProjetado; }
+
+    public double getSaldoRestante() {
+        return orcamento.getValorPlanejado() - valorGasto;
+    }
+
+    public boolean isDentroDoRitmo() {
+        return gastoProjetado <= orcamento.getValorPlanejado();
+    }
+}
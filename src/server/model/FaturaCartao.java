@@ -0,0 +1,32 @@
+package server.model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Valores de uma fatura de cartão de crédito (identificada pela data de pagamento)
+ */
+public class FaturaCartao implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final int idConta;
+    private final LocalDate vencimento;
+    private final double valorLancado;
+    private final double valorPago;
+
+    public FaturaCartao(int idConta, LocalDate vencimento, double valorLancado, double valorPago) {
+        this.idConta = idConta;
+        this.vencimento = vencimento;
+        this.valorLancado = valorLancado;
+        this.valorPago = valorPago;
+    }
+
+    public int getIdConta() { return idConta; }
+    public LocalDate getVencimento() { return vencimento; }
+    public double getValorLancado() { return valorLancado; }
+    public double getValorPago() { return valorPago; }
+
+    /** Valor ainda a pagar (nunca negativo) */
+    public double getValorPendente() {
+        return Math.max(0, valorLancado - valorPago);
+    }
+}
@@ -0,0 +1,124 @@
+package server.model;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Importação de transações executada em segundo plano
+ * Atualizada pela thread que importa e lida pelas requisições de acompanhamento.
+ */
+public class ImportJob {
+    public enum Origem { CSV, CONFIRMACAO }
+
+    public static final String PENDENTE = "PENDENTE";
+    public static final String EM_ANDAMENTO = "EM_ANDAMENTO";
+    public static final String CONCLUIDO = "CONCLUIDO";
+    public static final String CONCLUIDO_COM_ERROS = "CONCLUIDO_COM_ERROS";
+    public static final String FALHOU = "FALHOU";
+
+    // Mensagens de erro guardadas por importação (as demais são apenas contadas)
+    public static final int MAX_MENSAGENS_ERRO = 200;
+
+    private int idImportacao;
+    private final int idUsuario;
+    private final Origem origem;
+    private String arquivo;
+    private String dono;
+    private String status = PENDENTE;
+    private int ultimaLinha;
+    private int linhasLidas;
+    private int importadas;
+    private int erros;
+    private final List<String> mensagens = new ArrayList<>();
+    private LocalDateTime criadoEm = LocalDateTime.now();
+    private LocalDateTime concluidoEm;
+
+    public ImportJob(int idUsuario, Origem origem, String arquivo) {
+        this.idUsuario = idUsuario;
+        this.origem = origem;
+        this.arquivo = arquivo;
+    }
+
+    public synchronized int getIdImportacao() { return idImportacao; }
+    public synchronized void setIdImportacao(int idImportacao) { this.idImportacao = idImportacao; }
+    public int getIdUsuario() { return idUsuario; }
+    public Origem getOrigem() { return origem; }
+    public synchronized String getArquivo() { return arquivo; }
+    public synchronized void setArquivo(String arquivo) { this.arquivo = arquivo; }
+    /** Instância que executa a importação */
+    public synchronized String getDono() { return dono; }
+    public synchronized void setDono(String dono) { this.dono = dono; }
+    public synchronized String getStatus() { return status; }
+    public synchronized void setStatus(String status) { this.status = status; }
+
+    /** Última linha (ou transação) já gravada ou descartada; a retomada continua a partir dela */
+    public synchronized int getUltimaLinha() { return ultimaLinha; }
+    public synchronized int getLinhasLidas() { return linhasLidas; }
+    public synchronized int getImportadas() { return importadas; }
+    public synchronized int getErros() { return erros; }
+    public synchronized List<String> getMensagens() { return new ArrayList<>(mensagens); }
+    public synchronized LocalDateTime getCriadoEm() { return criadoEm; }
+    public synchronized void setCriadoEm(LocalDateTime criadoEm) { this.criadoEm = criadoEm; }
+    public synchronized LocalDateTime getConcluidoEm() { return concluidoEm; }
+
+    public synchronized boolean isAtivo() {
+        return PENDENTE.equals(status) || EM_ANDAMENTO.equals(status);
+    }
+
+    /**
+     * Restaura o estado salvo no último lote confirmado
+     */
+    public synchronized void restaurar(String status, int ultimaLinha, int linhasLidas, int importadas, int erros,
+                                       List<String> mensagens, LocalDateTime concluidoEm) {
+        this.status = status;
+        this.ultimaLinha = ultimaLinha;
+        this.linhasLidas = linhasLidas;
+        this.importadas = importadas;
+        this.erros = erros;
+        this.mensagens.clear();
+        this.mensagens.addAll(mensagens);
+        this.concluidoEm = concluidoEm;
+    }
+
+    public synchronized void linhaLida() {
+        linhasLidas++;
+    }
+
+    public synchronized void erro(String mensagem) {
+        erros++;
+        if (mensagens.size() < MAX_MENSAGENS_ERRO) {
+            mensagens.add(mensagem);
+        }
+    }
+
+    /**
+     * Avança o ponto de retomada após o commit de um lote
+     */
+    public synchronized void avancar(int ultimaLinha, int gravadas) {
+        this.ultimaLinha = ultimaLinha;
+        this.importadas += gravadas;
+    }
+
+    public synchronized void concluir(String status) {
+        this.status = status;
+        this.concluidoEm = LocalDateTime.now();
+    }
+
+    public synchronized Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("jobId", idImportacao);
+        map.put("source", origem.name());
+        map.put("status", status);
+        map.put("linesRead", linhasLidas);
+        map.put("imported", importadas);
+        map.put("errorCount", erros);
+        map.put("errors", new ArrayList<>(mensagens));
+        map.put("createdAt", criadoEm.toString());
+        map.put("finishedAt", concluidoEm != null ? concluidoEm.toString() : null);
+        map.put("done", !isAtivo());
+        return map;
+    }
+}
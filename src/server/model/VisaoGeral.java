@@ -0,0 +1,113 @@
+package server.model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Números do painel de um usuário em um instante (imutável, pode ser compartilhado entre requisições)
+ */
+public final class VisaoGeral implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Fatura aberta de um cartão de crédito na data de referência
+     */
+    public static final class Fatura implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final int idConta;
+        private final String nome;
+        private final LocalDate ultimoFechamento;
+        private final LocalDate proximoFechamento;
+        private final LocalDate proximoPagamento;
+        private final double valorFatura;
+        private final double totalPago;
+
+        public Fatura(int idConta, String nome, LocalDate ultimoFechamento, LocalDate proximoFechamento,
+                      LocalDate proximoPagamento, double valorFatura, double totalPago) {
+            this.idConta = idConta;
+            this.nome = nome;
+            this.ultimoFechamento = ultimoFechamento;
+            this.proximoFechamento = proximoFechamento;
+            this.proximoPagamento = proximoPagamento;
+            this.valorFatura = valorFatura;
+            this.totalPago = totalPago;
+        }
+
+        public int getIdConta() { return idConta; }
+        public String getNome() { return nome; }
+        public LocalDate getUltimoFechamento() { return ultimoFechamento; }
+        public LocalDate getProximoFechamento() { return proximoFechamento; }
+        public LocalDate getProximoPagamento() { return proximoPagamento; }
+        public double getValorFatura() { return valorFatura; }
+        public double getTotalPago() { return totalPago; }
+
+        public double getValorAPagar() {
+            return Math.max(0, valorFatura - totalPago);
+        }
+    }
+
+    /**
+     * Total gasto em uma categoria
+     */
+    public static final class TotalCategoria implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final int idCategoria;
+        private final String nome;
+        private final double total;
+
+        public TotalCategoria(int idCategoria, String nome, double total) {
+            this.idCategoria = idCategoria;
+            this.nome = nome;
+            this.total = total;
+        }
+
+        public int getIdCategoria() { return idCategoria; }
+        public String getNome() { return nome; }
+        public double getTotal() { return total; }
+    }
+
+    private final LocalDate dataReferencia;
+    private final double totalReceitas;
+    private final double totalGastos;
+    private final double saldoContasLiquidas;
+    private final double totalCreditoCartoes;
+    private final double totalSaldoContas;
+    private final List<Integer> contasInvestimento;
+    private final List<Fatura> faturas;
+    private final List<TotalCategoria> categorias;
+
+    public VisaoGeral(LocalDate dataReferencia, double totalReceitas, double totalGastos, double saldoContasLiquidas,
+                      double totalCreditoCartoes, double totalSaldoContas, List<Integer> contasInvestimento,
+                      List<Fatura> faturas, List<TotalCategoria> categorias) {
+        this.dataReferencia = dataReferencia;
+        this.totalReceitas = totalReceitas;
+        this.totalGastos = totalGastos;
+        this.saldoContasLiquidas = saldoContasLiquidas;
+        this.totalCreditoCartoes = totalCreditoCartoes;
+        this.totalSaldoContas = totalSaldoContas;
+        this.contasInvestimento = Collections.unmodifiableList(contasInvestimento);
+        this.faturas = Collections.unmodifiableList(faturas);
+        this.categorias = Collections.unmodifiableList(categorias);
+    }
+
+    public LocalDate getDataReferencia() { return dataReferencia; }
+    public double getTotalReceitas() { return totalReceitas; }
+    public double getTotalGastos() { return totalGastos; }
+
+    /** Saldo das contas corrente, dinheiro e poupança */
+    public double getSaldoContasLiquidas() { return saldoContasLiquidas; }
+
+    /** Saldo disponível = contas corrente, dinheiro e poupança menos os gastos */
+    public double getSaldoDisponivel() { return saldoContasLiquidas - totalGastos; }
+
+    public double getTotalCreditoCartoes() { return totalCreditoCartoes; }
+
+    /** Saldo das contas exceto cartões e investimentos */
+    public double getTotalSaldoContas() { return totalSaldoContas; }
+
+    public List<Integer> getContasInvestimento() { return contasInvestimento; }
+    public List<Fatura> getFaturas() { return faturas; }
+    public List<TotalCategoria> getCategorias() { return categorias; }
+}
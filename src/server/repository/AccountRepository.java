@@ -1,9 +1,11 @@
 package server.repository;
 
 import server.database.DatabaseConnection;
+import server.database.SchemaCapabilities;
 import server.model.Conta;
 import server.model.Investimento;
 import server.services.QuoteService;
+import server.utils.DataVersion;
 import server.validation.InputValidator;
 import server.validation.ValidationResult;
 import java.sql.*;
@@ -92,7 +94,7 @@ public class AccountRepository {
             conn = getConnection();
             conn.setAutoCommit(false);
 
-            if (hasCartaoCreditoColumns(conn) && (diaFechamento != null || diaPagamento != null)) {
+            if (hasCartaoCreditoColumns() && (diaFechamento != null || diaPagamento != null)) {
                 String sql = "INSERT INTO contas (nome, tipo, saldo_atual, id_usuario, dia_fechamento, dia_pagamento) VALUES (?, ?, ?, ?, ?, ?) RETURNING id_conta";
                 try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
                     pstmt.setString(1, nome);
@@ -106,16 +108,10 @@ public class AccountRepository {
                     if (rs.next()) {
                         int idConta = rs.getInt(1);
                         conn.commit();
+                        DataVersion.bump(idUsuario, DataVersion.Entity.ACCOUNTS);
                         return idConta;
                     }
                     throw new RuntimeException("Erro ao cadastrar conta");
-                } catch (SQLException e) {
-                    if (e.getMessage().contains("dia_fechamento") || e.getMessage().contains("dia_pagamento")) {
-                        // Fallback
-                    } else {
-                        try { conn.rollback(); } catch (SQLException ex) {}
-                        throw new RuntimeException("Erro ao cadastrar conta: " + e.getMessage(), e);
-                    }
                 }
             }
             
@@ -130,6 +126,7 @@ public class AccountRepository {
                 if (rs.next()) {
                     int idConta = rs.getInt(1);
                     conn.commit();
+                    DataVersion.bump(idUsuario, DataVersion.Entity.ACCOUNTS);
                     return idConta;
                 }
                 throw new RuntimeException("Erro ao cadastrar conta");
@@ -151,7 +148,7 @@ public class AccountRepository {
     }
     
     public Conta buscarConta(int idConta) {
-        String sql = "SELECT id_conta, nome, tipo, saldo_atual, id_usuario, ativo FROM contas WHERE id_conta = ? AND ativo = TRUE";
+        String sql = "SELECT " + colunasConta() + " FROM contas WHERE id_conta = ? AND ativo = TRUE";
         
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
@@ -159,7 +156,7 @@ public class AccountRepository {
             ResultSet rs = pstmt.executeQuery();
             
             if (rs.next()) {
-                return mapConta(rs, conn);
+                return mapConta(rs);
             }
             return null;
         } catch (SQLException e) {
@@ -168,7 +165,7 @@ public class AccountRepository {
     }
     
     public List<Conta> buscarContasPorUsuario(int idUsuario) {
-        String sql = "SELECT id_conta, nome, tipo, saldo_atual, id_usuario, ativo FROM contas WHERE id_usuario = ? AND ativo = TRUE ORDER BY nome";
+        String sql = "SELECT " + colunasConta() + " FROM contas WHERE id_usuario = ? AND ativo = TRUE ORDER BY nome";
         List<Conta> contas = new ArrayList<>();
         
         try (Connection conn = getConnection();
@@ -177,7 +174,7 @@ public class AccountRepository {
             ResultSet rs = pstmt.executeQuery();
             
             while (rs.next()) {
-                contas.add(mapConta(rs, conn));
+                contas.add(mapConta(rs));
             }
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao buscar contas: " + e.getMessage(), e);
@@ -186,7 +183,7 @@ public class AccountRepository {
     }
     
     public List<Conta> buscarContasPorTipo(String tipo) {
-        String sql = "SELECT id_conta, nome, tipo, saldo_atual, id_usuario, ativo FROM contas WHERE tipo = ? AND ativo = TRUE ORDER BY nome";
+        String sql = "SELECT " + colunasConta() + " FROM contas WHERE tipo = ? AND ativo = TRUE ORDER BY nome";
         List<Conta> contas = new ArrayList<>();
         
         try (Connection conn = getConnection();
@@ -195,7 +192,7 @@ public class AccountRepository {
             ResultSet rs = pstmt.executeQuery();
             
             while (rs.next()) {
-                contas.add(mapConta(rs, conn));
+                contas.add(mapConta(rs));
             }
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao buscar contas por tipo: " + e.getMessage(), e);
@@ -233,7 +230,7 @@ public class AccountRepository {
             boolean contaAtualEraCartao = contaAtual.isCartaoCredito();
             
             // Se for cartão de crédito (atual ou anterior), preserva ou atualiza campos de cartão
-            if (hasCartaoCreditoColumns(conn) && (isCartao || contaAtualEraCartao)) {
+            if (hasCartaoCreditoColumns() && (isCartao || contaAtualEraCartao)) {
                 // Se os valores não foram fornecidos, preserva os valores existentes
                 Integer diaFechamentoFinal = diaFechamento;
                 Integer diaPagamentoFinal = diaPagamento;
@@ -255,12 +252,8 @@ public class AccountRepository {
                     pstmt.setInt(6, idConta);
                     pstmt.executeUpdate();
                     conn.commit();
+                    DataVersion.bump(contaAtual.getIdUsuario(), DataVersion.Entity.ACCOUNTS);
                     return;
-                } catch (SQLException e) {
-                    if (!e.getMessage().contains("dia_fechamento") && !e.getMessage().contains("dia_pagamento")) {
-                        try { conn.rollback(); } catch (SQLException ex) {}
-                        throw new RuntimeException("Erro ao atualizar conta: " + e.getMessage(), e);
-                    }
                 }
             }
             
@@ -273,6 +266,7 @@ public class AccountRepository {
                 pstmt.setInt(4, idConta);
                 pstmt.executeUpdate();
                 conn.commit();
+                DataVersion.bump(contaAtual.getIdUsuario(), DataVersion.Entity.ACCOUNTS);
             }
         } catch (SQLException e) {
             if (conn != null) try { conn.rollback(); } catch (SQLException ex) {}
@@ -289,15 +283,17 @@ public class AccountRepository {
             conn.setAutoCommit(false);
             
             // Verifica se a conta existe e está ativa
-            String sqlVerificar = "SELECT id_conta, ativo FROM contas WHERE id_conta = ?";
+            String sqlVerificar = "SELECT id_conta, ativo, id_usuario FROM contas WHERE id_conta = ?";
             boolean contaExiste = false;
             boolean contaAtiva = false;
+            int idUsuario = 0;
             try (PreparedStatement pstmt = conn.prepareStatement(sqlVerificar)) {
                 pstmt.setInt(1, idConta);
                 ResultSet rs = pstmt.executeQuery();
                 if (rs.next()) {
                     contaExiste = true;
                     contaAtiva = rs.getBoolean("ativo");
+                    idUsuario = rs.getInt("id_usuario");
                 }
             }
             
@@ -330,18 +326,14 @@ public class AccountRepository {
             
             // Deleta fisicamente todos os grupos de parcelas que referenciam esta conta
             // (tanto ativos quanto inativos, pois a constraint RESTRICT impede a exclusão da conta)
-            // (ignora se a tabela não existir, pois pode ser uma instalação antiga)
-            try {
+            // Instalações antigas sem suporte a parcelas não têm a tabela: um DELETE com erro
+            // abortaria a transação inteira no PostgreSQL
+            if (SchemaCapabilities.has(SchemaCapabilities.Capability.INSTALLMENT_GROUPS)) {
                 String sqlInstallmentGroups = "DELETE FROM installment_groups WHERE id_conta = ?";
                 try (PreparedStatement pstmt = conn.prepareStatement(sqlInstallmentGroups)) {
                     pstmt.setInt(1, idConta);
                     pstmt.executeUpdate();
                 }
-            } catch (SQLException e) {
-                // Ignora erro se a tabela não existir (instalação antiga sem suporte a parcelas)
-                if (!e.getMessage().contains("does not exist") && !e.getMessage().contains("relation") && !e.getMessage().contains("table")) {
-                    throw e; // Re-lança se for outro tipo de erro
-                }
             }
             
             // Agora pode excluir a conta fisicamente
@@ -355,6 +347,8 @@ public class AccountRepository {
             }
             
             conn.commit();
+            // Receitas, gastos, investimentos e parcelas da conta também foram removidos
+            DataVersion.bumpAll(idUsuario);
         } catch (SQLException e) {
             if (conn != null) {
                 try {
@@ -441,17 +435,19 @@ public class AccountRepository {
             throw new IllegalArgumentException("Valor deve ser maior que zero");
         }
         
-        String sql = "UPDATE contas SET saldo_atual = saldo_atual - ? WHERE id_conta = ?";
+        String sql = "UPDATE contas SET saldo_atual = saldo_atual - ? WHERE id_conta = ? RETURNING id_usuario";
         try (Connection conn = getConnection()) {
             conn.setAutoCommit(false);
             try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setDouble(1, valor);
                 pstmt.setInt(2, idConta);
-                int rowsAffected = pstmt.executeUpdate();
-                if (rowsAffected == 0) {
+                ResultSet rs = pstmt.executeQuery();
+                if (!rs.next()) {
                     throw new RuntimeException("Conta não encontrada ou não foi possível atualizar o saldo");
                 }
+                int idUsuario = rs.getInt(1);
                 conn.commit();
+                DataVersion.bump(idUsuario, DataVersion.Entity.ACCOUNTS);
             } catch (Exception e) {
                 conn.rollback();
                 throw e;
@@ -461,18 +457,18 @@ public class AccountRepository {
         }
     }
 
-    private Boolean hasCartaoCreditoColumnsCache = null;
-    private boolean hasCartaoCreditoColumns(Connection conn) {
-        if (hasCartaoCreditoColumnsCache != null) return hasCartaoCreditoColumnsCache;
-        String sql = "SELECT dia_fechamento, dia_pagamento FROM contas LIMIT 1";
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.executeQuery();
-            hasCartaoCreditoColumnsCache = true;
-            return true;
-        } catch (SQLException e) {
-            hasCartaoCreditoColumnsCache = false;
-            return false;
-        }
+    private boolean hasCartaoCreditoColumns() {
+        return SchemaCapabilities.has(SchemaCapabilities.Capability.CARD_BILLING_DAYS);
+    }
+
+    /**
+     * Colunas lidas por {@link #mapConta}; os dias do cartão vêm na mesma consulta
+     * (nulos em instalações sem essas colunas)
+     */
+    private String colunasConta() {
+        return "id_conta, nome, tipo, saldo_atual, id_usuario, ativo, " + (hasCartaoCreditoColumns()
+            ? "dia_fechamento, dia_pagamento"
+            : "NULL::INTEGER AS dia_fechamento, NULL::INTEGER AS dia_pagamento");
     }
 
     /**
@@ -494,15 +490,31 @@ public class AccountRepository {
             
             // Busca investimentos da conta
             InvestmentRepository investmentRepository = new InvestmentRepository();
-            List<Investimento> investments = investmentRepository.buscarInvestimentosPorConta(idConta);
-            
-            if (investments.isEmpty()) {
-                return 0.0;
-            }
-            
+            return calcularValorAtualInvestimentos(investmentRepository.buscarInvestimentosPorConta(idConta));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return 0.0;
+        }
+    }
+
+    /**
+     * Calcula o valor atual (em BRL) de uma lista de investimentos já carregada
+     */
+    public double calcularValorAtualInvestimentos(List<Investimento> investments) {
+        if (investments.isEmpty()) {
+            return 0.0;
+        }
+        try {
             QuoteService quoteService = QuoteService.getInstance();
             double totalCurrent = 0.0;
             
+            // Cotações atuais em lote; as buscas por investimento abaixo usam o cache
+            List<QuoteService.AssetRef> ativos = new ArrayList<>();
+            for (Investimento inv : investments) {
+                ativos.add(new QuoteService.AssetRef(inv.getNome(), inv.getCategoria()));
+            }
+            quoteService.getCurrentQuotes(ativos);
+            
             for (Investimento inv : investments) {
                 try {
                     double currentValue = 0.0;
@@ -565,7 +577,7 @@ public class AccountRepository {
         }
     }
 
-    private Conta mapConta(ResultSet rs, Connection conn) throws SQLException {
+    private Conta mapConta(ResultSet rs) throws SQLException {
         Conta conta = new Conta(
             rs.getInt("id_conta"),
             rs.getString("nome"),
@@ -575,40 +587,10 @@ public class AccountRepository {
         );
         conta.setAtivo(rs.getBoolean("ativo"));
         
-        if (hasCartaoCreditoColumns(conn)) {
-            try {
-                // Valida se a conexão ainda está válida antes de usar
-                if (conn.isClosed() || !conn.isValid(2)) {
-                    // Se a conexão estiver inválida, retorna a conta sem os dados extras
-                    return conta;
-                }
-                
-                int idConta = conta.getIdConta();
-                String sqlExtra = "SELECT dia_fechamento, dia_pagamento FROM contas WHERE id_conta = ?";
-                try (PreparedStatement pstmtExtra = conn.prepareStatement(sqlExtra)) {
-                    pstmtExtra.setInt(1, idConta);
-                    ResultSet rsExtra = pstmtExtra.executeQuery();
-                    if (rsExtra.next()) {
-                        Object diaFechamentoObj = rsExtra.getObject("dia_fechamento");
-                        if (diaFechamentoObj != null) conta.setDiaFechamento((Integer) diaFechamentoObj);
-                        Object diaPagamentoObj = rsExtra.getObject("dia_pagamento");
-                        if (diaPagamentoObj != null) conta.setDiaPagamento((Integer) diaPagamentoObj);
-                    }
-                }
-            } catch (SQLException e) {
-                // Se a conexão foi resetada ou está quebrada, ignora e retorna conta básica
-                // O HikariCP vai detectar e substituir a conexão na próxima requisição
-                if (e.getMessage() != null && 
-                    (e.getMessage().contains("Connection reset") || 
-                     e.getMessage().contains("broken") ||
-                     e.getMessage().contains("closed"))) {
-                    // Conexão quebrada - retorna conta sem dados extras
-                    return conta;
-                }
-                // Para outros erros SQL, também ignora (comportamento original)
-            }
-        }
+        int diaFechamento = rs.getInt("dia_fechamento");
+        if (!rs.wasNull()) conta.setDiaFechamento(diaFechamento);
+        int diaPagamento = rs.getInt("dia_pagamento");
+        if (!rs.wasNull()) conta.setDiaPagamento(diaPagamento);
         return conta;
     }
 }
-
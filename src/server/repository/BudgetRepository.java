@@ -1,12 +1,16 @@
 package server.repository;
 
 import server.database.DatabaseConnection;
+import server.model.AvaliacaoOrcamento;
 import server.model.Orcamento;
+import server.utils.DataVersion;
 import server.validation.InputValidator;
 import server.validation.ValidationResult;
 import java.sql.*;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 public class BudgetRepository {
 
@@ -64,6 +68,7 @@ public class BudgetRepository {
                 if (rs.next()) {
                     int idOrcamento = rs.getInt(1);
                     conn.commit();
+                    DataVersion.bump(idUsuario, DataVersion.Entity.BUDGETS);
                     return idOrcamento;
                 }
                 throw new RuntimeException("Erro ao cadastrar orçamento");
@@ -103,6 +108,70 @@ public class BudgetRepository {
         return orcamentos;
     }
 
+    /**
+     * Busca os orçamentos ativos do usuário com o gasto da categoria dentro da janela de cada um
+     * Tudo em uma única consulta agrupada, independente da quantidade de orçamentos.
+     * @param janelas período -> {início, fim} (datas inclusivas, alinhadas ao mês)
+     * @param periodoPadrao janela usada para orçamentos com período desconhecido
+     */
+    public List<AvaliacaoOrcamento> buscarGastosDosOrcamentos(int idUsuario, Map<String, LocalDate[]> janelas,
+                                                              String periodoPadrao) {
+        StringBuilder valores = new StringBuilder();
+        for (int i = 0; i < janelas.size(); i++) {
+            valores.append(i == 0 ? "" : ", ").append("(?, ?::date, ?::date)");
+        }
+        // O resumo mensal guarda uma linha por mês; como as janelas são alinhadas ao mês basta filtrar por mes
+        boolean usaResumo = MonthlySummaryRepository.disponivel();
+        String gastos = usaResumo
+            ? "LEFT JOIN resumo_mensal rm ON rm.id_usuario = o.id_usuario AND rm.tipo = 'C' AND rm.ativo = TRUE " +
+              "AND rm.id_categoria = o.id_categoria AND rm.mes BETWEEN o.inicio AND o.fim "
+            : "LEFT JOIN (categoria_gasto cg JOIN gastos g ON g.id_gasto = cg.id_gasto AND g.ativo = TRUE) " +
+              "ON cg.id_categoria = o.id_categoria AND cg.ativo = TRUE AND g.id_usuario = o.id_usuario " +
+              "AND g.data BETWEEN o.inicio AND o.fim ";
+        String sql = "WITH janelas(periodo, inicio, fim) AS (VALUES " + valores + "), " +
+                     "o AS (SELECT o.id_orcamento, o.valor_planejado, o.periodo, o.id_categoria, o.id_usuario, o.ativo, " +
+                     "COALESCE(j.inicio, p.inicio) AS inicio, COALESCE(j.fim, p.fim) AS fim " +
+                     "FROM orcamentos o " +
+                     "JOIN janelas p ON p.periodo = ? " +
+                     "LEFT JOIN janelas j ON j.periodo = UPPER(o.periodo) " +
+                     "WHERE o.id_usuario = ? AND o.ativo = TRUE) " +
+                     "SELECT o.id_orcamento, o.valor_planejado, o.periodo, o.id_categoria, o.id_usuario, o.ativo, " +
+                     "o.inicio, o.fim, c.nome AS nome_categoria, " +
+                     (usaResumo ? "COALESCE(SUM(rm.total), 0)" : "COALESCE(SUM(g.valor), 0)") +
+                     " AS valor_gasto " +
+                     "FROM o " +
+                     "LEFT JOIN categorias c ON c.id_categoria = o.id_categoria AND c.ativo = TRUE " +
+                     gastos +
+                     "GROUP BY o.id_orcamento, o.valor_planejado, o.periodo, o.id_categoria, o.id_usuario, o.ativo, " +
+                     "o.inicio, o.fim, c.nome " +
+                     "ORDER BY o.id_orcamento";
+        List<AvaliacaoOrcamento> avaliacoes = new ArrayList<>();
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int paramIndex = 1;
+            for (Map.Entry<String, LocalDate[]> janela : janelas.entrySet()) {
+                pstmt.setString(paramIndex++, janela.getKey());
+                pstmt.setDate(paramIndex++, Date.valueOf(janela.getValue()[0]));
+                pstmt.setDate(paramIndex++, Date.valueOf(janela.getValue()[1]));
+            }
+            pstmt.setString(paramIndex++, periodoPadrao);
+            pstmt.setInt(paramIndex, idUsuario);
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                avaliacoes.add(new AvaliacaoOrcamento(
+                    mapOrcamento(rs),
+                    rs.getString("nome_categoria"),
+                    rs.getDate("inicio").toLocalDate(),
+                    rs.getDate("fim").toLocalDate(),
+                    rs.getDouble("valor_gasto")
+                ));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar gastos dos orçamentos: " + e.getMessage(), e);
+        }
+        return avaliacoes;
+    }
+
     public void atualizarOrcamento(int idOrcamento, double novoValorPlanejado, String novoPeriodo) {
         validateAmount("Novo valor planejado", novoValorPlanejado);
         if (novoPeriodo != null) {
@@ -111,15 +180,17 @@ public class BudgetRepository {
             if (!enumRes.isValid()) throw new IllegalArgumentException(enumRes.getErrors().get(0));
         }
         
-        String sql = "UPDATE orcamentos SET valor_planejado = ?, periodo = ? WHERE id_orcamento = ?";
+        String sql = "UPDATE orcamentos SET valor_planejado = ?, periodo = ? WHERE id_orcamento = ? RETURNING id_usuario";
         try (Connection conn = getConnection()) {
             conn.setAutoCommit(false);
             try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setDouble(1, novoValorPlanejado);
                 pstmt.setString(2, novoPeriodo);
                 pstmt.setInt(3, idOrcamento);
-                pstmt.executeUpdate();
+                ResultSet rs = pstmt.executeQuery();
+                int idUsuario = rs.next() ? rs.getInt(1) : 0;
                 conn.commit();
+                DataVersion.bump(idUsuario, DataVersion.Entity.BUDGETS);
             } catch (Exception e) {
                 conn.rollback();
                 throw e;
@@ -130,14 +201,16 @@ public class BudgetRepository {
     }
 
     public void excluirOrcamento(int idOrcamento) {
-        String sql = "DELETE FROM orcamentos WHERE id_orcamento = ?";
+        String sql = "DELETE FROM orcamentos WHERE id_orcamento = ? RETURNING id_usuario";
         try (Connection conn = getConnection()) {
             conn.setAutoCommit(false);
             try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setInt(1, idOrcamento);
-                int deleted = pstmt.executeUpdate();
-                if (deleted == 0) throw new IllegalArgumentException("Orçamento não encontrado");
+                ResultSet rs = pstmt.executeQuery();
+                if (!rs.next()) throw new IllegalArgumentException("Orçamento não encontrado");
+                int idUsuario = rs.getInt(1);
                 conn.commit();
+                DataVersion.bump(idUsuario, DataVersion.Entity.BUDGETS);
             } catch (Exception e) {
                 conn.rollback();
                 throw e;
@@ -2,6 +2,7 @@ package server.repository;
 
 import server.database.DatabaseConnection;
 import server.model.Categoria;
+import server.utils.DataVersion;
 import server.validation.InputValidator;
 import server.validation.ValidationResult;
 import java.sql.*;
@@ -36,6 +37,7 @@ public class CategoryRepository {
                 if (rs.next()) {
                     int idCategoria = rs.getInt(1);
                     conn.commit();
+                    DataVersion.bump(idUsuario, DataVersion.Entity.CATEGORIES);
                     return idCategoria;
                 }
                 throw new RuntimeException("Erro ao cadastrar categoria");
@@ -83,6 +85,7 @@ public class CategoryRepository {
             }
             
             conn.commit();
+            DataVersion.bump(idUsuario, DataVersion.Entity.CATEGORIES, DataVersion.Entity.BUDGETS);
             return idCategoria;
         } catch (SQLException e) {
             if (conn != null) try { conn.rollback(); } catch (SQLException ex) {}
@@ -142,14 +145,16 @@ public class CategoryRepository {
 
     public void atualizarCategoria(int idCategoria, String novoNome) {
         validateInput("Nome da categoria", novoNome, 50);
-        String sql = "UPDATE categorias SET nome = ? WHERE id_categoria = ?";
+        String sql = "UPDATE categorias SET nome = ? WHERE id_categoria = ? RETURNING id_usuario";
         try (Connection conn = getConnection()) {
             conn.setAutoCommit(false);
             try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setString(1, novoNome);
                 pstmt.setInt(2, idCategoria);
-                pstmt.executeUpdate();
+                ResultSet rs = pstmt.executeQuery();
+                int idUsuario = rs.next() ? rs.getInt(1) : 0;
                 conn.commit();
+                DataVersion.bump(idUsuario, DataVersion.Entity.CATEGORIES);
             } catch (Exception e) {
                 conn.rollback();
                 throw e;
@@ -160,14 +165,16 @@ public class CategoryRepository {
     }
 
     public void excluirCategoria(int idCategoria) {
-        String sql = "DELETE FROM categorias WHERE id_categoria = ?";
+        String sql = "DELETE FROM categorias WHERE id_categoria = ? RETURNING id_usuario";
         try (Connection conn = getConnection()) {
             conn.setAutoCommit(false);
             try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setInt(1, idCategoria);
-                int deleted = pstmt.executeUpdate();
-                if (deleted == 0) throw new IllegalArgumentException("Categoria não encontrada");
+                ResultSet rs = pstmt.executeQuery();
+                if (!rs.next()) throw new IllegalArgumentException("Categoria não encontrada");
+                int idUsuario = rs.getInt(1);
                 conn.commit();
+                DataVersion.bump(idUsuario, DataVersion.Entity.CATEGORIES, DataVersion.Entity.BUDGETS);
             } catch (Exception e) {
                 conn.rollback();
                 throw e;
@@ -178,10 +185,13 @@ public class CategoryRepository {
     }
 
     public double calcularTotalGastosPorCategoria(int idCategoria) {
-        String sql = "SELECT COALESCE(SUM(g.valor), 0) as total " +
-                     "FROM gastos g " +
-                     "JOIN categoria_gasto cg ON g.id_gasto = cg.id_gasto " +
-                     "WHERE cg.id_categoria = ? AND g.ativo = TRUE AND cg.ativo = TRUE";
+        String sql = MonthlySummaryRepository.disponivel()
+            ? "SELECT COALESCE(SUM(total), 0) as total FROM resumo_mensal " +
+              "WHERE id_categoria = ? AND tipo = 'C' AND ativo = TRUE"
+            : "SELECT COALESCE(SUM(g.valor), 0) as total " +
+              "FROM gastos g " +
+              "JOIN categoria_gasto cg ON g.id_gasto = cg.id_gasto " +
+              "WHERE cg.id_categoria = ? AND g.ativo = TRUE AND cg.ativo = TRUE";
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, idCategoria);
@@ -194,10 +204,13 @@ public class CategoryRepository {
     }
 
     public double calcularTotalGastosPorCategoriaEUsuario(int idCategoria, int idUsuario) {
-        String sql = "SELECT COALESCE(SUM(g.valor), 0) as total " +
-                     "FROM gastos g " +
-                     "JOIN categoria_gasto cg ON g.id_gasto = cg.id_gasto " +
-                     "WHERE cg.id_categoria = ? AND g.id_usuario = ? AND g.ativo = TRUE AND cg.ativo = TRUE";
+        String sql = MonthlySummaryRepository.disponivel()
+            ? "SELECT COALESCE(SUM(total), 0) as total FROM resumo_mensal " +
+              "WHERE id_categoria = ? AND id_usuario = ? AND tipo = 'C' AND ativo = TRUE"
+            : "SELECT COALESCE(SUM(g.valor), 0) as total " +
+              "FROM gastos g " +
+              "JOIN categoria_gasto cg ON g.id_gasto = cg.id_gasto " +
+              "WHERE cg.id_categoria = ? AND g.id_usuario = ? AND g.ativo = TRUE AND cg.ativo = TRUE";
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, idCategoria);
@@ -212,11 +225,15 @@ public class CategoryRepository {
 
     public Map<Integer, Double> calcularTotalGastosPorTodasCategoriasEUsuario(int idUsuario) {
         Map<Integer, Double> totais = new HashMap<>();
-        String sql = "SELECT cg.id_categoria, COALESCE(SUM(g.valor), 0) as total " +
-                     "FROM gastos g " +
-                     "JOIN categoria_gasto cg ON g.id_gasto = cg.id_gasto " +
-                     "WHERE g.id_usuario = ? AND g.ativo = TRUE AND cg.ativo = TRUE " +
-                     "GROUP BY cg.id_categoria";
+        String sql = MonthlySummaryRepository.disponivel()
+            ? "SELECT id_categoria, COALESCE(SUM(total), 0) as total FROM resumo_mensal " +
+              "WHERE id_usuario = ? AND tipo = 'C' AND ativo = TRUE " +
+              "GROUP BY id_categoria"
+            : "SELECT cg.id_categoria, COALESCE(SUM(g.valor), 0) as total " +
+              "FROM gastos g " +
+              "JOIN categoria_gasto cg ON g.id_gasto = cg.id_gasto " +
+              "WHERE g.id_usuario = ? AND g.ativo = TRUE AND cg.ativo = TRUE " +
+              "GROUP BY cg.id_categoria";
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, idUsuario);
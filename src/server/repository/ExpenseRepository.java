@@ -5,6 +5,7 @@ import server.model.Categoria;
 import server.model.Conta;
 import server.model.Gasto;
 import server.utils.CreditCardUtil;
+import server.utils.DataVersion;
 import server.validation.InputValidator;
 import server.validation.ValidationResult;
 import java.sql.*;
@@ -160,6 +161,7 @@ public class ExpenseRepository {
             }
             
             conn.commit();
+            DataVersion.bump(idUsuario, DataVersion.Entity.TRANSACTIONS, DataVersion.Entity.ACCOUNTS);
             return idGasto;
             
         } catch (SQLException e) {
@@ -468,11 +470,10 @@ public class ExpenseRepository {
     
     public List<Gasto> buscarGastosComFiltros(int idUsuario, Integer idCategoria, LocalDate dateStart, LocalDate dateEnd, String type, int limit, int offset) {
         StringBuilder sql = new StringBuilder(
-            "SELECT DISTINCT g.id_gasto, g.descricao, g.valor, g.data, g.frequencia, " +
+            "SELECT g.id_gasto, g.descricao, g.valor, g.data, g.frequencia, " +
             "g.id_usuario, g.id_conta, g.proxima_recorrencia, g.id_gasto_original, g.ativo, " +
             "g.id_grupo_parcela, g.numero_parcela, g.total_parcelas, g.data_entrada_fatura " +
             "FROM gastos g " +
-            "LEFT JOIN categoria_gasto cg ON g.id_gasto = cg.id_gasto AND cg.ativo = TRUE " +
             "WHERE g.id_usuario = ?"
         );
         
@@ -505,7 +506,8 @@ public class ExpenseRepository {
         }
         
         if (idCategoria != null) {
-            sql.append(" AND cg.id_categoria = ?");
+            // EXISTS em vez de JOIN + DISTINCT: cada gasto aparece uma vez sem deduplicar o resultado
+            sql.append(" AND EXISTS (SELECT 1 FROM categoria_gasto cg WHERE cg.id_gasto = g.id_gasto AND cg.ativo = TRUE AND cg.id_categoria = ?)");
             params.add(idCategoria);
         }
         if (dateStart != null && dateEnd != null) {
@@ -560,6 +562,40 @@ public class ExpenseRepository {
         return gastos;
     }
 
+    /**
+     * Busca gastos do usuário pelos ids, sem filtro de ativo (a seleção já foi feita por quem chama)
+     * @return gastos indexados pelo id
+     */
+    public Map<Integer, Gasto> buscarGastosPorIds(int idUsuario, List<Integer> idsGastos) {
+        Map<Integer, Gasto> gastos = new HashMap<>();
+        if (idsGastos == null || idsGastos.isEmpty()) return gastos;
+        
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < idsGastos.size(); i++) {
+            if (i > 0) placeholders.append(",");
+            placeholders.append("?");
+        }
+        String sql = "SELECT id_gasto, descricao, valor, data, frequencia, id_usuario, id_conta, " +
+                    "proxima_recorrencia, id_gasto_original, ativo, " +
+                    "id_grupo_parcela, numero_parcela, total_parcelas, data_entrada_fatura " +
+                    "FROM gastos WHERE id_usuario = ? AND id_gasto IN (" + placeholders + ")";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, idUsuario);
+            for (int i = 0; i < idsGastos.size(); i++) {
+                pstmt.setInt(i + 2, idsGastos.get(i));
+            }
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                Gasto gasto = mapGasto(rs);
+                gastos.put(gasto.getIdGasto(), gasto);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar gastos: " + e.getMessage(), e);
+        }
+        return gastos;
+    }
+
     public void excluirGasto(int idGasto, int idUsuario) {
         Connection conn = null;
         try {
@@ -644,6 +680,7 @@ public class ExpenseRepository {
             // Se for parcela paga, não faz nada com o saldo - apenas remove o registro
             
             conn.commit();
+            DataVersion.bump(idUsuario, DataVersion.Entity.TRANSACTIONS, DataVersion.Entity.ACCOUNTS);
         } catch (SQLException e) {
             if (conn != null) try { conn.rollback(); } catch (SQLException ex) {}
             throw new RuntimeException("Erro ao excluir gasto: " + e.getMessage(), e);
@@ -776,6 +813,7 @@ public class ExpenseRepository {
             }
             
             conn.commit();
+            DataVersion.bump(idUsuario, DataVersion.Entity.TRANSACTIONS, DataVersion.Entity.ACCOUNTS);
         } catch (SQLException e) {
             if (conn != null) try { conn.rollback(); } catch (SQLException ex) {}
             throw new RuntimeException("Erro ao atualizar gasto: " + e.getMessage(), e);
@@ -887,6 +925,7 @@ public class ExpenseRepository {
             }
             
             conn.commit();
+            DataVersion.bump(idUsuario, DataVersion.Entity.TRANSACTIONS, DataVersion.Entity.ACCOUNTS);
         } catch (SQLException e) {
             if (conn != null) try { conn.rollback(); } catch (SQLException ex) {}
             throw new RuntimeException("Erro ao atualizar grupo parcelado: " + e.getMessage(), e);
@@ -906,11 +945,12 @@ public class ExpenseRepository {
             conn = getConnection();
             conn.setAutoCommit(false);
             
-            String sqlBuscar = "SELECT id_gasto, valor, id_conta, ativo FROM gastos WHERE id_gasto = ?";
+            String sqlBuscar = "SELECT id_gasto, valor, id_conta, ativo, id_usuario FROM gastos WHERE id_gasto = ?";
             boolean existe = false;
             boolean ativo = false;
             double valor = 0;
             int idConta = 0;
+            int idUsuario = 0;
             try (PreparedStatement pstmt = conn.prepareStatement(sqlBuscar)) {
                 pstmt.setInt(1, idGasto);
                 ResultSet rs = pstmt.executeQuery();
@@ -919,6 +959,7 @@ public class ExpenseRepository {
                     ativo = rs.getBoolean("ativo");
                     valor = rs.getDouble("valor");
                     idConta = rs.getInt("id_conta");
+                    idUsuario = rs.getInt("id_usuario");
                 }
             }
             
@@ -969,6 +1010,7 @@ public class ExpenseRepository {
             }
             
             conn.commit();
+            DataVersion.bump(idUsuario, DataVersion.Entity.TRANSACTIONS, DataVersion.Entity.ACCOUNTS);
         } catch (SQLException e) {
             if (conn != null) try { conn.rollback(); } catch (SQLException ex) {}
             throw new RuntimeException("Erro ao marcar parcela como paga: " + e.getMessage(), e);
@@ -979,10 +1021,13 @@ public class ExpenseRepository {
 
     public double calcularTotalGastosUsuario(int idUsuario) {
         // Inclui gastos ativos E parcelas (mesmo as pagas, que têm ativo = FALSE mas id_grupo_parcela IS NOT NULL)
-        String sql = "SELECT COALESCE(SUM(valor), 0) as total " +
-                    "FROM gastos " +
-                    "WHERE id_usuario = ? " +
-                    "AND (ativo = TRUE OR id_grupo_parcela IS NOT NULL)";
+        // Com o resumo mensal, soma um registro por mês/conta em vez de todo o histórico
+        String sql = MonthlySummaryRepository.disponivel()
+            ? "SELECT COALESCE(SUM(total), 0) as total FROM resumo_mensal WHERE id_usuario = ? AND tipo = 'G'"
+            : "SELECT COALESCE(SUM(valor), 0) as total " +
+              "FROM gastos " +
+              "WHERE id_usuario = ? " +
+              "AND (ativo = TRUE OR id_grupo_parcela IS NOT NULL)";
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, idUsuario);
@@ -1164,14 +1209,16 @@ public class ExpenseRepository {
     }
 
     public void marcarComoRecorrencia(int idGasto, int idGastoOriginal) {
-        String sql = "UPDATE gastos SET id_gasto_original = ? WHERE id_gasto = ?";
+        String sql = "UPDATE gastos SET id_gasto_original = ? WHERE id_gasto = ? RETURNING id_usuario";
         try (Connection conn = getConnection()) {
             conn.setAutoCommit(false);
             try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setInt(1, idGastoOriginal);
                 pstmt.setInt(2, idGasto);
-                pstmt.executeUpdate();
+                ResultSet rs = pstmt.executeQuery();
+                int idUsuario = rs.next() ? rs.getInt(1) : 0;
                 conn.commit();
+                DataVersion.bump(idUsuario, DataVersion.Entity.TRANSACTIONS);
             } catch (Exception e) {
                 conn.rollback();
                 throw e;
@@ -1182,14 +1229,16 @@ public class ExpenseRepository {
     }
 
     public void atualizarProximaRecorrencia(int idGasto, LocalDate novaRecorrencia) {
-        String sql = "UPDATE gastos SET proxima_recorrencia = ? WHERE id_gasto = ?";
+        String sql = "UPDATE gastos SET proxima_recorrencia = ? WHERE id_gasto = ? RETURNING id_usuario";
         try (Connection conn = getConnection()) {
             conn.setAutoCommit(false);
             try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setDate(1, novaRecorrencia != null ? java.sql.Date.valueOf(novaRecorrencia) : null);
                 pstmt.setInt(2, idGasto);
-                pstmt.executeUpdate();
+                ResultSet rs = pstmt.executeQuery();
+                int idUsuario = rs.next() ? rs.getInt(1) : 0;
                 conn.commit();
+                DataVersion.bump(idUsuario, DataVersion.Entity.TRANSACTIONS);
             } catch (Exception e) {
                 conn.rollback();
                 throw e;
@@ -1213,7 +1262,7 @@ public class ExpenseRepository {
      * Atualiza informações de parcela em um gasto
      */
     public void atualizarInformacoesParcela(int idGasto, int idGrupoParcela, int numeroParcela, int totalParcelas) {
-        String sql = "UPDATE gastos SET id_grupo_parcela = ?, numero_parcela = ?, total_parcelas = ? WHERE id_gasto = ?";
+        String sql = "UPDATE gastos SET id_grupo_parcela = ?, numero_parcela = ?, total_parcelas = ? WHERE id_gasto = ? RETURNING id_usuario";
         try (Connection conn = getConnection()) {
             conn.setAutoCommit(false);
             try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
@@ -1221,8 +1270,10 @@ public class ExpenseRepository {
                 pstmt.setInt(2, numeroParcela);
                 pstmt.setInt(3, totalParcelas);
                 pstmt.setInt(4, idGasto);
-                pstmt.executeUpdate();
+                ResultSet rs = pstmt.executeQuery();
+                int idUsuario = rs.next() ? rs.getInt(1) : 0;
                 conn.commit();
+                DataVersion.bump(idUsuario, DataVersion.Entity.TRANSACTIONS);
             } catch (Exception e) {
                 conn.rollback();
                 throw e;
@@ -1333,14 +1384,21 @@ public class ExpenseRepository {
      * Cancela parcelas futuras de um grupo (soft delete)
      */
     public int cancelarParcelasFuturas(int idGrupoParcela, LocalDate dataLimite) {
-        String sql = "UPDATE gastos SET ativo = FALSE WHERE id_grupo_parcela = ? AND data > ? AND ativo = TRUE";
+        String sql = "UPDATE gastos SET ativo = FALSE WHERE id_grupo_parcela = ? AND data > ? AND ativo = TRUE RETURNING id_usuario";
         try (Connection conn = getConnection()) {
             conn.setAutoCommit(false);
             try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setInt(1, idGrupoParcela);
                 pstmt.setDate(2, java.sql.Date.valueOf(dataLimite));
-                int canceladas = pstmt.executeUpdate();
+                ResultSet rs = pstmt.executeQuery();
+                int canceladas = 0;
+                int idUsuario = 0;
+                while (rs.next()) {
+                    idUsuario = rs.getInt(1);
+                    canceladas++;
+                }
                 conn.commit();
+                DataVersion.bump(idUsuario, DataVersion.Entity.TRANSACTIONS);
                 return canceladas;
             } catch (Exception e) {
                 conn.rollback();
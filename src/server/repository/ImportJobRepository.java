@@ -0,0 +1,223 @@
+package server.repository;
+
+import server.database.DatabaseConnection;
+import server.database.SchemaCapabilities;
+import server.model.ImportJob;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Importações em segundo plano (tabela importacoes, schema_import_jobs.sql)
+ * Cada importação tem uma instância dona; só a dona grava o progresso, e outra instância
+ * só assume a importação depois que a dona para de renovar atualizado_em.
+ */
+public class ImportJobRepository {
+
+    private static final String CAMPOS =
+        "id_importacao, id_usuario, origem, status, arquivo, dono, ultima_linha, linhas_lidas, importadas, " +
+        "erros, mensagens, criado_em, concluido_em";
+    private static final String SQL_CAMPOS = "SELECT " + CAMPOS + " FROM importacoes ";
+
+    /**
+     * A importação foi assumida por outra instância (esta deixou de renová-la a tempo)
+     */
+    public static class PosseExpiradaException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public PosseExpiradaException(String message) {
+            super(message);
+        }
+    }
+
+    private Connection getConnection() throws SQLException {
+        return DatabaseConnection.getInstance().getConnection();
+    }
+
+    public static boolean disponivel() {
+        return SchemaCapabilities.has(SchemaCapabilities.Capability.IMPORT_JOBS);
+    }
+
+    /**
+     * Registra a importação, com o dono do job, e preenche seu id
+     * @throws IllegalStateException se o usuário já tiver uma importação não concluída (em qualquer instância)
+     */
+    public void criar(ImportJob job) {
+        String sql = "INSERT INTO importacoes (id_usuario, origem, status, arquivo, dono) VALUES (?, ?, ?, ?, ?) RETURNING id_importacao";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, job.getIdUsuario());
+            pstmt.setString(2, job.getOrigem().name());
+            pstmt.setString(3, job.getStatus());
+            pstmt.setString(4, job.getArquivo());
+            pstmt.setString(5, job.getDono());
+            ResultSet rs = pstmt.executeQuery();
+            if (!rs.next()) throw new RuntimeException("Erro ao registrar importação");
+            job.setIdImportacao(rs.getInt(1));
+        } catch (SQLException e) {
+            if ("23505".equals(e.getSQLState())) {
+                throw new IllegalStateException("Já existe uma importação em andamento para este usuário");
+            }
+            throw new RuntimeException("Erro ao registrar importação: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Indica se o usuário tem importação não concluída em alguma instância
+     */
+    public boolean existeAtiva(int idUsuario) {
+        String sql = "SELECT 1 FROM importacoes WHERE id_usuario = ? AND status IN ('PENDENTE', 'EM_ANDAMENTO')";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, idUsuario);
+            return pstmt.executeQuery().next();
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar importação ativa: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Salva estado e contadores; chamado dentro da transação de cada lote para que o
+     * ponto de retomada só avance junto com as transações gravadas
+     * @param ultimaLinha ponto de retomada a salvar
+     * @param novasImportadas transações gravadas no lote (ainda não somadas ao job)
+     * @throws PosseExpiradaException se a importação pertence a outra instância; o lote é desfeito
+     */
+    public void salvar(ImportJob job, int ultimaLinha, int novasImportadas) {
+        String sql = "UPDATE importacoes SET status = ?, arquivo = ?, ultima_linha = ?, linhas_lidas = ?, " +
+                    "importadas = ?, erros = ?, mensagens = ?, concluido_em = ?, atualizado_em = CURRENT_TIMESTAMP " +
+                    "WHERE id_importacao = ? AND dono = ?";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, job.getStatus());
+            pstmt.setString(2, job.getArquivo());
+            pstmt.setInt(3, ultimaLinha);
+            pstmt.setInt(4, job.getLinhasLidas());
+            pstmt.setInt(5, job.getImportadas() + novasImportadas);
+            pstmt.setInt(6, job.getErros());
+            pstmt.setArray(7, conn.createArrayOf("text", job.getMensagens().toArray()));
+            pstmt.setTimestamp(8, job.getConcluidoEm() != null ? Timestamp.valueOf(job.getConcluidoEm()) : null);
+            pstmt.setInt(9, job.getIdImportacao());
+            pstmt.setString(10, job.getDono());
+            if (pstmt.executeUpdate() == 0) {
+                throw new PosseExpiradaException("Importação " + job.getIdImportacao() + " assumida por outra instância");
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao salvar importação: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Renova atualizado_em das importações em execução na instância
+     * @return quantidade renovada
+     */
+    public int renovar(String dono, Collection<Integer> ids) {
+        if (ids.isEmpty()) return 0;
+        String sql = "UPDATE importacoes SET atualizado_em = CURRENT_TIMESTAMP " +
+                    "WHERE id_importacao = ANY(?) AND dono = ? AND status IN ('PENDENTE', 'EM_ANDAMENTO')";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setArray(1, conn.createArrayOf("integer", ids.toArray()));
+            pstmt.setString(2, dono);
+            return pstmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao renovar importações: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Assume as importações não concluídas cuja dona parou de renová-las há mais de
+     * segundosParada segundos (instância encerrada ou reiniciada)
+     * O UPDATE é atômico: se duas instâncias tentarem, a segunda reavalia a linha já
+     * renovada pela primeira e não a assume.
+     */
+    public List<ImportJob> assumirParadas(String dono, int segundosParada) {
+        String sql = "UPDATE importacoes SET dono = ?, atualizado_em = CURRENT_TIMESTAMP " +
+                    "WHERE status IN ('PENDENTE', 'EM_ANDAMENTO') " +
+                    "AND atualizado_em < CURRENT_TIMESTAMP - make_interval(secs => ?) " +
+                    "RETURNING " + CAMPOS;
+        List<ImportJob> jobs = new ArrayList<>();
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, dono);
+            pstmt.setInt(2, segundosParada);
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                jobs.add(mapear(rs));
+            }
+            jobs.sort((a, b) -> Integer.compare(a.getIdImportacao(), b.getIdImportacao()));
+            return jobs;
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao assumir importações paradas: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Arquivos de spool das importações não concluídas (de todas as instâncias)
+     */
+    public List<String> listarArquivosAtivos() {
+        String sql = "SELECT arquivo FROM importacoes WHERE status IN ('PENDENTE', 'EM_ANDAMENTO') AND arquivo IS NOT NULL";
+        List<String> arquivos = new ArrayList<>();
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                arquivos.add(rs.getString(1));
+            }
+            return arquivos;
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao listar arquivos de importação: " + e.getMessage(), e);
+        }
+    }
+
+    public ImportJob buscar(int idImportacao, int idUsuario) {
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(SQL_CAMPOS + "WHERE id_importacao = ? AND id_usuario = ?")) {
+            pstmt.setInt(1, idImportacao);
+            pstmt.setInt(2, idUsuario);
+            ResultSet rs = pstmt.executeQuery();
+            return rs.next() ? mapear(rs) : null;
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar importação: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Importações mais recentes do usuário
+     */
+    public List<ImportJob> listarPorUsuario(int idUsuario, int limite) {
+        List<ImportJob> jobs = new ArrayList<>();
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(SQL_CAMPOS + "WHERE id_usuario = ? ORDER BY criado_em DESC, id_importacao DESC LIMIT ?")) {
+            pstmt.setInt(1, idUsuario);
+            pstmt.setInt(2, limite);
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                jobs.add(mapear(rs));
+            }
+            return jobs;
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao listar importações: " + e.getMessage(), e);
+        }
+    }
+
+    private ImportJob mapear(ResultSet rs) throws SQLException {
+        ImportJob job = new ImportJob(rs.getInt("id_usuario"), ImportJob.Origem.valueOf(rs.getString("origem")),
+                                      rs.getString("arquivo"));
+        job.setIdImportacao(rs.getInt("id_importacao"));
+        job.setDono(rs.getString("dono"));
+        Array mensagens = rs.getArray("mensagens");
+        Timestamp criadoEm = rs.getTimestamp("criado_em");
+        Timestamp concluidoEm = rs.getTimestamp("concluido_em");
+        if (criadoEm != null) {
+            job.setCriadoEm(criadoEm.toLocalDateTime());
+        }
+        job.restaurar(rs.getString("status"), rs.getInt("ultima_linha"), rs.getInt("linhas_lidas"),
+                      rs.getInt("importadas"), rs.getInt("erros"),
+                      mensagens != null ? Arrays.asList((String[]) mensagens.getArray()) : new ArrayList<>(),
+                      concluidoEm != null ? concluidoEm.toLocalDateTime() : null);
+        return job;
+    }
+}
@@ -0,0 +1,324 @@
+package server.repository;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import server.database.DatabaseConnection;
+import server.utils.DataVersion;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gravação em massa da importação de transações
+ * As linhas de um lote são copiadas (COPY) para uma tabela temporária e dali inseridas
+ * em gastos/receitas, categorias, observações e tags com poucos comandos por lote,
+ * em vez de vários INSERTs por transação.
+ */
+public class ImportRepository {
+    // Linhas já copiadas para o servidor são enviadas em blocos deste tamanho
+    private static final int COPY_BUFFER_BYTES = 64 * 1024;
+
+    private static final String SQL_STAGING =
+        "CREATE TEMP TABLE importacao_linhas (" +
+        "linha INTEGER, tipo CHAR(1), id INTEGER, descricao TEXT, valor NUMERIC(15,2), data DATE, " +
+        "frequencia VARCHAR(50), proxima_recorrencia DATE, id_conta INTEGER, data_entrada_fatura DATE, " +
+        "categorias INTEGER[], tags INTEGER[], observacoes TEXT[], id_conta_origem INTEGER" +
+        ") ON COMMIT DROP";
+
+    /**
+     * Transação já validada e com contas, categorias e tags resolvidas
+     */
+    public static final class Linha {
+        final int linha;
+        final boolean gasto;
+        final String descricao;
+        final double valor;
+        final LocalDate data;
+        final String frequencia;
+        final LocalDate proximaRecorrencia;
+        final int idConta;
+        final LocalDate dataEntradaFatura;
+        final Collection<Integer> categorias;
+        final Collection<Integer> tags;
+        final List<String> observacoes;
+        final Integer idContaOrigem;
+
+        /**
+         * @param categorias só para gastos (ao menos uma)
+         * @param idContaOrigem conta debitada no pagamento de fatura (receita em cartão), ou null
+         */
+        public Linha(int linha, boolean gasto, String descricao, double valor, LocalDate data, String frequencia,
+                     LocalDate proximaRecorrencia, int idConta, LocalDate dataEntradaFatura,
+                     Collection<Integer> categorias, Collection<Integer> tags, List<String> observacoes,
+                     Integer idContaOrigem) {
+            this.linha = linha;
+            this.gasto = gasto;
+            this.descricao = descricao;
+            this.valor = valor;
+            this.data = data;
+            this.frequencia = frequencia;
+            this.proximaRecorrencia = proximaRecorrencia;
+            this.idConta = idConta;
+            this.dataEntradaFatura = dataEntradaFatura;
+            this.categorias = categorias;
+            this.tags = tags;
+            this.observacoes = observacoes;
+            this.idContaOrigem = idContaOrigem;
+        }
+
+        /** Número da linha (ou transação) no arquivo importado */
+        public int getLinha() {
+            return linha;
+        }
+    }
+
+    private Connection getConnection() throws SQLException {
+        return DatabaseConnection.getInstance().getConnection();
+    }
+
+    /**
+     * Cria as categorias em um único INSERT
+     * @return id por nome em minúsculas
+     */
+    public Map<String, Integer> criarCategorias(int idUsuario, Collection<String> nomes) {
+        Map<String, Integer> ids = new HashMap<>();
+        if (nomes.isEmpty()) return ids;
+        StringBuilder sql = new StringBuilder("INSERT INTO categorias (nome, id_usuario) VALUES ");
+        appendValores(sql, nomes.size(), "(?, ?)");
+        sql.append(" RETURNING id_categoria, nome");
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            int idx = 1;
+            for (String nome : nomes) {
+                pstmt.setString(idx++, nome);
+                pstmt.setInt(idx++, idUsuario);
+            }
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                ids.put(rs.getString(2).toLowerCase().trim(), rs.getInt(1));
+            }
+            DataVersion.bump(idUsuario, DataVersion.Entity.CATEGORIES);
+            return ids;
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao cadastrar categorias: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Cria as tags em um único INSERT
+     * @param cores cor de cada tag por nome
+     * @return id por nome em minúsculas
+     */
+    public Map<String, Integer> criarTags(int idUsuario, Map<String, String> cores) {
+        Map<String, Integer> ids = new HashMap<>();
+        if (cores.isEmpty()) return ids;
+        StringBuilder sql = new StringBuilder("INSERT INTO tags (nome, cor, id_usuario) VALUES ");
+        appendValores(sql, cores.size(), "(?, ?, ?)");
+        sql.append(" RETURNING id_tag, nome");
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            int idx = 1;
+            for (Map.Entry<String, String> entry : cores.entrySet()) {
+                pstmt.setString(idx++, entry.getKey());
+                pstmt.setString(idx++, entry.getValue());
+                pstmt.setInt(idx++, idUsuario);
+            }
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                ids.put(rs.getString(2).toLowerCase().trim(), rs.getInt(1));
+            }
+            DataVersion.bump(idUsuario, DataVersion.Entity.TAGS);
+            return ids;
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao cadastrar tags: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Grava um lote de transações em uma transação: COPY para a tabela temporária,
+     * ids reservados nas sequências e um INSERT ... SELECT por tabela de destino;
+     * os saldos das contas são ajustados uma vez por conta
+     * @return quantidade de transações gravadas
+     */
+    public int gravarLote(int idUsuario, List<Linha> linhas) {
+        if (linhas.isEmpty()) return 0;
+        Connection conn = null;
+        try {
+            conn = getConnection();
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                // Dentro de uma transação maior a tabela de um lote anterior ainda existe
+                stmt.execute("DROP TABLE IF EXISTS importacao_linhas");
+                stmt.execute(SQL_STAGING);
+            }
+            copiarLinhas(conn, linhas);
+
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("UPDATE importacao_linhas SET id = CASE tipo " +
+                    "WHEN 'G' THEN nextval(pg_get_serial_sequence('gastos', 'id_gasto')) " +
+                    "ELSE nextval(pg_get_serial_sequence('receitas', 'id_receita')) END");
+            }
+            executar(conn, idUsuario,
+                "INSERT INTO gastos (id_gasto, descricao, valor, data, frequencia, id_usuario, id_conta, proxima_recorrencia, data_entrada_fatura) " +
+                "SELECT id, descricao, valor, data, frequencia, ?, id_conta, proxima_recorrencia, data_entrada_fatura " +
+                "FROM importacao_linhas WHERE tipo = 'G' ORDER BY linha");
+            executar(conn, idUsuario,
+                "INSERT INTO receitas (id_receita, descricao, valor, data, frequencia, id_usuario, id_conta, proxima_recorrencia) " +
+                "SELECT id, descricao, valor, data, frequencia, ?, id_conta, proxima_recorrencia " +
+                "FROM importacao_linhas WHERE tipo = 'R' ORDER BY linha");
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("INSERT INTO categoria_gasto (id_categoria, id_gasto) " +
+                    "SELECT DISTINCT c.id_categoria, l.id FROM importacao_linhas l, unnest(l.categorias) AS c(id_categoria) " +
+                    "WHERE l.tipo = 'G' ON CONFLICT DO NOTHING");
+                stmt.executeUpdate("INSERT INTO gasto_observacoes (id_gasto, observacao, ordem) " +
+                    "SELECT l.id, o.observacao, o.ordem - 1 FROM importacao_linhas l, " +
+                    "unnest(l.observacoes) WITH ORDINALITY AS o(observacao, ordem) WHERE l.tipo = 'G'");
+                stmt.executeUpdate("INSERT INTO receita_observacoes (id_receita, observacao, ordem) " +
+                    "SELECT l.id, o.observacao, o.ordem - 1 FROM importacao_linhas l, " +
+                    "unnest(l.observacoes) WITH ORDINALITY AS o(observacao, ordem) WHERE l.tipo = 'R'");
+                stmt.executeUpdate("INSERT INTO transacao_tag (id_transacao, tipo_transacao, id_tag) " +
+                    "SELECT DISTINCT l.id, CASE l.tipo WHEN 'G' THEN 'GASTO' ELSE 'RECEITA' END, t.id_tag " +
+                    "FROM importacao_linhas l, unnest(l.tags) AS t(id_tag) " +
+                    "ON CONFLICT (id_transacao, tipo_transacao, id_tag) DO NOTHING");
+            }
+            // Gastos debitam a conta, receitas creditam e pagamentos de fatura debitam a conta de origem
+            executar(conn, idUsuario,
+                "UPDATE contas c SET saldo_atual = c.saldo_atual + d.delta FROM (" +
+                "  SELECT id_conta, SUM(delta) AS delta FROM (" +
+                "    SELECT id_conta, CASE tipo WHEN 'G' THEN -valor ELSE valor END AS delta FROM importacao_linhas" +
+                "    UNION ALL" +
+                "    SELECT id_conta_origem, -valor FROM importacao_linhas WHERE id_conta_origem IS NOT NULL" +
+                "  ) m GROUP BY id_conta" +
+                ") d WHERE c.id_conta = d.id_conta AND c.id_usuario = ?");
+
+            conn.commit();
+            DataVersion.bump(idUsuario, DataVersion.Entity.TRANSACTIONS, DataVersion.Entity.ACCOUNTS);
+            return linhas.size();
+        } catch (SQLException e) {
+            if (conn != null) try { conn.rollback(); } catch (SQLException ex) {}
+            throw new RuntimeException("Erro ao gravar lote da importação: " + e.getMessage(), e);
+        } finally {
+            if (conn != null) try { conn.setAutoCommit(true); conn.close(); } catch (SQLException e) {}
+        }
+    }
+
+    private void executar(Connection conn, int idUsuario, String sql) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, idUsuario);
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Envia as linhas pelo protocolo COPY (formato texto, separado por tabulação)
+     */
+    private void copiarLinhas(Connection conn, List<Linha> linhas) throws SQLException {
+        CopyIn copy = conn.unwrap(PGConnection.class).getCopyAPI().copyIn(
+            "COPY importacao_linhas (linha, tipo, descricao, valor, data, frequencia, proxima_recorrencia, " +
+            "id_conta, data_entrada_fatura, categorias, tags, observacoes, id_conta_origem) FROM STDIN");
+        try {
+            StringBuilder buffer = new StringBuilder(COPY_BUFFER_BYTES + 1024);
+            for (Linha l : linhas) {
+                buffer.append(l.linha).append('\t')
+                      .append(l.gasto ? 'G' : 'R').append('\t');
+                appendTexto(buffer, l.descricao);
+                buffer.append('\t').append(BigDecimal.valueOf(l.valor).setScale(2, RoundingMode.HALF_UP).toPlainString()).append('\t')
+                      .append(l.data).append('\t');
+                appendTexto(buffer, l.frequencia);
+                buffer.append('\t').append(l.proximaRecorrencia != null ? l.proximaRecorrencia.toString() : "\\N").append('\t')
+                      .append(l.idConta).append('\t')
+                      .append(l.dataEntradaFatura != null ? l.dataEntradaFatura.toString() : "\\N").append('\t');
+                appendArrayInteiros(buffer, l.categorias);
+                buffer.append('\t');
+                appendArrayInteiros(buffer, l.tags);
+                buffer.append('\t');
+                appendArrayTextos(buffer, l.observacoes);
+                buffer.append('\t').append(l.idContaOrigem != null ? l.idContaOrigem.toString() : "\\N").append('\n');
+                if (buffer.length() >= COPY_BUFFER_BYTES) {
+                    enviar(copy, buffer);
+                }
+            }
+            enviar(copy, buffer);
+            copy.endCopy();
+        } finally {
+            if (copy.isActive()) {
+                copy.cancelCopy();
+            }
+        }
+    }
+
+    private static void enviar(CopyIn copy, StringBuilder buffer) throws SQLException {
+        if (buffer.length() == 0) return;
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copy.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+
+    /**
+     * Valor de texto escapado para o formato texto do COPY
+     */
+    private static void appendTexto(StringBuilder sb, String valor) {
+        if (valor == null) {
+            sb.append("\\N");
+            return;
+        }
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            switch (c) {
+                case '\\': sb.append("\\\\"); break;
+                case '\t': sb.append("\\t"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                default: sb.append(c);
+            }
+        }
+    }
+
+    private static void appendArrayInteiros(StringBuilder sb, Collection<Integer> valores) {
+        sb.append('{');
+        if (valores != null) {
+            boolean primeiro = true;
+            for (Integer valor : valores) {
+                if (!primeiro) sb.append(',');
+                sb.append(valor);
+                primeiro = false;
+            }
+        }
+        sb.append('}');
+    }
+
+    /**
+     * Literal de array de texto ({"a","b"}), com aspas e barras escapadas para o array e depois para o COPY
+     */
+    private static void appendArrayTextos(StringBuilder sb, List<String> valores) {
+        StringBuilder literal = new StringBuilder("{");
+        if (valores != null) {
+            for (int i = 0; i < valores.size(); i++) {
+                if (i > 0) literal.append(',');
+                literal.append('"');
+                String valor = valores.get(i);
+                for (int j = 0; j < valor.length(); j++) {
+                    char c = valor.charAt(j);
+                    if (c == '"' || c == '\\') literal.append('\\');
+                    literal.append(c);
+                }
+                literal.append('"');
+            }
+        }
+        literal.append('}');
+        appendTexto(sb, literal.toString());
+    }
+
+    private static void appendValores(StringBuilder sql, int quantidade, String grupo) {
+        for (int i = 0; i < quantidade; i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(grupo);
+        }
+    }
+}
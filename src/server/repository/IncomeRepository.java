@@ -3,6 +3,7 @@ package server.repository;
 import server.database.DatabaseConnection;
 import server.model.Conta;
 import server.model.Receita;
+import server.utils.DataVersion;
 import server.validation.InputValidator;
 import server.validation.ValidationResult;
 import java.sql.*;
@@ -106,6 +107,7 @@ public class IncomeRepository {
             }
             
             conn.commit();
+            DataVersion.bump(idUsuario, DataVersion.Entity.TRANSACTIONS, DataVersion.Entity.ACCOUNTS);
             return idReceita;
             
         } catch (SQLException e) {
@@ -179,6 +181,7 @@ public class IncomeRepository {
             }
             
             conn.commit();
+            DataVersion.bump(idUsuario, DataVersion.Entity.TRANSACTIONS, DataVersion.Entity.ACCOUNTS);
             return idReceita;
             
         } catch (SQLException e) {
@@ -463,6 +466,39 @@ public class IncomeRepository {
         return resultado;
     }
 
+    /**
+     * Busca receitas do usuário pelos ids (a seleção já foi feita por quem chama)
+     * @return receitas indexadas pelo id
+     */
+    public Map<Integer, Receita> buscarReceitasPorIds(int idUsuario, List<Integer> idsReceitas) {
+        Map<Integer, Receita> receitas = new HashMap<>();
+        if (idsReceitas == null || idsReceitas.isEmpty()) return receitas;
+        
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < idsReceitas.size(); i++) {
+            if (i > 0) placeholders.append(",");
+            placeholders.append("?");
+        }
+        String sql = "SELECT id_receita, descricao, valor, data, frequencia, id_usuario, id_conta, " +
+                    "proxima_recorrencia, id_receita_original, ativo, id_grupo_parcela, numero_parcela, total_parcelas " +
+                    "FROM receitas WHERE id_usuario = ? AND id_receita IN (" + placeholders + ")";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, idUsuario);
+            for (int i = 0; i < idsReceitas.size(); i++) {
+                pstmt.setInt(i + 2, idsReceitas.get(i));
+            }
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                Receita receita = mapReceita(rs);
+                receitas.put(receita.getIdReceita(), receita);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar receitas: " + e.getMessage(), e);
+        }
+        return receitas;
+    }
+
     public void excluirReceita(int idReceita, int idUsuario) {
         Connection conn = null;
         try {
@@ -501,6 +537,7 @@ public class IncomeRepository {
             }
             
             conn.commit();
+            DataVersion.bump(idUsuario, DataVersion.Entity.TRANSACTIONS, DataVersion.Entity.ACCOUNTS);
         } catch (SQLException e) {
             if (conn != null) try { conn.rollback(); } catch (SQLException ex) {}
             throw new RuntimeException("Erro ao excluir receita: " + e.getMessage(), e);
@@ -593,6 +630,7 @@ public class IncomeRepository {
             }
             
             conn.commit();
+            DataVersion.bump(idUsuario, DataVersion.Entity.TRANSACTIONS, DataVersion.Entity.ACCOUNTS);
         } catch (SQLException e) {
             if (conn != null) try { conn.rollback(); } catch (SQLException ex) {}
             throw new RuntimeException("Erro ao atualizar receita: " + e.getMessage(), e);
@@ -604,15 +642,24 @@ public class IncomeRepository {
     public double calcularTotalReceitasUsuario(int idUsuario) {
         // Exclui pagamentos de faturas (receitas em cartão de crédito que não são parcelas)
         // e receitas do sistema (com prefixo [SISTEMA])
-        String sql = "SELECT COALESCE(SUM(r.valor), 0) as total " +
-                    "FROM receitas r " +
-                    "INNER JOIN contas c ON r.id_conta = c.id_conta " +
-                    "WHERE r.id_usuario = ? " +
-                    "AND r.ativo = TRUE " +
-                    "AND r.descricao NOT LIKE '[SISTEMA]%' " +
-                    "AND (c.tipo IS NULL OR " +
-                    "     (UPPER(c.tipo) NOT LIKE 'CARTAO%' AND UPPER(c.tipo) != 'CARTAO_CREDITO') OR " +
-                    "     r.id_grupo_parcela IS NOT NULL)";
+        // Com o resumo mensal (que já exclui inativas e [SISTEMA]), soma um registro por mês/conta
+        String sql = MonthlySummaryRepository.disponivel()
+            ? "SELECT COALESCE(SUM(r.total), 0) as total " +
+              "FROM resumo_mensal r " +
+              "INNER JOIN contas c ON r.id_conta = c.id_conta " +
+              "WHERE r.id_usuario = ? AND r.tipo = 'R' " +
+              "AND (c.tipo IS NULL OR " +
+              "     (UPPER(c.tipo) NOT LIKE 'CARTAO%' AND UPPER(c.tipo) != 'CARTAO_CREDITO') OR " +
+              "     r.parcelado)"
+            : "SELECT COALESCE(SUM(r.valor), 0) as total " +
+              "FROM receitas r " +
+              "INNER JOIN contas c ON r.id_conta = c.id_conta " +
+              "WHERE r.id_usuario = ? " +
+              "AND r.ativo = TRUE " +
+              "AND r.descricao NOT LIKE '[SISTEMA]%' " +
+              "AND (c.tipo IS NULL OR " +
+              "     (UPPER(c.tipo) NOT LIKE 'CARTAO%' AND UPPER(c.tipo) != 'CARTAO_CREDITO') OR " +
+              "     r.id_grupo_parcela IS NOT NULL)";
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, idUsuario);
@@ -691,7 +738,7 @@ public class IncomeRepository {
     }
 
     public void marcarComoRecorrencia(int idReceita, int idReceitaOriginal, String frequencia, LocalDate proximaRecorrencia) {
-        String sql = "UPDATE receitas SET id_receita_original = ?, frequencia = ?, proxima_recorrencia = ? WHERE id_receita = ?";
+        String sql = "UPDATE receitas SET id_receita_original = ?, frequencia = ?, proxima_recorrencia = ? WHERE id_receita = ? RETURNING id_usuario";
         try (Connection conn = getConnection()) {
             conn.setAutoCommit(false);
             try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
@@ -699,8 +746,10 @@ public class IncomeRepository {
                 pstmt.setString(2, frequencia);
                 pstmt.setDate(3, proximaRecorrencia != null ? java.sql.Date.valueOf(proximaRecorrencia) : null);
                 pstmt.setInt(4, idReceita);
-                pstmt.executeUpdate();
+                ResultSet rs = pstmt.executeQuery();
+                int idUsuario = rs.next() ? rs.getInt(1) : 0;
                 conn.commit();
+                DataVersion.bump(idUsuario, DataVersion.Entity.TRANSACTIONS);
             } catch (Exception e) {
                 conn.rollback();
                 throw e;
@@ -711,14 +760,16 @@ public class IncomeRepository {
     }
 
     public void atualizarProximaRecorrencia(int idReceita, LocalDate novaRecorrencia) {
-        String sql = "UPDATE receitas SET proxima_recorrencia = ? WHERE id_receita = ?";
+        String sql = "UPDATE receitas SET proxima_recorrencia = ? WHERE id_receita = ? RETURNING id_usuario";
         try (Connection conn = getConnection()) {
             conn.setAutoCommit(false);
             try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setDate(1, novaRecorrencia != null ? java.sql.Date.valueOf(novaRecorrencia) : null);
                 pstmt.setInt(2, idReceita);
-                pstmt.executeUpdate();
+                ResultSet rs = pstmt.executeQuery();
+                int idUsuario = rs.next() ? rs.getInt(1) : 0;
                 conn.commit();
+                DataVersion.bump(idUsuario, DataVersion.Entity.TRANSACTIONS);
             } catch (Exception e) {
                 conn.rollback();
                 throw e;
@@ -742,7 +793,7 @@ public class IncomeRepository {
      * Atualiza informações de parcela em uma receita
      */
     public void atualizarInformacoesParcela(int idReceita, int idGrupoParcela, int numeroParcela, int totalParcelas) {
-        String sql = "UPDATE receitas SET id_grupo_parcela = ?, numero_parcela = ?, total_parcelas = ? WHERE id_receita = ?";
+        String sql = "UPDATE receitas SET id_grupo_parcela = ?, numero_parcela = ?, total_parcelas = ? WHERE id_receita = ? RETURNING id_usuario";
         try (Connection conn = getConnection()) {
             conn.setAutoCommit(false);
             try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
@@ -750,8 +801,10 @@ public class IncomeRepository {
                 pstmt.setInt(2, numeroParcela);
                 pstmt.setInt(3, totalParcelas);
                 pstmt.setInt(4, idReceita);
-                pstmt.executeUpdate();
+                ResultSet rs = pstmt.executeQuery();
+                int idUsuario = rs.next() ? rs.getInt(1) : 0;
                 conn.commit();
+                DataVersion.bump(idUsuario, DataVersion.Entity.TRANSACTIONS);
             } catch (Exception e) {
                 conn.rollback();
                 throw e;
@@ -828,14 +881,21 @@ public class IncomeRepository {
      * Cancela parcelas futuras de um grupo (soft delete)
      */
     public int cancelarParcelasFuturas(int idGrupoParcela, LocalDate dataLimite) {
-        String sql = "UPDATE receitas SET ativo = FALSE WHERE id_grupo_parcela = ? AND data > ? AND ativo = TRUE";
+        String sql = "UPDATE receitas SET ativo = FALSE WHERE id_grupo_parcela = ? AND data > ? AND ativo = TRUE RETURNING id_usuario";
         try (Connection conn = getConnection()) {
             conn.setAutoCommit(false);
             try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setInt(1, idGrupoParcela);
                 pstmt.setDate(2, java.sql.Date.valueOf(dataLimite));
-                int canceladas = pstmt.executeUpdate();
+                ResultSet rs = pstmt.executeQuery();
+                int canceladas = 0;
+                int idUsuario = 0;
+                while (rs.next()) {
+                    idUsuario = rs.getInt(1);
+                    canceladas++;
+                }
                 conn.commit();
+                DataVersion.bump(idUsuario, DataVersion.Entity.TRANSACTIONS);
                 return canceladas;
             } catch (Exception e) {
                 conn.rollback();
@@ -1,11 +1,20 @@
 package server.repository;
 
 import server.database.DatabaseConnection;
+import server.model.Conta;
 import server.model.InstallmentGroup;
+import server.utils.DataVersion;
+import server.validation.InputValidator;
+import server.validation.ValidationResult;
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 public class InstallmentRepository {
     
@@ -21,33 +30,9 @@ public class InstallmentRepository {
         try {
             conn = getConnection();
             conn.setAutoCommit(false);
-            
-            String sql = "INSERT INTO installment_groups " +
-                        "(descricao, valor_total, numero_parcelas, valor_parcela, " +
-                        "data_primeira_parcela, intervalo_dias, id_usuario, id_conta, tipo_transacao, ativo) " +
-                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?) RETURNING id_grupo";
-            
-            int idGrupo;
-            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, grupo.getDescricao());
-                pstmt.setDouble(2, grupo.getValorTotal());
-                pstmt.setInt(3, grupo.getNumeroParcelas());
-                pstmt.setDouble(4, grupo.getValorParcela());
-                pstmt.setDate(5, java.sql.Date.valueOf(grupo.getDataPrimeiraParcela()));
-                pstmt.setInt(6, grupo.getIntervaloDias());
-                pstmt.setInt(7, grupo.getIdUsuario());
-                pstmt.setInt(8, grupo.getIdConta());
-                pstmt.setString(9, grupo.getTipoTransacao());
-                pstmt.setBoolean(10, grupo.isAtivo());
-                
-                ResultSet rs = pstmt.executeQuery();
-                if (!rs.next()) {
-                    throw new RuntimeException("Erro ao criar grupo de parcelas");
-                }
-                idGrupo = rs.getInt(1);
-            }
-            
+            int idGrupo = inserirGrupo(conn, grupo);
             conn.commit();
+            DataVersion.bump(grupo.getIdUsuario(), DataVersion.Entity.TRANSACTIONS);
             return idGrupo;
         } catch (SQLException e) {
             if (conn != null) {
@@ -62,6 +47,278 @@ public class InstallmentRepository {
         }
     }
     
+    /**
+     * Parcela a ser gravada por {@link #criarGastoParcelado} ou {@link #criarReceitaParcelada}
+     */
+    public static final class NovaParcela {
+        final int numero;
+        final LocalDate data;
+        final double valor;
+        final LocalDate dataEntradaFatura;
+        final boolean paga;
+        
+        /**
+         * @param dataEntradaFatura só para gastos; null usa a data da parcela
+         * @param paga parcela já quitada (cadastro retroativo de fatura fechada): gravada inativa e sem débito na conta
+         */
+        public NovaParcela(int numero, LocalDate data, double valor, LocalDate dataEntradaFatura, boolean paga) {
+            this.numero = numero;
+            this.data = data;
+            this.valor = valor;
+            this.dataEntradaFatura = dataEntradaFatura;
+            this.paga = paga;
+        }
+    }
+    
+    /**
+     * Cria o grupo e todas as parcelas de um gasto parcelado em uma transação:
+     * parcelas (já com os campos de parcela), categorias, observações e tags são gravadas
+     * em inserts de várias linhas/lotes, e o saldo da conta é atualizado uma vez
+     * @return id do grupo criado
+     */
+    public int criarGastoParcelado(InstallmentGroup grupo, List<NovaParcela> parcelas, List<Integer> idsCategorias,
+                                   List<Integer> idsTags, String[] observacoes) {
+        String descricao = validarParcelas(grupo, parcelas, "gasto");
+        Set<Integer> categorias = new LinkedHashSet<>();
+        if (idsCategorias != null) {
+            for (Integer idCat : idsCategorias) {
+                ValidationResult res = InputValidator.validateId("ID da categoria", idCat, true);
+                if (!res.isValid()) throw new IllegalArgumentException(res.getErrors().get(0));
+                categorias.add(idCat);
+            }
+        }
+        if (categorias.isEmpty()) {
+            categorias.add(new CategoryRepository().obterOuCriarCategoriaSemCategoria(grupo.getIdUsuario()));
+        }
+        
+        Connection conn = null;
+        try {
+            conn = getConnection();
+            conn.setAutoCommit(false);
+            int idGrupo = inserirGrupo(conn, grupo);
+            
+            StringBuilder sql = new StringBuilder(
+                "INSERT INTO gastos (descricao, valor, data, frequencia, id_usuario, id_conta, data_entrada_fatura, " +
+                "ativo, id_grupo_parcela, numero_parcela, total_parcelas) VALUES ");
+            for (int i = 0; i < parcelas.size(); i++) {
+                sql.append(i == 0 ? "" : ", ").append("(?, ?, ?, 'UNICA', ?, ?, ?, ?, ?, ?, ?)");
+            }
+            sql.append(" RETURNING id_gasto, numero_parcela");
+            Map<Integer, Integer> ids;
+            try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+                int idx = 1;
+                for (NovaParcela parcela : parcelas) {
+                    pstmt.setString(idx++, descricao);
+                    pstmt.setDouble(idx++, parcela.valor);
+                    pstmt.setDate(idx++, java.sql.Date.valueOf(parcela.data));
+                    pstmt.setInt(idx++, grupo.getIdUsuario());
+                    pstmt.setInt(idx++, grupo.getIdConta());
+                    pstmt.setDate(idx++, parcela.dataEntradaFatura != null ? java.sql.Date.valueOf(parcela.dataEntradaFatura) : null);
+                    pstmt.setBoolean(idx++, !parcela.paga);
+                    pstmt.setInt(idx++, idGrupo);
+                    pstmt.setInt(idx++, parcela.numero);
+                    pstmt.setInt(idx++, grupo.getNumeroParcelas());
+                }
+                ids = lerIdsParcelas(pstmt.executeQuery());
+            }
+            
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "INSERT INTO categoria_gasto (id_categoria, id_gasto) VALUES (?, ?) ON CONFLICT DO NOTHING")) {
+                for (int idGasto : ids.values()) {
+                    for (int idCategoria : categorias) {
+                        pstmt.setInt(1, idCategoria);
+                        pstmt.setInt(2, idGasto);
+                        pstmt.addBatch();
+                    }
+                }
+                pstmt.executeBatch();
+            }
+            inserirObservacoes(conn, "INSERT INTO gasto_observacoes (id_gasto, observacao, ordem) VALUES (?, ?, ?)",
+                               ids.values(), observacoes);
+            inserirTags(conn, ids.values(), "GASTO", idsTags);
+            atualizarSaldoConta(conn, grupo.getIdConta(), -totalEmAberto(parcelas));
+            
+            conn.commit();
+            DataVersion.bump(grupo.getIdUsuario(), DataVersion.Entity.TRANSACTIONS, DataVersion.Entity.ACCOUNTS);
+            return idGrupo;
+        } catch (SQLException e) {
+            if (conn != null) try { conn.rollback(); } catch (SQLException ex) {}
+            throw new RuntimeException("Erro ao cadastrar compra parcelada: " + e.getMessage(), e);
+        } finally {
+            if (conn != null) try { conn.setAutoCommit(true); conn.close(); } catch (SQLException e) {}
+        }
+    }
+    
+    /**
+     * Cria o grupo e todas as parcelas de uma receita parcelada em uma transação
+     * (mesmo caminho em lote de {@link #criarGastoParcelado})
+     * @return id do grupo criado
+     */
+    public int criarReceitaParcelada(InstallmentGroup grupo, List<NovaParcela> parcelas,
+                                     List<Integer> idsTags, String[] observacoes) {
+        String descricao = validarParcelas(grupo, parcelas, "receita");
+        
+        Connection conn = null;
+        try {
+            conn = getConnection();
+            conn.setAutoCommit(false);
+            int idGrupo = inserirGrupo(conn, grupo);
+            
+            StringBuilder sql = new StringBuilder(
+                "INSERT INTO receitas (descricao, valor, data, id_usuario, id_conta, " +
+                "ativo, id_grupo_parcela, numero_parcela, total_parcelas) VALUES ");
+            for (int i = 0; i < parcelas.size(); i++) {
+                sql.append(i == 0 ? "" : ", ").append("(?, ?, ?, ?, ?, ?, ?, ?, ?)");
+            }
+            sql.append(" RETURNING id_receita, numero_parcela");
+            Map<Integer, Integer> ids;
+            try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+                int idx = 1;
+                for (NovaParcela parcela : parcelas) {
+                    pstmt.setString(idx++, descricao);
+                    pstmt.setDouble(idx++, parcela.valor);
+                    pstmt.setDate(idx++, java.sql.Date.valueOf(parcela.data));
+                    pstmt.setInt(idx++, grupo.getIdUsuario());
+                    pstmt.setInt(idx++, grupo.getIdConta());
+                    pstmt.setBoolean(idx++, !parcela.paga);
+                    pstmt.setInt(idx++, idGrupo);
+                    pstmt.setInt(idx++, parcela.numero);
+                    pstmt.setInt(idx++, grupo.getNumeroParcelas());
+                }
+                ids = lerIdsParcelas(pstmt.executeQuery());
+            }
+            
+            inserirObservacoes(conn, "INSERT INTO receita_observacoes (id_receita, observacao, ordem) VALUES (?, ?, ?)",
+                               ids.values(), observacoes);
+            inserirTags(conn, ids.values(), "RECEITA", idsTags);
+            atualizarSaldoConta(conn, grupo.getIdConta(), totalEmAberto(parcelas));
+            
+            conn.commit();
+            DataVersion.bump(grupo.getIdUsuario(), DataVersion.Entity.TRANSACTIONS, DataVersion.Entity.ACCOUNTS);
+            return idGrupo;
+        } catch (SQLException e) {
+            if (conn != null) try { conn.rollback(); } catch (SQLException ex) {}
+            throw new RuntimeException("Erro ao cadastrar receita parcelada: " + e.getMessage(), e);
+        } finally {
+            if (conn != null) try { conn.setAutoCommit(true); conn.close(); } catch (SQLException e) {}
+        }
+    }
+    
+    private int inserirGrupo(Connection conn, InstallmentGroup grupo) throws SQLException {
+        String sql = "INSERT INTO installment_groups " +
+                    "(descricao, valor_total, numero_parcelas, valor_parcela, " +
+                    "data_primeira_parcela, intervalo_dias, id_usuario, id_conta, tipo_transacao, ativo) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?) RETURNING id_grupo";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, grupo.getDescricao());
+            pstmt.setDouble(2, grupo.getValorTotal());
+            pstmt.setInt(3, grupo.getNumeroParcelas());
+            pstmt.setDouble(4, grupo.getValorParcela());
+            pstmt.setDate(5, java.sql.Date.valueOf(grupo.getDataPrimeiraParcela()));
+            pstmt.setInt(6, grupo.getIntervaloDias());
+            pstmt.setInt(7, grupo.getIdUsuario());
+            pstmt.setInt(8, grupo.getIdConta());
+            pstmt.setString(9, grupo.getTipoTransacao());
+            pstmt.setBoolean(10, grupo.isAtivo());
+            
+            ResultSet rs = pstmt.executeQuery();
+            if (!rs.next()) {
+                throw new RuntimeException("Erro ao criar grupo de parcelas");
+            }
+            return rs.getInt(1);
+        }
+    }
+    
+    /**
+     * Mesmas validações do cadastro avulso, feitas uma vez para o grupo
+     * @return descrição sanitizada
+     */
+    private String validarParcelas(InstallmentGroup grupo, List<NovaParcela> parcelas, String tipo) {
+        if (parcelas == null || parcelas.isEmpty()) throw new IllegalArgumentException("Nenhuma parcela informada");
+        ValidationResult descValidation = InputValidator.validateDescription("Descrição da " + tipo, grupo.getDescricao(), true);
+        if (!descValidation.isValid()) throw new IllegalArgumentException(descValidation.getErrors().get(0));
+        for (NovaParcela parcela : parcelas) {
+            ValidationResult res = InputValidator.validateMoney("Valor da " + tipo, parcela.valor, true);
+            if (!res.isValid()) throw new IllegalArgumentException(res.getErrors().get(0));
+            if (parcela.data == null) throw new IllegalArgumentException("Data não pode ser nula");
+        }
+        ValidationResult usuario = InputValidator.validateId("ID do usuário", grupo.getIdUsuario(), true);
+        if (!usuario.isValid()) throw new IllegalArgumentException(usuario.getErrors().get(0));
+        
+        Conta conta = new AccountRepository().buscarConta(grupo.getIdConta());
+        if (conta == null) throw new IllegalArgumentException("Conta não encontrada");
+        String tipoConta = conta.getTipo() != null ? conta.getTipo().toLowerCase().trim() : "";
+        if (tipoConta.startsWith("investimento")) {
+            throw new IllegalArgumentException("Contas de investimento não podem ser usadas para " + tipo + "s");
+        }
+        return InputValidator.sanitizeDescription(grupo.getDescricao());
+    }
+    
+    /**
+     * Lê o RETURNING (id, numero_parcela) de um insert de várias linhas, em ordem de parcela
+     */
+    private Map<Integer, Integer> lerIdsParcelas(ResultSet rs) throws SQLException {
+        Map<Integer, Integer> ids = new TreeMap<>();
+        while (rs.next()) {
+            ids.put(rs.getInt(2), rs.getInt(1));
+        }
+        return ids;
+    }
+    
+    private void inserirObservacoes(Connection conn, String sql, Collection<Integer> ids, String[] observacoes) throws SQLException {
+        if (observacoes == null || observacoes.length == 0) return;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int id : ids) {
+                for (int i = 0; i < observacoes.length; i++) {
+                    if (observacoes[i] != null && !observacoes[i].trim().isEmpty()) {
+                        pstmt.setInt(1, id);
+                        pstmt.setString(2, observacoes[i]);
+                        pstmt.setInt(3, i);
+                        pstmt.addBatch();
+                    }
+                }
+            }
+            pstmt.executeBatch();
+        }
+    }
+    
+    private void inserirTags(Connection conn, Collection<Integer> ids, String tipoTransacao, List<Integer> idsTags) throws SQLException {
+        if (idsTags == null || idsTags.isEmpty()) return;
+        String sql = "INSERT INTO transacao_tag (id_transacao, tipo_transacao, id_tag) VALUES (?, ?, ?) " +
+                    "ON CONFLICT (id_transacao, tipo_transacao, id_tag) DO NOTHING";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int id : ids) {
+                for (int idTag : new LinkedHashSet<>(idsTags)) {
+                    pstmt.setInt(1, id);
+                    pstmt.setString(2, tipoTransacao);
+                    pstmt.setInt(3, idTag);
+                    pstmt.addBatch();
+                }
+            }
+            pstmt.executeBatch();
+        }
+    }
+    
+    private void atualizarSaldoConta(Connection conn, int idConta, double delta) throws SQLException {
+        if (delta == 0) return;
+        try (PreparedStatement pstmt = conn.prepareStatement("UPDATE contas SET saldo_atual = saldo_atual + ? WHERE id_conta = ?")) {
+            pstmt.setDouble(1, delta);
+            pstmt.setInt(2, idConta);
+            pstmt.executeUpdate();
+        }
+    }
+    
+    /**
+     * Soma das parcelas ainda em aberto (as já pagas não movimentam o saldo)
+     */
+    private static double totalEmAberto(List<NovaParcela> parcelas) {
+        double total = 0;
+        for (NovaParcela parcela : parcelas) {
+            if (!parcela.paga) total += parcela.valor;
+        }
+        return Math.round(total * 100.0) / 100.0;
+    }
+    
     /**
      * Busca um grupo de parcelas por ID
      */
@@ -115,13 +372,16 @@ public class InstallmentRepository {
      * Atualiza descrição e conta do grupo de parcelas (metadados do grupo)
      */
     public void atualizarGrupo(int idGrupo, String descricao, int idConta) throws SQLException {
-        String sql = "UPDATE installment_groups SET descricao = ?, id_conta = ?, updated_at = CURRENT_TIMESTAMP WHERE id_grupo = ?";
+        String sql = "UPDATE installment_groups SET descricao = ?, id_conta = ?, updated_at = CURRENT_TIMESTAMP WHERE id_grupo = ? RETURNING id_usuario";
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, descricao);
             pstmt.setInt(2, idConta);
             pstmt.setInt(3, idGrupo);
-            pstmt.executeUpdate();
+            ResultSet rs = pstmt.executeQuery();
+            if (rs.next()) {
+                DataVersion.bump(rs.getInt(1), DataVersion.Entity.TRANSACTIONS);
+            }
         }
     }
     
@@ -129,12 +389,15 @@ public class InstallmentRepository {
      * Desativa um grupo de parcelas (soft delete)
      */
     public void desativarGrupo(int idGrupo) throws SQLException {
-        String sql = "UPDATE installment_groups SET ativo = FALSE, updated_at = CURRENT_TIMESTAMP WHERE id_grupo = ?";
+        String sql = "UPDATE installment_groups SET ativo = FALSE, updated_at = CURRENT_TIMESTAMP WHERE id_grupo = ? RETURNING id_usuario";
         
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, idGrupo);
-            pstmt.executeUpdate();
+            ResultSet rs = pstmt.executeQuery();
+            if (rs.next()) {
+                DataVersion.bump(rs.getInt(1), DataVersion.Entity.TRANSACTIONS);
+            }
         }
     }
     
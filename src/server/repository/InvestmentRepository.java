@@ -2,6 +2,7 @@ package server.repository;
 
 import server.database.DatabaseConnection;
 import server.model.Investimento;
+import server.utils.DataVersion;
 import server.validation.InputValidator;
 import server.validation.ValidationResult;
 import java.sql.*;
@@ -71,6 +72,7 @@ public class InvestmentRepository {
             
             // Não debita mais da conta - o saldo será calculado dinamicamente baseado no valor atual dos investimentos
             conn.commit();
+            DataVersion.bump(idUsuario, DataVersion.Entity.INVESTMENTS);
             return idInvestimento;
             
         } catch (SQLException e) {
@@ -138,6 +140,7 @@ public class InvestmentRepository {
             
             // Não debita mais da conta - o saldo será calculado dinamicamente baseado no valor atual dos investimentos
             conn.commit();
+            DataVersion.bump(idUsuario, DataVersion.Entity.INVESTMENTS);
             return idInvestimento;
             
         } catch (SQLException e) {
@@ -298,7 +301,7 @@ public class InvestmentRepository {
         if (accountId != null && accountId > 0) {
             sql += ", id_conta = ?";
         }
-        sql += " WHERE id_investimento = ?";
+        sql += " WHERE id_investimento = ? RETURNING id_usuario";
         
         try (Connection conn = getConnection()) {
             conn.setAutoCommit(false);
@@ -318,8 +321,10 @@ public class InvestmentRepository {
                     pstmt.setInt(paramIndex++, accountId);
                 }
                 pstmt.setInt(paramIndex++, idInvestimento);
-                pstmt.executeUpdate();
+                ResultSet rs = pstmt.executeQuery();
+                int idUsuario = rs.next() ? rs.getInt(1) : 0;
                 conn.commit();
+                DataVersion.bump(idUsuario, DataVersion.Entity.INVESTMENTS);
             } catch (Exception e) {
                 conn.rollback();
                 throw e;
@@ -330,12 +335,15 @@ public class InvestmentRepository {
     }
 
     public void atualizarNomeAtivo(int idInvestimento, String nomeAtivo) {
-        String sql = "UPDATE investimentos SET nome_ativo = ? WHERE id_investimento = ?";
+        String sql = "UPDATE investimentos SET nome_ativo = ? WHERE id_investimento = ? RETURNING id_usuario";
         try (Connection conn = getConnection()) {
             try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setString(1, nomeAtivo);
                 pstmt.setInt(2, idInvestimento);
-                pstmt.executeUpdate();
+                ResultSet rs = pstmt.executeQuery();
+                if (rs.next()) {
+                    DataVersion.bump(rs.getInt(1), DataVersion.Entity.INVESTMENTS);
+                }
             }
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao atualizar nome do ativo: " + e.getMessage(), e);
@@ -451,6 +459,7 @@ public class InvestmentRepository {
             
             // Não estorna mais valor na conta - o saldo será calculado dinamicamente baseado no valor atual dos investimentos
             conn.commit();
+            DataVersion.bump(inv.getIdUsuario(), DataVersion.Entity.INVESTMENTS);
         } catch (SQLException e) {
             if (conn != null) try { conn.rollback(); } catch (SQLException ex) {}
             throw new RuntimeException("Erro ao excluir investimento: " + e.getMessage(), e);
@@ -0,0 +1,92 @@
+package server.repository;
+
+import server.database.DatabaseConnection;
+import server.database.SchemaCapabilities;
+import server.model.FaturaCartao;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Livro de faturas de cartão de crédito (tabela faturas_cartao, schema_invoice_ledger.sql)
+ * As faturas são mantidas por triggers na mesma transação de cada escrita em gastos,
+ * receitas e contas; aqui ficam a leitura por chave primária e a reconstrução.
+ */
+public class InvoiceRepository {
+
+    private Connection getConnection() throws SQLException {
+        return DatabaseConnection.getInstance().getConnection();
+    }
+
+    public static boolean disponivel() {
+        return SchemaCapabilities.has(SchemaCapabilities.Capability.INVOICE_LEDGER);
+    }
+
+    /**
+     * Busca as faturas informadas (cartão -> vencimento) de um usuário em uma consulta
+     * Faturas sem lançamentos não têm linha e não aparecem no resultado.
+     */
+    public Map<Integer, FaturaCartao> buscarFaturas(int idUsuario, Map<Integer, LocalDate> vencimentos) {
+        Map<Integer, FaturaCartao> faturas = new HashMap<>();
+        if (vencimentos.isEmpty()) {
+            return faturas;
+        }
+        StringBuilder sql = new StringBuilder(
+            "SELECT id_conta, vencimento, valor_lancado, valor_pago FROM faturas_cartao " +
+            "WHERE id_usuario = ? AND (id_conta, vencimento) IN (");
+        for (int i = 0; i < vencimentos.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append("(?, ?)");
+        }
+        sql.append(")");
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            int paramIndex = 1;
+            pstmt.setInt(paramIndex++, idUsuario);
+            for (Map.Entry<Integer, LocalDate> entry : vencimentos.entrySet()) {
+                pstmt.setInt(paramIndex++, entry.getKey());
+                pstmt.setDate(paramIndex++, Date.valueOf(entry.getValue()));
+            }
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                int idConta = rs.getInt("id_conta");
+                faturas.put(idConta, new FaturaCartao(
+                    idConta,
+                    rs.getDate("vencimento").toLocalDate(),
+                    rs.getDouble("valor_lancado"),
+                    rs.getDouble("valor_pago")
+                ));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar faturas: " + e.getMessage(), e);
+        }
+        return faturas;
+    }
+
+    /**
+     * Recalcula as faturas a partir de gastos e receitas
+     * @param idUsuario usuário a reconstruir, ou null para todos
+     * @return quantidade de faturas reconstruídas
+     */
+    public int reconstruir(Integer idUsuario) {
+        if (!disponivel()) {
+            throw new IllegalStateException("Livro de faturas indisponível: aplique schema_invoice_ledger.sql");
+        }
+        String sql = "SELECT reconstruir_faturas(?)";
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                if (idUsuario != null) pstmt.setInt(1, idUsuario); else pstmt.setNull(1, Types.INTEGER);
+                ResultSet rs = pstmt.executeQuery();
+                int linhas = rs.next() ? rs.getInt(1) : 0;
+                conn.commit();
+                return linhas;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao reconstruir faturas: " + e.getMessage(), e);
+        }
+    }
+}
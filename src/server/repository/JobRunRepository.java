@@ -0,0 +1,99 @@
+package server.repository;
+
+import server.database.DatabaseConnection;
+import server.database.SchemaCapabilities;
+import java.sql.*;
+import java.time.LocalDateTime;
+
+/**
+ * Coordenação das tarefas agendadas entre instâncias: advisory locks do Postgres e
+ * histórico de execuções (tabela execucoes_jobs, schema_job_runs.sql)
+ */
+public class JobRunRepository {
+
+    // Primeira chave dos advisory locks das tarefas agendadas ('CSJB'); a segunda é o nome da tarefa
+    private static final int NAMESPACE_LOCK = 0x43534A42;
+
+    private Connection getConnection() throws SQLException {
+        return DatabaseConnection.getInstance().getConnection();
+    }
+
+    public static boolean disponivel() {
+        return SchemaCapabilities.has(SchemaCapabilities.Capability.JOB_RUNS);
+    }
+
+    /**
+     * Tenta obter o lock da tarefa sem esperar
+     * O lock é de sessão: a conexão devolvida fica reservada até liberarLock.
+     * @return conexão que detém o lock, ou null se outra instância já o detém
+     */
+    public Connection adquirirLock(String job) {
+        Connection conn = null;
+        try {
+            conn = getConnection();
+            try (PreparedStatement pstmt = conn.prepareStatement("SELECT pg_try_advisory_lock(?, ?)")) {
+                pstmt.setInt(1, NAMESPACE_LOCK);
+                pstmt.setInt(2, job.hashCode());
+                ResultSet rs = pstmt.executeQuery();
+                if (rs.next() && rs.getBoolean(1)) {
+                    return conn;
+                }
+            }
+            conn.close();
+            return null;
+        } catch (SQLException e) {
+            if (conn != null) try { conn.close(); } catch (SQLException ex) {}
+            throw new RuntimeException("Erro ao obter lock da tarefa " + job + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Libera o lock e devolve a conexão ao pool
+     */
+    public void liberarLock(Connection conn, String job) {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT pg_advisory_unlock(?, ?)")) {
+            pstmt.setInt(1, NAMESPACE_LOCK);
+            pstmt.setInt(2, job.hashCode());
+            pstmt.executeQuery();
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao liberar lock da tarefa " + job + ": " + e.getMessage(), e);
+        } finally {
+            try { conn.close(); } catch (SQLException e) {}
+        }
+    }
+
+    /**
+     * Registra uma execução da tarefa
+     */
+    public void registrar(String job, String no, LocalDateTime iniciadoEm, long duracaoMs, String status, String mensagem) {
+        String sql = "INSERT INTO execucoes_jobs (job, no, iniciado_em, duracao_ms, status, mensagem) VALUES (?, ?, ?, ?, ?, ?)";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, job);
+            pstmt.setString(2, no);
+            pstmt.setTimestamp(3, Timestamp.valueOf(iniciadoEm));
+            pstmt.setLong(4, duracaoMs);
+            pstmt.setString(5, status);
+            pstmt.setString(6, mensagem);
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao registrar execução da tarefa: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Início da última execução bem-sucedida da tarefa (em qualquer instância), ou null
+     */
+    public LocalDateTime ultimaExecucaoOk(String job) {
+        String sql = "SELECT MAX(iniciado_em) FROM execucoes_jobs WHERE job = ? AND status = 'OK'";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, job);
+            ResultSet rs = pstmt.executeQuery();
+            Timestamp ultima = rs.next() ? rs.getTimestamp(1) : null;
+            return ultima != null ? ultima.toLocalDateTime() : null;
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar última execução da tarefa: " + e.getMessage(), e);
+        }
+    }
+}
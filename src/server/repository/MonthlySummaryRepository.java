@@ -0,0 +1,48 @@
+package server.repository;
+
+import server.database.DatabaseConnection;
+import server.database.SchemaCapabilities;
+import java.sql.*;
+
+/**
+ * Resumo mensal de gastos e receitas (tabela resumo_mensal, schema_monthly_summary.sql)
+ * O resumo é mantido por triggers na mesma transação de cada escrita em gastos,
+ * categoria_gasto e receitas; aqui fica apenas a reconstrução (carga inicial ou correção).
+ */
+public class MonthlySummaryRepository {
+
+    private Connection getConnection() throws SQLException {
+        return DatabaseConnection.getInstance().getConnection();
+    }
+
+    public static boolean disponivel() {
+        return SchemaCapabilities.has(SchemaCapabilities.Capability.MONTHLY_SUMMARY);
+    }
+
+    /**
+     * Recalcula o resumo a partir de gastos e receitas
+     * @param idUsuario usuário a reconstruir, ou null para todos
+     * @return quantidade de linhas do resumo reconstruído
+     */
+    public int reconstruir(Integer idUsuario) {
+        if (!disponivel()) {
+            throw new IllegalStateException("Resumo mensal indisponível: aplique schema_monthly_summary.sql");
+        }
+        String sql = "SELECT reconstruir_resumo_mensal(?)";
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                if (idUsuario != null) pstmt.setInt(1, idUsuario); else pstmt.setNull(1, Types.INTEGER);
+                ResultSet rs = pstmt.executeQuery();
+                int linhas = rs.next() ? rs.getInt(1) : 0;
+                conn.commit();
+                return linhas;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao reconstruir resumo mensal: " + e.getMessage(), e);
+        }
+    }
+}
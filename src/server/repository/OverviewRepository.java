@@ -0,0 +1,214 @@
+package server.repository;
+
+import server.database.DatabaseConnection;
+import server.database.SchemaCapabilities;
+import server.model.VisaoGeral;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Números do painel (visão geral) calculados em uma única consulta
+ * Totais de receitas e gastos, saldos por tipo de conta, gastos por categoria, contas de
+ * investimento e a fatura aberta de cada cartão saem de um único comando com CTEs; cada
+ * seção volta como um grupo de linhas identificado pela coluna "secao".
+ */
+public class OverviewRepository {
+
+    private Connection getConnection() throws SQLException {
+        return DatabaseConnection.getInstance().getConnection();
+    }
+
+    /**
+     * Monta a visão geral do usuário na data de referência
+     */
+    public VisaoGeral buscarVisaoGeral(int idUsuario, LocalDate hoje) {
+        double totalReceitas = 0, totalGastos = 0, saldoLiquidas = 0, credito = 0, saldoContas = 0;
+        List<Integer> contasInvestimento = new ArrayList<>();
+        List<VisaoGeral.Fatura> faturas = new ArrayList<>();
+        List<VisaoGeral.TotalCategoria> categorias = new ArrayList<>();
+
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(montarSql())) {
+            pstmt.setInt(1, idUsuario);
+            pstmt.setDate(2, Date.valueOf(hoje));
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                switch (rs.getString("secao")) {
+                    case "totais":
+                        totalReceitas = rs.getDouble("v1");
+                        totalGastos = rs.getDouble("v2");
+                        saldoLiquidas = rs.getDouble("v3");
+                        credito = rs.getDouble("v4");
+                        saldoContas = rs.getDouble("v5");
+                        break;
+                    case "categoria":
+                        categorias.add(new VisaoGeral.TotalCategoria(rs.getInt("id"), rs.getString("nome"), rs.getDouble("v1")));
+                        break;
+                    case "investimento":
+                        contasInvestimento.add(rs.getInt("id"));
+                        break;
+                    case "fatura":
+                        faturas.add(new VisaoGeral.Fatura(
+                            rs.getInt("id"),
+                            rs.getString("nome"),
+                            rs.getDate("d1").toLocalDate(),
+                            rs.getDate("d2").toLocalDate(),
+                            rs.getDate("d3").toLocalDate(),
+                            rs.getDouble("v1"),
+                            rs.getDouble("v2")
+                        ));
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar visão geral: " + e.getMessage(), e);
+        }
+        return new VisaoGeral(hoje, totalReceitas, totalGastos, saldoLiquidas, credito, saldoContas,
+                              contasInvestimento, faturas, categorias);
+    }
+
+    private String montarSql() {
+        boolean resumo = MonthlySummaryRepository.disponivel();
+        boolean cartoes = SchemaCapabilities.has(SchemaCapabilities.Capability.CARD_BILLING_DAYS);
+        boolean parcelas = SchemaCapabilities.has(SchemaCapabilities.Capability.INSTALLMENT_GROUPS);
+
+        // Mesmas regras de calcularTotalReceitasUsuario / calcularTotalGastosUsuario
+        String receitas = resumo
+            ? "SELECT COALESCE(SUM(r.total), 0) FROM resumo_mensal r JOIN contas c ON r.id_conta = c.id_conta " +
+              "WHERE r.id_usuario = p.id_usuario AND r.tipo = 'R' " +
+              "AND (c.tipo IS NULL OR (UPPER(c.tipo) NOT LIKE 'CARTAO%' AND UPPER(c.tipo) != 'CARTAO_CREDITO') OR r.parcelado)"
+            : "SELECT COALESCE(SUM(r.valor), 0) FROM receitas r JOIN contas c ON r.id_conta = c.id_conta " +
+              "WHERE r.id_usuario = p.id_usuario AND r.ativo = TRUE AND r.descricao NOT LIKE '[SISTEMA]%' " +
+              "AND (c.tipo IS NULL OR (UPPER(c.tipo) NOT LIKE 'CARTAO%' AND UPPER(c.tipo) != 'CARTAO_CREDITO') OR " +
+              (parcelas ? "r.id_grupo_parcela IS NOT NULL)" : "FALSE)");
+        String gastos = resumo
+            ? "SELECT COALESCE(SUM(total), 0) FROM resumo_mensal WHERE id_usuario = p.id_usuario AND tipo = 'G'"
+            : "SELECT COALESCE(SUM(valor), 0) FROM gastos WHERE id_usuario = p.id_usuario " +
+              (parcelas ? "AND (ativo = TRUE OR id_grupo_parcela IS NOT NULL)" : "AND ativo = TRUE");
+        String porCategoria = resumo
+            ? "SELECT rm.id_categoria, SUM(rm.total) AS total FROM resumo_mensal rm CROSS JOIN p " +
+              "WHERE rm.id_usuario = p.id_usuario AND rm.tipo = 'C' AND rm.ativo = TRUE GROUP BY rm.id_categoria"
+            : "SELECT cg.id_categoria, SUM(g.valor) AS total FROM gastos g " +
+              "JOIN categoria_gasto cg ON g.id_gasto = cg.id_gasto CROSS JOIN p " +
+              "WHERE g.id_usuario = p.id_usuario AND g.ativo = TRUE AND cg.ativo = TRUE GROUP BY cg.id_categoria";
+
+        StringBuilder sql = new StringBuilder();
+        sql.append("WITH p AS (SELECT ?::INTEGER AS id_usuario, ?::DATE AS hoje), ")
+           .append("totais AS (SELECT ")
+           .append("(").append(receitas).append(") AS total_receitas, ")
+           .append("(").append(gastos).append(") AS total_gastos, ")
+           .append("(SELECT COALESCE(SUM(saldo_atual), 0) FROM contas WHERE id_usuario = p.id_usuario AND ativo = TRUE ")
+           .append("AND (UPPER(tipo) LIKE '%CORRENTE%' OR UPPER(tipo) LIKE '%DINHEIRO%' ")
+           .append("OR UPPER(tipo) LIKE '%POUPANÇA%' OR UPPER(tipo) LIKE '%POUPANCA%')) AS saldo_liquidas, ")
+           .append("(SELECT COALESCE(SUM(saldo_atual), 0) FROM contas WHERE id_usuario = p.id_usuario AND ativo = TRUE ")
+           .append("AND (UPPER(tipo) LIKE 'CARTAO%' OR UPPER(tipo) = 'CARTAO_CREDITO')) AS credito, ")
+           .append("(SELECT COALESCE(SUM(saldo_atual), 0) FROM contas WHERE id_usuario = p.id_usuario AND ativo = TRUE ")
+           .append("AND (tipo IS NULL OR (UPPER(tipo) NOT LIKE 'CARTAO%' AND UPPER(tipo) != 'CARTAO_CREDITO' ")
+           .append("AND UPPER(tipo) NOT LIKE 'INVESTIMENTO%'))) AS saldo_contas ")
+           .append("FROM p), ")
+           .append("por_categoria AS (").append(porCategoria).append("), ")
+           .append("categorias_total AS (SELECT cat.id_categoria, cat.nome, t.total FROM categorias cat ")
+           .append("JOIN por_categoria t ON t.id_categoria = cat.id_categoria CROSS JOIN p ")
+           .append("WHERE cat.id_usuario = p.id_usuario AND cat.ativo = TRUE AND t.total > 0)");
+        if (cartoes) {
+            appendJanelasFatura(sql);
+        }
+
+        sql.append(" SELECT 'totais' AS secao, 0 AS ordem, NULL::INTEGER AS id, NULL::TEXT AS nome, ")
+           .append("t.total_receitas::NUMERIC AS v1, t.total_gastos::NUMERIC AS v2, t.saldo_liquidas::NUMERIC AS v3, ")
+           .append("t.credito::NUMERIC AS v4, t.saldo_contas::NUMERIC AS v5, NULL::DATE AS d1, NULL::DATE AS d2, NULL::DATE AS d3 ")
+           .append("FROM totais t")
+           // "Sem Categoria" por último, como na listagem de categorias
+           .append(" UNION ALL SELECT 'categoria', ROW_NUMBER() OVER (ORDER BY UPPER(nome) = 'SEM CATEGORIA', nome)::INTEGER, ")
+           .append("id_categoria, nome, total, NULL, NULL, NULL, NULL, NULL, NULL, NULL FROM categorias_total")
+           .append(" UNION ALL SELECT 'investimento', 0, c.id_conta, c.nome, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL ")
+           .append("FROM contas c CROSS JOIN p WHERE c.id_usuario = p.id_usuario AND c.ativo = TRUE ")
+           .append("AND LOWER(TRIM(c.tipo)) LIKE 'investimento%'");
+        if (cartoes && InvoiceRepository.disponivel()) {
+            // Livro de faturas: uma leitura por chave primária (cartão, vencimento)
+            sql.append(" UNION ALL SELECT 'fatura', ROW_NUMBER() OVER (ORDER BY f.nome)::INTEGER, f.id_conta, f.nome, ")
+               .append("COALESCE(fc.valor_lancado, 0), COALESCE(fc.valor_pago, 0), NULL, NULL, NULL, ")
+               .append("f.ultimo_fechamento, f.proximo_fechamento, f.proximo_pagamento FROM faturas f ")
+               .append("LEFT JOIN faturas_cartao fc ON fc.id_conta = f.id_conta AND fc.vencimento = f.proximo_pagamento");
+        } else if (cartoes) {
+            appendFaturas(sql, parcelas);
+        }
+        sql.append(" ORDER BY secao, ordem");
+        return sql.toString();
+    }
+
+    /**
+     * CTEs com as datas da fatura aberta de cada cartão, com as mesmas regras de
+     * CreditCardUtil.calcularInfoFatura: próximo pagamento a partir de hoje, o fechamento
+     * dessa fatura e o fechamento anterior.
+     */
+    private static void appendJanelasFatura(StringBuilder sql) {
+        String mesPagamento = "date_trunc('month', pg.proximo_pagamento)::DATE";
+        String mesAnteriorPagamento = "(date_trunc('month', pg.proximo_pagamento) - INTERVAL '1 month')::DATE";
+        sql.append(", cartoes AS (SELECT c.id_conta, c.nome, c.dia_fechamento AS df, c.dia_pagamento AS dp, p.hoje, ")
+           .append("date_trunc('month', p.hoje)::DATE AS mes FROM contas c CROSS JOIN p ")
+           .append("WHERE c.id_usuario = p.id_usuario AND c.ativo = TRUE AND UPPER(c.tipo) LIKE '%CARTAO%' ")
+           .append("AND c.dia_fechamento IS NOT NULL AND c.dia_pagamento IS NOT NULL), ")
+           .append("pagamentos AS (SELECT c.id_conta, c.nome, c.df, c.dp, ")
+           .append("CASE WHEN c.hoje <= ").append(diaDoMes("c.mes", "c.dp"))
+           .append(" THEN ").append(diaDoMes("c.mes", "c.dp"))
+           .append(" ELSE ").append(diaDoMes("(c.mes + INTERVAL '1 month')::DATE", "c.dp"))
+           .append(" END AS proximo_pagamento FROM cartoes c), ")
+           .append("fechamentos AS (SELECT pg.id_conta, pg.nome, pg.df, pg.proximo_pagamento, ")
+           // Compras com vencimento após o pagamento anterior caem na fatura deste pagamento
+           .append(diaDoMes(mesAnteriorPagamento, "pg.dp")).append(" AS pagamento_anterior, ")
+           .append("CASE WHEN ").append(diaDoMes(mesPagamento, "pg.df")).append(" <= pg.proximo_pagamento")
+           .append(" THEN ").append(diaDoMes(mesPagamento, "pg.df"))
+           .append(" ELSE ").append(diaDoMes(mesAnteriorPagamento, "pg.df"))
+           .append(" END AS proximo_fechamento FROM pagamentos pg), ")
+           .append("faturas AS (SELECT f.id_conta, f.nome, f.proximo_pagamento, f.pagamento_anterior, f.proximo_fechamento, ")
+           .append(diaDoMes("(date_trunc('month', f.proximo_fechamento) - INTERVAL '1 month')::DATE", "f.df"))
+           .append(" AS ultimo_fechamento FROM fechamentos f)");
+    }
+
+    /**
+     * Linhas de fatura: valor da fatura aberta e total já pago, com as mesmas regras de
+     * calcularValorFaturaAtual e calcularTotalPagoFatura
+     */
+    private static void appendFaturas(StringBuilder sql, boolean parcelas) {
+        String dataFatura = "COALESCE(g.data_entrada_fatura, g.data)";
+        // Uma compra pertence à fatura cujo pagamento é o primeiro na data (ou após a data) em que entra no cartão
+        String naFatura = "(" + dataFatura + " > f.pagamento_anterior AND " + dataFatura + " <= f.proximo_pagamento)";
+        // Compras à vista também entram pelo período entre fechamentos
+        String noPeriodo = dataFatura + " > f.ultimo_fechamento AND " + dataFatura + " <= f.proximo_fechamento";
+        sql.append(" UNION ALL SELECT 'fatura', ROW_NUMBER() OVER (ORDER BY f.nome)::INTEGER, f.id_conta, f.nome, ")
+           .append("(SELECT COALESCE(SUM(g.valor), 0) FROM gastos g ")
+           .append("WHERE g.id_conta = f.id_conta AND g.id_usuario = p.id_usuario AND g.ativo = TRUE ");
+        if (parcelas) {
+            sql.append("AND (g.id_grupo_parcela IS NULL OR EXISTS (SELECT 1 FROM installment_groups ig ")
+               .append("WHERE ig.id_grupo = g.id_grupo_parcela AND ig.data_primeira_parcela IS NOT NULL)) ")
+               .append("AND (").append(naFatura).append(" OR (g.id_grupo_parcela IS NULL AND ").append(noPeriodo).append(")))");
+        } else {
+            sql.append("AND (").append(naFatura).append(" OR (").append(noPeriodo).append(")))");
+        }
+        // Pagamentos contam do último fechamento até a data de pagamento
+        sql.append(", (SELECT COALESCE(SUM(r.valor), 0) FROM receitas r ")
+           .append("WHERE r.id_usuario = p.id_usuario AND r.id_conta = f.id_conta AND r.ativo = TRUE ")
+           .append("AND r.data >= f.ultimo_fechamento AND r.data < f.proximo_pagamento)");
+        if (parcelas) {
+            sql.append(" + (SELECT COALESCE(SUM(g.valor), 0) FROM gastos g ")
+               .append("WHERE g.id_conta = f.id_conta AND g.id_usuario = p.id_usuario AND g.ativo = FALSE ")
+               .append("AND g.id_grupo_parcela IS NOT NULL ")
+               .append("AND g.data >= f.ultimo_fechamento AND g.data < f.proximo_pagamento)");
+        }
+        sql.append(", NULL, NULL, NULL, f.ultimo_fechamento, f.proximo_fechamento, f.proximo_pagamento ")
+           .append("FROM faturas f CROSS JOIN p");
+    }
+
+    /**
+     * Expressão SQL do dia informado no mês (limitado ao último dia do mês, ex: 31 em fevereiro)
+     * @param mes expressão DATE do primeiro dia do mês
+     */
+    private static String diaDoMes(String mes, String dia) {
+        return "(" + mes + " + LEAST(" + dia + ", EXTRACT(DAY FROM " + mes + " + INTERVAL '1 month - 1 day')::INTEGER) - 1)";
+    }
+}
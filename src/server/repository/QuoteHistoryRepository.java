@@ -0,0 +1,127 @@
+package server.repository;
+
+import server.database.DatabaseConnection;
+import server.database.SchemaCapabilities;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Fechamentos diários dos ativos já buscados nas APIs de cotação e o período já consultado
+ * (tabelas cotacoes_historicas e cotacoes_historicas_cobertura, schema_quote_history.sql)
+ */
+public class QuoteHistoryRepository {
+
+    private Connection getConnection() throws SQLException {
+        return DatabaseConnection.getInstance().getConnection();
+    }
+
+    public static boolean disponivel() {
+        return SchemaCapabilities.has(SchemaCapabilities.Capability.QUOTE_HISTORY);
+    }
+
+    /**
+     * Fechamento guardado do ativo na data, ou null
+     */
+    public Double buscar(String simbolo, String categoria, LocalDate data) {
+        String sql = "SELECT preco FROM cotacoes_historicas WHERE simbolo = ? AND categoria = ? AND data = ?";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, simbolo);
+            pstmt.setString(2, categoria);
+            pstmt.setDate(3, Date.valueOf(data));
+            ResultSet rs = pstmt.executeQuery();
+            return rs.next() ? rs.getDouble(1) : null;
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar cotação histórica: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Fechamentos guardados do ativo no período (datas inclusivas), em ordem de data
+     */
+    public TreeMap<LocalDate, Double> buscarPeriodo(String simbolo, String categoria, LocalDate de, LocalDate ate) {
+        String sql = "SELECT data, preco FROM cotacoes_historicas " +
+                     "WHERE simbolo = ? AND categoria = ? AND data BETWEEN ? AND ?";
+        TreeMap<LocalDate, Double> precos = new TreeMap<>();
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, simbolo);
+            pstmt.setString(2, categoria);
+            pstmt.setDate(3, Date.valueOf(de));
+            pstmt.setDate(4, Date.valueOf(ate));
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                precos.put(rs.getDate("data").toLocalDate(), rs.getDouble("preco"));
+            }
+            return precos;
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar cotações históricas: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Período já consultado na API para o ativo ({inicio, fim}), ou null
+     */
+    public LocalDate[] buscarCobertura(String simbolo, String categoria) {
+        String sql = "SELECT inicio, fim FROM cotacoes_historicas_cobertura WHERE simbolo = ? AND categoria = ?";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, simbolo);
+            pstmt.setString(2, categoria);
+            ResultSet rs = pstmt.executeQuery();
+            if (!rs.next()) return null;
+            return new LocalDate[] { rs.getDate("inicio").toLocalDate(), rs.getDate("fim").toLocalDate() };
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar cobertura de cotações históricas: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Grava os fechamentos do ativo (datas já guardadas são mantidas) e, se inicio não for null,
+     * junta o período [inicio, fim] à cobertura, na mesma transação. O período deve tocar ou
+     * sobrepor a cobertura atual, para que ela continue contínua.
+     */
+    public void gravar(String simbolo, String categoria, Map<LocalDate, Double> precos, LocalDate inicio, LocalDate fim) {
+        if (precos.isEmpty() && inicio == null) return;
+        String sqlPreco = "INSERT INTO cotacoes_historicas (simbolo, categoria, data, preco) VALUES (?, ?, ?, ?) " +
+                          "ON CONFLICT (simbolo, categoria, data) DO NOTHING";
+        String sqlCobertura = "INSERT INTO cotacoes_historicas_cobertura (simbolo, categoria, inicio, fim) VALUES (?, ?, ?, ?) " +
+                              "ON CONFLICT (simbolo, categoria) DO UPDATE SET " +
+                              "inicio = LEAST(cotacoes_historicas_cobertura.inicio, EXCLUDED.inicio), " +
+                              "fim = GREATEST(cotacoes_historicas_cobertura.fim, EXCLUDED.fim)";
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                if (!precos.isEmpty()) {
+                    try (PreparedStatement pstmt = conn.prepareStatement(sqlPreco)) {
+                        for (Map.Entry<LocalDate, Double> preco : precos.entrySet()) {
+                            pstmt.setString(1, simbolo);
+                            pstmt.setString(2, categoria);
+                            pstmt.setDate(3, Date.valueOf(preco.getKey()));
+                            pstmt.setDouble(4, preco.getValue());
+                            pstmt.addBatch();
+                        }
+                        pstmt.executeBatch();
+                    }
+                }
+                if (inicio != null) {
+                    try (PreparedStatement pstmt = conn.prepareStatement(sqlCobertura)) {
+                        pstmt.setString(1, simbolo);
+                        pstmt.setString(2, categoria);
+                        pstmt.setDate(3, Date.valueOf(inicio));
+                        pstmt.setDate(4, Date.valueOf(fim));
+                        pstmt.executeUpdate();
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao gravar cotações históricas: " + e.getMessage(), e);
+        }
+    }
+}
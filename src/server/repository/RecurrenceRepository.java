@@ -0,0 +1,204 @@
+package server.repository;
+
+import server.database.DatabaseConnection;
+import server.utils.DataVersion;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Geração de recorrências em conjunto
+ * Cada lote de lançamentos originais vencidos é expandido em todas as ocorrências devidas até a
+ * data de referência (inclusive períodos perdidos com o servidor parado) por poucos INSERT ... SELECT
+ * em uma transação: lançamentos, categorias, observações, tags, saldos e a próxima recorrência.
+ * Só lançamentos originais geram ocorrências; as cópias não têm próxima recorrência.
+ * Uma ocorrência já existente para o mesmo original e data não é gerada de novo.
+ */
+public class RecurrenceRepository {
+
+    /**
+     * Tabelas e colunas de cada tipo de lançamento
+     */
+    public enum Tipo {
+        GASTO("gastos", "id_gasto", "id_gasto_original", "gasto_observacoes", "-"),
+        RECEITA("receitas", "id_receita", "id_receita_original", "receita_observacoes", "+");
+
+        final String tabela;
+        final String id;
+        final String idOriginal;
+        final String observacoes;
+        final String sinalSaldo;
+
+        Tipo(String tabela, String id, String idOriginal, String observacoes, String sinalSaldo) {
+            this.tabela = tabela;
+            this.id = id;
+            this.idOriginal = idOriginal;
+            this.observacoes = observacoes;
+            this.sinalSaldo = sinalSaldo;
+        }
+    }
+
+    /**
+     * Resultado de um lote
+     */
+    public static final class Lote {
+        public final int originais;
+        public final int criadas;
+        public final int ultimoId;
+        /** Originais do lote que passaram do limite de ocorrências e continuam vencidos */
+        public final int pendentes;
+
+        Lote(int originais, int criadas, int ultimoId, int pendentes) {
+            this.originais = originais;
+            this.criadas = criadas;
+            this.ultimoId = ultimoId;
+            this.pendentes = pendentes;
+        }
+    }
+
+    // Intervalo de cada frequência; as demais não recorrem (como calcularProximaRecorrencia)
+    private static final String INTERVALO =
+        "(CASE UPPER(o.frequencia) WHEN 'SEMANAL' THEN INTERVAL '1 week' " +
+        "WHEN 'MENSAL' THEN INTERVAL '1 month' WHEN 'ANUAL' THEN INTERVAL '1 year' END)";
+
+    private Connection getConnection() throws SQLException {
+        return DatabaseConnection.getInstance().getConnection();
+    }
+
+    /**
+     * Gera as ocorrências devidas do próximo lote de originais com id maior que aposId
+     * @param ate data de referência (inclusive)
+     * @param tamanhoLote quantidade máxima de originais no lote
+     * @param maxOcorrencias ocorrências geradas por original neste lote; o restante fica para o próximo
+     * @return resultado do lote (originais = 0 quando não há mais nada vencido)
+     */
+    public Lote gerarLote(Tipo tipo, LocalDate ate, int aposId, int tamanhoLote, int maxOcorrencias) {
+        String t = tipo.tabela;
+        String sqlOriginais = "SELECT " + tipo.id + " FROM " + t + " " +
+                    "WHERE proxima_recorrencia IS NOT NULL AND proxima_recorrencia <= ? AND ativo = TRUE " +
+                    "AND COALESCE(" + tipo.idOriginal + ", 0) = 0 " +
+                    "AND UPPER(frequencia) IN ('SEMANAL', 'MENSAL', 'ANUAL') AND " + tipo.id + " > ? " +
+                    "ORDER BY " + tipo.id + " LIMIT ? FOR UPDATE SKIP LOCKED";
+        // Ocorrências devidas de cada original (série a partir da próxima recorrência), já com o id novo
+        String sqlTemporaria = "CREATE TEMP TABLE recorrencias_geradas (id_original INTEGER, data DATE, id_novo INTEGER) " +
+                    "ON COMMIT DROP";
+        String sqlOcorrencias = "INSERT INTO recorrencias_geradas (id_original, data, id_novo) " +
+                    "SELECT o." + tipo.id + " AS id_original, s.data::date AS data, " +
+                    "nextval(pg_get_serial_sequence('" + t + "', '" + tipo.id + "')) AS id_novo " +
+                    "FROM " + t + " o " +
+                    "CROSS JOIN LATERAL generate_series(o.proxima_recorrencia, ?::date, " + INTERVALO + ") " +
+                    "WITH ORDINALITY AS s(data, n) " +
+                    "WHERE o." + tipo.id + " = ANY(?) AND s.n <= ? " +
+                    "AND NOT EXISTS (SELECT 1 FROM " + t + " c WHERE c." + tipo.idOriginal + " = o." + tipo.id + " " +
+                    "AND c.data = s.data::date)";
+        String sqlLancamentos = "INSERT INTO " + t + " (" + tipo.id + ", descricao, valor, data, frequencia, " +
+                    "id_usuario, id_conta, proxima_recorrencia, " + tipo.idOriginal + ") " +
+                    "SELECT r.id_novo, LEFT(o.descricao || ' (Recorrência)', 500), o.valor, r.data, o.frequencia, " +
+                    "o.id_usuario, o.id_conta, NULL, r.id_original " +
+                    "FROM recorrencias_geradas r JOIN " + t + " o ON o." + tipo.id + " = r.id_original";
+        String sqlCategorias = "INSERT INTO categoria_gasto (id_categoria, id_gasto) " +
+                    "SELECT cg.id_categoria, r.id_novo FROM recorrencias_geradas r " +
+                    "JOIN categoria_gasto cg ON cg.id_gasto = r.id_original AND cg.ativo = TRUE " +
+                    "ON CONFLICT DO NOTHING";
+        String sqlObservacoes = "INSERT INTO " + tipo.observacoes + " (" + tipo.id + ", observacao, ordem) " +
+                    "SELECT r.id_novo, ob.observacao, ob.ordem FROM recorrencias_geradas r " +
+                    "JOIN " + tipo.observacoes + " ob ON ob." + tipo.id + " = r.id_original";
+        String sqlTags = "INSERT INTO transacao_tag (id_transacao, tipo_transacao, id_tag) " +
+                    "SELECT r.id_novo, tt.tipo_transacao, tt.id_tag FROM recorrencias_geradas r " +
+                    "JOIN transacao_tag tt ON tt.id_transacao = r.id_original AND tt.tipo_transacao = ? AND tt.ativo = TRUE " +
+                    "ON CONFLICT DO NOTHING";
+        String sqlSaldos = "UPDATE contas c SET saldo_atual = c.saldo_atual " + tipo.sinalSaldo + " s.total " +
+                    "FROM (SELECT o.id_conta, SUM(o.valor) AS total FROM recorrencias_geradas r " +
+                    "JOIN " + t + " o ON o." + tipo.id + " = r.id_original GROUP BY o.id_conta) s " +
+                    "WHERE c.id_conta = s.id_conta";
+        // Próxima recorrência: um período após a última ocorrência do lote (gerada agora ou já existente)
+        String sqlProxima = "UPDATE " + t + " o SET proxima_recorrencia = (" +
+                    "SELECT (MAX(s.data) + " + INTERVALO + ")::date " +
+                    "FROM generate_series(o.proxima_recorrencia, ?::date, " + INTERVALO + ") WITH ORDINALITY AS s(data, n) " +
+                    "WHERE s.n <= ?) " +
+                    "WHERE o." + tipo.id + " = ANY(?) RETURNING o.id_usuario, o.proxima_recorrencia <= ?::date AS pendente";
+
+        Connection conn = null;
+        try {
+            conn = getConnection();
+            conn.setAutoCommit(false);
+
+            List<Integer> ids = new ArrayList<>();
+            try (PreparedStatement pstmt = conn.prepareStatement(sqlOriginais)) {
+                pstmt.setDate(1, java.sql.Date.valueOf(ate));
+                pstmt.setInt(2, aposId);
+                pstmt.setInt(3, tamanhoLote);
+                ResultSet rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                }
+            }
+            if (ids.isEmpty()) {
+                conn.commit();
+                return new Lote(0, 0, aposId, 0);
+            }
+            Array idsArray = conn.createArrayOf("integer", ids.toArray());
+
+            int criadas;
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(sqlTemporaria);
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(sqlOcorrencias)) {
+                pstmt.setDate(1, java.sql.Date.valueOf(ate));
+                pstmt.setArray(2, idsArray);
+                pstmt.setInt(3, maxOcorrencias);
+                pstmt.executeUpdate();
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(sqlLancamentos)) {
+                criadas = pstmt.executeUpdate();
+            }
+            if (criadas > 0) {
+                if (tipo == Tipo.GASTO) {
+                    try (PreparedStatement pstmt = conn.prepareStatement(sqlCategorias)) {
+                        pstmt.executeUpdate();
+                    }
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(sqlObservacoes)) {
+                    pstmt.executeUpdate();
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(sqlTags)) {
+                    pstmt.setString(1, tipo.name());
+                    pstmt.executeUpdate();
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(sqlSaldos)) {
+                    pstmt.executeUpdate();
+                }
+            }
+
+            Set<Integer> usuarios = new HashSet<>();
+            int pendentes = 0;
+            try (PreparedStatement pstmt = conn.prepareStatement(sqlProxima)) {
+                pstmt.setDate(1, java.sql.Date.valueOf(ate));
+                pstmt.setInt(2, maxOcorrencias);
+                pstmt.setArray(3, idsArray);
+                pstmt.setDate(4, java.sql.Date.valueOf(ate));
+                ResultSet rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    usuarios.add(rs.getInt(1));
+                    if (rs.getBoolean(2)) pendentes++;
+                }
+            }
+
+            conn.commit();
+            if (criadas > 0) {
+                for (int idUsuario : usuarios) {
+                    DataVersion.bump(idUsuario, DataVersion.Entity.TRANSACTIONS, DataVersion.Entity.ACCOUNTS);
+                }
+            }
+            return new Lote(ids.size(), criadas, ids.get(ids.size() - 1), pendentes);
+        } catch (SQLException e) {
+            if (conn != null) try { conn.rollback(); } catch (SQLException ex) {}
+            throw new RuntimeException("Erro ao gerar recorrências de " + t + ": " + e.getMessage(), e);
+        } finally {
+            if (conn != null) try { conn.close(); } catch (SQLException e) {}
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package server.repository;
+
+import server.database.DatabaseConnection;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Consultas agregadas dos relatórios
+ * Totais, análises por categoria e por conta, série mensal e maiores gastos são
+ * calculados no banco com GROUP BY, sem carregar as linhas de cada gasto.
+ * Os filtros são os mesmos de buscarGastosPorPeriodo / buscarReceitasPorPeriodo.
+ *
+ * Períodos formados por meses inteiros são lidos do resumo mensal (resumo_mensal),
+ * cujo custo não cresce com o histórico do usuário; outros períodos somam as linhas.
+ */
+public class ReportRepository {
+
+    private static final String RECEITAS_VISIVEIS = "r.ativo = TRUE AND r.descricao NOT LIKE '[SISTEMA]%' ";
+
+    /**
+     * Recebe cada linha da exportação do relatório
+     */
+    @FunctionalInterface
+    public interface RowHandler {
+        void row(String tipo, String descricao, double valor, LocalDate data,
+                 String categorias, String conta, String observacoes);
+    }
+
+    private Connection getConnection() throws SQLException {
+        return DatabaseConnection.getInstance().getConnection();
+    }
+
+    /**
+     * Totais e quantidades de gastos e receitas do período
+     * @return mapa com totalExpenses, totalIncomes, expenseCount e incomeCount
+     */
+    public Map<String, Number> buscarTotais(int idUsuario, LocalDate dataInicio, LocalDate dataFim) {
+        boolean resumo = usaResumo(dataInicio, dataFim);
+        String sql = resumo
+            ? "SELECT " +
+              "COALESCE(SUM(total) FILTER (WHERE tipo = 'G'), 0) AS total_gastos, " +
+              "COALESCE(SUM(quantidade) FILTER (WHERE tipo = 'G'), 0) AS qtd_gastos, " +
+              "COALESCE(SUM(total) FILTER (WHERE tipo = 'R'), 0) AS total_receitas, " +
+              "COALESCE(SUM(quantidade) FILTER (WHERE tipo = 'R'), 0) AS qtd_receitas " +
+              "FROM resumo_mensal WHERE id_usuario = ? AND mes BETWEEN ? AND ? AND tipo IN ('G', 'R') AND ativo = TRUE"
+            : "SELECT " +
+              "(SELECT COALESCE(SUM(g.valor), 0) FROM gastos g WHERE g.id_usuario = ? AND g.ativo = TRUE AND g.data BETWEEN ? AND ?) AS total_gastos, " +
+              "(SELECT COUNT(*) FROM gastos g WHERE g.id_usuario = ? AND g.ativo = TRUE AND g.data BETWEEN ? AND ?) AS qtd_gastos, " +
+              "(SELECT COALESCE(SUM(r.valor), 0) FROM receitas r WHERE r.id_usuario = ? AND " + RECEITAS_VISIVEIS + "AND r.data BETWEEN ? AND ?) AS total_receitas, " +
+              "(SELECT COUNT(*) FROM receitas r WHERE r.id_usuario = ? AND " + RECEITAS_VISIVEIS + "AND r.data BETWEEN ? AND ?) AS qtd_receitas";
+        Map<String, Number> totais = new HashMap<>();
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            if (resumo) {
+                setPeriodo(pstmt, 1, idUsuario, dataInicio, dataFim);
+            } else {
+                for (int i = 0; i < 4; i++) {
+                    setPeriodo(pstmt, i * 3 + 1, idUsuario, dataInicio, dataFim);
+                }
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                totais.put("totalExpenses", rs.getDouble("total_gastos"));
+                totais.put("expenseCount", rs.getInt("qtd_gastos"));
+                totais.put("totalIncomes", rs.getDouble("total_receitas"));
+                totais.put("incomeCount", rs.getInt("qtd_receitas"));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao calcular totais do relatório: " + e.getMessage(), e);
+        }
+        return totais;
+    }
+
+    /**
+     * Total de gastos do período por nome de categoria
+     * Um gasto com várias categorias conta integralmente em cada uma delas
+     */
+    public Map<String, Double> buscarTotaisPorCategoria(int idUsuario, LocalDate dataInicio, LocalDate dataFim) {
+        String sql = usaResumo(dataInicio, dataFim)
+            ? "SELECT c.nome, SUM(rm.total) AS total " +
+              "FROM resumo_mensal rm " +
+              "INNER JOIN categorias c ON c.id_categoria = rm.id_categoria AND c.ativo = TRUE " +
+              "WHERE rm.id_usuario = ? AND rm.mes BETWEEN ? AND ? AND rm.tipo = 'C' AND rm.ativo = TRUE " +
+              "GROUP BY c.nome"
+            : "SELECT c.nome, SUM(g.valor) AS total " +
+              "FROM gastos g " +
+              "INNER JOIN categoria_gasto cg ON cg.id_gasto = g.id_gasto AND cg.ativo = TRUE " +
+              "INNER JOIN categorias c ON c.id_categoria = cg.id_categoria AND c.ativo = TRUE " +
+              "WHERE g.id_usuario = ? AND g.ativo = TRUE AND g.data BETWEEN ? AND ? " +
+              "GROUP BY c.nome";
+        return buscarTotaisPorNome(sql, idUsuario, dataInicio, dataFim, "Erro ao calcular gastos por categoria: ");
+    }
+
+    /**
+     * Total de gastos do período por nome de conta (apenas contas ativas do usuário)
+     */
+    public Map<String, Double> buscarTotaisPorConta(int idUsuario, LocalDate dataInicio, LocalDate dataFim) {
+        String sql = usaResumo(dataInicio, dataFim)
+            ? "SELECT c.nome, SUM(rm.total) AS total " +
+              "FROM resumo_mensal rm " +
+              "INNER JOIN contas c ON c.id_conta = rm.id_conta AND c.ativo = TRUE AND c.id_usuario = rm.id_usuario " +
+              "WHERE rm.id_usuario = ? AND rm.mes BETWEEN ? AND ? AND rm.tipo = 'G' AND rm.ativo = TRUE " +
+              "GROUP BY c.nome"
+            : "SELECT c.nome, SUM(g.valor) AS total " +
+              "FROM gastos g " +
+              "INNER JOIN contas c ON c.id_conta = g.id_conta AND c.ativo = TRUE AND c.id_usuario = g.id_usuario " +
+              "WHERE g.id_usuario = ? AND g.ativo = TRUE AND g.data BETWEEN ? AND ? " +
+              "GROUP BY c.nome";
+        return buscarTotaisPorNome(sql, idUsuario, dataInicio, dataFim, "Erro ao calcular gastos por conta: ");
+    }
+
+    private Map<String, Double> buscarTotaisPorNome(String sql, int idUsuario, LocalDate dataInicio, LocalDate dataFim, String erro) {
+        Map<String, Double> totais = new HashMap<>();
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            setPeriodo(pstmt, 1, idUsuario, dataInicio, dataFim);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    totais.put(rs.getString("nome"), rs.getDouble("total"));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(erro + e.getMessage(), e);
+        }
+        return totais;
+    }
+
+    /**
+     * Gastos e receitas por mês entre os meses de dataInicio e dataFim (inclusive)
+     * Meses sem movimentação aparecem com zero.
+     * @return chave = primeiro dia do mês; valor = {gastos, receitas}
+     */
+    public Map<LocalDate, double[]> buscarSerieMensal(int idUsuario, LocalDate dataInicio, LocalDate dataFim) {
+        LocalDate primeiroMes = dataInicio.withDayOfMonth(1);
+        LocalDate fim = dataFim.withDayOfMonth(dataFim.lengthOfMonth());
+        Map<LocalDate, double[]> serie = new LinkedHashMap<>();
+        for (LocalDate mes = primeiroMes; !mes.isAfter(fim); mes = mes.plusMonths(1)) {
+            serie.put(mes, new double[2]);
+        }
+
+        boolean resumo = usaResumo(primeiroMes, fim);
+        String sql = resumo
+            ? "SELECT mes, " +
+              "COALESCE(SUM(total) FILTER (WHERE tipo = 'G'), 0) AS gastos, " +
+              "COALESCE(SUM(total) FILTER (WHERE tipo = 'R'), 0) AS receitas " +
+              "FROM resumo_mensal WHERE id_usuario = ? AND mes BETWEEN ? AND ? AND tipo IN ('G', 'R') AND ativo = TRUE " +
+              "GROUP BY mes"
+            : "SELECT mes, SUM(gastos) AS gastos, SUM(receitas) AS receitas FROM (" +
+              "SELECT date_trunc('month', g.data)::date AS mes, g.valor AS gastos, 0 AS receitas " +
+              "FROM gastos g WHERE g.id_usuario = ? AND g.ativo = TRUE AND g.data BETWEEN ? AND ? " +
+              "UNION ALL " +
+              "SELECT date_trunc('month', r.data)::date AS mes, 0 AS gastos, r.valor AS receitas " +
+              "FROM receitas r WHERE r.id_usuario = ? AND " + RECEITAS_VISIVEIS + "AND r.data BETWEEN ? AND ?" +
+              ") movimentos GROUP BY mes";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            setPeriodo(pstmt, 1, idUsuario, primeiroMes, fim);
+            if (!resumo) {
+                setPeriodo(pstmt, 4, idUsuario, primeiroMes, fim);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    double[] totais = serie.get(rs.getDate("mes").toLocalDate());
+                    if (totais != null) {
+                        totais[0] = rs.getDouble("gastos");
+                        totais[1] = rs.getDouble("receitas");
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao calcular série mensal: " + e.getMessage(), e);
+        }
+        return serie;
+    }
+
+    /**
+     * Maiores gastos do período, com os nomes das categorias agregados
+     */
+    public List<Map<String, Object>> buscarMaioresGastos(int idUsuario, LocalDate dataInicio, LocalDate dataFim, int limite) {
+        String sql = "SELECT g.descricao, g.valor, g.data, " +
+                    "(SELECT string_agg(c.nome, ', ' ORDER BY c.nome) FROM categoria_gasto cg " +
+                    " INNER JOIN categorias c ON c.id_categoria = cg.id_categoria AND c.ativo = TRUE " +
+                    " WHERE cg.id_gasto = g.id_gasto AND cg.ativo = TRUE) AS categorias " +
+                    "FROM gastos g " +
+                    "WHERE g.id_usuario = ? AND g.ativo = TRUE AND g.data BETWEEN ? AND ? " +
+                    "ORDER BY g.valor DESC, g.id_gasto LIMIT ?";
+        List<Map<String, Object>> gastos = new ArrayList<>();
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            setPeriodo(pstmt, 1, idUsuario, dataInicio, dataFim);
+            pstmt.setInt(4, limite);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    String categorias = rs.getString("categorias");
+                    Map<String, Object> gasto = new HashMap<>();
+                    gasto.put("description", rs.getString("descricao"));
+                    gasto.put("value", rs.getDouble("valor"));
+                    gasto.put("date", rs.getDate("data").toLocalDate().toString());
+                    gasto.put("category", categorias != null ? categorias : "Sem categoria");
+                    gastos.add(gasto);
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar maiores gastos: " + e.getMessage(), e);
+        }
+        return gastos;
+    }
+
+    /**
+     * Percorre as linhas da exportação (gastos e depois receitas, por data decrescente)
+     * Categorias, conta e observações vêm agregadas na mesma consulta.
+     */
+    public void exportarLinhas(int idUsuario, LocalDate dataInicio, LocalDate dataFim, RowHandler handler) {
+        String sqlGastos = "SELECT g.descricao, g.valor, g.data, ct.nome AS conta, " +
+                    "(SELECT string_agg(c.nome, ', ' ORDER BY c.nome) FROM categoria_gasto cg " +
+                    " INNER JOIN categorias c ON c.id_categoria = cg.id_categoria AND c.ativo = TRUE " +
+                    " WHERE cg.id_gasto = g.id_gasto AND cg.ativo = TRUE) AS categorias, " +
+                    "(SELECT string_agg(o.observacao, '; ' ORDER BY o.ordem) FROM gasto_observacoes o " +
+                    " WHERE o.id_gasto = g.id_gasto) AS observacoes " +
+                    "FROM gastos g " +
+                    "LEFT JOIN contas ct ON ct.id_conta = g.id_conta AND ct.ativo = TRUE AND ct.id_usuario = g.id_usuario " +
+                    "WHERE g.id_usuario = ? AND g.ativo = TRUE AND g.data BETWEEN ? AND ? " +
+                    "ORDER BY g.data DESC";
+        String sqlReceitas = "SELECT r.descricao, r.valor, r.data, ct.nome AS conta " +
+                    "FROM receitas r " +
+                    "LEFT JOIN contas ct ON ct.id_conta = r.id_conta AND ct.ativo = TRUE AND ct.id_usuario = r.id_usuario " +
+                    "WHERE r.id_usuario = ? AND " + RECEITAS_VISIVEIS + "AND r.data BETWEEN ? AND ? " +
+                    "ORDER BY r.data DESC";
+
+        try (Connection conn = getConnection()) {
+            try (PreparedStatement pstmt = conn.prepareStatement(sqlGastos)) {
+                setPeriodo(pstmt, 1, idUsuario, dataInicio, dataFim);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        String categorias = rs.getString("categorias");
+                        String observacoes = rs.getString("observacoes");
+                        handler.row("Gasto", rs.getString("descricao"), rs.getDouble("valor"),
+                            rs.getDate("data").toLocalDate(),
+                            categorias != null ? categorias : "Sem categoria",
+                            nomeConta(rs.getString("conta")),
+                            observacoes != null ? observacoes : "");
+                    }
+                }
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(sqlReceitas)) {
+                setPeriodo(pstmt, 1, idUsuario, dataInicio, dataFim);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        handler.row("Receita", rs.getString("descricao"), rs.getDouble("valor"),
+                            rs.getDate("data").toLocalDate(), "Receita", nomeConta(rs.getString("conta")), "");
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao exportar relatório: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * O resumo mensal só responde períodos formados por meses inteiros
+     */
+    private static boolean usaResumo(LocalDate dataInicio, LocalDate dataFim) {
+        return dataInicio.getDayOfMonth() == 1
+            && dataFim.getDayOfMonth() == dataFim.lengthOfMonth()
+            && MonthlySummaryRepository.disponivel();
+    }
+
+    private static String nomeConta(String nome) {
+        return nome != null ? nome : "Conta não encontrada";
+    }
+
+    private static void setPeriodo(PreparedStatement pstmt, int index, int idUsuario, LocalDate dataInicio, LocalDate dataFim) throws SQLException {
+        pstmt.setInt(index, idUsuario);
+        pstmt.setDate(index + 1, java.sql.Date.valueOf(dataInicio));
+        pstmt.setDate(index + 2, java.sql.Date.valueOf(dataFim));
+    }
+}
@@ -2,6 +2,7 @@ package server.repository;
 
 import server.database.DatabaseConnection;
 import server.model.Tag;
+import server.utils.DataVersion;
 import server.validation.InputValidator;
 import server.validation.ValidationResult;
 import java.sql.*;
@@ -11,6 +12,8 @@ import java.util.List;
 import java.util.Map;
 
 public class TagRepository {
+    // transacao_tag não tem id_usuario: o dono da associação é o dono da tag
+    private static final String SQL_DONO_TAG = "(SELECT t.id_usuario FROM tags t WHERE t.id_tag = transacao_tag.id_tag)";
 
     private Connection getConnection() throws SQLException {
         return DatabaseConnection.getInstance().getConnection();
@@ -43,6 +46,7 @@ public class TagRepository {
                 if (rs.next()) {
                     int idTag = rs.getInt(1);
                     conn.commit();
+                    DataVersion.bump(idUsuario, DataVersion.Entity.TAGS);
                     return idTag;
                 }
                 throw new RuntimeException("Erro ao cadastrar tag");
@@ -84,12 +88,16 @@ public class TagRepository {
 
     /** Remove todas as associações de tags de uma transação (para atualização). */
     public void removerTodasTagsTransacao(int idTransacao, String tipoTransacao) {
-        String sql = "UPDATE transacao_tag SET ativo = FALSE WHERE id_transacao = ? AND tipo_transacao = ?";
+        String sql = "UPDATE transacao_tag SET ativo = FALSE WHERE id_transacao = ? AND tipo_transacao = ? " +
+                    "RETURNING " + SQL_DONO_TAG;
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, idTransacao);
             pstmt.setString(2, tipoTransacao);
-            pstmt.executeUpdate();
+            ResultSet rs = pstmt.executeQuery();
+            if (rs.next()) {
+                DataVersion.bump(rs.getInt(1), DataVersion.Entity.TRANSACTIONS);
+            }
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao remover tags da transação: " + e.getMessage(), e);
         }
@@ -97,15 +105,17 @@ public class TagRepository {
 
     public void associarTagTransacao(int idTransacao, String tipoTransacao, int idTag) {
         String sql = "INSERT INTO transacao_tag (id_transacao, tipo_transacao, id_tag) VALUES (?, ?, ?) " +
-                    "ON CONFLICT (id_transacao, tipo_transacao, id_tag) DO NOTHING";
+                    "ON CONFLICT (id_transacao, tipo_transacao, id_tag) DO NOTHING RETURNING " + SQL_DONO_TAG;
         try (Connection conn = getConnection()) {
             conn.setAutoCommit(false);
             try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setInt(1, idTransacao);
                 pstmt.setString(2, tipoTransacao);
                 pstmt.setInt(3, idTag);
-                pstmt.executeUpdate();
+                ResultSet rs = pstmt.executeQuery();
+                int idUsuario = rs.next() ? rs.getInt(1) : 0;
                 conn.commit();
+                DataVersion.bump(idUsuario, DataVersion.Entity.TRANSACTIONS);
             } catch (Exception e) {
                 if (!e.getMessage().contains("duplicate") && !e.getMessage().contains("unique")) {
                     conn.rollback();
@@ -184,15 +194,18 @@ public class TagRepository {
         validateInput("Nome da tag", novoNome, 50);
         validateColor("Cor da tag", novaCor);
         
-        String sql = "UPDATE tags SET nome = ?, cor = ? WHERE id_tag = ?";
+        String sql = "UPDATE tags SET nome = ?, cor = ? WHERE id_tag = ? RETURNING id_usuario";
         try (Connection conn = getConnection()) {
             conn.setAutoCommit(false);
             try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setString(1, novoNome);
                 pstmt.setString(2, novaCor);
                 pstmt.setInt(3, idTag);
-                pstmt.executeUpdate();
+                ResultSet rs = pstmt.executeQuery();
+                int idUsuario = rs.next() ? rs.getInt(1) : 0;
                 conn.commit();
+                // Nome e cor das tags aparecem também na listagem de transações
+                DataVersion.bump(idUsuario, DataVersion.Entity.TAGS, DataVersion.Entity.TRANSACTIONS);
             } catch (Exception e) {
                 conn.rollback();
                 throw e;
@@ -203,14 +216,16 @@ public class TagRepository {
     }
 
     public void excluirTag(int idTag) {
-        String sql = "DELETE FROM tags WHERE id_tag = ?";
+        String sql = "DELETE FROM tags WHERE id_tag = ? RETURNING id_usuario";
         try (Connection conn = getConnection()) {
             conn.setAutoCommit(false);
             try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setInt(1, idTag);
-                int deleted = pstmt.executeUpdate();
-                if (deleted == 0) throw new IllegalArgumentException("Tag não encontrada");
+                ResultSet rs = pstmt.executeQuery();
+                if (!rs.next()) throw new IllegalArgumentException("Tag não encontrada");
+                int idUsuario = rs.getInt(1);
                 conn.commit();
+                DataVersion.bump(idUsuario, DataVersion.Entity.TAGS, DataVersion.Entity.TRANSACTIONS);
             } catch (Exception e) {
                 conn.rollback();
                 throw e;
@@ -0,0 +1,174 @@
+package server.repository;
+
+import server.database.DatabaseConnection;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Listagem paginada de transações (gastos e receitas mesclados por data)
+ * Usa paginação por cursor (keyset) sobre (data, tipo, id) em um UNION ALL das duas
+ * tabelas: cada ramo lê apenas os próximos registros a partir do cursor pelo índice
+ * (id_usuario, data DESC, id DESC), então o custo de uma página não depende de quão
+ * longe o usuário já rolou.
+ */
+public class TransactionRepository {
+
+    // Ordem decrescente: no mesmo dia, receitas ('r') vêm antes de gastos ('g')
+    public static final char GASTO = 'g';
+    public static final char RECEITA = 'r';
+
+    /**
+     * Posição de uma transação na listagem; também serve como cursor da próxima página
+     */
+    public static final class Chave {
+        private final LocalDate data;
+        private final char tipo;
+        private final int id;
+
+        public Chave(LocalDate data, char tipo, int id) {
+            this.data = data;
+            this.tipo = tipo;
+            this.id = id;
+        }
+
+        public LocalDate getData() { return data; }
+        public boolean isReceita() { return tipo == RECEITA; }
+        public int getId() { return id; }
+
+        /**
+         * Representação do cursor enviada ao cliente: data.tipo.id (ex: 2024-05-01.g.123)
+         */
+        public String toCursor() {
+            return data + "." + tipo + "." + id;
+        }
+
+        /**
+         * Lê um cursor recebido do cliente
+         * @throws IllegalArgumentException se o cursor for inválido
+         */
+        public static Chave fromCursor(String cursor) {
+            String[] partes = cursor.split("\\.");
+            if (partes.length != 3 || partes[1].length() != 1
+                || (partes[1].charAt(0) != GASTO && partes[1].charAt(0) != RECEITA)) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+            try {
+                return new Chave(LocalDate.parse(partes[0]), partes[1].charAt(0), Integer.parseInt(partes[2]));
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+        }
+    }
+
+    private Connection getConnection() throws SQLException {
+        return DatabaseConnection.getInstance().getConnection();
+    }
+
+    /**
+     * Busca as chaves da próxima página de transações
+     * Os filtros são os mesmos de buscarGastosComFiltros / buscarReceitasComFiltros;
+     * com filtro de categoria só gastos são listados.
+     * @param depois cursor da última transação da página anterior (null para a primeira página)
+     * @param limite quantidade de chaves a retornar
+     */
+    public List<Chave> buscarPagina(int idUsuario, Integer idCategoria, LocalDate dateStart, LocalDate dateEnd,
+                                    String type, Chave depois, int limite) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT tipo, id, data FROM (");
+
+        // Ramo dos gastos (mesma regra de ativo/parcelas de buscarGastosComFiltros)
+        sql.append("(SELECT 'g' AS tipo, g.id_gasto AS id, g.data FROM gastos g WHERE g.id_usuario = ?");
+        params.add(idUsuario);
+        if ("parceladas".equals(type)) {
+            sql.append(" AND g.id_grupo_parcela IS NOT NULL");
+        } else if ("unicas".equals(type)) {
+            sql.append(" AND g.id_grupo_parcela IS NULL AND g.ativo = TRUE");
+        } else if (type != null && !type.isEmpty()) {
+            sql.append(" AND g.ativo = TRUE");
+        } else {
+            sql.append(" AND (g.ativo = TRUE OR (g.id_grupo_parcela IS NOT NULL AND g.ativo = FALSE))");
+        }
+        if (idCategoria != null) {
+            sql.append(" AND EXISTS (SELECT 1 FROM categoria_gasto cg WHERE cg.id_gasto = g.id_gasto AND cg.ativo = TRUE AND cg.id_categoria = ?)");
+            params.add(idCategoria);
+        }
+        appendPeriodo(sql, params, "g", dateStart, dateEnd);
+        appendCursor(sql, params, "g", "g.id_gasto", GASTO, depois);
+        sql.append(" ORDER BY g.data DESC, g.id_gasto DESC LIMIT ?)");
+        params.add(limite);
+
+        // Ramo das receitas (não têm categoria)
+        if (idCategoria == null) {
+            sql.append(" UNION ALL ");
+            sql.append("(SELECT 'r' AS tipo, r.id_receita AS id, r.data FROM receitas r " +
+                       "WHERE r.id_usuario = ? AND r.ativo = TRUE AND r.descricao NOT LIKE '[SISTEMA]%'");
+            params.add(idUsuario);
+            if ("parceladas".equals(type)) {
+                sql.append(" AND r.id_grupo_parcela IS NOT NULL");
+            } else if ("unicas".equals(type)) {
+                sql.append(" AND r.id_grupo_parcela IS NULL");
+            }
+            appendPeriodo(sql, params, "r", dateStart, dateEnd);
+            appendCursor(sql, params, "r", "r.id_receita", RECEITA, depois);
+            sql.append(" ORDER BY r.data DESC, r.id_receita DESC LIMIT ?)");
+            params.add(limite);
+        }
+
+        sql.append(") transacoes ORDER BY data DESC, tipo DESC, id DESC LIMIT ?");
+        params.add(limite);
+
+        List<Chave> chaves = new ArrayList<>();
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            int paramIndex = 1;
+            for (Object param : params) {
+                if (param instanceof Integer) {
+                    pstmt.setInt(paramIndex++, (Integer) param);
+                } else if (param instanceof LocalDate) {
+                    pstmt.setDate(paramIndex++, java.sql.Date.valueOf((LocalDate) param));
+                } else {
+                    pstmt.setString(paramIndex++, (String) param);
+                }
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    chaves.add(new Chave(rs.getDate("data").toLocalDate(), rs.getString("tipo").charAt(0), rs.getInt("id")));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar transações: " + e.getMessage(), e);
+        }
+        return chaves;
+    }
+
+    private static void appendPeriodo(StringBuilder sql, List<Object> params, String alias, LocalDate dateStart, LocalDate dateEnd) {
+        if (dateStart != null) {
+            sql.append(" AND ").append(alias).append(".data >= ?");
+            params.add(dateStart);
+        }
+        if (dateEnd != null) {
+            sql.append(" AND ").append(alias).append(".data <= ?");
+            params.add(dateEnd);
+        }
+    }
+
+    /**
+     * Restringe o ramo às transações posteriores ao cursor na ordem (data, tipo, id) decrescente
+     * O "data <= ?" redundante permite ao planner iniciar a leitura do índice no cursor.
+     */
+    private static void appendCursor(StringBuilder sql, List<Object> params, String alias, String idColumn, char tipo, Chave depois) {
+        if (depois == null) {
+            return;
+        }
+        sql.append(" AND ").append(alias).append(".data <= ?");
+        params.add(depois.data);
+        sql.append(" AND (").append(alias).append(".data, '").append(tipo).append("', ").append(idColumn)
+           .append(") < (?, ?, ?)");
+        params.add(depois.data);
+        params.add(String.valueOf(depois.tipo));
+        params.add(depois.id);
+    }
+}
@@ -9,7 +9,13 @@ import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.SecureRandom;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.crypto.Mac;
@@ -22,6 +28,26 @@ public final class JwtUtil {
     private static final String SECRET = initializeSecret();
     private static final Base64.Encoder BASE64_URL_ENCODER = Base64.getUrlEncoder().withoutPadding();
     private static final Base64.Decoder BASE64_URL_DECODER = Base64.getUrlDecoder();
+    private static final SecretKeySpec SIGNING_KEY = new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+    
+    // Mac não é thread-safe: instâncias já inicializadas são reaproveitadas por um pool pequeno
+    // (ThreadLocal não serve com virtual threads, que são criadas uma por requisição)
+    private static final int MAC_POOL_SIZE = 32;
+    private static final Mac MAC_PROTOTYPE = newMac();
+    private static final BlockingQueue<Mac> MAC_POOL = new ArrayBlockingQueue<>(MAC_POOL_SIZE);
+    
+    // Patterns pré-compilados para os claims lidos na validação
+    private static final Pattern SUB_PATTERN = longClaimPattern("sub");
+    private static final Pattern EXP_PATTERN = longClaimPattern("exp");
+    private static final Pattern EMAIL_PATTERN = stringClaimPattern("email");
+    private static final Pattern NAME_PATTERN = stringClaimPattern("name");
+    
+    // Cache de tokens já verificados, indexado pelos bytes da assinatura
+    // A entrada expira junto com o claim exp do próprio token
+    private static final int MAX_VERIFIED_TOKENS = 10000;
+    // Máximo de entradas visitadas por evicção quando o cache está cheio
+    private static final int EVICTION_BATCH = 64;
+    private static final Map<SignatureKey, VerifiedToken> VERIFIED_TOKENS = new ConcurrentHashMap<>();
 
     private JwtUtil() {}
 
@@ -111,45 +137,122 @@ public final class JwtUtil {
             return JwtValidationResult.invalid("Token ausente");
         }
 
-        String[] parts = token.split("\\.");
-        if (parts.length != 3) {
+        int firstDot = token.indexOf('.');
+        int lastDot = token.lastIndexOf('.');
+        if (firstDot <= 0 || lastDot == firstDot || lastDot == token.length() - 1
+                || token.indexOf('.', firstDot + 1) != lastDot) {
             return JwtValidationResult.invalid("Token malformado");
         }
+        String signingInput = token.substring(0, lastDot);
 
         try {
-            byte[] expectedSignature = sign(parts[0] + "." + parts[1]);
-            byte[] providedSignature = BASE64_URL_DECODER.decode(parts[2]);
+            byte[] providedSignature = BASE64_URL_DECODER.decode(token.substring(lastDot + 1));
+            SignatureKey cacheKey = new SignatureKey(providedSignature);
+            long now = Instant.now().getEpochSecond();
+
+            // Caminho rápido: token já verificado anteriormente
+            VerifiedToken cached = VERIFIED_TOKENS.get(cacheKey);
+            if (cached != null && cached.signingInput.equals(signingInput)) {
+                if (now > cached.expiresAt) {
+                    VERIFIED_TOKENS.remove(cacheKey, cached);
+                    return JwtValidationResult.invalid("Token expirado");
+                }
+                return cached.result;
+            }
+
+            byte[] expectedSignature = sign(signingInput);
             if (!MessageDigest.isEqual(expectedSignature, providedSignature)) {
                 return JwtValidationResult.invalid("Assinatura inválida");
             }
 
-            String payloadJson = new String(BASE64_URL_DECODER.decode(parts[1]), StandardCharsets.UTF_8);
+            String payloadJson = new String(BASE64_URL_DECODER.decode(token.substring(firstDot + 1, lastDot)), StandardCharsets.UTF_8);
             // System.out.println("[DEBUG] JwtUtil.validateToken: Payload JSON decodificado: " + payloadJson);
             
-            long exp = extractLong(payloadJson, "exp");
-            if (Instant.now().getEpochSecond() > exp) {
+            long exp = extractLong(payloadJson, EXP_PATTERN, "exp");
+            if (now > exp) {
                 return JwtValidationResult.invalid("Token expirado");
             }
 
-            long userId = extractLong(payloadJson, "sub");
+            long userId = extractLong(payloadJson, SUB_PATTERN, "sub");
             // System.out.println("[DEBUG] JwtUtil.validateToken: userId extraído do token: " + userId);
             if (userId <= 0) {
                 System.err.println("[ERRO] JwtUtil.validateToken: userId inválido ou não encontrado no payload: " + payloadJson);
                 return JwtValidationResult.invalid("Token inválido: userId não encontrado ou inválido");
             }
-            String email = extractString(payloadJson, "email");
-            String name = extractString(payloadJson, "name");
+            String email = extractString(payloadJson, EMAIL_PATTERN);
+            String name = extractString(payloadJson, NAME_PATTERN);
             // System.out.println("[DEBUG] JwtUtil.validateToken: Token válido para userId=" + userId + ", email=" + email);   
-            return JwtValidationResult.valid((int) userId, email, name);
+            JwtValidationResult result = JwtValidationResult.valid((int) userId, email, name);
+            cacheVerifiedToken(cacheKey, new VerifiedToken(signingInput, exp, result), now);
+            return result;
         } catch (Exception e) {
             return JwtValidationResult.invalid("Falha ao validar token");
         }
     }
 
+    /**
+     * Armazena um token verificado respeitando o limite do cache
+     * Quando cheio, visita no máximo EVICTION_BATCH entradas: remove as expiradas e,
+     * se nenhuma estava expirada, remove a primeira visitada para abrir espaço
+     */
+    private static void cacheVerifiedToken(SignatureKey key, VerifiedToken token, long now) {
+        if (VERIFIED_TOKENS.size() >= MAX_VERIFIED_TOKENS) {
+            evictBatch(now);
+        }
+        VERIFIED_TOKENS.put(key, token);
+    }
+
+    private static void evictBatch(long now) {
+        Iterator<VerifiedToken> it = VERIFIED_TOKENS.values().iterator();
+        VerifiedToken first = null;
+        boolean removed = false;
+        for (int visited = 0; visited < EVICTION_BATCH && it.hasNext(); visited++) {
+            VerifiedToken entry = it.next();
+            if (first == null) {
+                first = entry;
+            }
+            if (now > entry.expiresAt) {
+                it.remove();
+                removed = true;
+            }
+        }
+        if (!removed && first != null) {
+            VERIFIED_TOKENS.values().remove(first);
+        }
+    }
+
     private static byte[] sign(String data) throws GeneralSecurityException {
-        Mac mac = Mac.getInstance("HmacSHA256");
-        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
-        return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        Mac mac = MAC_POOL.poll();
+        if (mac == null) {
+            mac = copyMac();
+        }
+        try {
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            // doFinal já reinicia o Mac; se o pool estiver cheio a instância é descartada
+            MAC_POOL.offer(mac);
+        }
+    }
+
+    private static Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(SIGNING_KEY);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 indisponível", e);
+        }
+    }
+
+    /**
+     * Cria um Mac a partir do protótipo (clone evita nova busca de provider e init da chave)
+     */
+    private static Mac copyMac() {
+        try {
+            return (Mac) MAC_PROTOTYPE.clone();
+        } catch (CloneNotSupportedException e) {
+            return newMac();
+        }
     }
 
     private static String escape(String value) {
@@ -163,19 +266,25 @@ public final class JwtUtil {
         return BASE64_URL_ENCODER.encodeToString(input);
     }
 
-    private static String extractString(String json, String key) {
-        Pattern p = Pattern.compile("\"" + Pattern.quote(key) + "\"\\s*:\\s*\"([^\"]*)\"");
-        Matcher matcher = p.matcher(json);
+    private static Pattern stringClaimPattern(String key) {
+        return Pattern.compile("\"" + Pattern.quote(key) + "\"\\s*:\\s*\"([^\"]*)\"");
+    }
+
+    private static Pattern longClaimPattern(String key) {
+        // Melhorado para capturar o valor mesmo se houver espaços ou outros caracteres
+        return Pattern.compile("\"" + Pattern.quote(key) + "\"\\s*:\\s*(\\d+)");
+    }
+
+    private static String extractString(String json, Pattern pattern) {
+        Matcher matcher = pattern.matcher(json);
         if (matcher.find()) {
             return matcher.group(1);
         }
         return "";
     }
 
-    private static long extractLong(String json, String key) {
-        // Melhorado para capturar o valor mesmo se houver espaços ou outros caracteres
-        Pattern p = Pattern.compile("\"" + Pattern.quote(key) + "\"\\s*:\\s*(\\d+)");
-        Matcher matcher = p.matcher(json);
+    private static long extractLong(String json, Pattern pattern, String key) {
+        Matcher matcher = pattern.matcher(json);
         if (matcher.find()) {
             String value = matcher.group(1);
             try {
@@ -191,6 +300,44 @@ public final class JwtUtil {
         return 0L;
     }
 
+    /**
+     * Chave do cache de tokens: bytes da assinatura HMAC
+     */
+    private static final class SignatureKey {
+        private final byte[] signature;
+        private final int hash;
+
+        SignatureKey(byte[] signature) {
+            this.signature = signature;
+            this.hash = Arrays.hashCode(signature);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof SignatureKey && Arrays.equals(signature, ((SignatureKey) o).signature);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Token já verificado: guarda a parte assinada para conferir que o conteúdo é o mesmo
+     */
+    private static final class VerifiedToken {
+        final String signingInput;
+        final long expiresAt;
+        final JwtValidationResult result;
+
+        VerifiedToken(String signingInput, long expiresAt, JwtValidationResult result) {
+            this.signingInput = signingInput;
+            this.expiresAt = expiresAt;
+            this.result = result;
+        }
+    }
+
     public static final class JwtValidationResult {
         private final boolean valid;
         private final String message;
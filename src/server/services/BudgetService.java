@@ -0,0 +1,85 @@
+package server.services;
+
+import server.model.AvaliacaoOrcamento;
+import server.repository.BudgetRepository;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serviço de avaliação de orçamentos
+ * Resolve a janela corrente de cada período, busca o gasto de todos os orçamentos do
+ * usuário em uma consulta e calcula ritmo e projeção até o fim do período.
+ */
+public class BudgetService {
+
+    /**
+     * Períodos de orçamento; as janelas são alinhadas ao mês (compatíveis com o resumo mensal)
+     */
+    public enum Periodo {
+        MENSAL(1),
+        ANUAL(12);
+
+        private final int meses;
+
+        Periodo(int meses) {
+            this.meses = meses;
+        }
+
+        /** Primeiro dia da janela que contém a data */
+        public LocalDate inicio(LocalDate data) {
+            LocalDate primeiroDoMes = data.withDayOfMonth(1);
+            int deslocamento = (primeiroDoMes.getMonthValue() - 1) % meses;
+            return primeiroDoMes.minusMonths(deslocamento);
+        }
+
+        /** Último dia da janela que contém a data */
+        public LocalDate fim(LocalDate data) {
+            return inicio(data).plusMonths(meses).minusDays(1);
+        }
+    }
+
+    private final BudgetRepository budgetRepository;
+
+    public BudgetService() {
+        this.budgetRepository = new BudgetRepository();
+    }
+
+    public List<AvaliacaoOrcamento> avaliarOrcamentos(int idUsuario) {
+        return avaliarOrcamentos(idUsuario, LocalDate.now());
+    }
+
+    /**
+     * Avalia todos os orçamentos ativos do usuário na janela que contém a data de referência
+     */
+    public List<AvaliacaoOrcamento> avaliarOrcamentos(int idUsuario, LocalDate hoje) {
+        Map<String, LocalDate[]> janelas = new LinkedHashMap<>();
+        for (Periodo periodo : Periodo.values()) {
+            janelas.put(periodo.name(), new LocalDate[]{periodo.inicio(hoje), periodo.fim(hoje)});
+        }
+        List<AvaliacaoOrcamento> avaliacoes =
+            budgetRepository.buscarGastosDosOrcamentos(idUsuario, janelas, Periodo.MENSAL.name());
+        for (AvaliacaoOrcamento avaliacao : avaliacoes) {
+            calcularRitmo(avaliacao, hoje);
+        }
+        return avaliacoes;
+    }
+
+    /**
+     * Calcula o gasto esperado até hoje (ritmo uniforme) e a projeção para o fim do período
+     */
+    private void calcularRitmo(AvaliacaoOrcamento avaliacao, LocalDate hoje) {
+        LocalDate inicio = avaliacao.getInicioPeriodo();
+        LocalDate fim = avaliacao.getFimPeriodo();
+        int diasTotais = (int) ChronoUnit.DAYS.between(inicio, fim) + 1;
+        int diasDecorridos = (int) Math.max(1, Math.min(diasTotais, ChronoUnit.DAYS.between(inicio, hoje) + 1));
+        double planejado = avaliacao.getOrcamento().getValorPlanejado();
+
+        avaliacao.setDiasTotais(diasTotais);
+        avaliacao.setDiasDecorridos(diasDecorridos);
+        avaliacao.setGastoEsperado(planejado * diasDecorridos / diasTotais);
+        avaliacao.setGastoProjetado(avaliacao.getValorGasto() / diasDecorridos * diasTotais);
+    }
+}
@@ -0,0 +1,367 @@
+package server.services;
+
+import server.model.ImportJob;
+import server.repository.ImportJobRepository;
+import server.utils.CacheUtil;
+import server.utils.JsonUtil;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Importações de transações em segundo plano
+ * O corpo da requisição é gravado em um arquivo de spool e a importação roda em um executor
+ * próprio e limitado, fora das threads de requisição. O progresso fica na tabela importacoes
+ * (quando existir), de onde importações interrompidas por um reinício são retomadas.
+ * Com várias instâncias, cada importação pertence à instância que a executa, que renova
+ * periodicamente sua posse; uma importação só é assumida (e retomada) por outra instância
+ * depois de ficar sem renovação por IMPORT_JOB_STALE_SECONDS (padrão 120).
+ * Sem a tabela, as importações ficam apenas em memória e não são retomadas.
+ */
+public class ImportJobService {
+    private static final Logger LOGGER = Logger.getLogger(ImportJobService.class.getName());
+
+    private static final int THREADS = intEnv("IMPORT_JOB_THREADS", 2);
+    private static final int FILA = 20;
+    private static final long MAX_BYTES = intEnv("IMPORT_MAX_BYTES", 100 * 1024 * 1024);
+    private static final Path SPOOL = Paths.get(System.getenv("IMPORT_SPOOL_DIR") != null
+        ? System.getenv("IMPORT_SPOOL_DIR")
+        : Paths.get(System.getProperty("java.io.tmpdir"), "controle-se-imports").toString());
+    private static final int HISTORICO = 20;
+    private static final String NO = SchedulerService.no();
+    static final int RENOVACAO_SEGUNDOS = 30;
+    private static final int PARADA_SEGUNDOS = Math.max(intEnv("IMPORT_JOB_STALE_SECONDS", 120), RENOVACAO_SEGUNDOS * 3);
+
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(
+        THREADS, THREADS, 60L, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(FILA),
+        new java.util.concurrent.ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger(1);
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "import-job-" + threadNumber.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            }
+        },
+        new ThreadPoolExecutor.AbortPolicy() // fila cheia: a requisição recebe 503
+    );
+
+    // Importações em execução ou recentes, consultadas pelo acompanhamento
+    private static final Map<Integer, ImportJob> JOBS = new ConcurrentHashMap<>();
+    private static final AtomicInteger IDS_MEMORIA = new AtomicInteger();
+
+    /**
+     * O tamanho do envio passou do limite configurado
+     */
+    public static class ArquivoGrandeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public ArquivoGrandeException(String message) {
+            super(message);
+        }
+    }
+
+    private final ImportJobRepository repository;
+    private final StreamingImportService importService;
+
+    public ImportJobService() {
+        this.repository = new ImportJobRepository();
+        this.importService = new StreamingImportService();
+    }
+
+    /**
+     * Grava o conteúdo em spool e agenda a importação
+     * @throws IllegalStateException se o usuário já tiver uma importação em andamento
+     * @throws RejectedExecutionException se a fila de importações estiver cheia
+     */
+    public ImportJob submeter(int idUsuario, ImportJob.Origem origem, InputStream conteudo) throws IOException {
+        if (buscarAtiva(idUsuario) != null
+            || (ImportJobRepository.disponivel() && repository.existeAtiva(idUsuario))) {
+            throw new IllegalStateException("Já existe uma importação em andamento para este usuário");
+        }
+        Files.createDirectories(SPOOL);
+        Path arquivo = Files.createTempFile(SPOOL, "import-" + idUsuario + "-", origem == ImportJob.Origem.CSV ? ".csv" : ".json");
+        try {
+            copiar(conteudo, arquivo);
+            ImportJob job = new ImportJob(idUsuario, origem, arquivo.toString());
+            job.setDono(NO);
+            registrar(job);
+            agendar(job);
+            return job;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(arquivo);
+            throw e;
+        }
+    }
+
+    /**
+     * Importação do usuário (em memória ou na tabela), ou null
+     */
+    public ImportJob buscar(int idImportacao, int idUsuario) {
+        ImportJob job = JOBS.get(idImportacao);
+        if (job != null) {
+            return job.getIdUsuario() == idUsuario ? job : null;
+        }
+        return ImportJobRepository.disponivel() ? repository.buscar(idImportacao, idUsuario) : null;
+    }
+
+    /**
+     * Importações mais recentes do usuário, da mais nova para a mais antiga
+     */
+    public List<ImportJob> listar(int idUsuario) {
+        if (ImportJobRepository.disponivel()) {
+            List<ImportJob> jobs = new ArrayList<>();
+            for (ImportJob salvo : repository.listarPorUsuario(idUsuario, HISTORICO)) {
+                ImportJob vivo = JOBS.get(salvo.getIdImportacao());
+                jobs.add(vivo != null ? vivo : salvo);
+            }
+            return jobs;
+        }
+        List<ImportJob> jobs = new ArrayList<>();
+        for (ImportJob job : JOBS.values()) {
+            if (job.getIdUsuario() == idUsuario) jobs.add(job);
+        }
+        jobs.sort((a, b) -> Integer.compare(b.getIdImportacao(), a.getIdImportacao()));
+        return jobs.size() > HISTORICO ? jobs.subList(0, HISTORICO) : jobs;
+    }
+
+    /**
+     * Assume e retoma as importações paradas (de uma instância encerrada ou reiniciada) e
+     * remove arquivos de spool órfãos
+     * Chamado uma vez na inicialização, após a detecção do schema.
+     */
+    public static void retomarPendentes() {
+        if (!ImportJobRepository.disponivel()) {
+            limparSpool(new HashSet<>());
+            return;
+        }
+        try {
+            new ImportJobService().assumirParadas();
+            Set<Path> emUso = new HashSet<>();
+            for (String arquivo : new ImportJobRepository().listarArquivosAtivos()) {
+                emUso.add(Paths.get(arquivo).toAbsolutePath());
+            }
+            limparSpool(emUso);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Erro ao retomar importações pendentes", e);
+        }
+    }
+
+    /**
+     * Tarefa periódica: renova a posse das importações desta instância e assume as paradas
+     * @return resumo da execução, ou null se não houver o que registrar
+     */
+    public static String manter() {
+        if (!ImportJobRepository.disponivel()) {
+            return null;
+        }
+        ImportJobService service = new ImportJobService();
+        List<Integer> ativas = new ArrayList<>();
+        for (ImportJob job : JOBS.values()) {
+            if (job.isAtivo() && NO.equals(job.getDono())) ativas.add(job.getIdImportacao());
+        }
+        int renovadas = service.repository.renovar(NO, ativas);
+        int assumidas = service.assumirParadas();
+        return renovadas > 0 || assumidas > 0
+            ? renovadas + " importação(ões) renovada(s), " + assumidas + " assumida(s)"
+            : null;
+    }
+
+    /**
+     * Assume as importações sem renovação há mais de PARADA_SEGUNDOS e as agenda nesta instância;
+     * as que não têm o arquivo de spool acessível aqui são encerradas como falha
+     * @return quantidade assumida
+     */
+    private int assumirParadas() {
+        List<ImportJob> jobs = repository.assumirParadas(NO, PARADA_SEGUNDOS);
+        for (ImportJob job : jobs) {
+            Path arquivo = job.getArquivo() != null ? Paths.get(job.getArquivo()) : null;
+            if (arquivo == null || !Files.isRegularFile(arquivo)) {
+                job.erro("Arquivo da importação não encontrado ao retomar");
+                finalizar(job, ImportJob.FALHOU);
+                continue;
+            }
+            JOBS.put(job.getIdImportacao(), job);
+            try {
+                agendar(job);
+                LOGGER.info("Importação " + job.getIdImportacao() + " retomada a partir da linha " + job.getUltimaLinha());
+            } catch (RejectedExecutionException e) {
+                LOGGER.warning("Fila cheia ao retomar importação " + job.getIdImportacao());
+            }
+        }
+        return jobs.size();
+    }
+
+    private ImportJob buscarAtiva(int idUsuario) {
+        for (ImportJob job : JOBS.values()) {
+            if (job.getIdUsuario() == idUsuario && job.isAtivo()) return job;
+        }
+        return null;
+    }
+
+    private void registrar(ImportJob job) {
+        synchronized (JOBS) {
+            if (buscarAtiva(job.getIdUsuario()) != null) {
+                throw new IllegalStateException("Já existe uma importação em andamento para este usuário");
+            }
+            if (ImportJobRepository.disponivel()) {
+                repository.criar(job);
+            } else {
+                job.setIdImportacao(IDS_MEMORIA.incrementAndGet());
+            }
+            JOBS.put(job.getIdImportacao(), job);
+            // Mantém em memória só as importações ativas e as mais recentes
+            if (JOBS.size() > HISTORICO * 10) {
+                JOBS.values().removeIf(j -> !j.isAtivo() && j.getIdImportacao() < job.getIdImportacao() - HISTORICO * 5);
+            }
+        }
+    }
+
+    private void agendar(ImportJob job) {
+        try {
+            EXECUTOR.execute(() -> executar(job));
+        } catch (RejectedExecutionException e) {
+            job.erro("Fila de importações cheia");
+            finalizar(job, ImportJob.FALHOU);
+            throw e;
+        }
+    }
+
+    private void executar(ImportJob job) {
+        job.setStatus(ImportJob.EM_ANDAMENTO);
+        StreamingImportService.Checkpoint checkpoint = ImportJobRepository.disponivel()
+            ? repository::salvar
+            : (j, ultimaLinha, novas) -> { };
+        try {
+            checkpoint.salvar(job, job.getUltimaLinha(), 0);
+            Path arquivo = Paths.get(job.getArquivo());
+            if (job.getOrigem() == ImportJob.Origem.CSV) {
+                try (BufferedReader reader = Files.newBufferedReader(arquivo, StandardCharsets.UTF_8)) {
+                    importService.importar(reader, job, checkpoint);
+                }
+            } else {
+                String corpo = new String(Files.readAllBytes(arquivo), StandardCharsets.UTF_8);
+                @SuppressWarnings("unchecked")
+                List<Map<String, Object>> transacoes =
+                    (List<Map<String, Object>>) JsonUtil.parseJsonWithNested(corpo).get("transactions");
+                if (transacoes == null || transacoes.isEmpty()) {
+                    job.erro("Nenhuma transação fornecida");
+                } else {
+                    importService.importarTransacoes(transacoes, job, checkpoint);
+                }
+            }
+            finalizar(job, job.getErros() == 0 ? ImportJob.CONCLUIDO
+                : job.getImportadas() > 0 ? ImportJob.CONCLUIDO_COM_ERROS : ImportJob.FALHOU);
+        } catch (ImportJobRepository.PosseExpiradaException e) {
+            // Outra instância assumiu a importação (e o arquivo): apenas deixa de acompanhá-la
+            LOGGER.warning(e.getMessage());
+            JOBS.remove(job.getIdImportacao());
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Importação " + job.getIdImportacao() + " falhou", e);
+            job.erro("Erro na importação: " + e.getMessage());
+            finalizar(job, ImportJob.FALHOU);
+        }
+    }
+
+    /**
+     * Encerra a importação: grava o status final, remove o arquivo de spool e invalida os caches do usuário
+     */
+    private void finalizar(ImportJob job, String status) {
+        job.concluir(status);
+        String arquivo = job.getArquivo();
+        job.setArquivo(null);
+        if (arquivo != null) {
+            try {
+                Files.deleteIfExists(Paths.get(arquivo));
+            } catch (IOException e) {
+                LOGGER.warning("Não foi possível remover " + arquivo + ": " + e.getMessage());
+            }
+        }
+        if (ImportJobRepository.disponivel()) {
+            try {
+                repository.salvar(job, job.getUltimaLinha(), 0);
+            } catch (ImportJobRepository.PosseExpiradaException e) {
+                LOGGER.warning(e.getMessage());
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Erro ao salvar status final da importação " + job.getIdImportacao(), e);
+            }
+        }
+        CacheUtil.invalidateUser(job.getIdUsuario());
+    }
+
+    private static void copiar(InputStream conteudo, Path arquivo) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long total = 0;
+        try (OutputStream out = Files.newOutputStream(arquivo)) {
+            int n;
+            while ((n = conteudo.read(buffer)) != -1) {
+                total += n;
+                if (total > MAX_BYTES) {
+                    throw new ArquivoGrandeException("Arquivo maior que o limite de " + (MAX_BYTES / (1024 * 1024)) + " MB");
+                }
+                out.write(buffer, 0, n);
+            }
+        }
+    }
+
+    /**
+     * Remove arquivos de spool sem importação não concluída; arquivos recentes são mantidos,
+     * pois podem ser de um envio que outra instância (com spool compartilhado) ainda está registrando
+     */
+    private static void limparSpool(Set<Path> emUso) {
+        if (!Files.isDirectory(SPOOL)) return;
+        FileTime limite = FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(PARADA_SEGUNDOS));
+        try (Stream<Path> arquivos = Files.list(SPOOL)) {
+            arquivos.filter(p -> p.getFileName().toString().startsWith("import-"))
+                    .filter(p -> !emUso.contains(p.toAbsolutePath()))
+                    .filter(p -> modificadoAntes(p, limite))
+                    .forEach(p -> {
+                        try {
+                            Files.deleteIfExists(p);
+                        } catch (IOException e) {
+                            LOGGER.warning("Não foi possível remover " + p + ": " + e.getMessage());
+                        }
+                    });
+        } catch (IOException e) {
+            LOGGER.warning("Erro ao limpar spool de importações: " + e.getMessage());
+        }
+    }
+
+    private static boolean modificadoAntes(Path arquivo, FileTime limite) {
+        try {
+            return Files.getLastModifiedTime(arquivo).compareTo(limite) < 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static int intEnv(String nome, int padrao) {
+        try {
+            String valor = System.getenv(nome);
+            return valor != null ? Math.max(1, Integer.parseInt(valor.trim())) : padrao;
+        } catch (NumberFormatException e) {
+            return padrao;
+        }
+    }
+}
@@ -19,7 +19,7 @@ public class ImportTransactionsService {
     private final InstallmentService installmentService;
     
     // Cores padrão para tags criadas automaticamente
-    private static final String[] DEFAULT_TAG_COLORS = {
+    static final String[] DEFAULT_TAG_COLORS = {
         "#3B82F6", "#10B981", "#F59E0B", "#EF4444", "#8B5CF6",
         "#EC4899", "#06B6D4", "#84CC16", "#F97316", "#6366F1"
     };
@@ -155,11 +155,7 @@ public class ImportTransactionsService {
         // Normaliza nomes das colunas (remove espaços, converte para minúsculas)
         String[] normalizedHeaders = new String[headers.length];
         for (int i = 0; i < headers.length; i++) {
-            normalizedHeaders[i] = headers[i].trim().toLowerCase()
-                .replace(" ", "_")
-                .replace("ç", "c")
-                .replace("ã", "a")
-                .replace("õ", "o");
+            normalizedHeaders[i] = normalizeHeader(headers[i]);
         }
         
         // Parse das linhas de dados
@@ -180,10 +176,21 @@ public class ImportTransactionsService {
         return rows;
     }
     
+    /**
+     * Normaliza o nome de uma coluna (remove espaços, converte para minúsculas)
+     */
+    static String normalizeHeader(String header) {
+        return header.trim().toLowerCase()
+            .replace(" ", "_")
+            .replace("ç", "c")
+            .replace("ã", "a")
+            .replace("õ", "o");
+    }
+    
     /**
      * Parse de uma linha CSV, suportando valores entre aspas
      */
-    private String[] parseCSVLine(String line) {
+    static String[] parseCSVLine(String line) {
         List<String> fields = new ArrayList<>();
         boolean inQuotes = false;
         StringBuilder currentField = new StringBuilder();
@@ -536,7 +543,7 @@ public class ImportTransactionsService {
      * true: "true", "1", "sim", "verdadeiro", "yes", "s", "y"
      * false: "false", "0", "não", "nao", "negativo", "no", "n"
      */
-    private boolean parseBoolean(String value) {
+    static boolean parseBoolean(String value) {
         if (value == null || value.trim().isEmpty()) {
             return false;
         }
@@ -79,9 +79,6 @@ public class InstallmentService {
             intervaloDias, idUsuario, idConta, "GASTO"
         );
         
-        int idGrupo = installmentRepository.criarGrupoParcelas(grupo);
-        grupo.setIdGrupo(idGrupo);
-        
         Conta conta = accountRepository.buscarConta(idConta);
         boolean isCartao = conta != null && conta.isCartaoCredito();
         Integer diaFechamento = (conta != null && conta.getDiaFechamento() != null) ? conta.getDiaFechamento() : null;
@@ -92,6 +89,7 @@ public class InstallmentService {
         double diferenca = Math.round((valorTotal - totalParcelasBase) * 100.0) / 100.0;
         
         LocalDate hoje = LocalDate.now();
+        List<InstallmentRepository.NovaParcela> parcelas = new ArrayList<>(numeroParcelas);
         
         for (int i = 1; i <= numeroParcelas; i++) {
             LocalDate dataParcela = grupo.calcularDataParcela(i);
@@ -103,41 +101,20 @@ public class InstallmentService {
             LocalDate dataEntradaFaturaParcela = (i == 1 && dataEntradaFaturaPrimeiraParcela != null) 
                 ? dataEntradaFaturaPrimeiraParcela : null;
             
-            int idGasto = expenseRepository.cadastrarGasto(
-                descricao,
-                valorParcela,
-                dataParcela,
-                "UNICA",
-                idUsuario,
-                idsCategorias,
-                idConta,
-                observacoes,
-                dataEntradaFaturaParcela
-            );
-            
-            expenseRepository.atualizarInformacoesParcela(idGasto, idGrupo, i, numeroParcelas);
-            
-            if (idsTags != null) {
-                for (int tagId : idsTags) {
-                    tagRepository.associarTagTransacao(idGasto, "GASTO", tagId);
-                }
-            }
-            
-            // Cadastro retroativo: parcela cuja fatura já fechou é marcada como paga (já foi contabilizada na vida real)
+            // Cadastro retroativo: parcela cuja fatura já fechou é gravada como paga (já foi contabilizada na vida real)
+            boolean paga = false;
             if (isCartao && diaFechamento != null) {
-                LocalDate dataParaFatura = (i == 1 && dataEntradaFaturaPrimeiraParcela != null) 
-                    ? dataEntradaFaturaPrimeiraParcela : dataParcela;
-                LocalDate fechamentoFatura = fechamentoFaturaParaData(dataParaFatura, diaFechamento);
-                if (hoje.isAfter(fechamentoFatura)) {
-                    try {
-                        expenseRepository.marcarParcelaComoPaga(idGasto);
-                    } catch (Exception e) {
-                        LOGGER.warning("Ao marcar parcela " + i + "/" + numeroParcelas + " como já paga (fatura fechada): " + e.getMessage());
-                    }
-                }
+                LocalDate dataParaFatura = dataEntradaFaturaParcela != null ? dataEntradaFaturaParcela : dataParcela;
+                paga = hoje.isAfter(fechamentoFaturaParaData(dataParaFatura, diaFechamento));
             }
+            
+            parcelas.add(new InstallmentRepository.NovaParcela(i, dataParcela, valorParcela, dataEntradaFaturaParcela, paga));
         }
         
+        // Grupo, parcelas, categorias, observações e tags em uma única transação
+        int idGrupo = installmentRepository.criarGastoParcelado(grupo, parcelas, idsCategorias, idsTags, observacoes);
+        grupo.setIdGrupo(idGrupo);
+        
         // LOGGER.info("Compra parcelada criada com sucesso: " + numeroParcelas + " parcelas");
         return idGrupo;
     }
@@ -196,9 +173,6 @@ public class InstallmentService {
             intervaloDias, idUsuario, idConta, "RECEITA"
         );
         
-        int idGrupo = installmentRepository.criarGrupoParcelas(grupo);
-        grupo.setIdGrupo(idGrupo);
-        
         // LOGGER.info("Criando receita parcelada: " + descricao + " - " + numeroParcelas + "x de R$ " + grupo.getValorParcela());
         
         // Calcula o valor base da parcela (arredondado para 2 casas decimais)
@@ -208,7 +182,7 @@ public class InstallmentService {
         // Calcula a diferença (pode ser positiva ou negativa devido ao arredondamento)
         double diferenca = Math.round((valorTotal - totalParcelasBase) * 100.0) / 100.0;
         
-        // Cria cada parcela
+        List<InstallmentRepository.NovaParcela> parcelas = new ArrayList<>(numeroParcelas);
         for (int i = 1; i <= numeroParcelas; i++) {
             LocalDate dataParcela = grupo.calcularDataParcela(i);
             // Mantém a descrição original sem adicionar (X/Y)
@@ -218,27 +192,13 @@ public class InstallmentService {
                 ? Math.round((valorParcelaBase + diferenca) * 100.0) / 100.0
                 : valorParcelaBase;
             
-            // Cria a receita da parcela
-            int idReceita = incomeRepository.cadastrarReceita(
-                descricao,
-                valorParcela,
-                dataParcela,
-                idUsuario,
-                idConta,
-                observacoes
-            );
-            
-            // Atualiza a receita com informações da parcela
-            incomeRepository.atualizarInformacoesParcela(idReceita, idGrupo, i, numeroParcelas);
-            
-            // Associa tags se houver
-            if (idsTags != null) {
-                for (int tagId : idsTags) {
-                    tagRepository.associarTagTransacao(idReceita, "RECEITA", tagId);
-                }
-            }
+            parcelas.add(new InstallmentRepository.NovaParcela(i, dataParcela, valorParcela, null, false));
         }
         
+        // Grupo, parcelas, observações e tags em uma única transação
+        int idGrupo = installmentRepository.criarReceitaParcelada(grupo, parcelas, idsTags, observacoes);
+        grupo.setIdGrupo(idGrupo);
+        
         LOGGER.info("Receita parcelada criada com sucesso: " + numeroParcelas + " parcelas");
         return idGrupo;
     }
@@ -0,0 +1,84 @@
+package server.services;
+
+import server.model.Conta;
+import server.model.FaturaCartao;
+import server.repository.ExpenseRepository;
+import server.repository.IncomeRepository;
+import server.repository.InvoiceRepository;
+import server.utils.CreditCardUtil;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serviço de faturas de cartão de crédito
+ * Com o livro de faturas (schema_invoice_ledger.sql) a fatura atual de cada cartão é uma
+ * leitura por chave primária; sem ele, os valores são somados por período como antes.
+ */
+public class InvoiceService {
+    private final InvoiceRepository invoiceRepository;
+    private final ExpenseRepository expenseRepository;
+    private final IncomeRepository incomeRepository;
+
+    public InvoiceService() {
+        this.invoiceRepository = new InvoiceRepository();
+        this.expenseRepository = new ExpenseRepository();
+        this.incomeRepository = new IncomeRepository();
+    }
+
+    /**
+     * Indica se a conta é um cartão de crédito com dias de fechamento e pagamento
+     */
+    public static boolean temFatura(Conta conta) {
+        return conta.isCartaoCredito() && conta.getDiaFechamento() != null && conta.getDiaPagamento() != null;
+    }
+
+    /**
+     * Fatura atual (a do próximo pagamento) de um cartão
+     * @return fatura, ou null se a conta não tiver fatura
+     */
+    public FaturaCartao buscarFaturaAtual(Conta cartao) {
+        return buscarFaturasAtuais(cartao.getIdUsuario(), Collections.singletonList(cartao)).get(cartao.getIdConta());
+    }
+
+    /**
+     * Faturas atuais dos cartões da lista (demais contas são ignoradas), em uma consulta
+     * @return fatura por id da conta
+     */
+    public Map<Integer, FaturaCartao> buscarFaturasAtuais(int idUsuario, List<Conta> contas) {
+        Map<Integer, Map<String, Object>> infos = new LinkedHashMap<>();
+        Map<Integer, LocalDate> vencimentos = new LinkedHashMap<>();
+        for (Conta conta : contas) {
+            if (temFatura(conta)) {
+                Map<String, Object> info = CreditCardUtil.calcularInfoFatura(conta.getDiaFechamento(), conta.getDiaPagamento());
+                infos.put(conta.getIdConta(), info);
+                vencimentos.put(conta.getIdConta(), LocalDate.parse((String) info.get("proximoPagamento")));
+            }
+        }
+
+        Map<Integer, FaturaCartao> faturas = new HashMap<>();
+        if (InvoiceRepository.disponivel()) {
+            Map<Integer, FaturaCartao> encontradas = invoiceRepository.buscarFaturas(idUsuario, vencimentos);
+            for (Map.Entry<Integer, LocalDate> entry : vencimentos.entrySet()) {
+                FaturaCartao fatura = encontradas.get(entry.getKey());
+                faturas.put(entry.getKey(), fatura != null ? fatura : new FaturaCartao(entry.getKey(), entry.getValue(), 0, 0));
+            }
+            return faturas;
+        }
+
+        for (Map.Entry<Integer, Map<String, Object>> entry : infos.entrySet()) {
+            int idConta = entry.getKey();
+            LocalDate ultimoFechamento = LocalDate.parse((String) entry.getValue().get("ultimoFechamento"));
+            LocalDate proximoFechamento = LocalDate.parse((String) entry.getValue().get("proximoFechamento"));
+            LocalDate proximoPagamento = vencimentos.get(idConta);
+            double valorFatura = expenseRepository.calcularValorFaturaAtual(idConta, idUsuario, ultimoFechamento, proximoFechamento);
+            // Pagamentos são contados até a data de pagamento, não até o fechamento
+            double totalPago = incomeRepository.calcularTotalPagoFatura(idUsuario, idConta, ultimoFechamento, proximoPagamento, expenseRepository);
+            faturas.put(idConta, new FaturaCartao(idConta, proximoPagamento, valorFatura, totalPago));
+        }
+        return faturas;
+    }
+}
@@ -0,0 +1,109 @@
+package server.services;
+
+import server.model.Investimento;
+import server.model.VisaoGeral;
+import server.repository.AccountRepository;
+import server.repository.InvestmentRepository;
+import server.repository.OverviewRepository;
+import server.utils.DataVersion;
+import server.utils.SingleFlight;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Visão geral do painel por usuário
+ * A visão é montada em uma única consulta (OverviewRepository) e guardada por usuário até
+ * uma escrita em contas, transações ou categorias (avisada por DataVersion) ou até a
+ * versão dos dados mudar em outra instância. O valor das contas de investimento depende
+ * de cotações e é calculado à parte.
+ */
+public class OverviewService {
+    private static final int MAX_USUARIOS = 2000;
+    // Sem versões persistentes (schema_data_versions.sql não aplicado) a visão vale por pouco tempo
+    private static final long TTL_SEM_VERSAO_MS = 30 * 1000;
+
+    private static final class Entrada {
+        final String versao;
+        final long criadoEm;
+        final VisaoGeral visao;
+
+        Entrada(String versao, VisaoGeral visao) {
+            this.versao = versao;
+            this.criadoEm = System.currentTimeMillis();
+            this.visao = visao;
+        }
+    }
+
+    // LRU por ordem de acesso: remove o usuário menos recente em O(1) ao passar do limite
+    private static final Map<Integer, Entrada> VISOES = Collections.synchronizedMap(
+        new LinkedHashMap<Integer, Entrada>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entrada> eldest) {
+                return size() > MAX_USUARIOS;
+            }
+        });
+    // Montagens em andamento: requisições simultâneas do mesmo usuário esperam pela mesma consulta
+    private static final SingleFlight<Integer> CARREGAMENTOS = new SingleFlight<>();
+
+    static {
+        DataVersion.addListener((idUsuario, entities) -> {
+            for (DataVersion.Entity entity : entities) {
+                if (entity == DataVersion.Entity.ACCOUNTS || entity == DataVersion.Entity.TRANSACTIONS
+                    || entity == DataVersion.Entity.CATEGORIES) {
+                    CARREGAMENTOS.forget(idUsuario);
+                    VISOES.remove(idUsuario);
+                    return;
+                }
+            }
+        });
+    }
+
+    private final OverviewRepository overviewRepository;
+    private final AccountRepository accountRepository;
+    private final InvestmentRepository investmentRepository;
+
+    public OverviewService() {
+        this.overviewRepository = new OverviewRepository();
+        this.accountRepository = new AccountRepository();
+        this.investmentRepository = new InvestmentRepository();
+    }
+
+    /**
+     * Retorna a visão geral do usuário, do cache quando ainda válida
+     * @param versao versão atual dos dados do usuário (ETag); null se indisponível
+     */
+    public VisaoGeral buscarVisaoGeral(int idUsuario, String versao) {
+        LocalDate hoje = LocalDate.now();
+        Entrada entrada = VISOES.get(idUsuario);
+        if (entrada != null && entrada.visao.getDataReferencia().equals(hoje)
+            && (versao != null ? versao.equals(entrada.versao)
+                               : System.currentTimeMillis() - entrada.criadoEm < TTL_SEM_VERSAO_MS)) {
+            return entrada.visao;
+        }
+        return CARREGAMENTOS.execute(idUsuario, () -> overviewRepository.buscarVisaoGeral(idUsuario, hoje),
+            visao -> VISOES.put(idUsuario, new Entrada(versao, visao)));
+    }
+
+    /**
+     * Valor atual (cotações) dos investimentos das contas de investimento da visão
+     */
+    public double calcularValorContasInvestimento(int idUsuario, VisaoGeral visao) {
+        if (visao.getContasInvestimento().isEmpty()) {
+            return 0.0;
+        }
+        Set<Integer> contas = new HashSet<>(visao.getContasInvestimento());
+        List<Investimento> investimentos = new ArrayList<>();
+        for (Investimento inv : investmentRepository.buscarInvestimentosPorUsuario(idUsuario)) {
+            if (contas.contains(inv.getIdConta())) {
+                investimentos.add(inv);
+            }
+        }
+        return accountRepository.calcularValorAtualInvestimentos(investimentos);
+    }
+}
@@ -0,0 +1,374 @@
+package server.services;
+
+import server.utils.JsonUtil;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Cotações atuais compartilhadas entre usuários
+ * - Cache curto (CURRENT_TTL_MS): dois usuários com PETR4 usam a mesma cotação
+ * - Pedidos simultâneos do mesmo ativo esperam pela mesma busca em andamento
+ * - Os ativos de um pedido são agrupados por provedor em chamadas com vários símbolos
+ *   (spark do Yahoo, que não exige cookie/crumb; array de tickers da Binance; ids= da CoinGecko),
+ *   em paralelo
+ * - Ativos que o provedor não devolveu no lote caem na busca individual de QuoteService
+ */
+class QuoteBatcher {
+    private static final Logger LOGGER = Logger.getLogger(QuoteBatcher.class.getName());
+    private static final long CURRENT_TTL_MS = 60 * 1000; // 1 minuto para cotações atuais
+    private static final int YAHOO_BATCH = 20; // limite de símbolos do spark
+    private static final int BINANCE_BATCH = 100;
+    private static final int COINGECKO_BATCH = 100;
+
+    // Buscas individuais (fallback) em paralelo; a concorrência por host é limitada pelo QuoteHttpClient
+    private static final ExecutorService FALLBACK = Executors.newFixedThreadPool(4, new java.util.concurrent.ThreadFactory() {
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "quote-fetch-" + threadNumber.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    private static final class Cached {
+        final QuoteService.QuoteResult quote;
+        final long expiresAt;
+
+        Cached(QuoteService.QuoteResult quote) {
+            this.quote = quote;
+            this.expiresAt = System.currentTimeMillis() + CURRENT_TTL_MS;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() > expiresAt;
+        }
+    }
+
+    private final QuoteService quoteService;
+    private final QuoteHttpClient http;
+    private final Map<QuoteService.AssetRef, Cached> cache = new ConcurrentHashMap<>();
+    private final Map<QuoteService.AssetRef, CompletableFuture<QuoteService.QuoteResult>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder batchRequests = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    QuoteBatcher(QuoteService quoteService, QuoteHttpClient http) {
+        this.quoteService = quoteService;
+        this.http = http;
+    }
+
+    QuoteService.QuoteResult get(QuoteService.AssetRef asset) {
+        return getAll(java.util.Collections.singletonList(asset)).get(asset);
+    }
+
+    /**
+     * Cotações atuais dos ativos (sempre com um resultado por ativo, com success=false se falhar)
+     */
+    Map<QuoteService.AssetRef, QuoteService.QuoteResult> getAll(Collection<QuoteService.AssetRef> assets) {
+        Map<QuoteService.AssetRef, QuoteService.QuoteResult> result = new LinkedHashMap<>();
+        Map<QuoteService.AssetRef, CompletableFuture<QuoteService.QuoteResult>> pending = new HashMap<>();
+        Map<QuoteService.AssetRef, CompletableFuture<QuoteService.QuoteResult>> owned = new LinkedHashMap<>();
+
+        for (QuoteService.AssetRef asset : new LinkedHashSet<>(assets)) {
+            Cached cached = cache.get(asset);
+            if (cached != null && !cached.isExpired()) {
+                hits.increment();
+                result.put(asset, cached.quote);
+                continue;
+            }
+            CompletableFuture<QuoteService.QuoteResult> call = new CompletableFuture<>();
+            CompletableFuture<QuoteService.QuoteResult> current = inFlight.putIfAbsent(asset, call);
+            if (current != null) {
+                coalesced.increment();
+                pending.put(asset, current);
+            } else {
+                owned.put(asset, call);
+                pending.put(asset, call);
+            }
+        }
+
+        if (!owned.isEmpty()) {
+            Map<QuoteService.AssetRef, QuoteService.QuoteResult> fetched = new HashMap<>();
+            try {
+                fetched = fetch(new ArrayList<>(owned.keySet()));
+            } catch (RuntimeException e) {
+                LOGGER.warning("Erro ao buscar cotações em lote: " + e.getMessage());
+            } finally {
+                for (Map.Entry<QuoteService.AssetRef, CompletableFuture<QuoteService.QuoteResult>> e : owned.entrySet()) {
+                    QuoteService.QuoteResult quote = fetched.get(e.getKey());
+                    if (quote == null) {
+                        quote = failure(e.getKey());
+                    }
+                    if (quote.success) {
+                        cache.put(e.getKey(), new Cached(quote));
+                    }
+                    inFlight.remove(e.getKey(), e.getValue());
+                    e.getValue().complete(quote);
+                }
+            }
+        }
+
+        for (Map.Entry<QuoteService.AssetRef, CompletableFuture<QuoteService.QuoteResult>> e : pending.entrySet()) {
+            result.put(e.getKey(), e.getValue().join());
+        }
+        return result;
+    }
+
+    void cleanExpired() {
+        cache.values().removeIf(Cached::isExpired);
+    }
+
+    Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cachedQuotes", cache.size());
+        stats.put("hits", hits.sum());
+        stats.put("coalesced", coalesced.sum());
+        stats.put("batchRequests", batchRequests.sum());
+        stats.put("fallbacks", fallbacks.sum());
+        return stats;
+    }
+
+    /**
+     * Busca os ativos agrupados por provedor; o que não vier no lote é buscado individualmente
+     */
+    private Map<QuoteService.AssetRef, QuoteService.QuoteResult> fetch(List<QuoteService.AssetRef> assets) {
+        Map<String, QuoteService.AssetRef> yahoo = new LinkedHashMap<>();
+        Map<String, QuoteService.AssetRef> crypto = new LinkedHashMap<>();
+        List<QuoteService.AssetRef> individual = new ArrayList<>();
+        for (QuoteService.AssetRef asset : assets) {
+            String yahooSymbol = quoteService.yahooSymbol(asset.symbol, asset.category);
+            if (yahooSymbol != null) {
+                yahoo.put(yahooSymbol, asset);
+            } else if ("CRYPTO".equals(asset.category)) {
+                crypto.put(quoteService.binancePair(asset.symbol), asset);
+            } else {
+                individual.add(asset);
+            }
+        }
+
+        Map<QuoteService.AssetRef, QuoteService.QuoteResult> result = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> calls = new ArrayList<>();
+        for (List<String> chunk : chunks(yahoo.keySet(), YAHOO_BATCH)) {
+            calls.add(fetchYahoo(chunk, yahoo, result));
+        }
+        for (List<String> chunk : chunks(crypto.keySet(), BINANCE_BATCH)) {
+            calls.add(fetchBinance(chunk, crypto, result, "https://api.binance.com"));
+        }
+        awaitAll(calls);
+
+        // Criptomoedas sem cotação na Binance (bloqueio 451, par inexistente): CoinGecko em lote
+        List<QuoteService.AssetRef> semCotacao = new ArrayList<>();
+        for (QuoteService.AssetRef asset : crypto.values()) {
+            if (!result.containsKey(asset)) semCotacao.add(asset);
+        }
+        if (!semCotacao.isEmpty()) {
+            Map<String, QuoteService.AssetRef> ids = new LinkedHashMap<>();
+            for (QuoteService.AssetRef asset : semCotacao) {
+                ids.put(quoteService.coinGeckoId(asset.symbol), asset);
+            }
+            calls.clear();
+            for (List<String> chunk : chunks(ids.keySet(), COINGECKO_BATCH)) {
+                calls.add(fetchCoinGecko(chunk, ids, result));
+            }
+            awaitAll(calls);
+        }
+
+        for (QuoteService.AssetRef asset : assets) {
+            if (!result.containsKey(asset)) individual.add(asset);
+        }
+        List<CompletableFuture<Void>> fallbackCalls = new ArrayList<>();
+        for (QuoteService.AssetRef asset : new LinkedHashSet<>(individual)) {
+            fallbacks.increment();
+            fallbackCalls.add(CompletableFuture.runAsync(() -> {
+                QuoteService.QuoteResult quote = quoteService.fetchCurrentQuote(asset);
+                if (quote != null) result.put(asset, quote);
+            }, FALLBACK));
+        }
+        awaitAll(fallbackCalls);
+        return result;
+    }
+
+    /**
+     * Yahoo Finance: /v7/finance/spark?symbols=A,B,C&range=1d&interval=1d
+     * Como o /v8/finance/chart da busca individual, não exige cookie/crumb (o /v7/finance/quote exige).
+     * Resposta: {"spark":{"result":[{"symbol":"A","response":[{"meta":{...},"indicators":{"quote":[{"close":[...]}]}}]}]}}
+     */
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<Void> fetchYahoo(List<String> symbols, Map<String, QuoteService.AssetRef> assets,
+                                               Map<QuoteService.AssetRef, QuoteService.QuoteResult> result) {
+        batchRequests.increment();
+        String url = "https://query1.finance.yahoo.com/v7/finance/spark?symbols=" + encode(String.join(",", symbols))
+            + "&range=1d&interval=1d";
+        return http.getAsync(url).thenAccept(response -> {
+            Object spark = JsonUtil.parseJsonWithNested(response).get("spark");
+            if (!(spark instanceof Map)) return;
+            Object items = ((Map<String, Object>) spark).get("result");
+            if (!(items instanceof List)) return;
+            for (Object item : (List<Object>) items) {
+                if (!(item instanceof Map)) continue;
+                QuoteService.AssetRef asset = assets.get(String.valueOf(((Map<String, Object>) item).get("symbol")));
+                Object responses = ((Map<String, Object>) item).get("response");
+                if (asset == null || !(responses instanceof List) || ((List<Object>) responses).isEmpty()
+                    || !(((List<Object>) responses).get(0) instanceof Map)) continue;
+                Map<String, Object> chart = (Map<String, Object>) ((List<Object>) responses).get(0);
+                Map<String, Object> meta = chart.get("meta") instanceof Map ? (Map<String, Object>) chart.get("meta") : new HashMap<>();
+                double price = number(meta.get("regularMarketPrice"));
+                if (price <= 0) {
+                    price = lastClose(chart.get("indicators"));
+                }
+                if (price <= 0) continue;
+                Object name = meta.get("longName") != null ? meta.get("longName") : meta.get("shortName");
+                // Mesma moeda da busca individual: B3 em BRL, bolsas americanas em USD
+                String currency = "STOCK".equals(asset.category) ? "USD" : "BRL";
+                result.put(asset, new QuoteService.QuoteResult(true, "Cotação obtida com sucesso", price, currency,
+                    name != null ? name.toString() : asset.symbol));
+            }
+        });
+    }
+
+    /**
+     * Binance: /api/v3/ticker/price?symbols=["BTCUSDT","ETHUSDT"]
+     * Com bloqueio geográfico (451) tenta uma vez o endpoint data.binance.com.
+     * Um par inexistente faz a Binance recusar o lote inteiro ({"code":-1121,...}) sem dizer qual;
+     * o lote é dividido ao meio e reenviado até isolar os pares inválidos, que seguem para a CoinGecko.
+     */
+    private CompletableFuture<Void> fetchBinance(List<String> pairs, Map<String, QuoteService.AssetRef> assets,
+                                                 Map<QuoteService.AssetRef, QuoteService.QuoteResult> result, String baseUrl) {
+        batchRequests.increment();
+        StringBuilder json = new StringBuilder("[");
+        for (String pair : pairs) {
+            if (json.length() > 1) json.append(',');
+            json.append('"').append(pair).append('"');
+        }
+        String url = baseUrl + "/api/v3/ticker/price?symbols=" + encode(json.append(']').toString());
+        return http.getAsync(url).thenCompose(response -> {
+            if (response == null && baseUrl.contains("api.binance.com") && http.failedRecently("api.binance.com", 451)) {
+                return fetchBinance(pairs, assets, result, "https://data.binance.com");
+            }
+            if (response != null && pairs.size() > 1 && response.trim().startsWith("{")
+                && JsonUtil.parseJsonWithNested(response).get("code") != null) {
+                int middle = pairs.size() / 2;
+                return CompletableFuture.allOf(
+                    fetchBinance(pairs.subList(0, middle), assets, result, baseUrl),
+                    fetchBinance(pairs.subList(middle, pairs.size()), assets, result, baseUrl));
+            }
+            String source = baseUrl.contains("data.binance.com") ? "Binance (data endpoint)" : "Binance";
+            for (Object item : JsonUtil.parseJsonArray(response)) {
+                if (!(item instanceof Map)) continue;
+                Map<?, ?> ticker = (Map<?, ?>) item;
+                QuoteService.AssetRef asset = assets.get(String.valueOf(ticker.get("symbol")));
+                double price = number(ticker.get("price"));
+                if (asset != null && price > 0) {
+                    result.put(asset, new QuoteService.QuoteResult(true, "Cotação obtida com sucesso (" + source + ")",
+                        price, "USD", asset.symbol));
+                }
+            }
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * CoinGecko: /simple/price?ids=bitcoin,ethereum&vs_currencies=usd
+     */
+    private CompletableFuture<Void> fetchCoinGecko(List<String> ids, Map<String, QuoteService.AssetRef> assets,
+                                                   Map<QuoteService.AssetRef, QuoteService.QuoteResult> result) {
+        batchRequests.increment();
+        String url = "https://api.coingecko.com/api/v3/simple/price?ids=" + encode(String.join(",", ids)) + "&vs_currencies=usd";
+        return http.getAsync(url).thenAccept(response -> {
+            for (Map.Entry<String, Object> e : JsonUtil.parseJsonWithNested(response).entrySet()) {
+                QuoteService.AssetRef asset = assets.get(e.getKey());
+                if (asset == null || !(e.getValue() instanceof Map)) continue;
+                double price = number(((Map<?, ?>) e.getValue()).get("usd"));
+                if (price > 0) {
+                    result.put(asset, new QuoteService.QuoteResult(true, "Cotação obtida com sucesso (CoinGecko)",
+                        price, "USD", asset.symbol));
+                }
+            }
+        });
+    }
+
+    /**
+     * Espera todas as chamadas; a falha de uma (ex: resposta inesperada) não descarta as demais
+     */
+    private static void awaitAll(List<CompletableFuture<Void>> calls) {
+        for (CompletableFuture<Void> call : calls) {
+            try {
+                call.join();
+            } catch (RuntimeException e) {
+                LOGGER.warning("Erro ao buscar cotações em lote: " + e.getMessage());
+            }
+        }
+    }
+
+    private static QuoteService.QuoteResult failure(QuoteService.AssetRef asset) {
+        String currency = "STOCK".equals(asset.category) || "CRYPTO".equals(asset.category) ? "USD" : "BRL";
+        return new QuoteService.QuoteResult(false, "Não foi possível obter a cotação. Por favor, insira o preço manualmente.",
+            0.0, currency);
+    }
+
+    /**
+     * Último fechamento de indicators.quote[0].close (a lista já vem sem os nulls)
+     */
+    @SuppressWarnings("unchecked")
+    private static double lastClose(Object indicators) {
+        Object quotes = indicators instanceof Map ? ((Map<String, Object>) indicators).get("quote") : null;
+        if (!(quotes instanceof List) || ((List<Object>) quotes).isEmpty() || !(((List<Object>) quotes).get(0) instanceof Map)) {
+            return 0.0;
+        }
+        Object close = ((Map<String, Object>) ((List<Object>) quotes).get(0)).get("close");
+        if (!(close instanceof List) || ((List<Object>) close).isEmpty()) {
+            return 0.0;
+        }
+        List<Object> closes = (List<Object>) close;
+        return number(closes.get(closes.size() - 1));
+    }
+
+    private static double number(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value != null) {
+            try {
+                return Double.parseDouble(value.toString());
+            } catch (NumberFormatException e) {
+                return 0.0;
+            }
+        }
+        return 0.0;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static List<List<String>> chunks(Collection<String> values, int size) {
+        List<List<String>> chunks = new ArrayList<>();
+        List<String> chunk = new ArrayList<>(size);
+        for (String value : values) {
+            chunk.add(value);
+            if (chunk.size() == size) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>(size);
+            }
+        }
+        if (!chunk.isEmpty()) chunks.add(chunk);
+        return chunks;
+    }
+}
@@ -0,0 +1,278 @@
+package server.services;
+
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.channels.UnresolvedAddressException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import javax.net.ssl.SSLException;
+
+/**
+ * Cliente HTTP das APIs de cotação
+ * Um único java.net.http.HttpClient (conexões reaproveitadas, HTTP/2 quando o servidor aceita)
+ * com API assíncrona e limite de requisições simultâneas por host (QUOTE_HTTP_MAX_PER_HOST,
+ * padrão 4); as excedentes esperam na fila do host sem ocupar threads.
+ * Hosts com rate limit (429) ou falha de SSL ficam suspensos por um período e os erros
+ * repetidos são registrados uma vez por período; a expiração usa um único timer agendado.
+ * As falhas não lançam exceção: a resposta é null, como esperado pelos parsers de QuoteService.
+ */
+public class QuoteHttpClient {
+    private static final Logger LOGGER = Logger.getLogger(QuoteHttpClient.class.getName());
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+    private static final long SSL_FAILURE_DURATION_MS = 5 * 60 * 1000; // 5 minutos para falhas SSL
+    private static final long GENERAL_FAILURE_DURATION_MS = 2 * 60 * 1000; // 2 minutos para falhas gerais
+    private static final long RATE_LIMIT_DURATION_MS = 10 * 60 * 1000; // 10 minutos para rate limit
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36";
+
+    private final HttpClient client;
+    private final int maxPerHost;
+    private final Map<String, HostLimiter> limiters = new ConcurrentHashMap<>();
+    // Host -> fim da suspensão (429, SSL)
+    private final Map<String, Long> suspendedHosts = new ConcurrentHashMap<>();
+    // "host_tipo" -> fim do período em que a falha já foi registrada
+    private final Map<String, Long> recentFailures = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService expiry;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+
+    public QuoteHttpClient() {
+        this.maxPerHost = maxPerHostFromEnv();
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4, r -> {
+            Thread t = new Thread(r, "quote-http-" + threadNumber.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(CONNECT_TIMEOUT)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .executor(executor)
+            .build();
+        this.expiry = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "quote-http-expiry");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * GET bloqueante
+     * @return corpo da resposta (também em erros HTTP, exceto 429/451), ou null em caso de falha
+     */
+    public String get(String url) {
+        return getAsync(url).join();
+    }
+
+    /**
+     * GET assíncrono, respeitando o limite por host
+     * O futuro nunca completa com exceção: falhas resultam em null.
+     */
+    public CompletableFuture<String> getAsync(String url) {
+        String host = host(url);
+        if (isSuspended(host)) {
+            skipped.increment();
+            return CompletableFuture.completedFuture(null);
+        }
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(REQUEST_TIMEOUT)
+                .header("User-Agent", USER_AGENT)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+        } catch (IllegalArgumentException e) {
+            LOGGER.warning("URL inválida para cotação: " + url);
+            return CompletableFuture.completedFuture(null);
+        }
+        HostLimiter limiter = limiters.computeIfAbsent(host, h -> new HostLimiter(maxPerHost));
+        return limiter.acquire()
+            .thenCompose(ignored -> {
+                requests.increment();
+                return client.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            })
+            .handle((response, error) -> {
+                limiter.release();
+                return error != null ? handleError(host, error) : handleResponse(host, response);
+            });
+    }
+
+    /**
+     * Indica se as requisições ao host estão suspensas (rate limit ou falha de SSL recentes)
+     */
+    public boolean isSuspended(String host) {
+        return suspendedHosts.containsKey(host);
+    }
+
+    /**
+     * Indica se o host respondeu recentemente com o status informado (ex: 451)
+     */
+    public boolean failedRecently(String host, int status) {
+        return recentFailures.containsKey(host + "_" + status);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("requests", requests.sum());
+        stats.put("failures", failures.sum());
+        stats.put("skipped", skipped.sum());
+        stats.put("maxPerHost", maxPerHost);
+        stats.put("suspendedHosts", suspendedHosts.keySet());
+        return stats;
+    }
+
+    /**
+     * Extrai o domínio de uma URL
+     */
+    public static String host(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host != null ? host : url;
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+
+    private String handleResponse(String host, HttpResponse<String> response) {
+        int status = response.statusCode();
+        if (status == 429) {
+            failures.increment();
+            mark(suspendedHosts, host, RATE_LIMIT_DURATION_MS);
+            if (mark(recentFailures, host + "_429", RATE_LIMIT_DURATION_MS)) {
+                LOGGER.warning("Rate limit (429) atingido para " + host + ". Requisições serão ignoradas por 10 minutos.");
+            }
+            return null;
+        }
+        if (status == 451) {
+            // Bloqueio geográfico/legal: o chamador usa o fallback (ex: CoinGecko)
+            failures.increment();
+            if (mark(recentFailures, host + "_451", GENERAL_FAILURE_DURATION_MS)) {
+                LOGGER.warning("Erro 451 (Bloqueio geográfico/legal) para " + host + ". Usando fallback.");
+            }
+            return null;
+        }
+        if (status != 200 && status != 404) {
+            failures.increment();
+            if (mark(recentFailures, host + "_" + status, GENERAL_FAILURE_DURATION_MS)) {
+                LOGGER.warning("Erro HTTP " + status + " para: " + host);
+            }
+        }
+        return response.body();
+    }
+
+    private String handleError(String host, Throwable error) {
+        failures.increment();
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (hasCause(cause, SSLException.class)) {
+            mark(suspendedHosts, host, SSL_FAILURE_DURATION_MS);
+            if (mark(recentFailures, host + "_ssl", SSL_FAILURE_DURATION_MS)) {
+                LOGGER.warning("Erro SSL/TLS ao conectar com " + host + ". Requisições serão ignoradas por 5 minutos.");
+            }
+        } else if (hasCause(cause, HttpTimeoutException.class)) {
+            if (mark(recentFailures, host + "_timeout", GENERAL_FAILURE_DURATION_MS)) {
+                LOGGER.warning("Timeout na requisição HTTP para: " + host);
+            }
+        } else if (hasCause(cause, UnknownHostException.class) || hasCause(cause, UnresolvedAddressException.class)) {
+            if (mark(recentFailures, host + "_dns", GENERAL_FAILURE_DURATION_MS)) {
+                LOGGER.warning("Erro DNS (host não encontrado) para: " + host);
+            }
+        } else if (hasCause(cause, ConnectException.class)) {
+            if (mark(recentFailures, host + "_connection", GENERAL_FAILURE_DURATION_MS)) {
+                LOGGER.warning("Erro de conexão para " + host + ": " + cause.getMessage());
+            }
+        } else if (mark(recentFailures, host + "_general", GENERAL_FAILURE_DURATION_MS)) {
+            LOGGER.warning("Erro na requisição HTTP para " + host + ": " + cause);
+        }
+        return null;
+    }
+
+    /**
+     * Marca a chave até expirar o período
+     * @return false se a chave já estava marcada
+     */
+    private boolean mark(Map<String, Long> marks, String key, long durationMs) {
+        Long until = System.currentTimeMillis() + durationMs;
+        if (marks.putIfAbsent(key, until) != null) {
+            return false;
+        }
+        expiry.schedule(() -> marks.remove(key, until), durationMs, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    private static boolean hasCause(Throwable error, Class<? extends Throwable> type) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (type.isInstance(t)) return true;
+        }
+        return false;
+    }
+
+    private static int maxPerHostFromEnv() {
+        try {
+            String value = System.getenv("QUOTE_HTTP_MAX_PER_HOST");
+            return value != null ? Math.max(1, Integer.parseInt(value.trim())) : 4;
+        } catch (NumberFormatException e) {
+            return 4;
+        }
+    }
+
+    /**
+     * Semáforo assíncrono por host: quem excede o limite recebe um futuro completado
+     * quando uma requisição anterior termina
+     */
+    private static final class HostLimiter {
+        private final int max;
+        private final Deque<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+        private int active;
+
+        HostLimiter(int max) {
+            this.max = max;
+        }
+
+        synchronized CompletableFuture<Void> acquire() {
+            if (active < max) {
+                active++;
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Void> turn = new CompletableFuture<>();
+            waiting.add(turn);
+            return turn;
+        }
+
+        void release() {
+            CompletableFuture<Void> next;
+            synchronized (this) {
+                next = waiting.poll();
+                if (next == null) {
+                    active--;
+                    return;
+                }
+            }
+            // A vaga passa direto para o próximo da fila
+            next.complete(null);
+        }
+    }
+}
@@ -1,15 +1,16 @@
 package server.services;
 
+import server.repository.QuoteHistoryRepository;
+import server.utils.JsonReader;
+import server.utils.JsonUtil;
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import javax.net.ssl.SSLException;
 
 /**
  * Serviço para buscar cotações de investimentos de APIs públicas
@@ -19,24 +20,21 @@ public class QuoteService {
     private static QuoteService instance;
     private Map<String, CachedQuote> cache;
     private Map<String, CachedExchangeRate> exchangeRateCache; // Cache de taxas de câmbio
-    private Set<String> sslFailureCache; // Cache de falhas SSL para evitar múltiplas tentativas
-    private Set<String> generalFailureCache; // Cache de falhas gerais para evitar spam de logs
-    private Set<String> rateLimitCache; // Cache de rate limit (429) para evitar requisições
+    private final QuoteHttpClient http; // Cliente HTTP compartilhado (limite por host, suspensão após 429/SSL)
+    private final QuoteBatcher batcher; // Cotações atuais: cache curto compartilhado, buscas em lote por provedor
+    private final QuoteHistoryRepository historyRepository; // Fechamentos diários já buscados (persistentes)
     private static final long CACHE_DURATION_MS = 30 * 60 * 1000; // 30 minutos
     private static final long CRYPTO_CACHE_DURATION_MS = 60 * 60 * 1000; // 1 hora
     private static final long HISTORICAL_CACHE_DURATION_MS = 24 * 60 * 60 * 1000; // 24 horas para dados históricos (aumentado drasticamente para otimizar primeira carga)
     private static final long EXCHANGE_RATE_CACHE_DURATION_MS = 60 * 60 * 1000; // 1 hora para taxa de câmbio
-    private static final long SSL_FAILURE_CACHE_DURATION_MS = 5 * 60 * 1000; // 5 minutos para falhas SSL
-    private static final long GENERAL_FAILURE_CACHE_DURATION_MS = 2 * 60 * 1000; // 2 minutos para falhas gerais
-    private static final long RATE_LIMIT_CACHE_DURATION_MS = 10 * 60 * 1000; // 10 minutos para rate limit
     private static final String EXCHANGE_RATE_API = "https://api.exchangerate-api.com/v4/latest/USD";
     
     private QuoteService() {
         this.cache = new ConcurrentHashMap<>();
         this.exchangeRateCache = new ConcurrentHashMap<>();
-        this.sslFailureCache = ConcurrentHashMap.newKeySet();
-        this.generalFailureCache = ConcurrentHashMap.newKeySet();
-        this.rateLimitCache = ConcurrentHashMap.newKeySet();
+        this.http = new QuoteHttpClient();
+        this.batcher = new QuoteBatcher(this, http);
+        this.historyRepository = new QuoteHistoryRepository();
     }
     
     /**
@@ -65,9 +63,40 @@ public class QuoteService {
         return instance;
     }
     
+    /**
+     * Ativo (símbolo + categoria) para busca de cotações em lote
+     */
+    public static final class AssetRef {
+        public final String symbol;
+        public final String category;
+        
+        public AssetRef(String symbol, String category) {
+            this.symbol = symbol;
+            this.category = category;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof AssetRef)) return false;
+            AssetRef other = (AssetRef) o;
+            return Objects.equals(symbol, other.symbol) && Objects.equals(category, other.category);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(symbol, category);
+        }
+        
+        @Override
+        public String toString() {
+            return symbol + "_" + category;
+        }
+    }
+    
     /**
      * Busca cotação atual ou histórica de um investimento
-     * @param date Data da cotação. Se for null ou hoje, retorna cotação atual (sem cache para mostrar variação em tempo real)
+     * @param date Data da cotação. Se for null ou hoje, retorna cotação atual (cache curto compartilhado entre usuários)
      */
     public QuoteResult getQuote(String symbol, String category, LocalDate date) {
         return getQuote(symbol, category, date, null);
@@ -90,6 +119,11 @@ public class QuoteService {
             return getQuote(symbol, category, null, null);
         }
         
+        // Cotação atual: compartilhada por um minuto e buscada uma única vez por ativo
+        if (isToday && dateTime == null) {
+            return batcher.get(new AssetRef(symbol, category));
+        }
+        
         // Para dados intraday do dia atual, usa cache mais curto (5 minutos) para mostrar variação
         // Para datas históricas, usa cache de 30 minutos
         if (!isToday || isIntraday) {
@@ -101,9 +135,24 @@ public class QuoteService {
             }
         }
         
+        // Fechamento de um dia passado: o armazenamento local vem antes da API (preços passados não mudam)
+        boolean isDailyClose = !isToday && dateTime == null && keepsHistory(symbol, category);
+        if (isDailyClose) {
+            QuoteResult stored = storedClose(symbol, category, date);
+            if (stored != null) {
+                cache.put(symbol + "_" + category + "_" + date, 
+                    new CachedQuote(stored, System.currentTimeMillis(), HISTORICAL_CACHE_DURATION_MS));
+                return stored;
+            }
+        }
+        
         // Busca nova cotação
         QuoteResult quote = fetchQuote(symbol, category, date, dateTime);
         
+        if (isDailyClose && quote != null && quote.success && quote.price > 0) {
+            storeCloses(symbol, category, Collections.singletonMap(date, quote.price));
+        }
+        
         // Atualiza cache
         if (quote != null && quote.success) {
             String cacheKey = symbol + "_" + category + "_" + 
@@ -124,6 +173,329 @@ public class QuoteService {
         return quote;
     }
     
+    /**
+     * Cotações atuais de vários ativos, buscadas em lote por provedor (Yahoo, Binance, CoinGecko)
+     * Usado para aquecer o cache antes de percorrer uma carteira: as chamadas seguintes a
+     * getQuote(símbolo, categoria, null) são atendidas sem novas requisições.
+     * Renda fixa não tem cotação externa e é ignorada.
+     */
+    public Map<AssetRef, QuoteResult> getCurrentQuotes(Collection<AssetRef> assets) {
+        List<AssetRef> cotaveis = new ArrayList<>();
+        for (AssetRef asset : assets) {
+            if (asset.symbol != null && asset.category != null && !"RENDA_FIXA".equals(asset.category)) {
+                cotaveis.add(asset);
+            }
+        }
+        return cotaveis.isEmpty() ? new HashMap<>() : batcher.getAll(cotaveis);
+    }
+    
+    /**
+     * Fechamentos diários do ativo no período (limitado a ontem), por data
+     * Lidos do armazenamento local; os dias que faltam são buscados na API em uma única chamada
+     * por ativo e gravados. Dias sem negociação recebem o último fechamento anterior, como na
+     * busca de uma data avulsa. O período consultado fica registrado (cobertura), então dias sem
+     * fechamento no provedor (antes do início da negociação, suspensões) não são buscados de novo.
+     * Renda fixa e ativos sem histórico diário retornam vazio.
+     */
+    public Map<LocalDate, QuoteResult> getHistoricalQuotes(String symbol, String category, LocalDate from, LocalDate to) {
+        Map<LocalDate, QuoteResult> result = new TreeMap<>();
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        if (to.isAfter(yesterday)) {
+            to = yesterday;
+        }
+        if (symbol == null || from.isAfter(to) || !keepsHistory(symbol, category)) {
+            return result;
+        }
+        
+        TreeMap<LocalDate, Double> prices = new TreeMap<>();
+        LocalDate[] covered = null;
+        boolean stored = QuoteHistoryRepository.disponivel();
+        if (stored) {
+            try {
+                prices.putAll(historyRepository.buscarPeriodo(symbol, category, from, to));
+                covered = historyRepository.buscarCobertura(symbol, category);
+            } catch (RuntimeException e) {
+                System.err.println(e.getMessage());
+            }
+        }
+        
+        // Uma chamada cobrindo do primeiro ao último dia que falta fora da cobertura
+        LocalDate firstGap = null;
+        LocalDate lastGap = null;
+        for (LocalDate d = from; !d.isAfter(to); d = d.plusDays(1)) {
+            boolean inCoverage = covered != null && !d.isBefore(covered[0]) && !d.isAfter(covered[1]);
+            if (!prices.containsKey(d) && !inCoverage) {
+                if (firstGap == null) firstGap = d;
+                lastGap = d;
+            }
+        }
+        if (firstGap != null) {
+            // Estende a busca até a cobertura atual para que ela continue um único período
+            if (covered != null && lastGap.isBefore(covered[0].minusDays(1))) {
+                lastGap = covered[0].minusDays(1);
+            }
+            if (covered != null && firstGap.isAfter(covered[1].plusDays(1))) {
+                firstGap = covered[1].plusDays(1);
+            }
+            TreeMap<LocalDate, Double> closes = fetchDailyCloses(symbol, category, firstGap, lastGap);
+            Map<LocalDate, Double> fetched = fillDays(closes, firstGap, lastGap);
+            fetched.keySet().removeAll(prices.keySet());
+            prices.putAll(fetched);
+            if (stored) {
+                storeFetched(symbol, category, fetched, closes, firstGap, lastGap, yesterday);
+            }
+        }
+        
+        String currency = historyCurrency(category);
+        for (Map.Entry<LocalDate, Double> price : prices.subMap(from, true, to, true).entrySet()) {
+            result.put(price.getKey(), new QuoteResult(true, "Cotação obtida com sucesso", price.getValue(), currency));
+        }
+        return result;
+    }
+    
+    /**
+     * Busca individual da cotação atual (fallback do lote)
+     */
+    QuoteResult fetchCurrentQuote(AssetRef asset) {
+        return fetchQuote(asset.symbol, asset.category, null, null);
+    }
+    
+    /**
+     * Símbolo do Yahoo Finance usado para o ativo, ou null se o ativo não é cotado no Yahoo
+     */
+    String yahooSymbol(String symbol, String category) {
+        if (("ACAO".equals(category) && symbol.matches("^[A-Z]{4}\\d{1,2}$")) || "FII".equals(category)) {
+            return symbol + ".SA";
+        }
+        return "STOCK".equals(category) ? symbol : null;
+    }
+    
+    /**
+     * Par da Binance da criptomoeda (formato: BTCUSDT, ETHUSDT, etc)
+     */
+    String binancePair(String symbol) {
+        String normalizedSymbol = symbol.trim().replaceAll("\\s+", " ").toUpperCase();
+        String binancePair = getBinanceSymbolMap().get(normalizedSymbol);
+        // Sem mapeamento, usa o par padrão: símbolo + USDT
+        return binancePair != null ? binancePair : normalizedSymbol + "USDT";
+    }
+    
+    /**
+     * ID da criptomoeda na CoinGecko
+     */
+    String coinGeckoId(String symbol) {
+        String normalizedSymbol = symbol.trim().replaceAll("\\s+", " ").toUpperCase();
+        String coinId = getCoinGeckoIdMap().get(normalizedSymbol);
+        // Sem mapeamento, usa o símbolo em minúsculas como ID
+        return coinId != null ? coinId : symbol.trim().toLowerCase().replaceAll("\\s+", "-");
+    }
+    
+    /**
+     * Ativos com fechamento diário nas APIs (B3 e stocks no Yahoo, criptomoedas)
+     */
+    private boolean keepsHistory(String symbol, String category) {
+        return yahooSymbol(symbol, category) != null || "CRYPTO".equals(category);
+    }
+    
+    /**
+     * Moeda das cotações do ativo: B3 em BRL, stocks e criptomoedas em USD
+     */
+    private String historyCurrency(String category) {
+        return "STOCK".equals(category) || "CRYPTO".equals(category) ? "USD" : "BRL";
+    }
+    
+    private QuoteResult storedClose(String symbol, String category, LocalDate date) {
+        if (!QuoteHistoryRepository.disponivel()) {
+            return null;
+        }
+        try {
+            Double price = historyRepository.buscar(symbol, category, date);
+            return price != null ? new QuoteResult(true, "Cotação obtida com sucesso", price, historyCurrency(category)) : null;
+        } catch (RuntimeException e) {
+            System.err.println(e.getMessage());
+            return null;
+        }
+    }
+    
+    private void storeCloses(String symbol, String category, Map<LocalDate, Double> prices) {
+        if (prices.isEmpty() || !QuoteHistoryRepository.disponivel()) {
+            return;
+        }
+        try {
+            historyRepository.gravar(symbol, category, prices, null, null);
+        } catch (RuntimeException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+    
+    /**
+     * Grava os dias buscados e o período consultado. Só há cobertura quando a API respondeu com
+     * fechamentos (resposta vazia pode ser falha); os últimos dias sem fechamento ainda podem ser
+     * publicados e ficam de fora dela, a não ser que já tenham mais de uma semana.
+     */
+    private void storeFetched(String symbol, String category, Map<LocalDate, Double> fetched,
+                              TreeMap<LocalDate, Double> closes, LocalDate from, LocalDate to, LocalDate yesterday) {
+        LocalDate coveredTo = to;
+        if (!closes.isEmpty() && closes.lastKey().isBefore(to) && to.isAfter(yesterday.minusDays(7))) {
+            coveredTo = closes.lastKey();
+        }
+        boolean covers = !closes.isEmpty() && !coveredTo.isBefore(from);
+        if (fetched.isEmpty() && !covers) {
+            return;
+        }
+        try {
+            historyRepository.gravar(symbol, category, fetched, covers ? from : null, covers ? coveredTo : null);
+        } catch (RuntimeException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+    
+    /**
+     * Preço de cada dia do período: o fechamento do dia ou, sem negociação, o último anterior
+     * (até 7 dias antes); dias após o último fechamento disponível ficam de fora
+     */
+    private Map<LocalDate, Double> fillDays(TreeMap<LocalDate, Double> closes, LocalDate from, LocalDate to) {
+        Map<LocalDate, Double> days = new TreeMap<>();
+        if (closes.isEmpty()) {
+            return days;
+        }
+        LocalDate last = closes.lastKey().isBefore(to) ? closes.lastKey() : to;
+        for (LocalDate d = from; !d.isAfter(last); d = d.plusDays(1)) {
+            Map.Entry<LocalDate, Double> close = closes.floorEntry(d);
+            if (close != null && !close.getKey().isBefore(d.minusDays(7))) {
+                days.put(d, close.getValue());
+            }
+        }
+        return days;
+    }
+    
+    /**
+     * Fechamentos diários do período em uma chamada por provedor (inclui a semana anterior a from)
+     */
+    private TreeMap<LocalDate, Double> fetchDailyCloses(String symbol, String category, LocalDate from, LocalDate to) {
+        try {
+            String yahooSymbol = yahooSymbol(symbol, category);
+            if (yahooSymbol != null) {
+                return fetchYahooDailyCloses(yahooSymbol, from.minusDays(7), to);
+            }
+            if ("CRYPTO".equals(category)) {
+                TreeMap<LocalDate, Double> closes = fetchBinanceDailyCloses(binancePair(symbol), from.minusDays(7), to);
+                return closes.isEmpty() ? fetchCoinGeckoDailyCloses(coinGeckoId(symbol), from.minusDays(7), to) : closes;
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Erro ao buscar histórico de " + symbol + ": " + e.getMessage());
+        }
+        return new TreeMap<>();
+    }
+    
+    /**
+     * Yahoo Finance chart diário: timestamp[] e indicators.quote[0].close[] (null em dias sem negociação)
+     */
+    @SuppressWarnings("unchecked")
+    private TreeMap<LocalDate, Double> fetchYahooDailyCloses(String yahooSymbol, LocalDate from, LocalDate to) {
+        TreeMap<LocalDate, Double> closes = new TreeMap<>();
+        String urlStr = String.format("https://query1.finance.yahoo.com/v8/finance/chart/%s?interval=1d&period1=%d&period2=%d",
+            yahooSymbol, from.atStartOfDay().toEpochSecond(ZoneOffset.UTC), to.plusDays(1).atStartOfDay().toEpochSecond(ZoneOffset.UTC));
+        String response = httpGet(urlStr);
+        if (response == null) {
+            return closes;
+        }
+        // Mantém os nulls para os arrays de timestamps e fechamentos continuarem alinhados
+        Object root = new JsonReader(response, false).readValue();
+        Object chart = root instanceof Map ? ((Map<String, Object>) root).get("chart") : null;
+        Object results = chart instanceof Map ? ((Map<String, Object>) chart).get("result") : null;
+        if (!(results instanceof List) || ((List<Object>) results).isEmpty()) {
+            return closes;
+        }
+        Map<String, Object> result = (Map<String, Object>) ((List<Object>) results).get(0);
+        Object meta = result.get("meta");
+        Object offset = meta instanceof Map ? ((Map<String, Object>) meta).get("gmtoffset") : null;
+        long gmtOffset = offset instanceof Number ? ((Number) offset).longValue() : 0;
+        Object timestamps = result.get("timestamp");
+        Object indicators = result.get("indicators");
+        Object quotes = indicators instanceof Map ? ((Map<String, Object>) indicators).get("quote") : null;
+        if (!(timestamps instanceof List) || !(quotes instanceof List) || ((List<Object>) quotes).isEmpty()) {
+            return closes;
+        }
+        Object closeList = ((Map<String, Object>) ((List<Object>) quotes).get(0)).get("close");
+        if (!(closeList instanceof List)) {
+            return closes;
+        }
+        List<Object> ts = (List<Object>) timestamps;
+        List<Object> close = (List<Object>) closeList;
+        for (int i = 0; i < ts.size() && i < close.size(); i++) {
+            if (!(ts.get(i) instanceof Number) || !(close.get(i) instanceof Number)) continue;
+            // Data do pregão no fuso da bolsa
+            LocalDate date = Instant.ofEpochSecond(((Number) ts.get(i)).longValue() + gmtOffset).atZone(ZoneOffset.UTC).toLocalDate();
+            double price = ((Number) close.get(i)).doubleValue();
+            if (price > 0 && !date.isAfter(to)) {
+                closes.put(date, price);
+            }
+        }
+        return closes;
+    }
+    
+    /**
+     * Binance klines diários (até 1000 por chamada): [[abertura, open, high, low, close, ...], ...]
+     */
+    private TreeMap<LocalDate, Double> fetchBinanceDailyCloses(String binancePair, LocalDate from, LocalDate to) {
+        TreeMap<LocalDate, Double> closes = new TreeMap<>();
+        String baseUrl = http.failedRecently("api.binance.com", 451) ? "https://data.binance.com" : "https://api.binance.com";
+        long start = from.atStartOfDay().toEpochSecond(ZoneOffset.UTC) * 1000;
+        long end = to.plusDays(1).atStartOfDay().toEpochSecond(ZoneOffset.UTC) * 1000 - 1;
+        while (start <= end) {
+            String response = httpGet(String.format("%s/api/v3/klines?symbol=%s&interval=1d&startTime=%d&endTime=%d&limit=1000",
+                baseUrl, binancePair, start, end));
+            List<Object> klines = JsonUtil.parseJsonArray(response);
+            long lastOpen = -1;
+            for (Object item : klines) {
+                if (!(item instanceof List) || ((List<?>) item).size() < 5) continue;
+                List<?> kline = (List<?>) item;
+                if (!(kline.get(0) instanceof Number)) continue;
+                lastOpen = ((Number) kline.get(0)).longValue();
+                try {
+                    double price = Double.parseDouble(kline.get(4).toString());
+                    if (price > 0) {
+                        closes.put(Instant.ofEpochMilli(lastOpen).atZone(ZoneOffset.UTC).toLocalDate(), price);
+                    }
+                } catch (NumberFormatException e) {
+                    // Ignora o candle
+                }
+            }
+            if (klines.size() < 1000 || lastOpen < 0) {
+                break;
+            }
+            start = lastOpen + 24L * 60 * 60 * 1000;
+        }
+        return closes;
+    }
+    
+    /**
+     * CoinGecko market_chart (fallback): {"prices":[[timestamp, price], ...]}; usa o último preço de cada dia
+     * A API gratuita limita o histórico a 365 dias.
+     */
+    private TreeMap<LocalDate, Double> fetchCoinGeckoDailyCloses(String coinId, LocalDate from, LocalDate to) {
+        TreeMap<LocalDate, Double> closes = new TreeMap<>();
+        long days = Math.min(Math.max(java.time.temporal.ChronoUnit.DAYS.between(from, LocalDate.now()) + 1, 1), 365);
+        String response = httpGet(String.format("https://api.coingecko.com/api/v3/coins/%s/market_chart?vs_currency=usd&days=%d",
+            coinId, days));
+        Object prices = JsonUtil.parseJsonWithNested(response).get("prices");
+        if (!(prices instanceof List)) {
+            return closes;
+        }
+        for (Object item : (List<?>) prices) {
+            if (!(item instanceof List) || ((List<?>) item).size() < 2) continue;
+            List<?> point = (List<?>) item;
+            if (!(point.get(0) instanceof Number) || !(point.get(1) instanceof Number)) continue;
+            LocalDate date = Instant.ofEpochMilli(((Number) point.get(0)).longValue()).atZone(ZoneOffset.UTC).toLocalDate();
+            double price = ((Number) point.get(1)).doubleValue();
+            if (price > 0 && !date.isBefore(from) && !date.isAfter(to)) {
+                closes.put(date, price);
+            }
+        }
+        return closes;
+    }
+    
     /**
      * Busca cotação de uma API pública
      */
@@ -399,8 +771,7 @@ public class QuoteService {
         // Se falhou com erro 451 (bloqueio geográfico), tenta com data.binance.com
         if (result == null) {
             // Verifica se o erro foi 451 antes de tentar o endpoint alternativo
-            String domain = extractDomain("https://api.binance.com");
-            if (generalFailureCache.contains(domain + "_451")) {
+            if (http.failedRecently("api.binance.com", 451)) {
                 // Tenta o endpoint alternativo data.binance.com que pode funcionar em regiões restritas
                 // Este endpoint é especificamente para dados públicos e pode contornar restrições geográficas
                 System.err.println("Tentando endpoint alternativo data.binance.com devido a bloqueio geográfico (451)");
@@ -419,15 +790,7 @@ public class QuoteService {
      */
     private QuoteResult fetchCryptoQuoteFromBinanceEndpoint(String symbol, LocalDate date, LocalDateTime dateTime, String baseUrl) {
         try {
-            // Mapeamento de símbolos para pares Binance (formato: BTCUSDT, ETHUSDT, etc)
-            Map<String, String> binanceSymbols = getBinanceSymbolMap();
-            String normalizedSymbol = symbol.trim().replaceAll("\\s+", " ").toUpperCase();
-            String binancePair = binanceSymbols.get(normalizedSymbol);
-            
-            if (binancePair == null) {
-                // Tenta criar par padrão: símbolo + USDT
-                binancePair = normalizedSymbol + "USDT";
-            }
+            String binancePair = binancePair(symbol);
             
             String urlStr;
             LocalDate today = LocalDate.now();
@@ -512,15 +875,7 @@ public class QuoteService {
      */
     private QuoteResult fetchCryptoQuoteFromCoinGecko(String symbol, LocalDate date, LocalDateTime dateTime) {
         try {
-            // Mapeamento de símbolos para IDs CoinGecko
-            Map<String, String> coinGeckoIds = getCoinGeckoIdMap();
-            String normalizedSymbol = symbol.trim().replaceAll("\\s+", " ").toUpperCase();
-            String coinId = coinGeckoIds.get(normalizedSymbol);
-            
-            if (coinId == null) {
-                // Tenta usar o símbolo em minúsculas como ID
-                coinId = symbol.trim().toLowerCase().replaceAll("\\s+", "-");
-            }
+            String coinId = coinGeckoId(symbol);
             
             String urlStr;
             LocalDate today = LocalDate.now();
@@ -994,337 +1349,11 @@ public class QuoteService {
     }
     
     /**
-     * Faz requisição HTTP GET
+     * Faz requisição HTTP GET pelo cliente compartilhado
+     * @return corpo da resposta, ou null em caso de falha
      */
     private String httpGet(String urlStr) {
-        // Verifica se há falha SSL recente para esta URL
-        String domain = extractDomain(urlStr);
-        if (sslFailureCache.contains(domain)) {
-            // Log apenas uma vez por período para evitar spam
-            return null;
-        }
-        
-        // Verifica se está em rate limit
-        if (rateLimitCache.contains(domain)) {
-            return null;
-        }
-        
-        try {
-            URL url = new URL(urlStr);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-            conn.setConnectTimeout(10000); // 10 segundos
-            conn.setReadTimeout(10000);
-            conn.setRequestProperty("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36");
-            conn.setRequestProperty("Accept", "application/json");
-            conn.setInstanceFollowRedirects(true);
-            
-            int responseCode;
-            try {
-                responseCode = conn.getResponseCode();
-            } catch (SSLException sslEx) {
-                // Re-lança como exceção SSL para ser tratada no catch geral
-                // SSLException é a classe pai de SSLHandshakeException e SSLPeerUnverifiedException
-                throw new SSLException("Erro SSL ao conectar: " + sslEx.getMessage(), sslEx);
-            }
-            // Lê a resposta mesmo em caso de erro HTTP (para poder verificar erros no JSON)
-            InputStream inputStream = null;
-            if (responseCode == 200) {
-                inputStream = conn.getInputStream();
-            } else {
-                // Para códigos de erro, tenta ler do errorStream
-                inputStream = conn.getErrorStream();
-                if (inputStream == null) {
-                    // Se não há errorStream, tenta ler do inputStream mesmo assim
-                    try {
-                        inputStream = conn.getInputStream();
-                    } catch (Exception e) {
-                        // Ignora
-                    }
-                }
-            }
-            
-            if (inputStream != null) {
-                BufferedReader in = new BufferedReader(new InputStreamReader(inputStream, "UTF-8"));
-                StringBuilder response = new StringBuilder();
-                String line;
-                while ((line = in.readLine()) != null) {
-                    response.append(line);
-                }
-                in.close();
-                String result = response.toString();
-                
-                // Trata erro 429 (Too Many Requests) - Rate Limit
-                if (responseCode == 429) {
-                    // Adiciona ao cache de rate limit
-                    rateLimitCache.add(domain);
-                    new Thread(() -> {
-                        try {
-                            Thread.sleep(RATE_LIMIT_CACHE_DURATION_MS);
-                            rateLimitCache.remove(domain);
-                        } catch (InterruptedException ie) {
-                            Thread.currentThread().interrupt();
-                        }
-                    }).start();
-                    
-                    String failureKey = domain + "_429";
-                    if (!generalFailureCache.contains(failureKey)) {
-                        generalFailureCache.add(failureKey);
-                        new Thread(() -> {
-                            try {
-                                Thread.sleep(RATE_LIMIT_CACHE_DURATION_MS);
-                                generalFailureCache.remove(failureKey);
-                            } catch (InterruptedException ie) {
-                                Thread.currentThread().interrupt();
-                            }
-                        }).start();
-                        System.err.println("Rate limit (429) atingido para " + domain + ". Requisições serão ignoradas por 10 minutos.");
-                    }
-                    return null;
-                }
-                
-                // Trata erro 451 (Unavailable For Legal Reasons) - Bloqueio geográfico/legal
-                if (responseCode == 451) {
-                    // Adiciona ao cache de falhas gerais para evitar múltiplas tentativas
-                    String failureKey = domain + "_451";
-                    if (!generalFailureCache.contains(failureKey)) {
-                        generalFailureCache.add(failureKey);
-                        new Thread(() -> {
-                            try {
-                                Thread.sleep(GENERAL_FAILURE_CACHE_DURATION_MS);
-                                generalFailureCache.remove(failureKey);
-                            } catch (InterruptedException ie) {
-                                Thread.currentThread().interrupt();
-                            }
-                        }).start();
-                        System.err.println("Erro 451 (Bloqueio geográfico/legal) para " + domain + ". A API Binance está bloqueada nesta região. Usando fallback (CoinGecko).");
-                    }
-                    return null; // Retorna null para que o código use o fallback (CoinGecko)
-                }
-                
-                // Log reduzido para debug
-                if (responseCode != 200 && responseCode != 404) {
-                    System.err.println("Erro HTTP " + responseCode + " para: " + domain);
-                }
-                return result;
-            } else {
-                // Trata erro 429 também quando não há inputStream
-                if (responseCode == 429) {
-                    rateLimitCache.add(domain);
-                    new Thread(() -> {
-                        try {
-                            Thread.sleep(RATE_LIMIT_CACHE_DURATION_MS);
-                            rateLimitCache.remove(domain);
-                        } catch (InterruptedException ie) {
-                            Thread.currentThread().interrupt();
-                        }
-                    }).start();
-                    return null;
-                }
-                
-                // Trata erro 451 também quando não há inputStream
-                if (responseCode == 451) {
-                    String failureKey = domain + "_451";
-                    if (!generalFailureCache.contains(failureKey)) {
-                        generalFailureCache.add(failureKey);
-                        new Thread(() -> {
-                            try {
-                                Thread.sleep(GENERAL_FAILURE_CACHE_DURATION_MS);
-                                generalFailureCache.remove(failureKey);
-                            } catch (InterruptedException ie) {
-                                Thread.currentThread().interrupt();
-                            }
-                        }).start();
-                        System.err.println("Erro 451 (Bloqueio geográfico/legal) para " + domain + ". A API Binance está bloqueada nesta região. Usando fallback (CoinGecko).");
-                    }
-                    return null;
-                }
-                
-                if (responseCode != 404) {
-                    System.err.println("Erro HTTP " + responseCode + " para: " + domain + " - Não foi possível ler a resposta");
-                }
-            }
-        } catch (java.net.SocketTimeoutException e) {
-            // Usa cache geral para timeouts
-            String failureKey = domain + "_timeout";
-            if (!generalFailureCache.contains(failureKey)) {
-                generalFailureCache.add(failureKey);
-                new Thread(() -> {
-                    try {
-                        Thread.sleep(GENERAL_FAILURE_CACHE_DURATION_MS);
-                        generalFailureCache.remove(failureKey);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                    }
-                }).start();
-                System.err.println("Timeout na requisição HTTP para: " + domain);
-            }
-        } catch (java.net.SocketException e) {
-            // Trata erros SSL/TLS
-            if (e.getMessage() != null && 
-                (e.getMessage().contains("SSL") || 
-                 e.getMessage().contains("TLS") || 
-                 e.getMessage().contains("trust store") ||
-                 e.getMessage().contains("NoSuchAlgorithmException"))) {
-                // Adiciona ao cache de falhas SSL
-                sslFailureCache.add(domain);
-                // Remove após o período de cache
-                new Thread(() -> {
-                    try {
-                        Thread.sleep(SSL_FAILURE_CACHE_DURATION_MS);
-                        sslFailureCache.remove(domain);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                    }
-                }).start();
-                // Log apenas uma vez (usa um Set separado para logs)
-                String logKey = domain + "_ssl_logged";
-                if (!sslFailureCache.contains(logKey)) {
-                    System.err.println("Erro SSL/TLS ao conectar com " + domain + ". Requisições serão ignoradas por 5 minutos.");
-                    sslFailureCache.add(logKey);
-                    // Remove a flag de log após um tempo menor
-                    new Thread(() -> {
-                        try {
-                            Thread.sleep(SSL_FAILURE_CACHE_DURATION_MS);
-                            sslFailureCache.remove(logKey);
-                        } catch (InterruptedException ie) {
-                            Thread.currentThread().interrupt();
-                        }
-                    }).start();
-                }
-            } else {
-                // Para erros de conexão não-SSL, usa cache geral
-                String failureKey = domain + "_connection";
-                if (!generalFailureCache.contains(failureKey)) {
-                    generalFailureCache.add(failureKey);
-                    new Thread(() -> {
-                        try {
-                            Thread.sleep(GENERAL_FAILURE_CACHE_DURATION_MS);
-                            generalFailureCache.remove(failureKey);
-                        } catch (InterruptedException ie) {
-                            Thread.currentThread().interrupt();
-                        }
-                    }).start();
-                    System.err.println("Erro de conexão para " + domain + ": " + e.getMessage());
-                }
-            }
-        } catch (java.net.UnknownHostException e) {
-            // Erro de DNS - usa cache geral
-            String failureKey = domain + "_dns";
-            if (!generalFailureCache.contains(failureKey)) {
-                generalFailureCache.add(failureKey);
-                new Thread(() -> {
-                    try {
-                        Thread.sleep(GENERAL_FAILURE_CACHE_DURATION_MS);
-                        generalFailureCache.remove(failureKey);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                    }
-                }).start();
-                System.err.println("Erro DNS (host não encontrado) para: " + domain);
-            }
-        } catch (Exception e) {
-            // Verifica se é erro SSL/TLS - verifica a exceção diretamente e suas causas
-            boolean isSSLError = false;
-            String errorMsg = e.getMessage();
-            String className = e.getClass().getName();
-            
-            // Verifica se é exceção SSL diretamente
-            if (className.contains("SSL") || className.contains("TLS") ||
-                e instanceof javax.net.ssl.SSLException ||
-                e instanceof javax.net.ssl.SSLHandshakeException ||
-                e instanceof javax.net.ssl.SSLPeerUnverifiedException) {
-                isSSLError = true;
-            }
-            
-            // Verifica nas causas
-            Throwable cause = e.getCause();
-            while (cause != null && !isSSLError) {
-                String causeClassName = cause.getClass().getName();
-                if (causeClassName.contains("SSL") || causeClassName.contains("TLS") ||
-                    cause instanceof java.security.KeyManagementException ||
-                    cause instanceof java.security.NoSuchAlgorithmException ||
-                    cause instanceof javax.net.ssl.SSLException ||
-                    (cause.getMessage() != null && 
-                     (cause.getMessage().contains("SSL") || 
-                      cause.getMessage().contains("TLS") || 
-                      cause.getMessage().contains("trust store") ||
-                      cause.getMessage().contains("certificate")))) {
-                    isSSLError = true;
-                    break;
-                }
-                cause = cause.getCause();
-            }
-            
-            // Verifica na mensagem de erro também
-            if (!isSSLError && errorMsg != null) {
-                String lowerMsg = errorMsg.toLowerCase();
-                if (lowerMsg.contains("ssl") || lowerMsg.contains("tls") || 
-                    lowerMsg.contains("certificate") || lowerMsg.contains("trust store")) {
-                    isSSLError = true;
-                }
-            }
-            
-            if (isSSLError) {
-                // Adiciona ao cache de falhas SSL
-                sslFailureCache.add(domain);
-                new Thread(() -> {
-                    try {
-                        Thread.sleep(SSL_FAILURE_CACHE_DURATION_MS);
-                        sslFailureCache.remove(domain);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                    }
-                }).start();
-                String logKey = domain + "_ssl_logged";
-                if (!sslFailureCache.contains(logKey)) {
-                    System.err.println("Erro SSL/TLS ao conectar com " + domain + ". Requisições serão ignoradas por 5 minutos.");
-                    sslFailureCache.add(logKey);
-                    // Remove a flag de log após o período
-                    new Thread(() -> {
-                        try {
-                            Thread.sleep(SSL_FAILURE_CACHE_DURATION_MS);
-                            sslFailureCache.remove(logKey);
-                        } catch (InterruptedException ie) {
-                            Thread.currentThread().interrupt();
-                        }
-                    }).start();
-                }
-            } else {
-                // Para erros não-SSL, usa cache geral para evitar spam de logs
-                String failureKey = domain + "_general";
-                if (!generalFailureCache.contains(failureKey)) {
-                    generalFailureCache.add(failureKey);
-                    // Remove após o período de cache
-                    new Thread(() -> {
-                        try {
-                            Thread.sleep(GENERAL_FAILURE_CACHE_DURATION_MS);
-                            generalFailureCache.remove(failureKey);
-                        } catch (InterruptedException ie) {
-                            Thread.currentThread().interrupt();
-                        }
-                    }).start();
-                    
-                    // Log apenas uma vez por período
-                    if (errorMsg != null && !errorMsg.contains("404")) {
-                        System.err.println("Erro na requisição HTTP para " + domain + ": " + errorMsg);
-                    }
-                }
-            }
-        }
-        return null;
-    }
-    
-    /**
-     * Extrai o domínio de uma URL
-     */
-    private String extractDomain(String urlStr) {
-        try {
-            URL url = new URL(urlStr);
-            return url.getHost();
-        } catch (Exception e) {
-            return urlStr;
-        }
+        return http.get(urlStr);
     }
     
     /**
@@ -1610,7 +1639,7 @@ public class QuoteService {
         }
         
         // Verifica se está em rate limit
-        if (rateLimitCache.contains("exchangerate-api.com")) {
+        if (http.isSuspended(QuoteHttpClient.host(EXCHANGE_RATE_API))) {
             // Usa taxa em cache mesmo se expirada, ou taxa fixa
             if (cached != null) {
                 return cached.rate;
@@ -1652,11 +1681,21 @@ public class QuoteService {
         return fallbackRate;
     }
     
+    /**
+     * Contadores do cliente HTTP das cotações
+     */
+    public Map<String, Object> getHttpStats() {
+        Map<String, Object> stats = http.stats();
+        stats.put("current", batcher.stats());
+        return stats;
+    }
+    
     /**
      * Limpa cache expirado
      */
     public void cleanExpiredCache() {
         cache.entrySet().removeIf(entry -> entry.getValue().isExpired());
+        batcher.cleanExpired();
     }
     
     /**
@@ -1,150 +1,106 @@
 package server.services;
 
-import server.model.*;
-import server.repository.*;
+import server.repository.RecurrenceRepository;
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.logging.Logger;
 
 /**
  * Serviço para processar recorrências automáticas de gastos e receitas
+ * As ocorrências são geradas em conjunto por RecurrenceRepository, em lotes de lançamentos
+ * originais, incluindo todos os períodos vencidos desde a última execução.
  */
 public class RecurrenceService {
     private static final Logger LOGGER = Logger.getLogger(RecurrenceService.class.getName());
-    private final ExpenseRepository expenseRepository;
-    private final IncomeRepository incomeRepository;
-    private final CategoryRepository categoryRepository;
-    private final TagRepository tagRepository;
-    
+    private static final int TAMANHO_LOTE = 500;
+    // Limite de ocorrências por lançamento em cada passada; o restante é gerado na passada seguinte
+    private static final int MAX_OCORRENCIAS = 400;
+
+    private static volatile Map<String, Object> ultimaExecucao;
+
+    private final RecurrenceRepository recurrenceRepository;
+
     public RecurrenceService() {
-        this.expenseRepository = new ExpenseRepository();
-        this.incomeRepository = new IncomeRepository();
-        this.categoryRepository = new CategoryRepository();
-        this.tagRepository = new TagRepository();
+        this.recurrenceRepository = new RecurrenceRepository();
     }
-    
+
     /**
      * Processa todas as recorrências pendentes (gastos e receitas)
      * @return Número total de transações criadas
      */
     public int processarRecorrencias() {
-        int totalCriadas = 0;
-        LocalDate hoje = LocalDate.now();
-        
-        // LOGGER.info("[RECORRÊNCIAS] Processando recorrências para " + hoje);
-        
-        // Processa gastos recorrentes
-        totalCriadas += processarGastosRecorrentes(hoje);
-        
-        // Processa receitas recorrentes
-        totalCriadas += processarReceitasRecorrentes(hoje);
-        
-        if (totalCriadas > 0) {
-            // LOGGER.info("[RECORRÊNCIAS] Total de " + totalCriadas + " transações criadas automaticamente");
-        } else {
-            // LOGGER.info("[RECORRÊNCIAS] Nenhuma recorrência pendente para hoje");
-        }
-        
-        return totalCriadas;
+        return processarRecorrencias(LocalDate.now());
     }
-    
-    private int processarGastosRecorrentes(LocalDate hoje) {
-        // Busca gastos com recorrência pendente
-        List<Gasto> gastosRecorrentes = expenseRepository.buscarGastosComRecorrenciaPendente(hoje);
-        int criados = 0;
-        
-        for (Gasto gastoOriginal : gastosRecorrentes) {
-            try {
-                // LOGGER.info("[RECORRÊNCIAS] Criando recorrência de gasto: " + gastoOriginal.getDescricao());
-                
-                // Busca categorias do gasto original
-                List<Categoria> categorias = categoryRepository.buscarCategoriasDoGasto(gastoOriginal.getIdGasto());
-                List<Integer> idsCategorias = new ArrayList<>();
-                for (Categoria cat : categorias) {
-                    idsCategorias.add(cat.getIdCategoria());
-                }
-                
-                // Cria novo gasto com a data de recorrência
-                int novoIdGasto = expenseRepository.cadastrarGasto(
-                    gastoOriginal.getDescricao() + " (Recorrência)",
-                    gastoOriginal.getValor(),
-                    gastoOriginal.getProximaRecorrencia(),
-                    gastoOriginal.getFrequencia(),
-                    gastoOriginal.getIdUsuario(),
-                    idsCategorias,
-                    gastoOriginal.getIdConta(),
-                    gastoOriginal.getObservacoes()
-                );
-                
-                // Marca como recorrência do original
-                expenseRepository.marcarComoRecorrencia(novoIdGasto, gastoOriginal.getIdGasto());
-                
-                // Copia tags do gasto original
-                List<Tag> tags = tagRepository.buscarTagsGasto(gastoOriginal.getIdGasto());
-                for (Tag tag : tags) {
-                    tagRepository.associarTagTransacao(novoIdGasto, "GASTO", tag.getIdTag());
-                }
-                
-                // Atualiza próxima recorrência
-                LocalDate novaRecorrencia = expenseRepository.calcularProximaRecorrencia(
-                    gastoOriginal.getProximaRecorrencia(),
-                    gastoOriginal.getFrequencia()
-                );
-                expenseRepository.atualizarProximaRecorrencia(gastoOriginal.getIdGasto(), novaRecorrencia);
-                
-                criados++;
-            } catch (Exception e) {
-                LOGGER.warning("Erro ao processar recorrência de gasto ID " + gastoOriginal.getIdGasto() + ": " + e.getMessage());
-            }
+
+    /**
+     * Processa as recorrências vencidas até a data informada
+     * Pode ser executado de novo sem duplicar ocorrências.
+     * @return Número total de transações criadas
+     */
+    public int processarRecorrencias(LocalDate ate) {
+        long inicio = System.nanoTime();
+        int[] gastos = processar(RecurrenceRepository.Tipo.GASTO, ate);
+        int[] receitas = processar(RecurrenceRepository.Tipo.RECEITA, ate);
+        long duracaoMs = (System.nanoTime() - inicio) / 1_000_000;
+        int total = gastos[1] + receitas[1];
+
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("referenceDate", ate.toString());
+        metricas.put("sourcesProcessed", gastos[0] + receitas[0]);
+        metricas.put("expensesCreated", gastos[1]);
+        metricas.put("incomesCreated", receitas[1]);
+        metricas.put("batches", gastos[2] + receitas[2]);
+        metricas.put("durationMs", duracaoMs);
+        metricas.put("rowsPerSecond", duracaoMs > 0 ? total * 1000L / duracaoMs : total);
+        metricas.put("finishedAt", System.currentTimeMillis());
+        ultimaExecucao = metricas;
+
+        if (total > 0) {
+            LOGGER.info(String.format("[RECORRÊNCIAS] %d gasto(s) e %d receita(s) criados de %d lançamento(s) em %d ms",
+                gastos[1], receitas[1], gastos[0] + receitas[0], duracaoMs));
         }
-        
-        return criados;
+        return total;
+    }
+
+    /**
+     * Métricas da última execução, ou null se ainda não houve execução
+     */
+    public static Map<String, Object> getUltimaExecucao() {
+        return ultimaExecucao;
     }
-    
-    private int processarReceitasRecorrentes(LocalDate hoje) {
-        // Busca receitas com recorrência pendente
-        List<Receita> receitasRecorrentes = incomeRepository.buscarReceitasComRecorrenciaPendente(hoje);
-        int criados = 0;
-        
-        for (Receita receitaOriginal : receitasRecorrentes) {
+
+    /**
+     * Processa os lotes de um tipo até não haver originais vencidos
+     * @return {originais processados, ocorrências criadas, lotes}
+     */
+    private int[] processar(RecurrenceRepository.Tipo tipo, LocalDate ate) {
+        int originais = 0;
+        int criadas = 0;
+        int lotes = 0;
+        int aposId = 0;
+        boolean pendente = false;
+        while (true) {
+            RecurrenceRepository.Lote lote;
             try {
-                // LOGGER.info("[RECORRÊNCIAS] Criando recorrência de receita: " + receitaOriginal.getDescricao());
-                
-                // Cria nova receita com a data de recorrência
-                int novoIdReceita = incomeRepository.cadastrarReceita(
-                    receitaOriginal.getDescricao() + " (Recorrência)",
-                    receitaOriginal.getValor(),
-                    receitaOriginal.getProximaRecorrencia(),
-                    receitaOriginal.getIdUsuario(),
-                    receitaOriginal.getIdConta(),
-                    receitaOriginal.getObservacoes()
-                );
-                
-                // Marca como recorrência da original
-                incomeRepository.marcarComoRecorrencia(novoIdReceita, receitaOriginal.getIdReceita(), 
-                    receitaOriginal.getFrequencia(), receitaOriginal.getProximaRecorrencia());
-                
-                // Copia tags da receita original
-                List<Tag> tags = tagRepository.buscarTagsReceita(receitaOriginal.getIdReceita());
-                for (Tag tag : tags) {
-                    tagRepository.associarTagTransacao(novoIdReceita, "RECEITA", tag.getIdTag());
-                }
-                
-                // Atualiza próxima recorrência
-                LocalDate novaRecorrencia = incomeRepository.calcularProximaRecorrencia(
-                    receitaOriginal.getProximaRecorrencia(),
-                    receitaOriginal.getFrequencia()
-                );
-                incomeRepository.atualizarProximaRecorrencia(receitaOriginal.getIdReceita(), novaRecorrencia);
-                
-                criados++;
-            } catch (Exception e) {
-                LOGGER.warning("Erro ao processar recorrência de receita ID " + receitaOriginal.getIdReceita() + ": " + e.getMessage());
+                lote = recurrenceRepository.gerarLote(tipo, ate, aposId, TAMANHO_LOTE, MAX_OCORRENCIAS);
+            } catch (RuntimeException e) {
+                LOGGER.warning("Erro ao processar recorrências (" + tipo + ") após ID " + aposId + ": " + e.getMessage());
+                break;
             }
+            if (lote.originais == 0) {
+                // Originais com mais ocorrências que o limite continuam vencidos: nova passada desde o início
+                if (!pendente) break;
+                pendente = false;
+                aposId = 0;
+                continue;
+            }
+            originais += lote.originais;
+            criadas += lote.criadas;
+            lotes++;
+            pendente |= lote.pendentes > 0;
+            aposId = lote.ultimoId;
         }
-        
-        return criados;
+        return new int[] { originais, criadas, lotes };
     }
 }
-
@@ -1,99 +1,337 @@
 package server.services;
 
-import java.util.Calendar;
-import java.util.Timer;
-import java.util.TimerTask;
+import server.repository.JobRunRepository;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.sql.Connection;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Serviço para gerenciar tarefas agendadas (schedulers)
+ * As tarefas rodam em um ScheduledExecutorService próprio, cada execução reagendada com jitter.
+ * Tarefas exclusivas do cluster só rodam na instância que obtiver o advisory lock da tarefa
+ * no Postgres, e são puladas se outra instância as concluiu há pouco (histórico em execucoes_jobs).
+ * Tarefas locais (ex.: limpeza de caches em memória) rodam em todas as instâncias.
  */
 public class SchedulerService {
     private static final Logger LOGGER = Logger.getLogger(SchedulerService.class.getName());
-    
-    public SchedulerService() {
+    private static final int HISTORICO = 20;
+    private static final String NO = identificarNo();
+
+    private static volatile SchedulerService instancia;
+
+    /**
+     * Trabalho de uma tarefa; o retorno (se houver) é registrado como mensagem da execução
+     */
+    @FunctionalInterface
+    public interface Tarefa {
+        Object executar() throws Exception;
     }
-    
+
     /**
-     * Inicia o scheduler que processa recorrências automáticas
-     * Executa diariamente às 00:05 da manhã
+     * Tarefa registrada, com agenda e estatísticas de execução
      */
-    public void iniciarSchedulerRecorrencias() {
-        Timer timer = new Timer("RecorrenciasScheduler", true); // daemon=true para não bloquear shutdown
-        
-        // Calcula o delay até a próxima execução (hoje às 00:05 ou amanhã às 00:05)
-        Calendar proximaExecucao = Calendar.getInstance();
-        proximaExecucao.set(Calendar.HOUR_OF_DAY, 0);
-        proximaExecucao.set(Calendar.MINUTE, 5);
-        proximaExecucao.set(Calendar.SECOND, 0);
-        proximaExecucao.set(Calendar.MILLISECOND, 0);
-        
-        // Se já passou da hora hoje, agenda para amanhã
-        if (proximaExecucao.getTimeInMillis() < System.currentTimeMillis()) {
-            proximaExecucao.add(Calendar.DAY_OF_MONTH, 1);
+    private static final class Job {
+        final String nome;
+        final Tarefa tarefa;
+        final LocalTime horario;      // tarefas diárias
+        final Duration intervalo;     // tarefas periódicas
+        final boolean exclusivo;
+        final long jitterMs;
+        final AtomicBoolean emExecucao = new AtomicBoolean();
+        final Deque<Map<String, Object>> historico = new ArrayDeque<>();
+        int execucoes;
+        int falhas;
+        int ignoradas;
+        LocalDateTime proximaExecucao;
+
+        Job(String nome, Tarefa tarefa, LocalTime horario, Duration intervalo, boolean exclusivo, long jitterMs) {
+            this.nome = nome;
+            this.tarefa = tarefa;
+            this.horario = horario;
+            this.intervalo = intervalo;
+            this.exclusivo = exclusivo;
+            this.jitterMs = jitterMs;
+        }
+
+        /** Intervalo entre execuções agendadas */
+        Duration periodo() {
+            return horario != null ? Duration.ofDays(1) : intervalo;
         }
-        
-        long delay = proximaExecucao.getTimeInMillis() - System.currentTimeMillis();
-        long periodo = 24 * 60 * 60 * 1000; // 24 horas em milissegundos
-        
-        // Agenda a tarefa para executar diariamente
-        timer.scheduleAtFixedRate(new TimerTask() {
+    }
+
+    private final ScheduledExecutorService executor;
+    private final JobRunRepository jobRunRepository;
+    private final Map<String, Job> jobs = new LinkedHashMap<>();
+    private volatile boolean parado;
+
+    public SchedulerService() {
+        this.jobRunRepository = new JobRunRepository();
+        this.executor = Executors.newScheduledThreadPool(2, new java.util.concurrent.ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger(1);
             @Override
-            public void run() {
-                try {
-                    // LOGGER.info("=== SCHEDULER DE RECORRÊNCIAS === Executando processamento automático...");
-                    RecurrenceService recurrenceService = new RecurrenceService();
-                    int criados = recurrenceService.processarRecorrencias();
-                    // LOGGER.info("Total de transações recorrentes criadas: " + criados);
-                } catch (Exception e) {
-                    System.err.println("Erro ao processar recorrências: " + e.getMessage());
-                    e.printStackTrace();
-                }
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "scheduler-" + threadNumber.getAndIncrement());
+                t.setDaemon(true); // não bloqueia o shutdown
+                return t;
             }
-        }, delay, periodo);
-        
-        // Para fins de DEBUG/TESTE: executa imediatamente na inicialização também
-        // LOGGER.info("[INICIALIZAÇÃO] Processando recorrências pendentes...");
-        try {
-            RecurrenceService recurrenceService = new RecurrenceService();
-            int criados = recurrenceService.processarRecorrencias();
-            if (criados > 0) {
-                // LOGGER.info("[INICIALIZAÇÃO] " + criados + " transações recorrentes criadas");
-            } else {
-                // LOGGER.info("[INICIALIZAÇÃO] Nenhuma recorrência pendente");
+        });
+    }
+
+    /**
+     * Scheduler com as tarefas da aplicação:
+     * recorrências diariamente às 00:05 (exclusiva do cluster), renovação e retomada das importações
+     * em segundo plano a cada 30 segundos e limpeza do cache de cotações a cada 30 minutos
+     */
+    public static SchedulerService criarPadrao() {
+        SchedulerService scheduler = new SchedulerService();
+        scheduler.diario("recorrencias", LocalTime.of(0, 5), true, TimeUnit.MINUTES.toMillis(2),
+            () -> new RecurrenceService().processarRecorrencias() + " transação(ões) criada(s)");
+        scheduler.periodico("importacoes", Duration.ofSeconds(ImportJobService.RENOVACAO_SEGUNDOS), false,
+            TimeUnit.SECONDS.toMillis(5), ImportJobService::manter);
+        scheduler.periodico("limpeza-cotacoes", Duration.ofMinutes(30), false, TimeUnit.SECONDS.toMillis(30), () -> {
+            QuoteService.getInstance().cleanExpiredCache();
+            return null;
+        });
+        return scheduler;
+    }
+
+    /**
+     * Registra uma tarefa diária no horário local informado
+     * @param exclusivo se true, só uma instância do cluster executa a tarefa
+     * @param jitterMs atraso aleatório máximo somado a cada execução
+     */
+    public synchronized void diario(String nome, LocalTime horario, boolean exclusivo, long jitterMs, Tarefa tarefa) {
+        jobs.put(nome, new Job(nome, tarefa, horario, null, exclusivo, jitterMs));
+    }
+
+    /**
+     * Registra uma tarefa executada a cada intervalo (a primeira execução após um intervalo)
+     */
+    public synchronized void periodico(String nome, Duration intervalo, boolean exclusivo, long jitterMs, Tarefa tarefa) {
+        jobs.put(nome, new Job(nome, tarefa, null, intervalo, exclusivo, jitterMs));
+    }
+
+    /**
+     * Agenda todas as tarefas e dispara em segundo plano a recuperação das tarefas diárias
+     * (execução imediata, para cobrir o período em que o servidor ficou parado)
+     * Chamado após server.start(), sem bloquear a inicialização.
+     */
+    public synchronized void iniciar() {
+        instancia = this;
+        for (Job job : jobs.values()) {
+            agendar(job);
+            if (job.horario != null) {
+                executor.execute(() -> executar(job));
             }
-        } catch (Exception e) {
-            System.err.println("[INICIALIZAÇÃO] Erro ao processar recorrências: " + e.getMessage());
         }
-        // LOGGER.fine("Scheduler de recorrências inicializado");
+        LOGGER.info("Scheduler iniciado com " + jobs.size() + " tarefa(s) no nó " + NO);
     }
-    
+
     /**
-     * Inicia o scheduler que atualiza cotações de investimentos
-     * Executa a cada 30 minutos
+     * Executa a tarefa agora, em segundo plano (respeitando lock e histórico)
+     * @return false se a tarefa não existir
      */
-    public void iniciarSchedulerCotacoes() {
-        Timer timer = new Timer("CotacoesScheduler", true); // daemon=true para não bloquear shutdown
-        
-        // Executa imediatamente e depois a cada 30 minutos
-        long periodo = 30 * 60 * 1000; // 30 minutos em milissegundos
-        
-        timer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
+    public boolean executarAgora(String nome) {
+        Job job;
+        synchronized (this) {
+            job = jobs.get(nome);
+        }
+        if (job == null) return false;
+        executor.execute(() -> executar(job));
+        return true;
+    }
+
+    public void parar() {
+        parado = true;
+        executor.shutdownNow();
+    }
+
+    /**
+     * Identificação desta instância no cluster ("host:pid")
+     */
+    public static String no() {
+        return NO;
+    }
+
+    /**
+     * Métricas e histórico recente das tarefas do scheduler em execução, ou null se não houver
+     */
+    public static Map<String, Object> metricasAtuais() {
+        SchedulerService atual = instancia;
+        return atual != null ? atual.getMetrics() : null;
+    }
+
+    public synchronized Map<String, Object> getMetrics() {
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("node", NO);
+        List<Map<String, Object>> lista = new ArrayList<>();
+        for (Job job : jobs.values()) {
+            synchronized (job) {
+                Map<String, Object> m = new LinkedHashMap<>();
+                m.put("name", job.nome);
+                m.put("clusterExclusive", job.exclusivo);
+                m.put("running", job.emExecucao.get());
+                m.put("runs", job.execucoes);
+                m.put("failures", job.falhas);
+                m.put("skipped", job.ignoradas);
+                m.put("nextRun", job.proximaExecucao != null ? job.proximaExecucao.toString() : null);
+                m.put("history", new ArrayList<>(job.historico));
+                lista.add(m);
+            }
+        }
+        metricas.put("jobs", lista);
+        return metricas;
+    }
+
+    private void agendar(Job job) {
+        if (parado) return;
+        long jitter = job.jitterMs > 0 ? ThreadLocalRandom.current().nextLong(job.jitterMs) : 0;
+        long atrasoMs;
+        if (job.horario != null) {
+            ZonedDateTime agora = ZonedDateTime.now();
+            ZonedDateTime proxima = agora.with(job.horario);
+            if (!proxima.isAfter(agora)) {
+                proxima = proxima.plusDays(1);
+            }
+            atrasoMs = Duration.between(agora, proxima).toMillis() + jitter;
+        } else {
+            atrasoMs = job.intervalo.toMillis() + jitter;
+        }
+        synchronized (job) {
+            job.proximaExecucao = LocalDateTime.now().plusNanos(TimeUnit.MILLISECONDS.toNanos(atrasoMs));
+        }
+        executor.schedule(() -> {
+            try {
+                executar(job);
+            } finally {
+                agendar(job);
+            }
+        }, atrasoMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void executar(Job job) {
+        if (!job.emExecucao.compareAndSet(false, true)) {
+            return; // execução anterior ainda em andamento nesta instância
+        }
+        Connection lock = null;
+        try {
+            if (job.exclusivo) {
+                try {
+                    lock = jobRunRepository.adquirirLock(job.nome);
+                } catch (RuntimeException e) {
+                    LOGGER.warning("Tarefa " + job.nome + " não executada: " + e.getMessage());
+                    ignorar(job, "Banco indisponível");
+                    return;
+                }
+                if (lock == null) {
+                    ignorar(job, "Em execução em outra instância");
+                    return;
+                }
+                if (JobRunRepository.disponivel()) {
+                    LocalDateTime ultima = jobRunRepository.ultimaExecucaoOk(job.nome);
+                    if (ultima != null && ultima.isAfter(LocalDateTime.now().minus(job.periodo().dividedBy(2)))) {
+                        ignorar(job, "Concluída recentemente em " + ultima);
+                        return;
+                    }
+                }
+            }
+            rodar(job);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Erro no scheduler ao executar " + job.nome, e);
+        } finally {
+            if (lock != null) {
                 try {
-                    // LOGGER.info("=== ATUALIZAÇÃO DE COTAÇÕES ===");
-                    QuoteService quoteService = QuoteService.getInstance();
-                    quoteService.cleanExpiredCache();
-                    // LOGGER.info("Cache de cotações limpo e atualizado");
-                } catch (Exception e) {
-                    System.err.println("Erro ao atualizar cotações: " + e.getMessage());
-                    e.printStackTrace();
+                    jobRunRepository.liberarLock(lock, job.nome);
+                } catch (RuntimeException e) {
+                    LOGGER.warning(e.getMessage());
                 }
             }
-        }, 0, periodo);
-        
-        // LOGGER.info("[INICIALIZAÇÃO] Scheduler de cotações iniciado (atualiza a cada 30 minutos)");
+            job.emExecucao.set(false);
+        }
+    }
+
+    private void rodar(Job job) {
+        LocalDateTime inicio = LocalDateTime.now();
+        long t0 = System.nanoTime();
+        String status = "OK";
+        String mensagem;
+        try {
+            Object resultado = job.tarefa.executar();
+            mensagem = resultado != null ? resultado.toString() : null;
+        } catch (Exception e) {
+            status = "ERRO";
+            mensagem = e.getMessage();
+            LOGGER.log(Level.WARNING, "Erro ao executar tarefa " + job.nome, e);
+        }
+        long duracaoMs = (System.nanoTime() - t0) / 1_000_000;
+
+        Map<String, Object> execucao = new LinkedHashMap<>();
+        execucao.put("startedAt", inicio.toString());
+        execucao.put("durationMs", duracaoMs);
+        execucao.put("status", status);
+        execucao.put("message", mensagem);
+        synchronized (job) {
+            job.execucoes++;
+            if ("ERRO".equals(status)) job.falhas++;
+            adicionarHistorico(job, execucao);
+        }
+        if (job.exclusivo && JobRunRepository.disponivel()) {
+            try {
+                jobRunRepository.registrar(job.nome, NO, inicio, duracaoMs, status, mensagem);
+            } catch (RuntimeException e) {
+                LOGGER.warning(e.getMessage());
+            }
+        }
     }
-}
 
+    private void ignorar(Job job, String motivo) {
+        Map<String, Object> execucao = new LinkedHashMap<>();
+        execucao.put("startedAt", LocalDateTime.now().toString());
+        execucao.put("durationMs", 0);
+        execucao.put("status", "IGNORADA");
+        execucao.put("message", motivo);
+        synchronized (job) {
+            job.ignoradas++;
+            adicionarHistorico(job, execucao);
+        }
+    }
+
+    private static void adicionarHistorico(Job job, Map<String, Object> execucao) {
+        job.historico.addFirst(execucao);
+        if (job.historico.size() > HISTORICO) {
+            job.historico.removeLast();
+        }
+    }
+
+    private static String identificarNo() {
+        String host = System.getenv("HOSTNAME");
+        if (host == null || host.trim().isEmpty()) {
+            try {
+                host = InetAddress.getLocalHost().getHostName();
+            } catch (Exception e) {
+                host = "desconhecido";
+            }
+        }
+        // RuntimeMXBean.getName() = "pid@host"
+        String pid = ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
+        return host + ":" + pid;
+    }
+}
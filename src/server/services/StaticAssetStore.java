@@ -0,0 +1,210 @@
+package server.services;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Armazena em memória os arquivos estáticos do frontend
+ * Todo o diretório dist/ é carregado na inicialização, junto com a variante GZIP
+ * pré-calculada, o ETag forte (hash SHA-256 do conteúdo) e os headers de cache.
+ * Sem dist/ (frontend antigo), os arquivos da raiz são carregados sob demanda uma única vez.
+ */
+public class StaticAssetStore {
+    private static final Logger LOGGER = Logger.getLogger(StaticAssetStore.class.getName());
+
+    private static final int MIN_SIZE_FOR_COMPRESSION = 1024; // 1KB
+    private static final long MAX_ASSET_SIZE = 32L * 1024 * 1024; // arquivos maiores não são carregados
+
+    // Arquivos gerados pelo Vite em /assets/ têm hash no nome e nunca mudam
+    static final String CACHE_IMMUTABLE = "public, max-age=31536000, immutable";
+    // HTML, service worker e manifest precisam ser revalidados a cada acesso
+    static final String CACHE_REVALIDATE = "no-cache";
+    static final String CACHE_DEFAULT = "public, max-age=3600";
+
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+
+    private final Path root;
+    private final boolean preloaded;
+    private final Map<String, Asset> assets = new ConcurrentHashMap<>();
+
+    public StaticAssetStore(String distDirectory, String fallbackDirectory) {
+        File distDir = new File(distDirectory);
+        if (distDir.exists() && distDir.isDirectory()) {
+            this.root = distDir.toPath().toAbsolutePath().normalize();
+            this.preloaded = true;
+            loadAll();
+        } else {
+            this.root = Paths.get(fallbackDirectory).toAbsolutePath().normalize();
+            this.preloaded = false;
+        }
+    }
+
+    private void loadAll() {
+        long totalBytes = 0;
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                Asset asset = load(file);
+                if (asset != null) {
+                    assets.put(asset.path, asset);
+                    totalBytes += asset.content.length;
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Erro ao carregar arquivos estáticos de " + root, e);
+        }
+        LOGGER.info("Arquivos estáticos carregados em memória: " + assets.size() + " (" + (totalBytes / 1024) + " KB)");
+    }
+
+    /**
+     * Busca um arquivo pelo caminho da URL (ex: /assets/index-abc123.js)
+     * @return o arquivo ou null se não existir
+     */
+    public Asset get(String urlPath) {
+        Asset asset = assets.get(urlPath);
+        if (asset != null || preloaded) {
+            return asset;
+        }
+
+        // Modo sem dist/: carrega da raiz sob demanda, sem sair do diretório base
+        Path file = root.resolve(urlPath.startsWith("/") ? urlPath.substring(1) : urlPath).normalize();
+        if (!file.startsWith(root) || !Files.isRegularFile(file)) {
+            return null;
+        }
+        asset = load(file);
+        if (asset != null) {
+            assets.put(urlPath, asset);
+        }
+        return asset;
+    }
+
+    /**
+     * Indica se os arquivos vieram de dist/ (carregados na inicialização)
+     */
+    public boolean isPreloaded() {
+        return preloaded;
+    }
+
+    private Asset load(Path file) {
+        try {
+            if (Files.size(file) > MAX_ASSET_SIZE) {
+                LOGGER.warning("Arquivo estático ignorado por exceder o tamanho máximo: " + file);
+                return null;
+            }
+            String urlPath = "/" + root.relativize(file).toString().replace(File.separatorChar, '/');
+            byte[] content = Files.readAllBytes(file);
+            String contentType = getContentType(urlPath);
+
+            byte[] gzipContent = null;
+            if (isCompressible(contentType) && content.length >= MIN_SIZE_FOR_COMPRESSION) {
+                byte[] compressed = gzip(content);
+                if (compressed.length < content.length) {
+                    gzipContent = compressed;
+                }
+            }
+
+            Instant lastModified = Files.getLastModifiedTime(file).toInstant();
+            return new Asset(urlPath, content, gzipContent, contentType, computeEtag(content),
+                lastModified.getEpochSecond(), HTTP_DATE.format(lastModified), getCacheControl(urlPath));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Erro ao carregar arquivo estático " + file, e);
+            return null;
+        }
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(data.length / 2);
+        try (GZIPOutputStream gzos = new GZIPOutputStream(baos)) {
+            gzos.write(data);
+        }
+        return baos.toByteArray();
+    }
+
+    private static String computeEtag(byte[] content) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(content);
+            byte[] prefix = new byte[16];
+            System.arraycopy(hash, 0, prefix, 0, prefix.length);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(prefix) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+
+    static String getCacheControl(String urlPath) {
+        if (urlPath.startsWith("/assets/")) {
+            return CACHE_IMMUTABLE;
+        }
+        String name = urlPath.substring(urlPath.lastIndexOf('/') + 1);
+        if (name.endsWith(".html") || name.endsWith(".webmanifest")
+                || name.equals("sw.js") || name.equals("registerSW.js")) {
+            return CACHE_REVALIDATE;
+        }
+        return CACHE_DEFAULT;
+    }
+
+    private static boolean isCompressible(String contentType) {
+        return contentType.startsWith("text/") || contentType.startsWith("application/javascript")
+            || contentType.startsWith("application/json") || contentType.startsWith("application/manifest+json")
+            || contentType.startsWith("image/svg+xml");
+    }
+
+    static String getContentType(String path) {
+        if (path.endsWith(".html")) return "text/html; charset=utf-8";
+        if (path.endsWith(".css")) return "text/css; charset=utf-8";
+        if (path.endsWith(".js")) return "application/javascript; charset=utf-8";
+        if (path.endsWith(".json")) return "application/json; charset=utf-8";
+        if (path.endsWith(".webmanifest")) return "application/manifest+json; charset=utf-8";
+        if (path.endsWith(".png")) return "image/png";
+        if (path.endsWith(".jpg") || path.endsWith(".jpeg")) return "image/jpeg";
+        if (path.endsWith(".svg")) return "image/svg+xml";
+        if (path.endsWith(".woff")) return "font/woff";
+        if (path.endsWith(".woff2")) return "font/woff2";
+        if (path.endsWith(".ttf")) return "font/ttf";
+        if (path.endsWith(".ico")) return "image/x-icon";
+        if (path.endsWith(".map")) return "application/json";
+        if (path.endsWith(".csv")) return "text/csv; charset=utf-8";
+        return "text/plain; charset=utf-8";
+    }
+
+    /**
+     * Arquivo estático pronto para ser enviado
+     */
+    public static final class Asset {
+        public final String path;
+        public final byte[] content;
+        public final byte[] gzipContent; // null se não compensa comprimir
+        public final String contentType;
+        public final String etag;
+        public final long lastModifiedEpochSecond;
+        public final String lastModified;
+        public final String cacheControl;
+
+        Asset(String path, byte[] content, byte[] gzipContent, String contentType, String etag,
+              long lastModifiedEpochSecond, String lastModified, String cacheControl) {
+            this.path = path;
+            this.content = content;
+            this.gzipContent = gzipContent;
+            this.contentType = contentType;
+            this.etag = etag;
+            this.lastModifiedEpochSecond = lastModifiedEpochSecond;
+            this.lastModified = lastModified;
+            this.cacheControl = cacheControl;
+        }
+    }
+}
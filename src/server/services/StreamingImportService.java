@@ -0,0 +1,642 @@
+package server.services;
+
+import server.model.Categoria;
+import server.model.Conta;
+import server.model.ImportJob;
+import server.model.Tag;
+import server.repository.AccountRepository;
+import server.repository.CategoryRepository;
+import server.repository.ExpenseRepository;
+import server.repository.ImportJobRepository;
+import server.repository.ImportRepository;
+import server.repository.IncomeRepository;
+import server.repository.TagRepository;
+import server.database.UnitOfWork;
+import server.utils.NumberUtil;
+import server.validation.InputValidator;
+import server.validation.ValidationResult;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Gravação das importações de transações em lotes
+ * O CSV é lido linha a linha e processado em lotes de tamanho fixo: contas, categorias
+ * e tags de cada lote são resolvidas (e criadas) de uma vez e as transações gravadas com
+ * COPY por ImportRepository. A memória usada depende do tamanho do lote, não do arquivo.
+ * Cada lote é gravado em uma transação junto com o ponto de retomada da importação, de
+ * modo que uma importação interrompida continua do último lote confirmado.
+ * Compras parceladas seguem pelo InstallmentService, na mesma transação do lote.
+ * Cada compra parcelada e o COPY do lote rodam em savepoints: uma linha que o banco recusa
+ * é registrada como erro da própria linha e as demais linhas do lote são gravadas.
+ */
+public class StreamingImportService {
+    private static final Logger LOGGER = Logger.getLogger(StreamingImportService.class.getName());
+    private static final int TAMANHO_LOTE = 5000;
+
+    /**
+     * Grava o ponto de retomada e os contadores da importação; chamado dentro da transação de cada lote
+     */
+    @FunctionalInterface
+    public interface Checkpoint {
+        void salvar(ImportJob job, int ultimaLinha, int novasImportadas);
+    }
+
+    /**
+     * Linha do CSV validada, com contas, categorias e tags ainda por nome
+     */
+    private static final class LinhaCsv {
+        int numero;
+        boolean gasto;
+        String descricao;
+        double valor;
+        LocalDate data;
+        String conta;
+        String tipoConta;
+        List<String> categorias = new ArrayList<>();
+        List<String> tags = new ArrayList<>();
+        List<String> observacoes = new ArrayList<>();
+        int numeroParcelas = 1;
+        int intervaloDias = 30;
+        String frequencia = "UNICA";
+        LocalDate dataEntradaFatura;
+        boolean pagamentoFatura;
+        String contaOrigem;
+    }
+
+    /**
+     * Compra parcelada já resolvida, gravada pelo InstallmentService
+     */
+    private static final class Parcelada {
+        final int numero;
+        final String descricao;
+        final double valor;
+        final int numeroParcelas;
+        final LocalDate data;
+        final int intervaloDias;
+        final int idConta;
+        final List<Integer> categorias;
+        final List<Integer> tags;
+        final List<String> observacoes;
+        final LocalDate dataEntradaFatura;
+
+        Parcelada(int numero, String descricao, double valor, int numeroParcelas, LocalDate data, int intervaloDias, int idConta,
+                  List<Integer> categorias, List<Integer> tags, List<String> observacoes, LocalDate dataEntradaFatura) {
+            this.numero = numero;
+            this.descricao = descricao;
+            this.valor = valor;
+            this.numeroParcelas = numeroParcelas;
+            this.data = data;
+            this.intervaloDias = intervaloDias;
+            this.idConta = idConta;
+            this.categorias = categorias;
+            this.tags = tags;
+            this.observacoes = observacoes;
+            this.dataEntradaFatura = dataEntradaFatura;
+        }
+    }
+
+    private final AccountRepository accountRepository;
+    private final CategoryRepository categoryRepository;
+    private final TagRepository tagRepository;
+    private final ExpenseRepository expenseRepository;
+    private final IncomeRepository incomeRepository;
+    private final ImportRepository importRepository;
+    private final InstallmentService installmentService;
+
+    public StreamingImportService() {
+        this.accountRepository = new AccountRepository();
+        this.categoryRepository = new CategoryRepository();
+        this.tagRepository = new TagRepository();
+        this.expenseRepository = new ExpenseRepository();
+        this.incomeRepository = new IncomeRepository();
+        this.importRepository = new ImportRepository();
+        this.installmentService = new InstallmentService();
+    }
+
+    /**
+     * Importa o CSV lido do reader, a partir da linha seguinte ao ponto de retomada do job
+     * Contadores e mensagens de erro são registrados no job; o status final fica a cargo de quem chama.
+     */
+    public void importar(BufferedReader reader, ImportJob job, Checkpoint checkpoint) throws IOException {
+        String[] cabecalho = lerCabecalho(reader);
+        if (cabecalho == null) {
+            job.erro("CSV inválido: deve ter pelo menos uma linha de cabeçalho e uma linha de dados");
+            return;
+        }
+
+        Resolvedor resolvedor = new Resolvedor(job.getIdUsuario());
+        List<LinhaCsv> lote = new ArrayList<>(TAMANHO_LOTE);
+        int numero = 1;
+        String linha;
+        while ((linha = reader.readLine()) != null) {
+            numero++;
+            if (numero <= job.getUltimaLinha() || linha.trim().isEmpty()) {
+                continue; // já gravada antes de um reinício, ou vazia
+            }
+            job.linhaLida();
+            try {
+                lote.add(lerLinha(cabecalho, ImportTransactionsService.parseCSVLine(linha), numero));
+            } catch (IllegalArgumentException e) {
+                job.erro(String.format("Linha %d: %s", numero, e.getMessage()));
+            }
+            if (lote.size() >= TAMANHO_LOTE) {
+                gravarLoteCsv(lote, resolvedor, job, numero, checkpoint);
+                lote.clear();
+            }
+        }
+        gravarLoteCsv(lote, resolvedor, job, numero, checkpoint);
+    }
+
+    /**
+     * Importa transações já revisadas no preview (com ids de conta, categorias e tags),
+     * a partir da transação seguinte ao ponto de retomada do job
+     */
+    public void importarTransacoes(List<Map<String, Object>> transacoes, ImportJob job, Checkpoint checkpoint) {
+        int idUsuario = job.getIdUsuario();
+        Map<Integer, Conta> contas = new HashMap<>();
+        for (Conta conta : accountRepository.buscarContasPorUsuario(idUsuario)) {
+            contas.put(conta.getIdConta(), conta);
+        }
+        Set<Integer> categoriasDoUsuario = new HashSet<>();
+        for (Categoria cat : categoryRepository.buscarCategoriasPorUsuario(idUsuario)) {
+            categoriasDoUsuario.add(cat.getIdCategoria());
+        }
+        Set<Integer> tagsDoUsuario = new HashSet<>();
+        for (Tag tag : tagRepository.buscarTagsPorUsuario(idUsuario)) {
+            tagsDoUsuario.add(tag.getIdTag());
+        }
+        Integer semCategoria = null;
+
+        List<ImportRepository.Linha> linhas = new ArrayList<>();
+        List<Parcelada> parceladas = new ArrayList<>();
+        int primeira = job.getUltimaLinha() + 1;
+        for (int numero = primeira; numero <= transacoes.size(); numero++) {
+            Map<String, Object> t = transacoes.get(numero - 1);
+            job.linhaLida();
+            try {
+                boolean gasto = "gasto".equals(t.get("type"));
+                if (!gasto && !"receita".equals(t.get("type"))) {
+                    throw new IllegalArgumentException("Tipo deve ser 'gasto' ou 'receita'");
+                }
+                String descricao = descricao((String) t.get("description"));
+                double valor = ((Number) t.get("value")).doubleValue();
+                if (valor <= 0) throw new IllegalArgumentException("Valor deve ser maior que zero");
+                LocalDate data = LocalDate.parse((String) t.get("date"));
+                Conta conta = contas.get(((Number) t.get("accountId")).intValue());
+                if (conta == null) throw new IllegalArgumentException("Conta não encontrada");
+                validarConta(conta, gasto);
+                List<Integer> tags = idsDoUsuario(t.get("tagIds"), tagsDoUsuario);
+                List<String> observacoes = new ArrayList<>();
+                if (t.get("observacoes") instanceof List) {
+                    for (Object obs : (List<?>) t.get("observacoes")) {
+                        if (obs != null && !obs.toString().trim().isEmpty()) observacoes.add(obs.toString());
+                    }
+                }
+                String frequencia = t.get("frequency") instanceof String ? ((String) t.get("frequency")).toUpperCase() : "UNICA";
+
+                if (gasto) {
+                    List<Integer> categorias = idsDoUsuario(t.get("categoryIds"), categoriasDoUsuario);
+                    if (categorias.isEmpty()) {
+                        if (semCategoria == null) semCategoria = categoryRepository.obterOuCriarCategoriaSemCategoria(idUsuario);
+                        categorias.add(semCategoria);
+                    }
+                    Object dataEntrada = t.get("dataEntradaFatura");
+                    LocalDate dataEntradaFatura = dataEntrada != null && !dataEntrada.toString().trim().isEmpty()
+                        ? LocalDate.parse(dataEntrada.toString()) : null;
+                    if (verdadeiro(t.get("isParcelado")) && t.get("numeroParcelas") instanceof Number
+                        && ((Number) t.get("numeroParcelas")).intValue() > 1) {
+                        int intervalo = t.get("intervaloDias") instanceof Number ? ((Number) t.get("intervaloDias")).intValue() : 30;
+                        parceladas.add(new Parcelada(numero, descricao, valor, ((Number) t.get("numeroParcelas")).intValue(), data,
+                            intervalo > 0 ? intervalo : 30, conta.getIdConta(), categorias, tags, observacoes, dataEntradaFatura));
+                    } else {
+                        linhas.add(new ImportRepository.Linha(numero, true, descricao, valor, data, frequencia,
+                            expenseRepository.calcularProximaRecorrencia(data, frequencia), conta.getIdConta(),
+                            dataEntradaFatura, categorias, tags, observacoes, null));
+                    }
+                } else {
+                    Integer idContaOrigem = null;
+                    if (verdadeiro(t.get("pagamentoFatura")) && t.get("contaOrigemId") instanceof Number) {
+                        Conta origem = contas.get(((Number) t.get("contaOrigemId")).intValue());
+                        if (origem == null) throw new IllegalArgumentException("Conta de origem não encontrada");
+                        idContaOrigem = origem.getIdConta();
+                    }
+                    linhas.add(new ImportRepository.Linha(numero, false, descricao, valor, data, frequencia,
+                        incomeRepository.calcularProximaRecorrencia(data, frequencia), conta.getIdConta(),
+                        null, null, tags, observacoes, idContaOrigem));
+                }
+            } catch (Exception e) {
+                Object descricao = t.getOrDefault("description", "Desconhecido");
+                job.erro(String.format("Erro ao criar transação '%s': %s", descricao, e.getMessage()));
+            }
+            if (linhas.size() + parceladas.size() >= TAMANHO_LOTE || numero == transacoes.size()) {
+                gravar(job, linhas, parceladas, primeira, numero, checkpoint);
+                linhas.clear();
+                parceladas.clear();
+                primeira = numero + 1;
+            }
+        }
+    }
+
+    private String[] lerCabecalho(BufferedReader reader) throws IOException {
+        String linha;
+        while ((linha = reader.readLine()) != null) {
+            if (linha.startsWith("\uFEFF")) {
+                linha = linha.substring(1);
+            }
+            if (!linha.trim().isEmpty()) {
+                String[] cabecalho = ImportTransactionsService.parseCSVLine(linha);
+                for (int i = 0; i < cabecalho.length; i++) {
+                    cabecalho[i] = ImportTransactionsService.normalizeHeader(cabecalho[i]);
+                }
+                return cabecalho;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Valida uma linha com as mesmas regras do preview (ImportTransactionsService.processRow)
+     */
+    private LinhaCsv lerLinha(String[] cabecalho, String[] valores, int numero) {
+        Map<String, String> row = new HashMap<>();
+        for (int j = 0; j < cabecalho.length && j < valores.length; j++) {
+            row.put(cabecalho[j], valores[j] != null ? valores[j].trim() : "");
+        }
+        LinhaCsv l = new LinhaCsv();
+        l.numero = numero;
+
+        String tipo = obrigatorio(row, "tipo").toLowerCase();
+        if (!tipo.equals("gasto") && !tipo.equals("receita")) {
+            throw new IllegalArgumentException("Tipo deve ser 'gasto' ou 'receita'");
+        }
+        l.gasto = tipo.equals("gasto");
+
+        l.descricao = descricao(obrigatorio(row, "descricao"));
+
+        String valorStr = obrigatorio(row, "valor");
+        try {
+            l.valor = NumberUtil.parseDoubleBrazilian(valorStr);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Valor inválido: " + valorStr);
+        }
+        if (l.valor <= 0) throw new IllegalArgumentException("Valor deve ser maior que zero");
+
+        l.data = data(obrigatorio(row, "data"), "Data inválida. Use formato YYYY-MM-DD: ");
+        l.conta = obrigatorio(row, "conta");
+        l.tipoConta = vazioParaNull(row.get("tipo_conta"));
+
+        if (l.gasto) {
+            l.categorias = nomesUnicos(row.get("categoria"));
+        }
+        l.tags = nomesUnicos(row.get("tags"));
+        String observacoes = row.get("observacoes");
+        if (observacoes != null) {
+            for (String obs : observacoes.split(";")) {
+                if (!obs.trim().isEmpty()) l.observacoes.add(obs.trim());
+            }
+        }
+
+        if (l.gasto) {
+            try {
+                String parcelas = vazioParaNull(row.get("numero_parcelas"));
+                if (parcelas != null) l.numeroParcelas = Math.max(1, Integer.parseInt(parcelas));
+                String intervalo = vazioParaNull(row.get("intervalo_dias"));
+                if (intervalo != null && Integer.parseInt(intervalo) >= 1) l.intervaloDias = Integer.parseInt(intervalo);
+            } catch (NumberFormatException e) {
+                // Mantém os padrões, como no preview
+            }
+            String dataEntrada = vazioParaNull(row.get("data_entrada_fatura"));
+            if (dataEntrada != null) {
+                l.dataEntradaFatura = data(dataEntrada, "Data de entrada na fatura inválida: ");
+                if (l.dataEntradaFatura.isBefore(l.data)) {
+                    throw new IllegalArgumentException("Data de entrada na fatura deve ser posterior à data da compra");
+                }
+            }
+        } else {
+            l.pagamentoFatura = ImportTransactionsService.parseBoolean(row.get("pagamento_fatura"));
+            l.contaOrigem = vazioParaNull(row.get("conta_origem"));
+        }
+
+        String frequencia = vazioParaNull(row.get("frequencia"));
+        if (frequencia != null) {
+            frequencia = frequencia.toUpperCase();
+            if (frequencia.equals("SEMANAL") || frequencia.equals("MENSAL") || frequencia.equals("ANUAL")) {
+                l.frequencia = frequencia;
+            }
+        }
+        return l;
+    }
+
+    /**
+     * Resolve nomes do lote em ids (criando o que faltar em lote) e grava as transações
+     */
+    private void gravarLoteCsv(List<LinhaCsv> lote, Resolvedor resolvedor, ImportJob job, int ultimaLinha,
+                               Checkpoint checkpoint) {
+        int primeira = lote.isEmpty() ? ultimaLinha : lote.get(0).numero;
+        resolvedor.resolver(lote, job);
+
+        List<ImportRepository.Linha> linhas = new ArrayList<>(lote.size());
+        List<Parcelada> parceladas = new ArrayList<>();
+        for (LinhaCsv l : lote) {
+            try {
+                Conta conta = resolvedor.conta(l.conta, l.tipoConta);
+                validarConta(conta, l.gasto);
+                List<Integer> tags = resolvedor.tags(l.tags);
+                if (l.gasto && l.numeroParcelas > 1) {
+                    parceladas.add(new Parcelada(l.numero, l.descricao, l.valor, l.numeroParcelas, l.data, l.intervaloDias,
+                        conta.getIdConta(), resolvedor.categorias(l.categorias), tags, l.observacoes, l.dataEntradaFatura));
+                    continue;
+                }
+                Integer idContaOrigem = null;
+                if (!l.gasto && l.pagamentoFatura && conta.isCartaoCredito() && l.contaOrigem != null) {
+                    idContaOrigem = resolvedor.conta(l.contaOrigem, null).getIdConta();
+                }
+                LocalDate proxima = l.gasto
+                    ? expenseRepository.calcularProximaRecorrencia(l.data, l.frequencia)
+                    : incomeRepository.calcularProximaRecorrencia(l.data, l.frequencia);
+                linhas.add(new ImportRepository.Linha(l.numero, l.gasto, l.descricao, l.valor, l.data, l.frequencia,
+                    proxima, conta.getIdConta(), l.dataEntradaFatura,
+                    l.gasto ? resolvedor.categorias(l.categorias) : null, tags, l.observacoes, idContaOrigem));
+            } catch (Exception e) {
+                job.erro(String.format("Linha %d: %s", l.numero, e.getMessage()));
+            }
+        }
+        gravar(job, linhas, parceladas, primeira, ultimaLinha, checkpoint);
+    }
+
+    /**
+     * Grava o lote e o ponto de retomada em uma transação
+     * Linhas recusadas pelo banco são registradas como erro da linha (savepoints); se a
+     * transação inteira falhar (ex: conexão perdida), o erro é registrado para o intervalo
+     * de linhas e a importação segue a partir do lote seguinte.
+     */
+    private void gravar(ImportJob job, List<ImportRepository.Linha> linhas, List<Parcelada> parceladas,
+                        int primeira, int ultimaLinha, Checkpoint checkpoint) {
+        int idUsuario = job.getIdUsuario();
+        try {
+            int gravadas = UnitOfWork.transaction(() -> {
+                int total = 0;
+                for (Parcelada p : parceladas) {
+                    try {
+                        UnitOfWork.savepoint(() -> {
+                            try {
+                                return installmentService.criarCompraParcelada(p.descricao, p.valor, p.numeroParcelas, p.data,
+                                    p.intervaloDias, idUsuario, p.idConta, p.categorias, p.tags,
+                                    p.observacoes.toArray(new String[0]), p.dataEntradaFatura);
+                            } catch (Exception e) {
+                                if (e instanceof RuntimeException) throw (RuntimeException) e;
+                                throw new RuntimeException(e.getMessage(), e);
+                            }
+                        });
+                        total++;
+                    } catch (RuntimeException e) {
+                        if (!recusada(e)) throw e;
+                        job.erro(String.format("Linha %d: %s", p.numero, e.getMessage()));
+                    }
+                }
+                total += gravarLinhas(idUsuario, linhas, job);
+                checkpoint.salvar(job, ultimaLinha, total);
+                return total;
+            });
+            job.avancar(ultimaLinha, gravadas);
+        } catch (RuntimeException e) {
+            if (e instanceof ImportJobRepository.PosseExpiradaException) {
+                throw e; // outra instância assumiu a importação: não grava mais nada
+            }
+            LOGGER.warning("Falha ao gravar lote da importação " + job.getIdImportacao() + ": " + e.getMessage());
+            job.erro(String.format("Linhas %d a %d: %s", primeira, ultimaLinha, e.getMessage()));
+            job.avancar(ultimaLinha, 0);
+            checkpoint.salvar(job, ultimaLinha, 0);
+        }
+    }
+
+    /**
+     * Grava as linhas com COPY em um savepoint; se o banco recusar os dados, divide ao meio e
+     * tenta cada metade, até isolar as linhas recusadas (poucos comandos a mais por linha ruim)
+     * @return quantidade gravada
+     */
+    private int gravarLinhas(int idUsuario, List<ImportRepository.Linha> linhas, ImportJob job) {
+        if (linhas.isEmpty()) return 0;
+        try {
+            return UnitOfWork.savepoint(() -> importRepository.gravarLote(idUsuario, linhas));
+        } catch (RuntimeException e) {
+            if (!recusada(e)) throw e;
+            if (linhas.size() == 1) {
+                job.erro(String.format("Linha %d: %s", linhas.get(0).getLinha(), e.getMessage()));
+                return 0;
+            }
+            int meio = linhas.size() / 2;
+            return gravarLinhas(idUsuario, linhas.subList(0, meio), job)
+                + gravarLinhas(idUsuario, linhas.subList(meio, linhas.size()), job);
+        }
+    }
+
+    /**
+     * Falha causada pelos dados da linha (validação, SQLSTATE 22 - dado inválido ou 23 - restrição),
+     * e não pela conexão ou pelo banco; só estas são registradas por linha
+     */
+    private static boolean recusada(Throwable erro) {
+        for (Throwable t = erro; t != null; t = t.getCause()) {
+            if (t instanceof IllegalArgumentException) return true;
+            if (t instanceof SQLException) {
+                String estado = ((SQLException) t).getSQLState();
+                return estado != null && (estado.startsWith("22") || estado.startsWith("23"));
+            }
+        }
+        return false;
+    }
+
+    private static void validarConta(Conta conta, boolean gasto) {
+        String tipo = conta.getTipo() != null ? conta.getTipo().toLowerCase().trim() : "";
+        if (tipo.startsWith("investimento")) {
+            throw new IllegalArgumentException(gasto
+                ? "Contas de investimento não podem ser usadas para gastos"
+                : "Contas de investimento não podem ser usadas para receitas");
+        }
+    }
+
+    /**
+     * Nomes de contas, categorias e tags do usuário, carregados uma vez por importação;
+     * os que faltam em cada lote são criados juntos
+     */
+    private final class Resolvedor {
+        final int idUsuario;
+        final Map<String, Conta> contas = new HashMap<>();
+        final Map<String, Integer> categorias = new HashMap<>();
+        final Map<String, Integer> tags = new HashMap<>();
+        Integer semCategoria;
+
+        Resolvedor(int idUsuario) {
+            this.idUsuario = idUsuario;
+            carregarContas();
+            for (Categoria cat : categoryRepository.buscarCategoriasPorUsuario(idUsuario)) {
+                categorias.put(chave(cat.getNome()), cat.getIdCategoria());
+            }
+            for (Tag tag : tagRepository.buscarTagsPorUsuario(idUsuario)) {
+                tags.put(chave(tag.getNome()), tag.getIdTag());
+            }
+        }
+
+        private void carregarContas() {
+            for (Conta conta : accountRepository.buscarContasPorUsuario(idUsuario)) {
+                contas.put(chave(conta.getNome()) + "::" + chave(conta.getTipo()), conta);
+                contas.putIfAbsent(chave(conta.getNome()), conta);
+            }
+        }
+
+        void resolver(List<LinhaCsv> lote, ImportJob job) {
+            Map<String, String> novasContas = new LinkedHashMap<>();
+            Map<String, String> novasCategorias = new LinkedHashMap<>();
+            Map<String, String> novasTags = new LinkedHashMap<>();
+            for (LinhaCsv l : lote) {
+                if (buscarConta(l.conta, l.tipoConta) == null) {
+                    novasContas.putIfAbsent(chaveConta(l.conta, l.tipoConta), l.conta + "\u0000" + (l.tipoConta != null ? l.tipoConta : ""));
+                }
+                if (l.contaOrigem != null && buscarConta(l.contaOrigem, null) == null) {
+                    novasContas.putIfAbsent(chaveConta(l.contaOrigem, null), l.contaOrigem + "\u0000");
+                }
+                for (String nome : l.categorias) {
+                    if (!categorias.containsKey(chave(nome))) novasCategorias.putIfAbsent(chave(nome), nome);
+                }
+                for (String nome : l.tags) {
+                    if (!tags.containsKey(chave(nome))) novasTags.putIfAbsent(chave(nome), nome);
+                }
+                if (l.gasto && l.categorias.isEmpty() && semCategoria == null) {
+                    semCategoria = categoryRepository.obterOuCriarCategoriaSemCategoria(idUsuario);
+                }
+            }
+
+            // Contas novas são raras e passam pelas validações de tipo do cadastro normal
+            for (String conta : novasContas.values()) {
+                String[] partes = conta.split("\u0000", -1);
+                try {
+                    accountRepository.cadastrarConta(partes[0], partes[1].isEmpty() ? "CORRENTE" : partes[1], 0.0, idUsuario);
+                } catch (RuntimeException e) {
+                    job.erro(String.format("Conta '%s': %s", partes[0], e.getMessage()));
+                }
+            }
+            if (!novasContas.isEmpty()) {
+                carregarContas();
+            }
+            categorias.putAll(importRepository.criarCategorias(idUsuario, novasCategorias.values()));
+
+            Map<String, String> cores = new LinkedHashMap<>();
+            for (String nome : novasTags.values()) {
+                String[] paleta = ImportTransactionsService.DEFAULT_TAG_COLORS;
+                cores.put(nome, paleta[(tags.size() + cores.size()) % paleta.length]);
+            }
+            tags.putAll(importRepository.criarTags(idUsuario, cores));
+        }
+
+        Conta conta(String nome, String tipo) {
+            Conta conta = buscarConta(nome, tipo);
+            if (conta == null) throw new IllegalArgumentException("Conta não encontrada: " + nome);
+            return conta;
+        }
+
+        private Conta buscarConta(String nome, String tipo) {
+            Conta conta = contas.get(chaveConta(nome, tipo));
+            if (conta == null && tipo != null && tipo.toUpperCase().contains("CART")) {
+                conta = contas.get(chave(nome) + "::cartao_credito");
+            }
+            return conta;
+        }
+
+        List<Integer> categorias(List<String> nomes) {
+            List<Integer> ids = new ArrayList<>();
+            for (String nome : nomes) {
+                Integer id = categorias.get(chave(nome));
+                if (id != null) ids.add(id);
+            }
+            if (ids.isEmpty() && semCategoria != null) ids.add(semCategoria);
+            return ids;
+        }
+
+        List<Integer> tags(List<String> nomes) {
+            List<Integer> ids = new ArrayList<>();
+            for (String nome : nomes) {
+                Integer id = tags.get(chave(nome));
+                if (id != null) ids.add(id);
+            }
+            return ids;
+        }
+    }
+
+    private static String chave(String nome) {
+        return nome != null ? nome.toLowerCase().trim() : "";
+    }
+
+    private static String chaveConta(String nome, String tipo) {
+        return tipo != null ? chave(nome) + "::" + chave(tipo) : chave(nome);
+    }
+
+    private static List<String> nomesUnicos(String valor) {
+        List<String> nomes = new ArrayList<>();
+        if (valor == null) return nomes;
+        Set<String> vistos = new LinkedHashSet<>();
+        for (String nome : valor.split(",")) {
+            String trim = nome.trim();
+            if (!trim.isEmpty() && vistos.add(trim.toLowerCase())) {
+                nomes.add(trim);
+            }
+        }
+        return nomes;
+    }
+
+    private static String descricao(String descricao) {
+        ValidationResult descValidation = InputValidator.validateDescription("Descrição", descricao, true);
+        if (!descValidation.isValid()) throw new IllegalArgumentException(descValidation.getErrors().get(0));
+        return InputValidator.sanitizeDescription(descricao);
+    }
+
+    /**
+     * Ids da lista que pertencem ao usuário (os demais são ignorados)
+     */
+    private static List<Integer> idsDoUsuario(Object valor, Set<Integer> doUsuario) {
+        Set<Integer> ids = new LinkedHashSet<>();
+        if (valor instanceof List) {
+            for (Object id : (List<?>) valor) {
+                if (id instanceof Number && doUsuario.contains(((Number) id).intValue())) {
+                    ids.add(((Number) id).intValue());
+                }
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+
+    private static boolean verdadeiro(Object valor) {
+        if (valor instanceof Boolean) return (Boolean) valor;
+        if (valor instanceof Number) return ((Number) valor).intValue() != 0;
+        return valor instanceof String && ImportTransactionsService.parseBoolean((String) valor);
+    }
+
+    private static String obrigatorio(Map<String, String> row, String campo) {
+        String valor = vazioParaNull(row.get(campo));
+        if (valor == null) throw new IllegalArgumentException("Campo '" + campo + "' é obrigatório");
+        return valor;
+    }
+
+    private static String vazioParaNull(String valor) {
+        return valor == null || valor.trim().isEmpty() ? null : valor.trim();
+    }
+
+    private static LocalDate data(String valor, String mensagem) {
+        try {
+            return LocalDate.parse(valor);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(mensagem + valor);
+        }
+    }
+}
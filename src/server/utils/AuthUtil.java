@@ -1,6 +1,8 @@
 package server.utils;
 
 import com.sun.net.httpserver.HttpExchange;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import server.security.JwtUtil;
 
 /**
@@ -8,14 +10,52 @@ import server.security.JwtUtil;
  */
 public class AuthUtil {
     
+    // Principal autenticado de cada requisição em andamento
+    // Indexado pela própria instância do exchange: atributos do HttpExchange são
+    // compartilhados pelo HttpContext e não podem ser usados como escopo de requisição
+    private static final Map<HttpExchange, JwtUtil.JwtValidationResult> PRINCIPALS = new ConcurrentHashMap<>();
+    
     /**
      * Extrai e valida o userId do token JWT na requisição
+     * Se a requisição já foi autenticada (ver {@link #authenticate}), reutiliza o principal
      * @throws UnauthorizedException se o token for inválido ou ausente
      */
     public static int requireUserId(HttpExchange exchange) {
-        // NÃO confia no atributo cached - sempre valida o token novamente para garantir segurança
-        // Isso previne problemas de reutilização de atributos entre requisições
-        
+        JwtUtil.JwtValidationResult principal = PRINCIPALS.get(exchange);
+        if (principal != null) {
+            return principal.getUserId();
+        }
+        return validate(exchange).getUserId();
+    }
+    
+    /**
+     * Retorna o principal da requisição, validando o token se ainda não foi feito
+     * @throws UnauthorizedException se o token for inválido ou ausente
+     */
+    public static JwtUtil.JwtValidationResult requirePrincipal(HttpExchange exchange) {
+        JwtUtil.JwtValidationResult principal = PRINCIPALS.get(exchange);
+        return principal != null ? principal : validate(exchange);
+    }
+    
+    /**
+     * Valida o token uma única vez e associa o principal à requisição
+     * Deve ser pareado com {@link #release} ao final do processamento
+     * @throws UnauthorizedException se o token for inválido ou ausente
+     */
+    public static JwtUtil.JwtValidationResult authenticate(HttpExchange exchange) {
+        JwtUtil.JwtValidationResult principal = validate(exchange);
+        PRINCIPALS.put(exchange, principal);
+        return principal;
+    }
+    
+    /**
+     * Remove o principal associado à requisição
+     */
+    public static void release(HttpExchange exchange) {
+        PRINCIPALS.remove(exchange);
+    }
+    
+    private static JwtUtil.JwtValidationResult validate(HttpExchange exchange) {
         String authHeader = exchange.getRequestHeaders().getFirst("Authorization");
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
             throw new UnauthorizedException("Token de autenticação ausente");
@@ -45,11 +85,7 @@ public class AuthUtil {
             System.err.println("[ERRO] AuthUtil.requireUserId: userId inválido: " + userId);
             throw new UnauthorizedException("UserId inválido extraído do token");
         }
-        
-        // Atualiza o atributo para cache (mas sempre valida o token primeiro)
-        exchange.setAttribute("userId", userId);
-        // System.out.println("[DEBUG] AuthUtil.requireUserId: userId=" + userId + " definido no atributo do exchange");
-        return userId;
+        return result;
     }
     
     /**
@@ -61,4 +97,3 @@ public class AuthUtil {
         }
     }
 }
-
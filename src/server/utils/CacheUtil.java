@@ -1,106 +1,526 @@
 package server.utils;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 /**
- * Utilitário para cache simples com TTL configurável
- * Suporta TTLs diferentes baseados no tipo de dado
+ * Cache em memória com TTL por tipo de dado, segmentado por usuário e com tamanho limitado
+ *
+ * - Chaves tipadas ({@link Key}: tipo + usuário + discriminador opcional) em vez de strings
+ * - Um segmento por usuário: invalidar os dados de um usuário custa O(entradas do usuário)
+ * - Limite global de entradas (CACHE_MAX_ENTRIES, padrão 10000) com despejo W-TinyLFU:
+ *   entradas novas passam por uma janela LRU pequena e só entram na área principal se
+ *   forem mais frequentes (estimativa por count-min sketch) que a vítima da área principal
+ * - Entradas expiradas são removidas em segundo plano, não só na leitura
+ * - Escritas avisadas por {@link DataVersion} (inclusive de outras instâncias) invalidam
+ *   os tipos que dependem das entidades alteradas
+ * - Carregamento único por chave ({@link #getOrLoad}): requisições concorrentes que não
+ *   encontram a entrada esperam por uma só consulta; opcionalmente a entrada vencida continua
+ *   sendo servida por uma janela curta enquanto uma única atualização roda em segundo plano
+ * - Contadores de acertos, faltas, despejos e expirações ({@link #stats()})
  */
-public class CacheUtil {
-    private static final Map<String, CacheEntry> cache = new ConcurrentHashMap<>();
-    
+public final class CacheUtil {
+
     // TTLs por tipo de dado (em milissegundos)
     private static final long TTL_DYNAMIC = 30 * 1000; // 30 segundos - dados dinâmicos (overview, totais)
     private static final long TTL_SEMI_STATIC = 2 * 60 * 1000; // 2 minutos - dados semi-estáticos (contas)
     private static final long TTL_STATIC = 5 * 60 * 1000; // 5 minutos - dados estáticos (categorias, tags)
-    
-    private static class CacheEntry {
-        final Object data;
-        final long timestamp;
-        final long ttl;
-        
-        CacheEntry(Object data, long ttl) {
-            this.data = data;
-            this.timestamp = System.currentTimeMillis();
-            this.ttl = ttl;
+
+    private static final int MAX_ENTRIES = maxEntriesFromEnv();
+    private static final long SWEEP_INTERVAL_MS = 30 * 1000;
+
+    /**
+     * Tipos de dado em cache, com o TTL padrão de cada um
+     */
+    public enum Kind {
+        OVERVIEW(TTL_DYNAMIC, DataVersion.Entity.ACCOUNTS, DataVersion.Entity.TRANSACTIONS,
+                 DataVersion.Entity.CATEGORIES, DataVersion.Entity.INVESTMENTS),
+        TOTAL_EXPENSE(TTL_DYNAMIC, DataVersion.Entity.TRANSACTIONS),
+        TOTAL_INCOME(TTL_DYNAMIC, DataVersion.Entity.TRANSACTIONS),
+        BALANCE(TTL_DYNAMIC, DataVersion.Entity.ACCOUNTS, DataVersion.Entity.TRANSACTIONS),
+        RECENT_TRANSACTIONS(TTL_DYNAMIC, DataVersion.Entity.TRANSACTIONS, DataVersion.Entity.CATEGORIES,
+                            DataVersion.Entity.TAGS),
+        TOTAL_CREDITO(TTL_DYNAMIC, DataVersion.Entity.ACCOUNTS, DataVersion.Entity.TRANSACTIONS),
+        TOTAL_ACCOUNTS(TTL_DYNAMIC, DataVersion.Entity.ACCOUNTS, DataVersion.Entity.TRANSACTIONS),
+        INVESTMENT_ACCOUNTS(TTL_DYNAMIC, DataVersion.Entity.ACCOUNTS, DataVersion.Entity.INVESTMENTS),
+        ACCOUNTS(TTL_SEMI_STATIC, DataVersion.Entity.ACCOUNTS, DataVersion.Entity.TRANSACTIONS),
+        CATEGORIES(TTL_STATIC, DataVersion.Entity.CATEGORIES, DataVersion.Entity.TRANSACTIONS),
+        TAGS(TTL_STATIC, DataVersion.Entity.TAGS),
+        // Versões de dados do usuário (ETag): qualquer escrita invalida
+        DATA_VERSIONS(TTL_STATIC, DataVersion.Entity.values());
+
+        final long ttlMs;
+        // Entidades cuja alteração invalida este tipo de dado
+        private final DataVersion.Entity[] dependsOn;
+
+        Kind(long ttlMs, DataVersion.Entity... dependsOn) {
+            this.ttlMs = ttlMs;
+            this.dependsOn = dependsOn;
         }
-        
-        boolean isExpired() {
-            return (System.currentTimeMillis() - timestamp) > ttl;
+
+        boolean dependsOnAny(DataVersion.Entity[] entities) {
+            for (DataVersion.Entity changed : entities) {
+                for (DataVersion.Entity entity : dependsOn) {
+                    if (entity == changed) return true;
+                }
+            }
+            return false;
         }
     }
-    
+
     /**
-     * Determina o TTL apropriado baseado na chave do cache
+     * Chave de cache: tipo, usuário (0 para dados globais) e discriminador opcional (ex: período)
      */
-    private static long getTTLForKey(String key) {
-        // Dados estáticos (categorias, tags)
-        if (key.startsWith("categories_") || key.startsWith("tags_")) {
-            return TTL_STATIC;
+    public static final class Key {
+        final Kind kind;
+        final int userId;
+        final Object discriminator;
+        private final int hash;
+
+        private Key(Kind kind, int userId, Object discriminator) {
+            this.kind = Objects.requireNonNull(kind);
+            this.userId = userId;
+            this.discriminator = discriminator;
+            this.hash = 31 * (31 * kind.hashCode() + userId) + Objects.hashCode(discriminator);
+        }
+
+        public static Key of(Kind kind, int userId) {
+            return new Key(kind, userId, null);
+        }
+
+        public static Key of(Kind kind, int userId, Object discriminator) {
+            return new Key(kind, userId, discriminator);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return kind == other.kind && userId == other.userId && Objects.equals(discriminator, other.discriminator);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return kind + ":" + userId + (discriminator != null ? ":" + discriminator : "");
+        }
+    }
+
+    private static final class Entry {
+        final Object data;
+        final long expiresAt;
+        // Fim da janela em que a entrada vencida ainda pode ser servida (stale-while-revalidate)
+        final long staleUntil;
+
+        Entry(Object data, long ttlMs, long staleMs) {
+            this.data = data;
+            this.expiresAt = System.currentTimeMillis() + ttlMs;
+            this.staleUntil = expiresAt + staleMs;
         }
-        // Dados semi-estáticos (contas)
-        if (key.startsWith("accounts_")) {
-            return TTL_SEMI_STATIC;
+
+        boolean isExpired(long now) {
+            return now > expiresAt;
+        }
+
+        boolean isDead(long now) {
+            return now > staleUntil;
         }
-        // Dados dinâmicos (overview, totais, investimentos)
-        return TTL_DYNAMIC;
     }
-    
+
+    private static final Map<Integer, Map<Key, Entry>> SEGMENTS = new ConcurrentHashMap<>();
+    private static final Policy POLICY = new Policy(MAX_ENTRIES);
+    private static final SingleFlight<Key> LOADS = new SingleFlight<>();
+    // Atualizações em segundo plano das entradas vencidas; se a fila encher, a próxima leitura tenta de novo
+    private static final ExecutorService REFRESHER = new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>(100), r -> {
+            Thread t = new Thread(r, "cache-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+    private static final LongAdder EVICTIONS = new LongAdder();
+    private static final LongAdder EXPIRATIONS = new LongAdder();
+    private static final LongAdder STALE_HITS = new LongAdder();
+
+    static {
+        ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "cache-expiry");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(CacheUtil::removeExpired, SWEEP_INTERVAL_MS, SWEEP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+        // Escritas (locais ou de outras instâncias, via InvalidationBus) invalidam os tipos dependentes
+        DataVersion.addListener(CacheUtil::invalidate);
+    }
+
+    private CacheUtil() {}
+
     @SuppressWarnings("unchecked")
-    public static <T> T getCached(String key) {
-        CacheEntry entry = cache.get(key);
-        if (entry != null && !entry.isExpired()) {
-            return (T) entry.data;
+    public static <T> T get(Key key) {
+        long now = System.currentTimeMillis();
+        Entry entry = find(key, now);
+        if (entry == null || entry.isExpired(now)) {
+            MISSES.increment();
+            POLICY.recordMiss(key);
+            return null;
         }
+        HITS.increment();
+        POLICY.recordHit(key);
+        return (T) entry.data;
+    }
+
+    /**
+     * Retorna o valor em cache ou o carrega (uma única vez para requisições concorrentes)
+     * Valores null não são guardados.
+     */
+    public static <T> T getOrLoad(Key key, Supplier<T> loader) {
+        return getOrLoad(key, 0, loader);
+    }
+
+    /**
+     * Como {@link #getOrLoad(Key, Supplier)}, mas depois do TTL a entrada ainda é servida por
+     * staleMs enquanto uma única atualização roda em segundo plano. Escritas nos dados
+     * (invalidação) removem a entrada na hora, sem janela.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T getOrLoad(Key key, long staleMs, Supplier<T> loader) {
+        long now = System.currentTimeMillis();
+        Entry entry = find(key, now);
         if (entry != null) {
-            cache.remove(key); // Remove entrada expirada
+            POLICY.recordHit(key);
+            if (!entry.isExpired(now)) {
+                HITS.increment();
+            } else {
+                STALE_HITS.increment();
+                LOADS.executeAsync(key, REFRESHER, loader, value -> store(key, value, staleMs));
+            }
+            return (T) entry.data;
         }
-        return null;
+        MISSES.increment();
+        POLICY.recordMiss(key);
+        return LOADS.execute(key, loader, value -> store(key, value, staleMs));
     }
-    
+
     /**
-     * Armazena dados no cache com TTL automático baseado no tipo de dado
+     * Armazena dados no cache com o TTL padrão do tipo da chave
      */
-    public static void setCached(String key, Object data) {
-        long ttl = getTTLForKey(key);
-        cache.put(key, new CacheEntry(data, ttl));
+    public static void put(Key key, Object data) {
+        put(key, data, key.kind.ttlMs);
     }
-    
+
     /**
      * Armazena dados no cache com TTL customizado (em milissegundos)
      */
-    public static void setCached(String key, Object data, long ttlMs) {
-        cache.put(key, new CacheEntry(data, ttlMs));
+    public static void put(Key key, Object data, long ttlMs) {
+        put(key, data, ttlMs, 0);
+    }
+
+    private static void store(Key key, Object data, long staleMs) {
+        if (data != null) {
+            put(key, data, key.kind.ttlMs, staleMs);
+        }
+    }
+
+    private static void put(Key key, Object data, long ttlMs, long staleMs) {
+        SEGMENTS.computeIfAbsent(key.userId, id -> new ConcurrentHashMap<>()).put(key, new Entry(data, ttlMs, staleMs));
+        for (Key evicted : POLICY.recordWrite(key)) {
+            Map<Key, Entry> segment = SEGMENTS.get(evicted.userId);
+            if (segment != null && segment.remove(evicted) != null) {
+                EVICTIONS.increment();
+                removeSegmentIfEmpty(evicted.userId);
+            }
+        }
+    }
+
+    /**
+     * Remove as entradas dos tipos informados do usuário
+     */
+    public static void invalidate(int userId, Kind... kinds) {
+        // Carregamentos em andamento já podem ter lido os dados antigos: não são gravados
+        LOADS.forgetIf(key -> key.userId == userId && Arrays.asList(kinds).contains(key.kind));
+        Map<Key, Entry> segment = SEGMENTS.get(userId);
+        if (segment == null) return;
+        for (Iterator<Key> it = segment.keySet().iterator(); it.hasNext(); ) {
+            Key key = it.next();
+            for (Kind kind : kinds) {
+                if (key.kind == kind) {
+                    it.remove();
+                    POLICY.remove(key);
+                    break;
+                }
+            }
+        }
+        removeSegmentIfEmpty(userId);
+    }
+
+    /**
+     * Remove as entradas do usuário que dependem das entidades alteradas
+     */
+    public static void invalidate(int userId, DataVersion.Entity[] changed) {
+        LOADS.forgetIf(key -> key.userId == userId && key.kind.dependsOnAny(changed));
+        Map<Key, Entry> segment = SEGMENTS.get(userId);
+        if (segment == null) return;
+        for (Iterator<Key> it = segment.keySet().iterator(); it.hasNext(); ) {
+            Key key = it.next();
+            if (key.kind.dependsOnAny(changed)) {
+                it.remove();
+                POLICY.remove(key);
+            }
+        }
+        removeSegmentIfEmpty(userId);
     }
-    
+
     /**
-     * Armazena dados estáticos no cache (TTL de 5 minutos)
+     * Remove todas as entradas do usuário
      */
-    public static void setCachedStatic(String key, Object data) {
-        cache.put(key, new CacheEntry(data, TTL_STATIC));
+    public static void invalidateUser(int userId) {
+        LOADS.forgetIf(key -> key.userId == userId);
+        Map<Key, Entry> segment = SEGMENTS.remove(userId);
+        if (segment == null) return;
+        for (Key key : segment.keySet()) {
+            POLICY.remove(key);
+        }
+    }
+
+    public static void invalidateAll() {
+        LOADS.forgetIf(key -> true);
+        for (Integer userId : new ArrayList<>(SEGMENTS.keySet())) {
+            invalidateUser(userId);
+        }
     }
-    
+
     /**
-     * Armazena dados semi-estáticos no cache (TTL de 2 minutos)
+     * Contadores e tamanho atual do cache
      */
-    public static void setCachedSemiStatic(String key, Object data) {
-        cache.put(key, new CacheEntry(data, TTL_SEMI_STATIC));
+    public static Map<String, Object> stats() {
+        long hits = HITS.sum();
+        long misses = MISSES.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", POLICY.size());
+        stats.put("maxEntries", MAX_ENTRIES);
+        stats.put("segments", SEGMENTS.size());
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("hitRate", hits + misses > 0 ? (double) hits / (hits + misses) : 0.0);
+        stats.put("evictions", EVICTIONS.sum());
+        stats.put("expirations", EXPIRATIONS.sum());
+        stats.put("staleHits", STALE_HITS.sum());
+        stats.put("loadsInFlight", LOADS.inFlight());
+        return stats;
     }
-    
+
     /**
-     * Armazena dados dinâmicos no cache (TTL de 30 segundos)
+     * Entrada da chave, mesmo vencida se ainda dentro da janela de revalidação
      */
-    public static void setCachedDynamic(String key, Object data) {
-        cache.put(key, new CacheEntry(data, TTL_DYNAMIC));
+    private static Entry find(Key key, long now) {
+        Map<Key, Entry> segment = SEGMENTS.get(key.userId);
+        Entry entry = segment != null ? segment.get(key) : null;
+        if (entry != null && entry.isDead(now)) {
+            if (segment.remove(key, entry)) {
+                EXPIRATIONS.increment();
+                POLICY.remove(key);
+            }
+            return null;
+        }
+        return entry;
     }
-    
-    public static void invalidateCache(String pattern) {
-        if (pattern == null) {
-            cache.clear();
-        } else {
-            cache.entrySet().removeIf(entry -> entry.getKey().startsWith(pattern));
+
+    private static void removeExpired() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Integer, Map<Key, Entry>> segment : SEGMENTS.entrySet()) {
+            for (Iterator<Map.Entry<Key, Entry>> it = segment.getValue().entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<Key, Entry> e = it.next();
+                if (e.getValue().isDead(now)) {
+                    it.remove();
+                    POLICY.remove(e.getKey());
+                    EXPIRATIONS.increment();
+                }
+            }
+            removeSegmentIfEmpty(segment.getKey());
+        }
+    }
+
+    private static void removeSegmentIfEmpty(int userId) {
+        SEGMENTS.computeIfPresent(userId, (id, segment) -> segment.isEmpty() ? null : segment);
+    }
+
+    private static int maxEntriesFromEnv() {
+        try {
+            String value = System.getenv("CACHE_MAX_ENTRIES");
+            return value != null ? Math.max(100, Integer.parseInt(value.trim())) : 10_000;
+        } catch (NumberFormatException e) {
+            return 10_000;
+        }
+    }
+
+    /**
+     * Política de despejo W-TinyLFU: janela LRU (1% das entradas) + área principal LRU,
+     * com admissão pela frequência estimada. Guarda só as chaves; os valores ficam nos segmentos.
+     */
+    private static final class Policy {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final FrequencySketch sketch;
+        private final LinkedHashMap<Key, Boolean> window = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<Key, Boolean> main = new LinkedHashMap<>(256, 0.75f, true);
+        private final int windowMax;
+        private final int mainMax;
+
+        Policy(int maxEntries) {
+            this.windowMax = Math.max(1, maxEntries / 100);
+            this.mainMax = maxEntries - windowMax;
+            this.sketch = new FrequencySketch(maxEntries);
+        }
+
+        void recordMiss(Key key) {
+            sketch.increment(key);
+        }
+
+        void recordHit(Key key) {
+            sketch.increment(key);
+            // A ordem de acesso é só uma dica: sob disputa, a leitura não espera pelo lock
+            if (lock.tryLock()) {
+                try {
+                    if (window.get(key) == null) main.get(key);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
+        /**
+         * Registra a escrita da chave
+         * @return chaves despejadas (a remover dos segmentos)
+         */
+        List<Key> recordWrite(Key key) {
+            sketch.increment(key);
+            List<Key> evicted = new ArrayList<>(1);
+            lock.lock();
+            try {
+                if (window.get(key) != null || main.get(key) != null) {
+                    return evicted;
+                }
+                window.put(key, Boolean.TRUE);
+                if (window.size() <= windowMax) {
+                    return evicted;
+                }
+                Iterator<Key> it = window.keySet().iterator();
+                Key candidate = it.next();
+                it.remove();
+                if (main.size() < mainMax) {
+                    main.put(candidate, Boolean.TRUE);
+                    return evicted;
+                }
+                Iterator<Key> mainIt = main.keySet().iterator();
+                Key victim = mainIt.next();
+                if (sketch.frequency(candidate) > sketch.frequency(victim)) {
+                    mainIt.remove();
+                    main.put(candidate, Boolean.TRUE);
+                    evicted.add(victim);
+                } else {
+                    evicted.add(candidate);
+                }
+                return evicted;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void remove(Key key) {
+            lock.lock();
+            try {
+                if (window.remove(key) == null) main.remove(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return window.size() + main.size();
+            } finally {
+                lock.unlock();
+            }
         }
     }
-}
 
+    /**
+     * Count-min sketch com contadores de 4 bits (saturam em 15) e envelhecimento:
+     * a cada 10 x capacidade incrementos todos os contadores são divididos por 2
+     */
+    private static final class FrequencySketch {
+        private static final int DEPTH = 4;
+        private final byte[] counters;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int capacity) {
+            int size = Integer.highestOneBit(Math.max(capacity, 64) * 4 - 1) << 1;
+            this.counters = new byte[size];
+            this.mask = size - 1;
+            this.sampleSize = capacity * 10;
+        }
+
+        synchronized void increment(Key key) {
+            int h = spread(key.hashCode());
+            boolean added = false;
+            for (int i = 0; i < DEPTH; i++) {
+                int index = indexOf(h, i);
+                if (counters[index] < 15) {
+                    counters[index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                for (int i = 0; i < counters.length; i++) {
+                    counters[i] >>= 1;
+                }
+                additions /= 2;
+            }
+        }
+
+        synchronized int frequency(Key key) {
+            int h = spread(key.hashCode());
+            int min = 15;
+            for (int i = 0; i < DEPTH; i++) {
+                min = Math.min(min, counters[indexOf(h, i)]);
+            }
+            return min;
+        }
+
+        private int indexOf(int h, int i) {
+            int seeded = (h + i * 0x9E3779B9) * 0x85EBCA6B;
+            return (seeded ^ (seeded >>> 15)) & mask;
+        }
+
+        private static int spread(int h) {
+            h ^= h >>> 16;
+            h *= 0x45D9F3B;
+            return h ^ (h >>> 16);
+        }
+    }
+}
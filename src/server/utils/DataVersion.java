@@ -0,0 +1,221 @@
+package server.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import server.database.DatabaseConnection;
+import server.database.SchemaCapabilities;
+import server.database.UnitOfWork;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Versões dos dados de cada usuário, por entidade
+ * As versões ficam na tabela versoes_dados (schema_data_versions.sql) e são incrementadas
+ * por triggers na mesma transação de cada escrita, de modo que todas as instâncias atrás
+ * do balanceador enxergam a mesma versão. Os handlers de leitura usam as versões como
+ * ETag e respondem 304 sem montar a resposta.
+ * As versões lidas ficam em memória (CacheUtil, DATA_VERSIONS) enquanto o InvalidationBus
+ * entregar todas as alterações; cada escrita, local ou de outra instância, descarta as
+ * versões do usuário e só a próxima leitura consulta a tabela. Sem essa garantia (canal
+ * desconectado ou trigger de notificação ausente) as versões são lidas a cada requisição.
+ *
+ * Se a tabela não existir (script não aplicado), o ETag fica desativado e as rotas
+ * respondem sempre 200.
+ */
+public final class DataVersion {
+    private static final Logger LOGGER = Logger.getLogger(DataVersion.class.getName());
+
+    public enum Entity { ACCOUNTS, CATEGORIES, TAGS, TRANSACTIONS, BUDGETS, INVESTMENTS }
+
+    private static final Entity[] ENTITIES = Entity.values();
+    // Respostas que incluem cotações ou prazos relativos à data atual mudam de ETag a cada janela
+    private static final long QUOTE_WINDOW_MS = 5 * 60 * 1000;
+
+    // Ouvintes notificados após o commit de uma escrita (caches locais)
+    private static final List<ChangeListener> LISTENERS = new CopyOnWriteArrayList<>();
+    // Publica as alterações locais para as outras instâncias (InvalidationBus), se houver
+    private static volatile ChangeListener publisher;
+    private static volatile boolean unavailableLogged;
+
+    /**
+     * Recebe as entidades alteradas de um usuário após o commit da escrita
+     */
+    @FunctionalInterface
+    public interface ChangeListener {
+        void changed(int idUsuario, Entity[] entities);
+    }
+
+    private DataVersion() {}
+
+    public static void addListener(ChangeListener listener) {
+        LISTENERS.add(listener);
+    }
+
+    static void setPublisher(ChangeListener publisher) {
+        DataVersion.publisher = publisher;
+    }
+
+    /**
+     * Registra que as entidades informadas do usuário foram alteradas
+     * A versão persistente já foi incrementada pelos triggers; aqui apenas os ouvintes
+     * locais são notificados. Deve ser chamado depois do commit, nunca antes. Dentro de
+     * uma transação de {@link UnitOfWork} a notificação é adiada até o commit final.
+     */
+    public static void bump(int idUsuario, Entity... entities) {
+        if (idUsuario <= 0 || (LISTENERS.isEmpty() && publisher == null)) {
+            return;
+        }
+        UnitOfWork.afterCommit(() -> {
+            notifyListeners(idUsuario, entities);
+            ChangeListener current = publisher;
+            if (current != null) {
+                try {
+                    current.changed(idUsuario, entities);
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Erro ao publicar alteração de dados", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Aplica nos ouvintes locais uma alteração feita em outra instância (sem publicar de novo)
+     */
+    static void applyRemote(int idUsuario, Entity[] entities) {
+        notifyListeners(idUsuario, entities);
+    }
+
+    private static void notifyListeners(int idUsuario, Entity[] entities) {
+        for (ChangeListener listener : LISTENERS) {
+            try {
+                listener.changed(idUsuario, entities);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Erro ao notificar alteração de dados", e);
+            }
+        }
+    }
+
+    /**
+     * Registra alteração de todas as entidades do usuário (ex: importação, exclusão de conta)
+     */
+    public static void bumpAll(int idUsuario) {
+        bump(idUsuario, ENTITIES);
+    }
+
+    /**
+     * Versões atuais do usuário (índice = ordinal da entidade), da memória ou da tabela
+     * @return versões, ou null se a tabela de versões não estiver disponível
+     */
+    static long[] load(int idUsuario) {
+        if (!SchemaCapabilities.has(SchemaCapabilities.Capability.DATA_VERSIONS)) {
+            return null;
+        }
+        if (InvalidationBus.deliversAllChanges()) {
+            return CacheUtil.getOrLoad(CacheUtil.Key.of(CacheUtil.Kind.DATA_VERSIONS, idUsuario), () -> query(idUsuario));
+        }
+        return query(idUsuario);
+    }
+
+    private static long[] query(int idUsuario) {
+        String sql = "SELECT entidade, versao FROM versoes_dados WHERE id_usuario = ?";
+        try (Connection conn = DatabaseConnection.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, idUsuario);
+            long[] versions = new long[ENTITIES.length];
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    try {
+                        versions[Entity.valueOf(rs.getString("entidade")).ordinal()] = rs.getLong("versao");
+                    } catch (IllegalArgumentException ignored) {
+                        // Entidade desconhecida por esta versão do servidor
+                    }
+                }
+            }
+            return versions;
+        } catch (SQLException e) {
+            if (!unavailableLogged) {
+                unavailableLogged = true;
+                LOGGER.warning("Versões de dados indisponíveis (aplique schema_data_versions.sql); ETag desativado: " + e.getMessage());
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Janela de tempo atual para respostas dependentes de cotações ou da data
+     */
+    public static long quoteWindow() {
+        return System.currentTimeMillis() / QUOTE_WINDOW_MS;
+    }
+
+    /**
+     * Monta o ETag (fraco) a partir das versões das entidades das quais a resposta depende
+     * @param window janela de tempo para respostas que também dependem do relógio ou de
+     *               cotações (ex: {@link #quoteWindow()}); 0 se não se aplica
+     * @return ETag, ou null se as versões não estiverem disponíveis
+     */
+    public static String etag(int idUsuario, long window, Entity... entities) {
+        long[] versions = load(idUsuario);
+        if (versions == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(48);
+        sb.append("W/\"").append(idUsuario);
+        for (Entity entity : entities) {
+            sb.append('.').append(versions[entity.ordinal()]);
+        }
+        if (window != 0) {
+            sb.append('-').append(Long.toString(window, 36));
+        }
+        return sb.append('"').toString();
+    }
+
+    public static String etag(int idUsuario, Entity... entities) {
+        return etag(idUsuario, 0, entities);
+    }
+
+    /**
+     * Define o ETag da resposta e, se o cliente já possui essa versão (If-None-Match),
+     * responde 304 sem corpo
+     * @param etag ETag atual; null desativa a verificação
+     * @return true se a resposta 304 foi enviada e o handler deve retornar
+     */
+    public static boolean checkNotModified(HttpExchange exchange, String etag) throws IOException {
+        if (etag == null) {
+            return false;
+        }
+        exchange.getResponseHeaders().set("ETag", etag);
+        // O conteúdo é por usuário: o navegador pode guardar, mas deve sempre revalidar
+        exchange.getResponseHeaders().set("Cache-Control", "private, no-cache");
+
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch == null || !matches(ifNoneMatch, etag)) {
+            return false;
+        }
+        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+        exchange.sendResponseHeaders(304, -1);
+        exchange.close();
+        return true;
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        // Comparação fraca: ignora o prefixo W/ dos dois lados
+        String opaque = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(opaque) || tag.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
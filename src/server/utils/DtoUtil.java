@@ -1,177 +1,161 @@
 package server.utils;
 
 import server.dto.*;
-import java.util.Map;
 
 /**
- * Utilitário para converter Maps em DTOs
+ * Utilitário para converter o corpo JSON das requisições em DTOs
+ * Os campos são lidos direto do JSON com {@link JsonReader}, sem Map intermediário
  */
 public class DtoUtil {
     
     /**
-     * Converte Map para RegisterRequest
+     * Lê RegisterRequest diretamente do JSON da requisição
+     * JSON inválido resulta em um DTO parcial, rejeitado depois pela validação
      */
-    public static RegisterRequest toRegisterRequest(Map<String, String> data) {
+    public static RegisterRequest parseRegisterRequest(String json) {
         RegisterRequest request = new RegisterRequest();
-        request.setName(data.get("name"));
-        request.setEmail(data.get("email"));
-        request.setPassword(data.get("password"));
+        try {
+            JsonReader reader = new JsonReader(json);
+            if (!reader.beginObject()) return request;
+            String field;
+            while ((field = reader.nextName()) != null) {
+                switch (field) {
+                    case "name": request.setName(reader.nextString()); break;
+                    case "email": request.setEmail(reader.nextString()); break;
+                    case "password": request.setPassword(reader.nextString()); break;
+                    default: reader.skipValue();
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Erro ao fazer parse do JSON: " + e.getMessage());
+        }
         return request;
     }
     
     /**
-     * Converte Map para LoginRequest
+     * Lê LoginRequest diretamente do JSON da requisição
+     * JSON inválido resulta em um DTO parcial, rejeitado depois pela validação
      */
-    public static LoginRequest toLoginRequest(Map<String, String> data) {
+    public static LoginRequest parseLoginRequest(String json) {
         LoginRequest request = new LoginRequest();
-        request.setEmail(data.get("email"));
-        request.setPassword(data.get("password"));
-        request.setCaptchaToken(data.get("captchaToken"));
+        try {
+            JsonReader reader = new JsonReader(json);
+            if (!reader.beginObject()) return request;
+            String field;
+            while ((field = reader.nextName()) != null) {
+                switch (field) {
+                    case "email": request.setEmail(reader.nextString()); break;
+                    case "password": request.setPassword(reader.nextString()); break;
+                    case "captchaToken": request.setCaptchaToken(reader.nextString()); break;
+                    default: reader.skipValue();
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Erro ao fazer parse do JSON: " + e.getMessage());
+        }
         return request;
     }
     
     /**
-     * Converte Map para AccountRequest
+     * Lê AccountRequest diretamente do JSON da requisição
+     * Prioridade dos aliases: name > nome, type > tipo, balance > saldo > saldoInicial
+     * JSON inválido resulta em um DTO parcial, rejeitado depois pela validação
      */
-    public static AccountRequest toAccountRequest(Map<String, Object> data) {
+    public static AccountRequest parseAccountRequest(String json) {
         AccountRequest request = new AccountRequest();
-        
-        // ID
-        Object idObj = data.get("id");
-        if (idObj != null) {
-            if (idObj instanceof Number) {
-                request.setId(((Number) idObj).intValue());
-            } else {
-                try {
-                    request.setId(Integer.parseInt(idObj.toString()));
-                } catch (NumberFormatException e) {
-                    // Ignora
-                }
-            }
-        }
-        
-        // Name (suporta "name" e "nome")
-        Object nameObj = data.get("name");
-        if (nameObj == null) {
-            nameObj = data.get("nome");
-        }
-        if (nameObj != null) {
-            request.setName(nameObj.toString());
-        }
-        
-        // Type (suporta "type" e "tipo")
-        Object typeObj = data.get("type");
-        if (typeObj == null) {
-            typeObj = data.get("tipo");
-        }
-        if (typeObj != null) {
-            request.setType(typeObj.toString());
-        }
-        
-        // Balance (suporta "balance", "saldo" e "saldoInicial")
-        Object balanceObj = data.get("balance");
-        if (balanceObj == null) {
-            balanceObj = data.get("saldo");
-        }
-        if (balanceObj == null) {
-            balanceObj = data.get("saldoInicial");
-        }
-        if (balanceObj != null) {
-            if (balanceObj instanceof Number) {
-                request.setBalance(((Number) balanceObj).doubleValue());
-            } else {
-                try {
-                    String balanceStr = balanceObj.toString().trim();
-                    request.setBalance(NumberUtil.parseDoubleBrazilian(balanceStr));
-                } catch (NumberFormatException e) {
-                    // Ignora - a validação será feita no handler
-                }
-            }
-        }
-        
-        // Dia de fechamento
-        Object diaFechamentoObj = data.get("diaFechamento");
-        if (diaFechamentoObj != null) {
-            if (diaFechamentoObj instanceof Number) {
-                request.setDiaFechamento(((Number) diaFechamentoObj).intValue());
-            } else {
-                try {
-                    request.setDiaFechamento(Integer.parseInt(diaFechamentoObj.toString()));
-                } catch (NumberFormatException e) {
-                    // Ignora
-                }
-            }
-        }
-        
-        // Dia de pagamento
-        Object diaPagamentoObj = data.get("diaPagamento");
-        if (diaPagamentoObj != null) {
-            if (diaPagamentoObj instanceof Number) {
-                request.setDiaPagamento(((Number) diaPagamentoObj).intValue());
-            } else {
-                try {
-                    request.setDiaPagamento(Integer.parseInt(diaPagamentoObj.toString()));
-                } catch (NumberFormatException e) {
-                    // Ignora
+        try {
+            JsonReader reader = new JsonReader(json);
+            if (!reader.beginObject()) return request;
+            int nameRank = 0, typeRank = 0, balanceRank = 0;
+            String field;
+            while ((field = reader.nextName()) != null) {
+                switch (field) {
+                    case "id": request.setId(reader.nextInteger()); break;
+                    case "name":
+                    case "nome": {
+                        int rank = field.equals("name") ? 2 : 1;
+                        String value = reader.nextString();
+                        if (value != null && rank > nameRank) {
+                            request.setName(value);
+                            nameRank = rank;
+                        }
+                        break;
+                    }
+                    case "type":
+                    case "tipo": {
+                        int rank = field.equals("type") ? 2 : 1;
+                        String value = reader.nextString();
+                        if (value != null && rank > typeRank) {
+                            request.setType(value);
+                            typeRank = rank;
+                        }
+                        break;
+                    }
+                    case "balance":
+                    case "saldo":
+                    case "saldoInicial": {
+                        int rank = field.equals("balance") ? 3 : field.equals("saldo") ? 2 : 1;
+                        Double value = reader.nextDouble();
+                        if (value != null && rank > balanceRank) {
+                            request.setBalance(value);
+                            balanceRank = rank;
+                        }
+                        break;
+                    }
+                    case "diaFechamento": request.setDiaFechamento(reader.nextInteger()); break;
+                    case "diaPagamento": request.setDiaPagamento(reader.nextInteger()); break;
+                    default: reader.skipValue();
                 }
             }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Erro ao fazer parse do JSON: " + e.getMessage());
         }
-        
         return request;
     }
     
     /**
-     * Converte Map para CategoryRequest
+     * Lê CategoryRequest diretamente do JSON da requisição
+     * Prioridade dos aliases: name > nome
+     * JSON inválido resulta em um DTO parcial, rejeitado depois pela validação
      */
-    public static CategoryRequest toCategoryRequest(Map<String, Object> data) {
+    public static CategoryRequest parseCategoryRequest(String json) {
         CategoryRequest request = new CategoryRequest();
-        
-        // ID
-        Object idObj = data.get("id");
-        if (idObj != null) {
-            if (idObj instanceof Number) {
-                request.setId(((Number) idObj).intValue());
-            } else {
-                try {
-                    request.setId(Integer.parseInt(idObj.toString()));
-                } catch (NumberFormatException e) {
-                    // Ignora
-                }
-            }
-        }
-        
-        // Name (suporta "name" e "nome")
-        Object nameObj = data.get("name");
-        if (nameObj == null) {
-            nameObj = data.get("nome");
-        }
-        if (nameObj != null) {
-            request.setName(nameObj.toString());
-        }
-        
-        // Budget
-        Object budgetObj = data.get("budget");
-        if (budgetObj != null) {
-            if (budgetObj instanceof Number) {
-                request.setBudget(((Number) budgetObj).doubleValue());
-            } else {
-                try {
-                    String budgetStr = budgetObj.toString().trim()
-                        .replace(".", "")
-                        .replace(",", ".");
-                    request.setBudget(Double.parseDouble(budgetStr));
-                } catch (NumberFormatException e) {
-                    // Ignora
+        try {
+            JsonReader reader = new JsonReader(json);
+            if (!reader.beginObject()) return request;
+            boolean hasName = false;
+            String field;
+            while ((field = reader.nextName()) != null) {
+                switch (field) {
+                    case "id": request.setId(reader.nextInteger()); break;
+                    case "name":
+                    case "nome": {
+                        String value = reader.nextString();
+                        if (value != null && (field.equals("name") || !hasName)) {
+                            request.setName(value);
+                            hasName = field.equals("name");
+                        }
+                        break;
+                    }
+                    case "budget": {
+                        boolean quoted = reader.peekString();
+                        String value = reader.nextString();
+                        if (value != null) {
+                            try {
+                                String budgetStr = quoted ? value.trim().replace(".", "").replace(",", ".") : value;
+                                request.setBudget(Double.parseDouble(budgetStr));
+                            } catch (NumberFormatException e) {
+                                // Ignora
+                            }
+                        }
+                        break;
+                    }
+                    default: reader.skipValue();
                 }
             }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Erro ao fazer parse do JSON: " + e.getMessage());
         }
-        
         return request;
     }
 }
-
-
-
-
-
-
@@ -0,0 +1,181 @@
+package server.utils;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import server.database.DatabaseConnection;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Invalidação de caches entre instâncias via LISTEN/NOTIFY do Postgres
+ * Cada escrita publica '<id_usuario>:<entidade>' no canal invalidacao_cache: pelo trigger de
+ * versoes_dados (schema_cache_invalidation.sql), no commit da própria transação, ou, sem o
+ * trigger, por um pg_notify logo após o commit. Cada instância mantém uma conexão dedicada
+ * (fora do pool) escutando o canal e repassa as alterações aos ouvintes locais de
+ * {@link DataVersion} (CacheUtil, visão geral). A própria instância também recebe suas
+ * notificações; invalidar de novo é inofensivo.
+ * Se a conexão cair, as notificações do intervalo se perdem: ao reconectar todos os caches
+ * locais são descartados.
+ */
+public final class InvalidationBus {
+    private static final Logger LOGGER = Logger.getLogger(InvalidationBus.class.getName());
+    private static final String CHANNEL = "invalidacao_cache";
+    private static final int POLL_TIMEOUT_MS = 10_000;
+    private static final long MAX_BACKOFF_MS = 60_000;
+
+    private static final AtomicLong RECEIVED = new AtomicLong();
+    private static final AtomicLong PUBLISHED = new AtomicLong();
+    private static final AtomicLong RECONNECTS = new AtomicLong();
+
+    private static volatile Thread listener;
+    private static volatile boolean running;
+    private static volatile boolean triggerInstalled;
+    private static volatile boolean connected;
+
+    private InvalidationBus() {}
+
+    /**
+     * Inicia a escuta do canal em uma thread dedicada (chamado na inicialização do servidor)
+     */
+    public static synchronized void start() {
+        if (running) return;
+        running = true;
+        listener = new Thread(InvalidationBus::listen, "cache-invalidation-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    public static synchronized void stop() {
+        running = false;
+        if (listener != null) {
+            listener.interrupt();
+        }
+    }
+
+    /**
+     * Indica se toda alteração de versoes_dados, de qualquer instância, chega aos ouvintes
+     * locais: conectado ao canal e com o trigger instalado (que notifica no próprio commit)
+     */
+    public static boolean deliversAllChanges() {
+        return connected && triggerInstalled;
+    }
+
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("connected", connected);
+        stats.put("triggerInstalled", triggerInstalled);
+        stats.put("received", RECEIVED.get());
+        stats.put("published", PUBLISHED.get());
+        stats.put("reconnects", RECONNECTS.get());
+        return stats;
+    }
+
+    private static void listen() {
+        long backoff = 1000;
+        boolean firstConnection = true;
+        while (running) {
+            try (Connection conn = DatabaseConnection.getInstance().openDedicatedConnection()) {
+                conn.setAutoCommit(true);
+                detectTrigger(conn);
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("LISTEN " + CHANNEL);
+                }
+                if (!firstConnection) {
+                    // Notificações perdidas enquanto desconectado: descarta os caches locais
+                    // (antes de marcar conectado, para DataVersion não servir versões antigas)
+                    RECONNECTS.incrementAndGet();
+                    CacheUtil.invalidateAll();
+                }
+                connected = true;
+                firstConnection = false;
+                backoff = 1000;
+                LOGGER.info("Escutando invalidações de cache no canal " + CHANNEL
+                    + (triggerInstalled ? "" : " (sem trigger: publicação após o commit)"));
+
+                PGConnection pg = conn.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pg.getNotifications(POLL_TIMEOUT_MS);
+                    if (notifications == null) continue;
+                    for (PGNotification notification : notifications) {
+                        apply(notification.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                if (connected || firstConnection) {
+                    LOGGER.warning("Escuta de invalidações de cache interrompida: " + e.getMessage());
+                }
+                firstConnection = false;
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Erro na escuta de invalidações de cache", e);
+            } finally {
+                connected = false;
+                if (!triggerInstalled) {
+                    DataVersion.setPublisher(null);
+                }
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+        }
+    }
+
+    /**
+     * Sem o trigger em versoes_dados, as escritas desta instância passam a publicar após o commit
+     */
+    private static void detectTrigger(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                 "SELECT 1 FROM pg_trigger WHERE tgname = 'notificar_versao_dados' AND NOT tgisinternal")) {
+            triggerInstalled = rs.next();
+        }
+        DataVersion.setPublisher(triggerInstalled ? null : InvalidationBus::publish);
+    }
+
+    /**
+     * Publica as entidades alteradas do usuário (uma notificação por entidade, em uma consulta)
+     */
+    private static void publish(int idUsuario, DataVersion.Entity[] entities) {
+        List<String> payloads = new ArrayList<>(entities.length);
+        for (DataVersion.Entity entity : entities) {
+            payloads.add(idUsuario + ":" + entity.name());
+        }
+        String sql = "SELECT pg_notify('" + CHANNEL + "', p) FROM unnest(?::text[]) AS p";
+        try (Connection conn = DatabaseConnection.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            Array array = conn.createArrayOf("text", payloads.toArray());
+            stmt.setArray(1, array);
+            stmt.executeQuery().close();
+            PUBLISHED.addAndGet(payloads.size());
+        } catch (SQLException e) {
+            LOGGER.warning("Não foi possível publicar invalidação de cache: " + e.getMessage());
+        }
+    }
+
+    private static void apply(String payload) {
+        int sep = payload != null ? payload.indexOf(':') : -1;
+        if (sep <= 0) return;
+        try {
+            int idUsuario = Integer.parseInt(payload.substring(0, sep));
+            DataVersion.Entity entity = DataVersion.Entity.valueOf(payload.substring(sep + 1));
+            RECEIVED.incrementAndGet();
+            DataVersion.applyRemote(idUsuario, new DataVersion.Entity[] { entity });
+        } catch (IllegalArgumentException e) {
+            // Payload de uma versão diferente do servidor: ignora
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package server.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tokenizador JSON de passagem única
+ * Percorre o texto uma vez, sem recortar substrings de objetos/arrays aninhados.
+ * Pode montar árvores Map/List ({@link #readValue()}) ou ser consumido campo a campo
+ * para preencher DTOs diretamente ({@link #beginObject()} + {@link #nextName()}).
+ */
+public final class JsonReader {
+    private final String json;
+    private final int length;
+    private final boolean dropNulls;
+    private int pos;
+    // Reutilizado para strings com escapes
+    private StringBuilder scratch;
+
+    public JsonReader(String json) {
+        this(json, false);
+    }
+
+    /**
+     * @param dropNulls se true, campos e itens null não são adicionados em Maps/Lists
+     */
+    public JsonReader(String json, boolean dropNulls) {
+        this.json = json != null ? json : "";
+        this.length = this.json.length();
+        this.dropNulls = dropNulls;
+    }
+
+    // ===== Navegação campo a campo =====
+
+    /**
+     * Consome a abertura de um objeto
+     * @return false se o documento estiver vazio
+     */
+    public boolean beginObject() {
+        skipWhitespace();
+        if (pos >= length) {
+            return false;
+        }
+        expect('{');
+        return true;
+    }
+
+    /**
+     * Lê o nome do próximo campo do objeto atual (consumindo o ':')
+     * @return nome do campo, ou null quando o objeto terminou ('}' é consumido)
+     */
+    public String nextName() {
+        skipWhitespace();
+        if (pos < length && json.charAt(pos) == ',') {
+            pos++;
+            skipWhitespace();
+        }
+        if (pos >= length) {
+            throw error("Fim inesperado do objeto");
+        }
+        char c = json.charAt(pos);
+        if (c == '}') {
+            pos++;
+            return null;
+        }
+        if (c != '"') {
+            throw error("Nome de campo esperado");
+        }
+        String name = readString();
+        skipWhitespace();
+        expect(':');
+        return name;
+    }
+
+    /**
+     * Lê o próximo valor como texto: strings são desescapadas, números e booleanos
+     * retornam o literal; null retorna null; objetos e arrays são ignorados (retorna null)
+     */
+    public String nextString() {
+        skipWhitespace();
+        char c = peek();
+        if (c == '"') {
+            return readString();
+        }
+        if (c == '{' || c == '[') {
+            skipValue();
+            return null;
+        }
+        String literal = readLiteral();
+        return "null".equals(literal) ? null : literal;
+    }
+
+    /**
+     * Lê o próximo valor como inteiro (aceita número ou string numérica)
+     * @return null se ausente ou não numérico
+     */
+    public Integer nextInteger() {
+        boolean quoted = peekString();
+        String text = nextString();
+        if (text == null) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            if (quoted) {
+                return null;
+            }
+            try {
+                return (int) Double.parseDouble(text);
+            } catch (NumberFormatException ignored) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Lê o próximo valor como double (aceita número ou string em formato brasileiro)
+     * @return null se ausente ou não numérico
+     */
+    public Double nextDouble() {
+        boolean quoted = peekString();
+        String text = nextString();
+        if (text == null) {
+            return null;
+        }
+        try {
+            return quoted ? NumberUtil.parseDoubleBrazilian(text) : Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Indica se o próximo valor é uma string JSON (entre aspas)
+     */
+    public boolean peekString() {
+        skipWhitespace();
+        return peek() == '"';
+    }
+
+    /**
+     * Ignora o próximo valor (incluindo objetos e arrays aninhados) sem alocar
+     */
+    public void skipValue() {
+        skipWhitespace();
+        char c = peek();
+        if (c == '"') {
+            skipString();
+        } else if (c == '{' || c == '[') {
+            int depth = 0;
+            do {
+                c = json.charAt(pos);
+                if (c == '"') {
+                    skipString();
+                    continue;
+                }
+                if (c == '{' || c == '[') depth++;
+                else if (c == '}' || c == ']') depth--;
+                pos++;
+            } while (depth > 0 && pos < length);
+            if (depth > 0) {
+                throw error("Fim inesperado do documento");
+            }
+        } else {
+            readLiteral();
+        }
+    }
+
+    /**
+     * Garante que não há conteúdo após o valor principal
+     */
+    public void endDocument() {
+        skipWhitespace();
+        if (pos < length) {
+            throw error("Conteúdo inesperado após o fim do JSON");
+        }
+    }
+
+    // ===== Árvore =====
+
+    /**
+     * Lê o próximo valor completo como árvore Map/List/primitivos
+     */
+    public Object readValue() {
+        skipWhitespace();
+        char c = peek();
+        switch (c) {
+            case '{': return readObject();
+            case '[': return readArray();
+            case '"': return readString();
+            default: return parseLiteral(readLiteral());
+        }
+    }
+
+    private Map<String, Object> readObject() {
+        expect('{');
+        Map<String, Object> map = new LinkedHashMap<>();
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            return map;
+        }
+        while (true) {
+            skipWhitespace();
+            if (peek() != '"') {
+                throw error("Nome de campo esperado");
+            }
+            String key = readString();
+            skipWhitespace();
+            expect(':');
+            Object value = readValue();
+            if (value != null || !dropNulls) {
+                map.put(key, value);
+            }
+            skipWhitespace();
+            char c = peek();
+            pos++;
+            if (c == '}') return map;
+            if (c != ',') throw error("',' ou '}' esperado", pos - 1);
+        }
+    }
+
+    private List<Object> readArray() {
+        expect('[');
+        List<Object> list = new ArrayList<>();
+        skipWhitespace();
+        if (peek() == ']') {
+            pos++;
+            return list;
+        }
+        while (true) {
+            Object value = readValue();
+            if (value != null || !dropNulls) {
+                list.add(value);
+            }
+            skipWhitespace();
+            char c = peek();
+            pos++;
+            if (c == ']') return list;
+            if (c != ',') throw error("',' ou ']' esperado", pos - 1);
+        }
+    }
+
+    // ===== Tokens =====
+
+    /**
+     * Lê uma string entre aspas, tratando escapes (incluindo \\uXXXX e pares surrogate)
+     * Strings sem escapes são devolvidas com um único substring
+     */
+    private String readString() {
+        expect('"');
+        int start = pos;
+        while (pos < length) {
+            char c = json.charAt(pos);
+            if (c == '"') {
+                String value = json.substring(start, pos);
+                pos++;
+                return value;
+            }
+            if (c == '\\') {
+                break;
+            }
+            pos++;
+        }
+        if (pos >= length) {
+            throw error("String não terminada", start - 1);
+        }
+
+        StringBuilder sb = scratch != null ? scratch : (scratch = new StringBuilder());
+        sb.setLength(0);
+        sb.append(json, start, pos);
+        while (pos < length) {
+            char c = json.charAt(pos++);
+            if (c == '"') {
+                return sb.toString();
+            }
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (pos >= length) {
+                break;
+            }
+            char escaped = json.charAt(pos++);
+            switch (escaped) {
+                case '"': sb.append('"'); break;
+                case '\\': sb.append('\\'); break;
+                case '/': sb.append('/'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    if (pos + 4 > length) {
+                        throw error("Escape unicode incompleto");
+                    }
+                    sb.append((char) parseHex(pos));
+                    pos += 4;
+                    break;
+                default:
+                    throw error("Escape inválido: \\" + escaped, pos - 2);
+            }
+        }
+        throw error("String não terminada", start - 1);
+    }
+
+    private void skipString() {
+        expect('"');
+        while (pos < length) {
+            char c = json.charAt(pos++);
+            if (c == '"') return;
+            if (c == '\\') pos++;
+        }
+        throw error("String não terminada");
+    }
+
+    private int parseHex(int at) {
+        int value = 0;
+        for (int i = at; i < at + 4; i++) {
+            int digit = Character.digit(json.charAt(i), 16);
+            if (digit < 0) {
+                throw error("Dígito hexadecimal inválido", i);
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    /**
+     * Lê um literal (número, true, false, null) até o próximo delimitador
+     */
+    private String readLiteral() {
+        int start = pos;
+        while (pos < length) {
+            char c = json.charAt(pos);
+            if (c == ',' || c == '}' || c == ']' || c == ':' || Character.isWhitespace(c)) {
+                break;
+            }
+            pos++;
+        }
+        if (start == pos) {
+            throw error("Valor esperado", start);
+        }
+        return json.substring(start, pos);
+    }
+
+    private Object parseLiteral(String literal) {
+        switch (literal) {
+            case "true": return Boolean.TRUE;
+            case "false": return Boolean.FALSE;
+            case "null": return null;
+            default: break;
+        }
+        try {
+            boolean integral = true;
+            for (int i = 0; i < literal.length(); i++) {
+                char c = literal.charAt(i);
+                if (c == '.' || c == 'e' || c == 'E') {
+                    integral = false;
+                    break;
+                }
+            }
+            if (integral) {
+                long value = Long.parseLong(literal);
+                if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                    return (int) value;
+                }
+                return value;
+            }
+            return Double.parseDouble(literal);
+        } catch (NumberFormatException e) {
+            throw error("Literal inválido: " + literal, pos - literal.length());
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < length) {
+            char c = json.charAt(pos);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                break;
+            }
+            pos++;
+        }
+    }
+
+    private char peek() {
+        if (pos >= length) {
+            throw error("Fim inesperado do documento");
+        }
+        return json.charAt(pos);
+    }
+
+    private void expect(char expected) {
+        if (pos >= length || json.charAt(pos) != expected) {
+            throw error("'" + expected + "' esperado");
+        }
+        pos++;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return error(message, pos);
+    }
+
+    private IllegalArgumentException error(String message, int at) {
+        return new IllegalArgumentException("JSON inválido: " + message + " (posição " + at + ")");
+    }
+}
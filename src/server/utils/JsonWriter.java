@@ -0,0 +1,152 @@
+package server.utils;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serializador JSON em streaming
+ * Escreve Map/List/primitivos diretamente em UTF-8 no OutputStream de destino,
+ * sem montar Strings intermediárias. Usa apenas um buffer fixo de bytes.
+ * Segue as mesmas regras de conversão de {@link JsonUtil#toJson(Object)}.
+ */
+public final class JsonWriter implements Flushable {
+    private static final int BUFFER_SIZE = 8192;
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+
+    public JsonWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Serializa um objeto para o stream (não fecha o stream)
+     */
+    public static void write(Object value, OutputStream out) throws IOException {
+        JsonWriter writer = new JsonWriter(out);
+        writer.writeValue(value);
+        writer.flush();
+    }
+
+    public void writeValue(Object obj) throws IOException {
+        if (obj == null) {
+            writeRaw(NULL);
+        } else if (obj instanceof String) {
+            writeString((String) obj);
+        } else if (obj instanceof Number || obj instanceof Boolean) {
+            writeAscii(obj.toString());
+        } else if (obj instanceof Map) {
+            writeByte('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) obj).entrySet()) {
+                if (!first) writeByte(',');
+                writeString(String.valueOf(entry.getKey()));
+                writeByte(':');
+                writeValue(entry.getValue());
+                first = false;
+            }
+            writeByte('}');
+        } else if (obj instanceof List) {
+            writeByte('[');
+            boolean first = true;
+            for (Object item : (List<?>) obj) {
+                if (!first) writeByte(',');
+                writeValue(item);
+                first = false;
+            }
+            writeByte(']');
+        } else {
+            writeString(obj.toString());
+        }
+    }
+
+    /**
+     * Escreve uma string JSON entre aspas, escapando e codificando em UTF-8
+     */
+    private void writeString(String value) throws IOException {
+        writeByte('"');
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                switch (c) {
+                    case '"': writeByte('\\'); writeByte('"'); break;
+                    case '\\': writeByte('\\'); writeByte('\\'); break;
+                    case '\n': writeByte('\\'); writeByte('n'); break;
+                    case '\r': writeByte('\\'); writeByte('r'); break;
+                    case '\t': writeByte('\\'); writeByte('t'); break;
+                    default:
+                        if (c < 0x20) {
+                            writeUnicodeEscape(c);
+                        } else {
+                            writeByte(c);
+                        }
+                }
+            } else if (c < 0x800) {
+                writeByte(0xC0 | (c >> 6));
+                writeByte(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                writeByte(0xF0 | (codePoint >> 18));
+                writeByte(0x80 | ((codePoint >> 12) & 0x3F));
+                writeByte(0x80 | ((codePoint >> 6) & 0x3F));
+                writeByte(0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Surrogate isolado não é UTF-8 válido
+                writeByte('?');
+            } else {
+                writeByte(0xE0 | (c >> 12));
+                writeByte(0x80 | ((c >> 6) & 0x3F));
+                writeByte(0x80 | (c & 0x3F));
+            }
+        }
+        writeByte('"');
+    }
+
+    private void writeUnicodeEscape(char c) throws IOException {
+        writeByte('\\');
+        writeByte('u');
+        writeByte(HEX[(c >> 12) & 0xF]);
+        writeByte(HEX[(c >> 8) & 0xF]);
+        writeByte(HEX[(c >> 4) & 0xF]);
+        writeByte(HEX[c & 0xF]);
+    }
+
+    private void writeAscii(String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            writeByte(value.charAt(i));
+        }
+    }
+
+    private void writeRaw(byte[] bytes) throws IOException {
+        for (byte b : bytes) {
+            writeByte(b);
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (position == buffer.length) {
+            drain();
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    private void drain() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+}
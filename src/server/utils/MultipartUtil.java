@@ -0,0 +1,122 @@
+package server.utils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Leitura em fluxo de corpos multipart/form-data
+ * Só o conteúdo da primeira parte (o arquivo enviado) é exposto, sem carregar o corpo em memória.
+ */
+public class MultipartUtil {
+    private static final int MAX_LINHA_CABECALHO = 8 * 1024;
+
+    /**
+     * Indica se o Content-Type é multipart/form-data
+     */
+    public static boolean isMultipart(String contentType) {
+        return contentType != null && contentType.toLowerCase().startsWith("multipart/form-data");
+    }
+
+    /**
+     * Stream com o conteúdo da primeira parte do corpo, terminando no delimitador seguinte
+     * @throws IOException se o Content-Type não tiver boundary ou o corpo não tiver partes
+     */
+    public static InputStream primeiraParte(InputStream body, String contentType) throws IOException {
+        String boundary = extrairBoundary(contentType);
+        if (boundary == null) {
+            throw new IOException("Content-Type multipart sem boundary");
+        }
+        byte[] delimitador = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        PushbackInputStream in = new PushbackInputStream(new BufferedInputStream(body, 64 * 1024), delimitador.length);
+
+        // Preâmbulo até a primeira linha de delimitador
+        String linha;
+        do {
+            linha = lerLinha(in);
+            if (linha == null) throw new IOException("Corpo multipart sem partes");
+        } while (!linha.startsWith("--" + boundary));
+        // Cabeçalhos da parte até a linha em branco
+        do {
+            linha = lerLinha(in);
+            if (linha == null) throw new IOException("Parte multipart incompleta");
+        } while (!linha.isEmpty());
+
+        return new InputStream() {
+            private boolean fim;
+
+            @Override
+            public int read() throws IOException {
+                if (fim) return -1;
+                int b = in.read();
+                if (b == -1) {
+                    fim = true;
+                    return -1;
+                }
+                if (b != delimitador[0]) return b;
+                byte[] resto = new byte[delimitador.length - 1];
+                int lidos = 0;
+                while (lidos < resto.length) {
+                    int n = in.read(resto, lidos, resto.length - lidos);
+                    if (n == -1) break;
+                    lidos += n;
+                }
+                boolean casou = lidos == resto.length;
+                for (int i = 0; casou && i < resto.length; i++) {
+                    casou = resto[i] == delimitador[i + 1];
+                }
+                if (casou) {
+                    fim = true;
+                    return -1;
+                }
+                in.unread(resto, 0, lidos);
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buf, int off, int len) throws IOException {
+                int n = 0;
+                while (n < len) {
+                    int b = read();
+                    if (b == -1) break;
+                    buf[off + n++] = (byte) b;
+                }
+                return n == 0 && fim ? -1 : n;
+            }
+        };
+    }
+
+    private static String extrairBoundary(String contentType) {
+        if (contentType == null) return null;
+        for (String parte : contentType.split(";")) {
+            String p = parte.trim();
+            if (p.toLowerCase().startsWith("boundary=")) {
+                String valor = p.substring("boundary=".length());
+                if (valor.startsWith("\"") && valor.endsWith("\"") && valor.length() >= 2) {
+                    valor = valor.substring(1, valor.length() - 1);
+                }
+                return valor.isEmpty() ? null : valor;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Linha terminada em CRLF (ou LF), sem o terminador; null no fim do stream
+     */
+    private static String lerLinha(InputStream in) throws IOException {
+        ByteArrayOutputStream linha = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') break;
+            if (linha.size() >= MAX_LINHA_CABECALHO) throw new IOException("Cabeçalho multipart muito longo");
+            linha.write(b);
+        }
+        if (b == -1 && linha.size() == 0) return null;
+        String texto = linha.toString(StandardCharsets.UTF_8.name());
+        return texto.endsWith("\r") ? texto.substring(0, texto.length() - 1) : texto;
+    }
+}
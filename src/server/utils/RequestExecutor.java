@@ -0,0 +1,233 @@
+package server.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import server.database.UnitOfWork;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Executor das requisições HTTP com dois modos selecionáveis via EXECUTOR_MODE:
+ * - pool: ThreadPoolExecutor de threads de plataforma (comportamento original)
+ * - virtual: uma virtual thread por requisição (requer Java 21+, como na imagem Docker;
+ *   em JVMs anteriores volta para pool)
+ *
+ * Em ambos os modos o acesso ao banco é limitado por um semáforo dimensionado pelo
+ * pool do HikariCP menos uma reserva, de forma que sempre sobram conexões para tarefas
+ * auxiliares (consultas paralelas disparadas pelos handlers, jobs agendados). No modo
+ * pool os permits também não passam do número de threads, que já limita os handlers.
+ */
+public final class RequestExecutor implements Executor {
+    private static final Logger LOGGER = Logger.getLogger(RequestExecutor.class.getName());
+
+    public enum Mode { POOL, VIRTUAL }
+
+    // Tempo máximo aguardando um permit antes de responder 503 (igual ao connectionTimeout do Hikari)
+    private static final long DEFAULT_PERMIT_TIMEOUT_MS = 30000;
+    // Conexões do pool que nunca são entregues como permits de requisição
+    private static final int DB_CONNECTION_HEADROOM = 2;
+    // Máximo de threads do pool de plataforma (limitado pelo banco)
+    private static final int POOL_MAX_THREADS = 5;
+
+    private final Mode mode;
+    private final ExecutorService delegate;
+    private final Semaphore dbPermits;
+    private final int maxPermits;
+    private final long permitTimeoutMs;
+
+    // Métricas
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong queueWaitTotalNanos = new AtomicLong();
+    private final AtomicLong queueWaitMaxNanos = new AtomicLong();
+    private final AtomicLong permitAcquired = new AtomicLong();
+    private final AtomicLong permitWaitTotalNanos = new AtomicLong();
+    private final AtomicLong permitWaitMaxNanos = new AtomicLong();
+    private final AtomicLong permitRejected = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    private RequestExecutor(Mode mode, ExecutorService delegate, int maxPermits, long permitTimeoutMs) {
+        this.mode = mode;
+        this.delegate = delegate;
+        this.maxPermits = maxPermits;
+        this.dbPermits = new Semaphore(maxPermits, true);
+        this.permitTimeoutMs = permitTimeoutMs;
+    }
+
+    /**
+     * Cria o executor a partir das variáveis de ambiente
+     * EXECUTOR_MODE=pool|virtual (padrão: pool)
+     * @param poolSize tamanho máximo do pool de conexões; os permits são poolSize menos a reserva
+     *                 (no modo pool, limitados também ao número de threads)
+     */
+    public static RequestExecutor fromEnvironment(int poolSize) {
+        int dbPermits = Math.max(1, poolSize - DB_CONNECTION_HEADROOM);
+        String modeEnv = System.getenv("EXECUTOR_MODE");
+        Mode mode = "virtual".equalsIgnoreCase(modeEnv != null ? modeEnv.trim() : null) ? Mode.VIRTUAL : Mode.POOL;
+
+        if (mode == Mode.VIRTUAL) {
+            ExecutorService virtualExecutor = newVirtualThreadExecutor();
+            if (virtualExecutor != null) {
+                LOGGER.info("Executor em modo virtual threads (permits de banco: " + dbPermits + ")");
+                return new RequestExecutor(Mode.VIRTUAL, virtualExecutor, dbPermits, DEFAULT_PERMIT_TIMEOUT_MS);
+            }
+            LOGGER.warning("Virtual threads indisponíveis nesta JVM (requer Java 21+). Usando pool de threads.");
+        }
+        int poolPermits = Math.min(dbPermits, POOL_MAX_THREADS);
+        LOGGER.info("Executor em modo pool (threads: " + POOL_MAX_THREADS + ", permits de banco: " + poolPermits + ")");
+        return new RequestExecutor(Mode.POOL, newPlatformPool(), poolPermits, DEFAULT_PERMIT_TIMEOUT_MS);
+    }
+
+    /**
+     * Pool de threads de plataforma original
+     * Thread pool reduzido para evitar estourar limite de conexões do banco gratuito
+     */
+    private static ExecutorService newPlatformPool() {
+        return new ThreadPoolExecutor(
+            2,                       // corePoolSize: mínimo de threads
+            POOL_MAX_THREADS,        // maximumPoolSize: máximo de threads (limitado pelo banco)
+            60L,                     // keepAliveTime: 60 segundos
+            TimeUnit.SECONDS,        // unidade de tempo
+            new LinkedBlockingQueue<>(500), // fila de requisições (limite de 500)
+            new ThreadFactory() {
+                private final AtomicInteger threadNumber = new AtomicInteger(1);
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "ControleSe-Handler-" + threadNumber.getAndIncrement());
+                    t.setDaemon(false);
+                    return t;
+                }
+            },
+            new ThreadPoolExecutor.CallerRunsPolicy() // se fila cheia, executa na thread chamadora
+        );
+    }
+
+    /**
+     * Obtém Executors.newVirtualThreadPerTaskExecutor() via reflexão para que o código
+     * continue compilando e rodando em JDKs 11-20 (README), onde o modo virtual não existe
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        final long enqueuedAt = System.nanoTime();
+        submitted.incrementAndGet();
+        delegate.execute(() -> {
+            recordWait(queueWaitMaxNanos, queueWaitTotalNanos, System.nanoTime() - enqueuedAt);
+            command.run();
+        });
+    }
+
+    /**
+     * Envolve um handler para que só execute após obter um permit de banco.
+     * Se nenhum permit ficar disponível dentro do timeout, responde 503.
+     * O handler roda dentro de uma {@link UnitOfWork}: repositórios aninhados e transações
+     * da requisição compartilham uma única conexão, emprestada no primeiro uso.
+     */
+    public HttpHandler withDbPermit(HttpHandler handler) {
+        return exchange -> {
+            long start = System.nanoTime();
+            boolean acquired;
+            try {
+                acquired = dbPermits.tryAcquire(permitTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            }
+            recordWait(permitWaitMaxNanos, permitWaitTotalNanos, System.nanoTime() - start);
+
+            if (!acquired) {
+                permitRejected.incrementAndGet();
+                sendBusy(exchange);
+                return;
+            }
+
+            permitAcquired.incrementAndGet();
+            int current = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(current, Math::max);
+            UnitOfWork unit = UnitOfWork.open();
+            try {
+                handler.handle(exchange);
+            } finally {
+                unit.close();
+                inFlight.decrementAndGet();
+                dbPermits.release();
+            }
+        };
+    }
+
+    private void sendBusy(HttpExchange exchange) throws IOException {
+        LOGGER.warning("Requisição rejeitada: nenhum permit de banco disponível em " + permitTimeoutMs + "ms");
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        ResponseUtil.sendErrorResponse(exchange, 503, "Servidor ocupado. Tente novamente em alguns instantes.");
+    }
+
+    private static void recordWait(AtomicLong max, AtomicLong total, long nanos) {
+        total.addAndGet(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Retorna métricas de fila e de espera por permits (tempos em milissegundos)
+     */
+    public Map<String, Object> getMetrics() {
+        long submittedCount = submitted.get();
+        long permitAttempts = permitAcquired.get() + permitRejected.get();
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("mode", mode.name().toLowerCase());
+        metrics.put("submitted", submittedCount);
+        metrics.put("queueWaitAvgMs", averageMs(queueWaitTotalNanos.get(), submittedCount));
+        metrics.put("queueWaitMaxMs", queueWaitMaxNanos.get() / 1_000_000.0);
+        metrics.put("dbPermits", maxPermits);
+        metrics.put("dbPermitsAvailable", dbPermits.availablePermits());
+        metrics.put("permitWaiting", dbPermits.getQueueLength());
+        metrics.put("permitWaitAvgMs", averageMs(permitWaitTotalNanos.get(), permitAttempts));
+        metrics.put("permitWaitMaxMs", permitWaitMaxNanos.get() / 1_000_000.0);
+        metrics.put("permitRejected", permitRejected.get());
+        metrics.put("inFlight", inFlight.get());
+        metrics.put("maxInFlight", maxInFlight.get());
+        if (delegate instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) delegate;
+            metrics.put("poolSize", pool.getPoolSize());
+            metrics.put("queueSize", pool.getQueue().size());
+        }
+        return metrics;
+    }
+
+    private static double averageMs(long totalNanos, long count) {
+        return count == 0 ? 0.0 : (totalNanos / (double) count) / 1_000_000.0;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void shutdown() {
+        delegate.shutdown();
+        try {
+            if (!delegate.awaitTermination(5, TimeUnit.SECONDS)) {
+                delegate.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            delegate.shutdownNow();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Erro ao encerrar executor de requisições", e);
+        }
+    }
+}
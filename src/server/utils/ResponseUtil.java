@@ -19,54 +19,29 @@ public class ResponseUtil {
         return acceptEncoding != null && acceptEncoding.contains("gzip");
     }
     
-    /**
-     * Comprime dados usando GZIP
-     */
-    private static byte[] compressGzip(byte[] data) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        try (GZIPOutputStream gzos = new GZIPOutputStream(baos)) {
-            gzos.write(data);
-        }
-        return baos.toByteArray();
-    }
-    
     /**
      * Envia uma resposta JSON de sucesso com compressão opcional
+     * O JSON é serializado em streaming diretamente no corpo da resposta
      */
     public static void sendJsonResponse(HttpExchange exchange, int statusCode, Object data) throws IOException {
-        String jsonResponse;
+        Object body;
         if (data instanceof Map && ((Map<?, ?>) data).containsKey("success")) {
             // Data já contém estrutura completa de resposta
-            jsonResponse = JsonUtil.toJson(data);
+            body = data;
         } else {
             // Envolve data em resposta de sucesso
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("data", data);
-            jsonResponse = JsonUtil.toJson(response);
+            body = response;
         }
         
-        byte[] responseBytes = jsonResponse.getBytes("UTF-8");
-        boolean shouldCompress = acceptsGzip(exchange) && responseBytes.length >= MIN_SIZE_FOR_COMPRESSION;
-        
         exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
         exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
         exchange.getResponseHeaders().set("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
         exchange.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type, Authorization");
         
-        if (shouldCompress) {
-            byte[] compressed = compressGzip(responseBytes);
-            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
-            exchange.sendResponseHeaders(statusCode, compressed.length);
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(compressed);
-            }
-        } else {
-            exchange.sendResponseHeaders(statusCode, responseBytes.length);
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(responseBytes);
-            }
-        }
+        writeJsonBody(exchange, statusCode, body);
     }
     
     /**
@@ -76,27 +51,120 @@ public class ResponseUtil {
         Map<String, Object> response = new HashMap<>();
         response.put("success", false);
         response.put("message", message);
-        String jsonResponse = JsonUtil.toJson(response);
-        
-        byte[] responseBytes = jsonResponse.getBytes("UTF-8");
-        boolean shouldCompress = acceptsGzip(exchange) && responseBytes.length >= MIN_SIZE_FOR_COMPRESSION;
         
         exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
         exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
         
-        if (shouldCompress) {
-            byte[] compressed = compressGzip(responseBytes);
-            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
-            exchange.sendResponseHeaders(statusCode, compressed.length);
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(compressed);
+        writeJsonBody(exchange, statusCode, response);
+    }
+    
+    private static void writeJsonBody(HttpExchange exchange, int statusCode, Object body) throws IOException {
+        if (exchange.getResponseCode() != -1) {
+            // Headers já enviados por uma resposta em streaming que falhou no meio: não há
+            // como enviar outra resposta. A exceção chega ao HttpServer, que derruba a conexão
+            // sem o chunk final, e o cliente percebe a resposta como incompleta.
+            throw new IOException("Resposta já enviada parcialmente; erro " + statusCode + " descartado");
+        }
+        if (statusCode >= 400) {
+            // Um ETag definido antes do erro não pode ser associado a este corpo
+            exchange.getResponseHeaders().remove("ETag");
+        }
+        StreamingResponseBody out = new StreamingResponseBody(exchange, statusCode, acceptsGzip(exchange));
+        boolean completed = false;
+        try {
+            JsonWriter.write(body, out);
+            completed = true;
+        } finally {
+            if (completed) {
+                out.close();
+            } else {
+                out.abort();
             }
-        } else {
-            exchange.sendResponseHeaders(statusCode, responseBytes.length);
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(responseBytes);
+        }
+    }
+    
+    /**
+     * Corpo de resposta que decide entre tamanho fixo e chunked sob demanda
+     * Respostas menores que MIN_SIZE_FOR_COMPRESSION são enviadas com Content-Length e sem compressão;
+     * acima disso os headers são enviados com chunked transfer (sendResponseHeaders(code, 0))
+     * e os bytes seguem direto para o socket, passando pelo GZIP quando o cliente aceita.
+     */
+    private static final class StreamingResponseBody extends OutputStream {
+        private final HttpExchange exchange;
+        private final int statusCode;
+        private final boolean gzip;
+        private final byte[] pending = new byte[MIN_SIZE_FOR_COMPRESSION];
+        private int pendingCount;
+        private OutputStream target;
+        
+        StreamingResponseBody(HttpExchange exchange, int statusCode, boolean gzip) {
+            this.exchange = exchange;
+            this.statusCode = statusCode;
+            this.gzip = gzip;
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            if (target == null) {
+                if (pendingCount < pending.length) {
+                    pending[pendingCount++] = (byte) b;
+                    return;
+                }
+                commit();
+            }
+            target.write(b);
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (target == null) {
+                if (pendingCount + len <= pending.length) {
+                    System.arraycopy(b, off, pending, pendingCount, len);
+                    pendingCount += len;
+                    return;
+                }
+                commit();
+            }
+            target.write(b, off, len);
+        }
+        
+        private void commit() throws IOException {
+            if (gzip) {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            exchange.sendResponseHeaders(statusCode, 0);
+            target = gzip ? new GZIPOutputStream(exchange.getResponseBody(), 8192) : exchange.getResponseBody();
+            target.write(pending, 0, pendingCount);
+        }
+        
+        @Override
+        public void flush() throws IOException {
+            // Antes do commit não há nada a enviar: os bytes pendentes definem o Content-Length
+            if (target != null) {
+                target.flush();
+            }
+        }
+        
+        /**
+         * Descarta a resposta após falha na serialização
+         * Se nada foi enviado ainda, os bytes pendentes são descartados e o caminho de erro
+         * envia seus próprios headers. Se já está em streaming, o stream não é fechado
+         * (sem trailer GZIP nem chunk final), para que o corpo truncado não pareça completo.
+         */
+        void abort() {
+            pendingCount = 0;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            if (target == null) {
+                exchange.sendResponseHeaders(statusCode, pendingCount);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(pending, 0, pendingCount);
+                }
+            } else {
+                target.close();
             }
         }
     }
 }
-
@@ -0,0 +1,118 @@
+package server.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Carregamento único por chave ("single-flight")
+ * Chamadas concorrentes para a mesma chave esperam pelo carregamento já em andamento em vez de
+ * repetirem a consulta; o resultado (ou a exceção) é entregue a todas. O carregador não deve
+ * pedir a mesma chave, pois esperaria por si mesmo.
+ */
+public final class SingleFlight<K> {
+    private static final Logger LOGGER = Logger.getLogger(SingleFlight.class.getName());
+
+    private final ConcurrentHashMap<K, CompletableFuture<Object>> calls = new ConcurrentHashMap<>();
+
+    public <T> T execute(K key, Supplier<T> loader) {
+        return execute(key, loader, null);
+    }
+
+    /**
+     * Carrega o valor da chave, ou espera pelo carregamento em andamento
+     * @param publish chamado com o valor carregado (ex: gravar no cache), só se a chave não foi
+     *                esquecida ({@link #forget}) durante o carregamento; pode ser null
+     */
+    public <T> T execute(K key, Supplier<T> loader, Consumer<? super T> publish) {
+        CompletableFuture<Object> call = new CompletableFuture<>();
+        CompletableFuture<Object> current = calls.putIfAbsent(key, call);
+        if (current != null) {
+            return await(current);
+        }
+        return lead(key, call, loader, publish);
+    }
+
+    /**
+     * Dispara o carregamento em segundo plano, se ainda não houver um em andamento para a chave
+     * @return false se já havia carregamento em andamento ou o executor recusou a tarefa
+     */
+    public <T> boolean executeAsync(K key, Executor executor, Supplier<T> loader, Consumer<? super T> publish) {
+        CompletableFuture<Object> call = new CompletableFuture<>();
+        if (calls.putIfAbsent(key, call) != null) {
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    lead(key, call, loader, publish);
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Erro ao carregar " + key + " em segundo plano", e);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            calls.remove(key, call);
+            call.completeExceptionally(e);
+            return false;
+        }
+    }
+
+    /**
+     * Desvincula o carregamento em andamento da chave: quem chegar depois inicia outro, e o
+     * resultado do atual não é publicado (usado quando os dados mudam durante o carregamento)
+     */
+    public void forget(K key) {
+        calls.remove(key);
+    }
+
+    public void forgetIf(Predicate<? super K> filter) {
+        calls.keySet().removeIf(filter);
+    }
+
+    public int inFlight() {
+        return calls.size();
+    }
+
+    private <T> T lead(K key, CompletableFuture<Object> call, Supplier<T> loader, Consumer<? super T> publish) {
+        T value;
+        try {
+            value = loader.get();
+        } catch (RuntimeException | Error e) {
+            calls.remove(key, call);
+            call.completeExceptionally(e);
+            throw e;
+        }
+        if (publish != null) {
+            // Publica sob o lock da chave: um forget concorrente acontece antes (e impede) ou depois
+            calls.computeIfPresent(key, (k, current) -> {
+                if (current != call) return current;
+                publish.accept(value);
+                return null;
+            });
+        } else {
+            calls.remove(key, call);
+        }
+        call.complete(value);
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T await(CompletableFuture<Object> call) {
+        try {
+            return (T) call.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,411 @@
+import server.utils.DtoUtil;
+import server.utils.JsonUtil;
+import server.utils.NumberUtil;
+import java.util.*;
+
+/**
+ * Comparação de throughput entre o parser JSON atual (JsonReader, via JsonUtil/DtoUtil)
+ * e o parser anterior baseado em indexOf/substring (copiado do commit baseline)
+ *
+ * Uso: tests/bench/run-json-benchmark.sh
+ * Os números variam com a máquina e a JVM; o que importa é a razão entre os dois parsers.
+ */
+public class JsonParserBenchmark {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+
+    public static void main(String[] args) {
+        String monthlyData = buildMonthlyDataBody(2400);
+        String login = "{\"email\":\"usuario@example.com\",\"password\":\"S3nh@\\\"forte\",\"captchaToken\":\"abc123\"}";
+
+        System.out.println("Corpo monthlyData: " + (monthlyData.length() / 1024) + " KB");
+        compare("monthlyData -> Map/List", 50,
+            () -> LegacyJsonParser.parseJsonWithNested(monthlyData),
+            () -> JsonUtil.parseJsonWithNested(monthlyData));
+        compare("login -> LoginRequest", 200000,
+            () -> {
+                Map<String, String> data = LegacyJsonParser.parseJson(login);
+                return data.get("email") + data.get("password") + data.get("captchaToken");
+            },
+            () -> DtoUtil.parseLoginRequest(login));
+    }
+
+    /**
+     * Corpo no formato enviado pelo CompoundInterestHandler (monthlyData aninhado)
+     */
+    private static String buildMonthlyDataBody(int months) {
+        StringBuilder sb = new StringBuilder("{\"initialValue\":1000.0,\"monthlyContribution\":250.5,\"annualRate\":11.25,\"monthlyData\":[");
+        for (int i = 0; i < months; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"month\":").append(i + 1)
+              .append(",\"contribution\":250.5,\"interest\":").append(12.34 + i)
+              .append(",\"total\":").append(1000.0 + i * 262.84)
+              .append(",\"label\":\"Mês ").append(i + 1).append("\"}");
+        }
+        return sb.append("]}").toString();
+    }
+
+    private static void compare(String name, int iterations, Bench legacy, Bench current) {
+        double legacyNs = measure(legacy, iterations);
+        double currentNs = measure(current, iterations);
+        System.out.printf("%-26s anterior: %12.0f ns/op   atual: %12.0f ns/op   (%.1fx)%n",
+            name, legacyNs, currentNs, legacyNs / currentNs);
+    }
+
+    private static double measure(Bench bench, int iterations) {
+        Object sink = null;
+        for (int r = 0; r < WARMUP_ROUNDS; r++) {
+            for (int i = 0; i < iterations; i++) sink = bench.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r < MEASURED_ROUNDS; r++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) sink = bench.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        if (sink == null) System.out.println();
+        return best / (double) iterations;
+    }
+
+    @FunctionalInterface
+    private interface Bench {
+        Object run();
+    }
+
+    /**
+     * Parser anterior (JsonUtil no commit baseline), mantido aqui apenas para comparação
+     */
+    static final class LegacyJsonParser {
+        /**
+         * Parser JSON robusto usando regex
+         */
+        public static Map<String, String> parseJson(String json) {
+            Map<String, String> result = new HashMap<>();
+            if (json == null || json.trim().isEmpty()) return result;
+        
+            try {
+                // Parser manual mais robusto que lida com strings longas
+                int i = 0;
+                while (i < json.length()) {
+                    // Pula espaços e vírgulas
+                    while (i < json.length() && (json.charAt(i) == ' ' || json.charAt(i) == ',' || json.charAt(i) == '\n' || json.charAt(i) == '\t')) {
+                        i++;
+                    }
+                    if (i >= json.length()) break;
+                
+                    // Procura por chave (começa com aspas)
+                    if (json.charAt(i) == '"') {
+                        int keyStart = i + 1;
+                        int keyEnd = json.indexOf('"', keyStart);
+                        if (keyEnd == -1) break;
+                    
+                        String key = json.substring(keyStart, keyEnd);
+                        i = keyEnd + 1;
+                    
+                        // Pula espaços e dois pontos
+                        while (i < json.length() && (json.charAt(i) == ' ' || json.charAt(i) == ':')) {
+                            i++;
+                        }
+                        if (i >= json.length()) break;
+                    
+                        // Lê o valor
+                        String value = null;
+                        if (json.charAt(i) == '"') {
+                            // String value - lê até a próxima aspas (não escapada)
+                            int valueStart = i + 1;
+                            int valueEnd = valueStart;
+                            while (valueEnd < json.length()) {
+                                if (json.charAt(valueEnd) == '"' && (valueEnd == valueStart || json.charAt(valueEnd - 1) != '\\')) {
+                                    break;
+                                }
+                                valueEnd++;
+                            }
+                            if (valueEnd < json.length()) {
+                                value = json.substring(valueStart, valueEnd);
+                                // Remove escapes
+                                value = value.replace("\\\"", "\"").replace("\\\\", "\\").replace("\\n", "\n").replace("\\r", "\r").replace("\\t", "\t");
+                                i = valueEnd + 1;
+                            }
+                        } else {
+                            // Valor primitivo (número, boolean, null)
+                            int valueStart = i;
+                            while (i < json.length() && json.charAt(i) != ',' && json.charAt(i) != '}' && json.charAt(i) != ']') {
+                                i++;
+                            }
+                            value = json.substring(valueStart, i).trim();
+                        }
+                    
+                        if (value != null) {
+                            result.put(key, value);
+                        }
+                    } else {
+                        i++;
+                    }
+                }
+            } catch (Exception e) {
+                System.err.println("Erro ao fazer parse do JSON: " + e.getMessage());
+                // (log removido)
+            }
+        
+            return result;
+        }
+    
+        /**
+         * Parse JSON com suporte a objetos aninhados
+         * Retorna Map<String, Object> onde valores podem ser String, Number ou Map aninhado
+         */
+        public static Map<String, Object> parseJsonWithNested(String json) {
+            Map<String, Object> result = new HashMap<>();
+            if (json == null) return result;
+        
+            try {
+                json = json.trim();
+                if (json.startsWith("{")) {
+                    json = json.substring(1);
+                }
+                if (json.endsWith("}")) {
+                    json = json.substring(0, json.length() - 1);
+                }
+            
+                // Parse manual simples para suportar objetos aninhados
+                int i = 0;
+                while (i < json.length()) {
+                    // Encontra próxima chave
+                    int keyStart = json.indexOf("\"", i);
+                    if (keyStart == -1) break;
+                    int keyEnd = json.indexOf("\"", keyStart + 1);
+                    if (keyEnd == -1) break;
+                
+                    String key = json.substring(keyStart + 1, keyEnd);
+                
+                    // Encontra valor após o ":"
+                    int colonIndex = json.indexOf(":", keyEnd);
+                    if (colonIndex == -1) break;
+                
+                    i = colonIndex + 1;
+                    while (i < json.length() && Character.isWhitespace(json.charAt(i))) {
+                        i++;
+                    }
+                
+                    // Determina o tipo de valor
+                    if (i >= json.length()) break;
+                
+                    char firstChar = json.charAt(i);
+                    Object value = null;
+                
+                    if (firstChar == '\"') {
+                        // String value - lê até a próxima aspas não escapada
+                        int valueStart = i + 1;
+                        int valueEnd = valueStart;
+                        while (valueEnd < json.length()) {
+                            if (json.charAt(valueEnd) == '"' && (valueEnd == valueStart || json.charAt(valueEnd - 1) != '\\')) {
+                                break;
+                            }
+                            valueEnd++;
+                        }
+                        if (valueEnd < json.length()) {
+                            String rawValue = json.substring(valueStart, valueEnd);
+                            // Desescapar caracteres especiais
+                            value = rawValue.replace("\\\"", "\"").replace("\\\\", "\\").replace("\\n", "\n").replace("\\r", "\r").replace("\\t", "\t");
+                            i = valueEnd + 1;
+                        }
+                    } else if (firstChar == '{') {
+                        // Nested object
+                        int braceCount = 1;
+                        int objStart = i;
+                        i++;
+                        while (i < json.length() && braceCount > 0) {
+                            if (json.charAt(i) == '{') braceCount++;
+                            else if (json.charAt(i) == '}') braceCount--;
+                            i++;
+                        }
+                        String nestedJson = json.substring(objStart, i);
+                        value = parseJsonWithNested(nestedJson);
+                    } else if (firstChar == '[') {
+                        // Array - parse como List
+                        int bracketCount = 1;
+                        int arrayStart = i;
+                        i++;
+                        while (i < json.length() && bracketCount > 0) {
+                            if (json.charAt(i) == '[') bracketCount++;
+                            else if (json.charAt(i) == ']') bracketCount--;
+                            i++;
+                        }
+                        String arrayJson = json.substring(arrayStart, i);
+                        value = parseJsonArray(arrayJson);
+                    } else {
+                        // Número ou boolean
+                        int valueEnd = i;
+                        while (valueEnd < json.length() && 
+                               json.charAt(valueEnd) != ',' && 
+                               json.charAt(valueEnd) != '}') {
+                            valueEnd++;
+                        }
+                        String valueStr = json.substring(i, valueEnd).trim();
+                    
+                        // Tenta converter para número ou boolean
+                        try {
+                            String normalizedStr = NumberUtil.normalizeBrazilianNumber(valueStr);
+                            if (normalizedStr.contains(".")) {
+                                value = Double.parseDouble(normalizedStr);
+                            } else {
+                                value = Integer.parseInt(normalizedStr);
+                            }
+                        } catch (NumberFormatException e) {
+                            // Tenta converter para boolean
+                            if (valueStr.equalsIgnoreCase("true")) {
+                                value = true;
+                            } else if (valueStr.equalsIgnoreCase("false")) {
+                                value = false;
+                            } else if (valueStr.equalsIgnoreCase("null")) {
+                                value = null;
+                            } else {
+                                value = valueStr;
+                            }
+                        }
+                    
+                        i = valueEnd;
+                    }
+                
+                    if (value != null) {
+                        result.put(key, value);
+                    }
+                
+                    // Pula vírgula se houver
+                    while (i < json.length() && (json.charAt(i) == ',' || Character.isWhitespace(json.charAt(i)))) {
+                        i++;
+                    }
+                }
+            } catch (Exception e) {
+                System.err.println("Erro ao fazer parse do JSON aninhado: " + e.getMessage());
+                // (log removido)
+                
+            }
+        
+            return result;
+        }
+    
+        /**
+         * Parse um array JSON para List<Object>
+         */
+        @SuppressWarnings("unchecked")
+        public static List<Object> parseJsonArray(String json) {
+            List<Object> result = new ArrayList<>();
+            if (json == null) return result;
+        
+            try {
+                json = json.trim();
+                if (json.startsWith("[")) {
+                    json = json.substring(1);
+                }
+                if (json.endsWith("]")) {
+                    json = json.substring(0, json.length() - 1);
+                }
+            
+                if (json.trim().isEmpty()) {
+                    return result;
+                }
+            
+                // Parse manual dos elementos do array
+                int i = 0;
+                while (i < json.length()) {
+                    // Pula espaços
+                    while (i < json.length() && Character.isWhitespace(json.charAt(i))) {
+                        i++;
+                    }
+                    if (i >= json.length()) break;
+                
+                    char firstChar = json.charAt(i);
+                    Object value = null;
+                
+                    if (firstChar == '\"') {
+                        // String value - lê até a próxima aspas não escapada
+                        int valueStart = i + 1;
+                        int valueEnd = valueStart;
+                        while (valueEnd < json.length()) {
+                            if (json.charAt(valueEnd) == '"' && (valueEnd == valueStart || json.charAt(valueEnd - 1) != '\\')) {
+                                break;
+                            }
+                            valueEnd++;
+                        }
+                        if (valueEnd < json.length()) {
+                            String rawValue = json.substring(valueStart, valueEnd);
+                            // Desescapar caracteres especiais
+                            value = rawValue.replace("\\\"", "\"").replace("\\\\", "\\").replace("\\n", "\n").replace("\\r", "\r").replace("\\t", "\t");
+                            i = valueEnd + 1;
+                        }
+                    } else if (firstChar == '{') {
+                        // Nested object
+                        int braceCount = 1;
+                        int objStart = i;
+                        i++;
+                        while (i < json.length() && braceCount > 0) {
+                            if (json.charAt(i) == '{') braceCount++;
+                            else if (json.charAt(i) == '}') braceCount--;
+                            i++;
+                        }
+                        String nestedJson = json.substring(objStart, i);
+                        value = parseJsonWithNested(nestedJson);
+                    } else if (firstChar == '[') {
+                        // Nested array
+                        int bracketCount = 1;
+                        int arrayStart = i;
+                        i++;
+                        while (i < json.length() && bracketCount > 0) {
+                            if (json.charAt(i) == '[') bracketCount++;
+                            else if (json.charAt(i) == ']') bracketCount--;
+                            i++;
+                        }
+                        String nestedArrayJson = json.substring(arrayStart, i);
+                        value = parseJsonArray(nestedArrayJson);
+                    } else {
+                        // Número ou boolean
+                        int valueEnd = i;
+                        while (valueEnd < json.length() && 
+                               json.charAt(valueEnd) != ',' && 
+                               json.charAt(valueEnd) != ']') {
+                            valueEnd++;
+                        }
+                        String valueStr = json.substring(i, valueEnd).trim();
+                    
+                        // Tenta converter para número
+                        try {
+                            String normalizedStr = NumberUtil.normalizeBrazilianNumber(valueStr);
+                            if (normalizedStr.contains(".")) {
+                                value = Double.parseDouble(normalizedStr);
+                            } else {
+                                value = Integer.parseInt(normalizedStr);
+                            }
+                        } catch (NumberFormatException e) {
+                            if (valueStr.equalsIgnoreCase("true")) {
+                                value = true;
+                            } else if (valueStr.equalsIgnoreCase("false")) {
+                                value = false;
+                            } else if (valueStr.equalsIgnoreCase("null")) {
+                                value = null;
+                            } else {
+                                value = valueStr;
+                            }
+                        }
+                    
+                        i = valueEnd;
+                    }
+                
+                    if (value != null) {
+                        result.add(value);
+                    }
+                
+                    // Pula vírgula se houver
+                    while (i < json.length() && (json.charAt(i) == ',' || Character.isWhitespace(json.charAt(i)))) {
+                        i++;
+                    }
+                }
+            } catch (Exception e) {
+                System.err.println("Erro ao fazer parse do array JSON: " + e.getMessage());
+                // (log removido)
+            }
+        
+            return result;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+#!/bin/bash
+
+# Compara o parser JSON atual com o anterior (ver JsonParserBenchmark.java)
+# Execute a partir da raiz do projeto
+
+set -e
+
+if [ ! -f "src/ControleSeServer.java" ]; then
+    echo "ERRO: Execute este script do diretório raiz do projeto"
+    exit 1
+fi
+
+OUT=$(mktemp -d)
+trap 'rm -rf "$OUT"' EXIT
+
+javac -encoding UTF-8 -nowarn -sourcepath src -cp "lib/*" -d "$OUT" tests/bench/JsonParserBenchmark.java
+java -cp "$OUT:lib/*" JsonParserBenchmark